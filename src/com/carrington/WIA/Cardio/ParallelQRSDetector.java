@@ -0,0 +1,162 @@
+package com.carrington.WIA.Cardio;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Detects QRS complexes in long ECG recordings by splitting them into segments
+ * which are detected in parallel by {@link StreamingQRSDetector}. Each segment
+ * is detected from some seconds before it, so that the adaptive thresholds have
+ * settled by its start, to a second after it, so that a beat at its end is
+ * found. A beat at the seam between segments may be found by both, so beats
+ * within 200 ms of the one before are dropped when the segments are joined.
+ */
+public abstract class ParallelQRSDetector {
+
+	/** Seconds of ECG in each segment */
+	private static final int SEGMENT_SECONDS = 60;
+	/** Seconds before each segment detected so that the thresholds settle */
+	private static final int WARM_UP_SECONDS = 10;
+	/** Seconds after each segment detected so that beats at its end are found */
+	private static final int TAIL_SECONDS = 1;
+
+	/**
+	 * Given input time and amplitude arrays for the ECG strip, will supply a list
+	 * of QRS complexes
+	 *
+	 * @param time                time array
+	 * @param amplitude           ECG amplitude array
+	 * @param hz                  ECG sample rate
+	 * @param adjustTo100msBefore Adjusts the supplied index of QRS to 100 ms
+	 *                            before (see
+	 *                            {@link QRSDetector#getQRS(double[], double[], int, boolean)})
+	 * @return List of {@link QRS} complexes identified.
+	 */
+	public static List<QRS> getQRS(double[] time, double[] amplitude, int hz, boolean adjustTo100msBefore) {
+		return getQRSOnSubset(time, amplitude, 0, amplitude.length, hz, adjustTo100msBefore);
+	}
+
+	/**
+	 * Given input time and amplitude arrays for the ECG strip as well as indices to
+	 * start and stop analyzing, will supply a list of QRS complexes. Ranges of more
+	 * than one segment are detected in parallel, otherwise this is the same as
+	 * {@link StreamingQRSDetector#getQRSOnSubset(double[], double[], int, int, int, boolean)}.
+	 *
+	 * @param time                time array
+	 * @param amplitude           ECG amplitude array
+	 * @param start               index of the input arrays to start, inclusive
+	 * @param end                 index of the input arrays to end, exclusive
+	 * @param hz                  ECG sample rate
+	 * @param adjustTo100msBefore Adjusts the supplied index of QRS to 100 ms
+	 *                            before (see
+	 *                            {@link QRSDetector#getQRS(double[], double[], int, boolean)})
+	 * @return List of {@link QRS} complexes identified.
+	 * @throws IllegalArgumentException if the range is invalid
+	 */
+	public static List<QRS> getQRSOnSubset(double[] time, double[] amplitude, int start, int end, int hz,
+			boolean adjustTo100msBefore) throws IllegalArgumentException {
+		return getQRSOnSubset(time, amplitude, start, end, hz, adjustTo100msBefore,
+				Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Given input time and amplitude arrays for the ECG strip as well as indices to
+	 * start and stop analyzing, will supply a list of QRS complexes, detecting
+	 * segments on the given number of threads
+	 *
+	 * @param time                time array
+	 * @param amplitude           ECG amplitude array
+	 * @param start               index of the input arrays to start, inclusive
+	 * @param end                 index of the input arrays to end, exclusive
+	 * @param hz                  ECG sample rate
+	 * @param adjustTo100msBefore Adjusts the supplied index of QRS to 100 ms
+	 *                            before (see
+	 *                            {@link QRSDetector#getQRS(double[], double[], int, boolean)})
+	 * @param parallelism         number of threads; 1 or less detects the whole
+	 *                            range on the calling thread
+	 * @return List of {@link QRS} complexes identified.
+	 * @throws IllegalArgumentException if the range is invalid
+	 */
+	public static List<QRS> getQRSOnSubset(double[] time, double[] amplitude, int start, int end, int hz,
+			boolean adjustTo100msBefore, int parallelism) throws IllegalArgumentException {
+		if (start < 0 || end > amplitude.length || start > end) {
+			throw new IllegalArgumentException("Invalid range specified");
+		} else if (hz <= 0) {
+			throw new IllegalArgumentException("Sample rate must be positive");
+		}
+
+		int segment = SEGMENT_SECONDS * hz;
+		int segments = (int) (((long) end - start + segment - 1) / segment);
+		int threads = Math.min(parallelism, segments);
+		if (threads <= 1) {
+			return StreamingQRSDetector.getQRSOnSubset(time, amplitude, start, end, hz, adjustTo100msBefore);
+		}
+
+		List<List<QRS>> found = new ArrayList<List<QRS>>();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			List<ForkJoinTask<List<QRS>>> tasks = new ArrayList<ForkJoinTask<List<QRS>>>();
+			for (int s = 0; s < segments; s++) {
+				final int segmentStart = start + s * segment;
+				final int segmentEnd = (int) Math.min(end, (long) segmentStart + segment);
+				tasks.add(pool.submit(() -> _detectSegment(time, amplitude, start, end, segmentStart, segmentEnd, hz,
+						adjustTo100msBefore)));
+			}
+
+			for (ForkJoinTask<List<QRS>> task : tasks) {
+				try {
+					found.add(task.get());
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof RuntimeException) {
+						throw (RuntimeException) e.getCause();
+					}
+					throw new IllegalStateException("Error detecting QRS: " + e.getCause().getMessage());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while detecting QRS");
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+
+		// join, dropping beats found by both segments at a seam
+		int refractory = hz / 5;
+		List<QRS> qrsComplexes = new ArrayList<QRS>();
+		int lastIndex = Integer.MIN_VALUE;
+		for (List<QRS> segmentQRS : found) {
+			for (QRS qrs : segmentQRS) {
+				if ((long) qrs.getArrayIndex() - lastIndex > refractory) {
+					qrsComplexes.add(qrs);
+					lastIndex = qrs.getArrayIndex();
+				}
+			}
+		}
+		return qrsComplexes;
+	}
+
+	/**
+	 * Detects the QRS complexes of one segment, keeping those within 200 ms of it
+	 * so that a beat at a seam is found by at least one of the segments either
+	 * side, even if they place it slightly differently
+	 */
+	private static List<QRS> _detectSegment(double[] time, double[] amplitude, int start, int end,
+			int segmentStart, int segmentEnd, int hz, boolean adjustTo100msBefore) {
+		int from = (int) Math.max(start, (long) segmentStart - WARM_UP_SECONDS * hz);
+		int to = (int) Math.min(end, (long) segmentEnd + TAIL_SECONDS * hz);
+		int margin = hz / 5;
+
+		List<QRS> kept = new ArrayList<QRS>();
+		for (QRS qrs : StreamingQRSDetector.getQRSOnSubset(time, amplitude, from, to, hz, adjustTo100msBefore)) {
+			int index = qrs.getArrayIndex();
+			if (index >= segmentStart - margin && index < segmentEnd + margin) {
+				kept.add(qrs);
+			}
+		}
+		return kept;
+	}
+
+}
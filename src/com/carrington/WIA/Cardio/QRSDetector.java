@@ -6,7 +6,8 @@ import java.util.List;
 import com.carrington.WIA.Utils;
 
 /**
- * Detects QRS complexes
+ * Detects QRS complexes. See {@link StreamingQRSDetector} to detect with
+ * adaptive thresholds, a block at a time.
  */
 public abstract class QRSDetector {
 
@@ -74,14 +75,8 @@ public abstract class QRSDetector {
 	 */
 	private static List<Integer> getQRSIndices(double[] input, int hz, boolean adjustTo100msBefore) {
 
-		// Differentiate the signal
-		double[] differentiatedSignal = differentiate(input);
-
-		// Square the signal
-		double[] squaredSignal = square(differentiatedSignal);
-
-		// Apply moving window integration
-		double[] integratedSignal = movingWindowIntegration(squaredSignal, (int) ((double) hz / 6.0));
+		// Differentiate, square and apply moving window integration
+		double[] integratedSignal = integrateSquaredDifferential(input, (int) ((double) hz / 6.0));
 
 		// Automatically detect threshold
 		double threshold = detectThreshold(integratedSignal);
@@ -91,53 +86,39 @@ public abstract class QRSDetector {
 	}
 
 	/**
-	 * Helper method, calculates the differential.
-	 * 
-	 * @return differential of input. Output array is same length as input, and
-	 *         first elemtn is zero.
-	 */
-	private static double[] differentiate(double[] signal) {
-		double[] differentiatedSignal = new double[signal.length];
-		for (int i = 1; i < signal.length; i++) {
-			differentiatedSignal[i] = signal[i] - signal[i - 1];
-		}
-		return differentiatedSignal;
-	}
-
-	/**
-	 * Helper method, calculates the square.
-	 * 
-	 * @return square of input.
-	 */
-	private static double[] square(double[] signal) {
-		double[] squaredSignal = new double[signal.length];
-		for (int i = 0; i < signal.length; i++) {
-			squaredSignal[i] = signal[i] * signal[i];
-		}
-		return squaredSignal;
-	}
-
-	/**
-	 * Helper method. Performs moving window integration on the supplied input
+	 * Helper method. Performs moving window integration of the square of the
+	 * differential of the supplied input, in one pass with a running sum rather
+	 * than summing each window, so that only the integrated signal is allocated.
+	 * The differential of the first element is zero.
 	 * 
 	 * @param signal     input to evaluate
 	 * @param windowSize the window size to use
-	 * @return
+	 * @return integrated signal, same length as input
 	 */
-	private static double[] movingWindowIntegration(double[] signal, int windowSize) {
+	static double[] integrateSquaredDifferential(double[] signal, int windowSize) {
 		double[] integratedSignal = new double[signal.length];
+		double sum = 0;
 		for (int i = 0; i < signal.length; i++) {
-			double sum = 0;
-			for (int j = 0; j < windowSize; j++) {
-				if (i - j >= 0) {
-					sum += signal[i - j];
-				}
+			sum += _squaredDifferential(signal, i);
+			if (i - windowSize >= 0) {
+				sum -= _squaredDifferential(signal, i - windowSize);
 			}
 			integratedSignal[i] = sum / windowSize;
 		}
 		return integratedSignal;
 	}
 
+	/**
+	 * Square of the differential at an index, zero for the first element
+	 */
+	private static double _squaredDifferential(double[] signal, int i) {
+		if (i == 0) {
+			return 0;
+		}
+		double diff = signal[i] - signal[i - 1];
+		return diff * diff;
+	}
+
 	/**
 	 * Helper method. Finds an adequate threshold for the input signal. It does this
 	 * by calculating the mean and standard deviation, then adding one standard
@@ -164,10 +145,8 @@ public abstract class QRSDetector {
 
 	/**
 	 * Helper method. Finds array indices of QRS complex based on integrated signal.
-	 * The methods {@link #detectThreshold(double[])},
-	 * {@link #movingWindowIntegration(double[], int)},
-	 * {@link #differentiate(double[])}, and {@link #square(double[])} should have
-	 * been called already.
+	 * The methods {@link #integrateSquaredDifferential(double[], int)} and
+	 * {@link #detectThreshold(double[])} should have been called already.
 	 */
 	public static ArrayList<Integer> detectQRSComplexes(double[] integratedSignal, double[] originalSignal,
 			double threshold, int hz, boolean adjustTo100msBefore) {
@@ -0,0 +1,414 @@
+package com.carrington.WIA.Cardio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Detects QRS complexes in an ECG a sample or a block at a time, as
+ * {@link QRSDetector} does for a whole array, by moving integration of the
+ * squared differential. The differential is taken over 20 ms rather than
+ * between samples, so that noise between samples does not swamp the QRS at high
+ * sample rates. Rather than one threshold from the mean and standard
+ * deviation of the whole signal, peaks of the integrated signal are classed as
+ * QRS or noise against a threshold which adapts to the running levels of each
+ * (after Pan and Tompkins, 1985), so that it follows changes in amplitude over
+ * long recordings:
+ * <ul>
+ * <li>The levels are initialised from the first {@value #LEARNING_SECONDS}
+ * seconds, which are then detected as normal.</li>
+ * <li>A peak above the threshold, and more than 200 ms after the last QRS, is a
+ * QRS, unless it is within 360 ms of the last QRS and the ECG rises at less than
+ * half the slope, in which case it is a T wave.</li>
+ * <li>If no QRS is found within 166% of the average of the last
+ * {@value #RR_COUNT} RR intervals, the highest peak since the last QRS which is
+ * above half the threshold is taken as a QRS.</li>
+ * </ul>
+ * <p>
+ * The integrator is a running sum, and only the last
+ * {@value #HISTORY_SECONDS} seconds of samples are kept, to find the R wave
+ * and the start of each QRS, so any length of ECG can be processed in constant
+ * memory. A detector holds the state of one signal, and is not thread safe.
+ * </p>
+ */
+public class StreamingQRSDetector {
+
+	/** Seconds at the start from which the levels are initialised */
+	private static final double LEARNING_SECONDS = 2.0;
+	/** Seconds of samples kept to find the R wave and the start of the QRS */
+	private static final double HISTORY_SECONDS = 5.0;
+	/** Number of recent RR intervals averaged for the search back */
+	private static final int RR_COUNT = 8;
+	/** Samples given to the detector at a time by the static methods */
+	private static final int BLOCK_SIZE = 4096;
+
+	private final boolean adjustTo100msBefore;
+	/** Moving integration window, 1/6 second */
+	private final int window;
+	/** 100 ms in samples */
+	private final int tenth;
+	/** Minimum time between QRS complexes, 200 ms in samples */
+	private final int refractory;
+	/** Time after a QRS in which a peak may be a T wave, 360 ms in samples */
+	private final int tWave;
+	/** Span of the differential, 20 ms in samples */
+	private final int span;
+
+	/** The last samples, by sample index modulo the length */
+	private final double[] history;
+	/** The last window of squared differentials, by sample index modulo */
+	private final double[] squares;
+	private int taken = 0;
+	private double sum = 0;
+
+	private final int learningLength;
+	/** Integrated values of the learning period, or null once it has ended */
+	private double[] learning;
+	private int learned = 0;
+
+	private double previousIntegrated = 0;
+	/** True after a peak until the integrated signal starts rising again */
+	private boolean falling = false;
+	private int candidateIndex = -1;
+	private double candidateValue = 0;
+
+	private double signalLevel = 0;
+	private double noiseLevel = 0;
+	/** Integrated peak index of the last QRS, or -1 if none yet */
+	private int lastQRS = -1;
+	/** Greatest slope of the ECG before the last QRS */
+	private double lastSlope = 0;
+	/** Highest peak since the last QRS above half the threshold, for search back */
+	private int missedIndex = -1;
+	private double missedValue = 0;
+	private final int[] rrIntervals = new int[RR_COUNT];
+	private int rrCount = 0;
+	private int rrNext = 0;
+	private long rrSum = 0;
+
+	/** Indices of QRS found and not yet given out */
+	private final List<Integer> found = new ArrayList<Integer>();
+
+	/**
+	 * Creates a detector
+	 *
+	 * @param hz                  ECG sample rate
+	 * @param adjustTo100msBefore Adjusts the supplied index of QRS to 100 ms
+	 *                            before the peak, rather than the start of the R
+	 *                            wave (see
+	 *                            {@link QRSDetector#getQRS(double[], double[], int, boolean)})
+	 * @throws IllegalArgumentException if the sample rate is not positive
+	 */
+	public StreamingQRSDetector(int hz, boolean adjustTo100msBefore) throws IllegalArgumentException {
+		if (hz <= 0) {
+			throw new IllegalArgumentException("Sample rate must be positive");
+		}
+		this.adjustTo100msBefore = adjustTo100msBefore;
+		this.window = Math.max(1, hz / 6);
+		this.tenth = hz / 10;
+		this.refractory = hz / 5;
+		this.tWave = (int) (0.36 * hz);
+		this.span = Math.max(1, hz / 50);
+		this.learningLength = Math.max(1, (int) (LEARNING_SECONDS * hz));
+		this.learning = new double[learningLength];
+		this.history = new double[Math.max((int) (HISTORY_SECONDS * hz), learningLength) + window + tenth + 1];
+		this.squares = new double[window];
+	}
+
+	/**
+	 * Given input time and amplitude arrays for the ECG strip, will supply a list
+	 * of QRS complexes, processing the ECG in blocks without copying it
+	 *
+	 * @param time                time array
+	 * @param amplitude           ECG amplitude array
+	 * @param hz                  ECG sample rate
+	 * @param adjustTo100msBefore Adjusts the supplied index of QRS to 100 ms
+	 *                            before (see
+	 *                            {@link QRSDetector#getQRS(double[], double[], int, boolean)})
+	 * @return List of {@link QRS} complexes identified.
+	 */
+	public static List<QRS> getQRS(double[] time, double[] amplitude, int hz, boolean adjustTo100msBefore) {
+		return getQRSOnSubset(time, amplitude, 0, amplitude.length, hz, adjustTo100msBefore);
+	}
+
+	/**
+	 * Given input time and amplitude arrays for the ECG strip as well as indices to
+	 * start and stop analyzing, will supply a list of QRS complexes, processing the
+	 * range in blocks without copying it
+	 *
+	 * @param time                time array
+	 * @param amplitude           ECG amplitude array
+	 * @param start               index of the input arrays to start, inclusive
+	 * @param end                 index of the input arrays to end, exclusive
+	 * @param hz                  ECG sample rate
+	 * @param adjustTo100msBefore Adjusts the supplied index of QRS to 100 ms
+	 *                            before (see
+	 *                            {@link QRSDetector#getQRS(double[], double[], int, boolean)})
+	 * @return List of {@link QRS} complexes identified.
+	 * @throws IllegalArgumentException if the range is invalid
+	 */
+	public static List<QRS> getQRSOnSubset(double[] time, double[] amplitude, int start, int end, int hz,
+			boolean adjustTo100msBefore) throws IllegalArgumentException {
+		if (start < 0 || end > amplitude.length || start > end) {
+			throw new IllegalArgumentException("Invalid range specified");
+		}
+
+		StreamingQRSDetector detector = new StreamingQRSDetector(hz, adjustTo100msBefore);
+		List<Integer> qrsIndices = new ArrayList<Integer>();
+		for (int from = start; from < end; from += BLOCK_SIZE) {
+			detector.write(amplitude, from, Math.min(end, from + BLOCK_SIZE), qrsIndices);
+		}
+		detector.finish(qrsIndices);
+
+		List<QRS> qrsComplexes = new ArrayList<QRS>(qrsIndices.size());
+		for (Integer i : qrsIndices) {
+			qrsComplexes.add(new QRS(i + start, time[i + start]));
+		}
+		return qrsComplexes;
+	}
+
+	/**
+	 * Takes a block of samples, adding the index of any QRS complexes which can
+	 * now be detected. QRS are found some time after they are written: at the
+	 * latest, once the integrated signal falls a window after its peak, or once the
+	 * learning period is over.
+	 *
+	 * @param samples    the ECG samples
+	 * @param from       index of the first sample, inclusive
+	 * @param to         index of the last sample, exclusive
+	 * @param qrsIndices list to add the indices of QRS complexes to, counted in
+	 *                   samples from the start of the signal, in ascending order
+	 */
+	public void write(double[] samples, int from, int to, List<Integer> qrsIndices) {
+		for (int i = from; i < to; i++) {
+			_take(samples[i]);
+		}
+		_giveFound(qrsIndices);
+	}
+
+	/**
+	 * Ends the signal, adding the index of any QRS complexes remaining to be
+	 * detected. The detector is then reset for a new signal.
+	 *
+	 * @param qrsIndices list to add the indices of QRS complexes to
+	 */
+	public void finish(List<Integer> qrsIndices) {
+		if (learning != null && learned > 0) {
+			_endLearning();
+		}
+		if (!falling && candidateIndex >= 0) {
+			_peak(candidateIndex, candidateValue);
+		}
+		_giveFound(qrsIndices);
+		reset();
+	}
+
+	/**
+	 * Discards all samples and levels, to start a new signal
+	 */
+	public void reset() {
+		taken = 0;
+		sum = 0;
+		Arrays.fill(squares, 0);
+		learning = new double[learningLength];
+		learned = 0;
+		previousIntegrated = 0;
+		falling = false;
+		candidateIndex = -1;
+		candidateValue = 0;
+		signalLevel = 0;
+		noiseLevel = 0;
+		lastQRS = -1;
+		lastSlope = 0;
+		missedIndex = -1;
+		missedValue = 0;
+		rrCount = 0;
+		rrNext = 0;
+		rrSum = 0;
+		found.clear();
+	}
+
+	/**
+	 * Takes a sample, integrating the square of its differential over the span
+	 */
+	private void _take(double sample) {
+		int index = taken;
+		history[index % history.length] = sample;
+		taken++;
+		double diff = sample - _sample(Math.max(0, index - span));
+
+		int slot = index % window;
+		double square = diff * diff;
+		sum += square - squares[slot];
+		squares[slot] = square;
+		double integrated = sum / window;
+
+		if (learning != null) {
+			learning[learned++] = integrated;
+			if (learned == learning.length) {
+				_endLearning();
+			}
+		} else {
+			_integrated(index, integrated);
+		}
+	}
+
+	/**
+	 * Initialises the signal and noise levels from the learning period, as a quarter
+	 * of its maximum and half of its mean, then detects in it
+	 */
+	private void _endLearning() {
+		double max = 0;
+		double mean = 0;
+		for (int i = 0; i < learned; i++) {
+			max = Math.max(max, learning[i]);
+			mean += learning[i];
+		}
+		mean /= learned;
+		signalLevel = max / 4;
+		noiseLevel = mean / 2;
+
+		double[] values = learning;
+		learning = null;
+		for (int i = 0; i < learned; i++) {
+			_integrated(i, values[i]);
+		}
+	}
+
+	/**
+	 * Finds the peaks of the integrated signal. A peak is the highest value since
+	 * the signal started rising, once it has fallen to half of it or a window has
+	 * passed.
+	 */
+	private void _integrated(int index, double value) {
+		if (falling) {
+			if (value > previousIntegrated) {
+				falling = false;
+				candidateIndex = index;
+				candidateValue = value;
+			}
+		} else if (candidateIndex < 0 || value > candidateValue) {
+			candidateIndex = index;
+			candidateValue = value;
+		} else if (value < candidateValue / 2 || index - candidateIndex >= window) {
+			_peak(candidateIndex, candidateValue);
+			falling = true;
+			candidateIndex = -1;
+		}
+		previousIntegrated = value;
+
+		if (missedIndex >= 0 && rrCount > 0 && (index - lastQRS) * rrCount > 1.66 * rrSum) {
+			// search back for a QRS missed since the last
+			_acceptQRS(missedIndex, missedValue, true);
+		}
+	}
+
+	/**
+	 * Classes a peak of the integrated signal as QRS or noise
+	 */
+	private void _peak(int index, double value) {
+		double threshold = noiseLevel + 0.25 * (signalLevel - noiseLevel);
+		boolean afterRefractory = lastQRS < 0 || index - lastQRS > refractory;
+		if (value > threshold && afterRefractory
+				&& !(lastQRS >= 0 && index - lastQRS < tWave && _slope(index) < lastSlope / 2)) {
+			_acceptQRS(index, value, false);
+		} else {
+			noiseLevel = 0.125 * value + 0.875 * noiseLevel;
+			if (afterRefractory && value > threshold / 2 && value > missedValue) {
+				missedIndex = index;
+				missedValue = value;
+			}
+		}
+	}
+
+	/**
+	 * Records a QRS at a peak of the integrated signal, updating the signal level
+	 * and RR intervals
+	 */
+	private void _acceptQRS(int index, double value, boolean searchBack) {
+		if (searchBack) {
+			signalLevel = 0.25 * value + 0.75 * signalLevel;
+		} else {
+			signalLevel = 0.125 * value + 0.875 * signalLevel;
+		}
+		if (lastQRS >= 0) {
+			rrSum += (index - lastQRS) - rrIntervals[rrNext];
+			rrIntervals[rrNext] = index - lastQRS;
+			rrNext = (rrNext + 1) % RR_COUNT;
+			rrCount = Math.min(rrCount + 1, RR_COUNT);
+		}
+		lastQRS = index;
+		lastSlope = _slope(index);
+		missedIndex = -1;
+		missedValue = 0;
+
+		int peak = _rWave(index);
+		found.add(adjustTo100msBefore ? Math.max(0, peak - tenth) : _startOfQRS(peak));
+	}
+
+	/**
+	 * Finds the R wave of a QRS, the first maximum of the ECG in the integration
+	 * window and 100 ms before the peak of the integrated signal
+	 */
+	private int _rWave(int index) {
+		int start = Math.max(_oldest(), index - window - tenth);
+		int max = index;
+		for (int i = start; i <= index; i++) {
+			if (_sample(i) > _sample(max) || (i < max && _sample(i) == _sample(max))) {
+				max = i;
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Finds the start of the QRS before its R wave, the same as
+	 * {@link QRSDetector#findStartOfQRS(double[], int)}, or the oldest sample kept
+	 * if it is not found before it
+	 */
+	private int _startOfQRS(int peakIndex) {
+		int oldest = _oldest();
+		Boolean positive = null;
+		int foundIndex = -1;
+		int i;
+		for (i = peakIndex; i > oldest; i--) {
+			double diff = _sample(i) - _sample(i - 1);
+			if (positive == null) {
+				positive = diff >= 0;
+			} else if (positive ? diff >= 0 : diff <= 0) {
+				foundIndex = -1;
+			} else if (foundIndex == -1) {
+				foundIndex = i;
+			} else {
+				return foundIndex;
+			}
+		}
+		return i;
+	}
+
+	/**
+	 * Greatest slope of the ECG in the integration window before a peak of the
+	 * integrated signal
+	 */
+	private double _slope(int index) {
+		double slope = 0;
+		for (int i = Math.max(_oldest() + span, index - window + 1); i <= index; i++) {
+			slope = Math.max(slope, Math.abs(_sample(i) - _sample(i - span)));
+		}
+		return slope;
+	}
+
+	private int _oldest() {
+		return Math.max(0, taken - history.length);
+	}
+
+	private double _sample(int index) {
+		return history[index % history.length];
+	}
+
+	private void _giveFound(List<Integer> qrsIndices) {
+		qrsIndices.addAll(found);
+		found.clear();
+	}
+
+}
@@ -0,0 +1,72 @@
+package com.carrington.WIA.DataStructures;
+
+import java.util.Arrays;
+
+/**
+ * A range of a double array, which shares the array rather than copying it.
+ * Used by {@link HemoData} so that subsets (i.e. each selected beat) and trims
+ * do not copy every column until the values are actually needed.
+ * <p>
+ * The shared array must not be modified once sliced. {@link HemoData} never
+ * modifies its arrays in place, and replaces them instead, and the arrays its
+ * getters return must not be modified either.
+ * </p>
+ */
+final class ArraySlice {
+
+	private final double[] array;
+	private final int offset;
+	private final int length;
+
+	private ArraySlice(double[] array, int offset, int length) {
+		this.array = array;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	/**
+	 * @param array the array, not copied
+	 * @return a slice of the whole array
+	 */
+	static ArraySlice of(double[] array) {
+		return new ArraySlice(array, 0, array.length);
+	}
+
+	/**
+	 * @param from start index, inclusive
+	 * @param to   end index, exclusive
+	 * @return a slice of this slice, sharing the same array
+	 * @throws IndexOutOfBoundsException if the range is outside of this slice
+	 */
+	ArraySlice slice(int from, int to) {
+		if (from < 0 || to > length || from > to) {
+			throw new IndexOutOfBoundsException("Range " + from + " to " + to + " outside of length " + length);
+		}
+		return new ArraySlice(array, offset + from, to - from);
+	}
+
+	/**
+	 * @return number of values in the slice
+	 */
+	int length() {
+		return length;
+	}
+
+	/**
+	 * @param index index within the slice
+	 * @return the value
+	 */
+	double get(int index) {
+		return array[offset + index];
+	}
+
+	/**
+	 * @return the values copied into a new array, even if the slice covers the
+	 *         whole array, so that the copy can be handed out and modified without
+	 *         changing the array it was sliced from
+	 */
+	double[] toArray() {
+		return Arrays.copyOfRange(array, offset, offset + length);
+	}
+
+}
@@ -0,0 +1,384 @@
+package com.carrington.WIA.DataStructures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import com.carrington.WIA.IO.Header;
+
+/**
+ * Storage for the Y columns of a {@link HemoData}. Each {@link Header} is given
+ * an integer column id (its position, in the order added), and the values,
+ * differentials and derivatives for that column are kept in a slot table per
+ * family indexed by that id. Looking up a header is a single hash lookup, and
+ * iterating a family is a loop over an array with no map entries or iterators.
+ * <p>
+ * Differentials and derivatives may only be stored for columns which have
+ * values. Removing a column shifts the ids of the columns after it.
+ * </p>
+ * <p>
+ * Values may also be stored as an {@link ArraySlice} of another array (see
+ * {@link #setView(int, int, ArraySlice)}), which is only copied into its own
+ * array the first time it is requested with {@link #get(int, int)}.
+ * Differentials and derivatives may be stored as a {@link LazyDerivative} (see
+ * {@link #setLazy(int, int, LazyDerivative)}), which is calculated the first
+ * time it is requested and kept so that it can be calculated again for new
+ * values (see {@link #lazy(int, int)}).
+ * </p>
+ * <p>
+ * The order in which values were first stored for each column is tracked per
+ * family (see {@link #order(int)}), so that differentials and derivatives are
+ * listed in the order they were calculated, as they were when each family was
+ * kept in its own map.
+ * </p>
+ */
+final class ColumnStore {
+
+	/** Family of the primary Y values */
+	static final int VALUES = 0;
+	/** Family of the calculated differentials */
+	static final int DIFF = 1;
+	/** Family of the calculated derivatives */
+	static final int DERIV = 2;
+
+	private static final int FAMILIES = 3;
+
+	private final HashMap<Header, Integer> ids = new HashMap<Header, Integer>();
+	private Header[] headers = new Header[4];
+	private final double[][][] data = new double[FAMILIES][4][];
+	private final ArraySlice[][] views = new ArraySlice[FAMILIES][4];
+	private final LazyDerivative[][] lazies = new LazyDerivative[FAMILIES][4];
+	private final long[][] stored = new long[FAMILIES][4];
+	private long sequence = 0;
+	private int size = 0;
+
+	/**
+	 * @return number of columns
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if there are no columns
+	 */
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @param header the header to look for
+	 * @return id of the column, or -1 if not contained
+	 */
+	int id(Header header) {
+		if (header == null) {
+			return -1;
+		}
+		Integer id = ids.get(header);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * @param header the header to look for
+	 * @return true if there is a column for this header
+	 */
+	boolean contains(Header header) {
+		return header != null && ids.containsKey(header);
+	}
+
+	/**
+	 * @param id column id
+	 * @return header of the column
+	 */
+	Header header(int id) {
+		return headers[id];
+	}
+
+	/**
+	 * @return headers of all columns, in order
+	 */
+	List<Header> headers() {
+		return new ArrayList<Header>(Arrays.asList(headers).subList(0, size));
+	}
+
+	/**
+	 * @param family one of {@link #VALUES}, {@link #DIFF} or {@link #DERIV}
+	 * @param id     column id
+	 * @return the values, or null if none stored for this family. If stored as a
+	 *         slice, it is copied into its own array first, and if not yet
+	 *         calculated, it is calculated first.
+	 */
+	double[] get(int family, int id) {
+		ArraySlice view = views[family][id];
+		if (view != null) {
+			data[family][id] = view.toArray();
+			views[family][id] = null;
+		} else if (data[family][id] == null && lazies[family][id] != null) {
+			data[family][id] = lazies[family][id].calculate();
+		}
+		return data[family][id];
+	}
+
+	/**
+	 * Gets the values without copying them if stored as a slice. Differentials
+	 * and derivatives which have not been calculated yet are calculated.
+	 *
+	 * @param family one of {@link #VALUES}, {@link #DIFF} or {@link #DERIV}
+	 * @param id     column id
+	 * @return the values, or null if none stored for this family
+	 */
+	ArraySlice view(int family, int id) {
+		if (views[family][id] != null) {
+			return views[family][id];
+		}
+		double[] values = get(family, id);
+		return values == null ? null : ArraySlice.of(values);
+	}
+
+	/**
+	 * @param family one of {@link #VALUES}, {@link #DIFF} or {@link #DERIV}
+	 * @param id     column id
+	 * @return how the differential or derivative is calculated, or null if it was
+	 *         not stored as a {@link LazyDerivative}. It may have been calculated
+	 *         already.
+	 */
+	LazyDerivative lazy(int family, int id) {
+		return lazies[family][id];
+	}
+
+	/**
+	 * Stores a range of a family of a column in another store (or this one),
+	 * without copying or calculating it
+	 *
+	 * @param family one of {@link #VALUES}, {@link #DIFF} or {@link #DERIV}
+	 * @param id     column id, in both stores
+	 * @param target the store to put the range in
+	 * @param from   start index, inclusive
+	 * @param to     end index, exclusive
+	 */
+	void slice(int family, int id, ColumnStore target, int from, int to) {
+		if (views[family][id] == null && data[family][id] == null && lazies[family][id] != null) {
+			target.setLazy(family, id, lazies[family][id].slice(from, to));
+		} else {
+			ArraySlice view = view(family, id);
+			target.setView(family, id, view == null ? null : view.slice(from, to));
+		}
+	}
+
+	/**
+	 * Copies a family of a column into its own array in another store, so that
+	 * the two stores share no arrays. A slice is copied without copying it in this
+	 * store, and a differential or derivative which is not calculated yet is
+	 * calculated first.
+	 *
+	 * @param family one of {@link #VALUES}, {@link #DIFF} or {@link #DERIV}
+	 * @param id     column id, in both stores
+	 * @param target the store to copy into
+	 */
+	void copy(int family, int id, ColumnStore target) {
+		if (!_has(family, id)) {
+			target.set(family, id, null);
+			return;
+		}
+		double[] values = views[family][id] != null ? views[family][id].toArray() : get(family, id).clone();
+		target.set(family, id, values);
+	}
+
+	/**
+	 * @param family one of {@link #VALUES}, {@link #DIFF} or {@link #DERIV}
+	 * @param id     column id
+	 * @return the number of values, or -1 if none stored for this family
+	 */
+	int length(int family, int id) {
+		if (views[family][id] != null) {
+			return views[family][id].length();
+		} else if (data[family][id] != null) {
+			return data[family][id].length;
+		}
+		return lazies[family][id] == null ? -1 : lazies[family][id].length();
+	}
+
+	/**
+	 * @param family one of {@link #VALUES}, {@link #DIFF} or {@link #DERIV}
+	 * @param header the header of the column
+	 * @return the values, or null if the column is not contained or there are none
+	 *         stored for this family
+	 */
+	double[] get(int family, Header header) {
+		int id = id(header);
+		return id < 0 ? null : get(family, id);
+	}
+
+	/**
+	 * Stores values for an existing column. A null clears that family for the
+	 * column.
+	 *
+	 * @param family one of {@link #VALUES}, {@link #DIFF} or {@link #DERIV}
+	 * @param id     column id
+	 * @param values the values, not copied
+	 */
+	void set(int family, int id, double[] values) {
+		if (values != null && !_has(family, id)) {
+			stored[family][id] = ++sequence;
+		}
+		data[family][id] = values;
+		views[family][id] = null;
+		lazies[family][id] = null;
+	}
+
+	/**
+	 * Stores values for an existing column as a slice, which is not copied until
+	 * requested. A null clears that family for the column.
+	 *
+	 * @param family one of {@link #VALUES}, {@link #DIFF} or {@link #DERIV}
+	 * @param id     column id
+	 * @param view   the values
+	 */
+	void setView(int family, int id, ArraySlice view) {
+		if (view != null && !_has(family, id)) {
+			stored[family][id] = ++sequence;
+		}
+		data[family][id] = null;
+		views[family][id] = view;
+		lazies[family][id] = null;
+	}
+
+	/**
+	 * Stores a differential or derivative for an existing column, which is not
+	 * calculated until requested
+	 *
+	 * @param family {@link #DIFF} or {@link #DERIV}
+	 * @param id     column id
+	 * @param lazy   how to calculate the values
+	 */
+	void setLazy(int family, int id, LazyDerivative lazy) {
+		if (lazy != null && !_has(family, id)) {
+			stored[family][id] = ++sequence;
+		}
+		data[family][id] = null;
+		views[family][id] = null;
+		lazies[family][id] = lazy;
+	}
+
+	/**
+	 * Adds a new column at the end
+	 *
+	 * @param header the header, which must not already be contained
+	 * @param values the values, not copied
+	 * @return id of the new column
+	 */
+	int add(Header header, double[] values) {
+		int id = _add(header);
+		data[VALUES][id] = values;
+		return id;
+	}
+
+	/**
+	 * Adds a new column at the end, with values stored as a slice
+	 *
+	 * @param header the header, which must not already be contained
+	 * @param view   the values
+	 * @return id of the new column
+	 */
+	int addView(Header header, ArraySlice view) {
+		int id = _add(header);
+		views[VALUES][id] = view;
+		return id;
+	}
+
+	private int _add(Header header) {
+		if (size == headers.length) {
+			int capacity = size * 2;
+			headers = Arrays.copyOf(headers, capacity);
+			for (int f = 0; f < FAMILIES; f++) {
+				data[f] = Arrays.copyOf(data[f], capacity);
+				views[f] = Arrays.copyOf(views[f], capacity);
+				lazies[f] = Arrays.copyOf(lazies[f], capacity);
+				stored[f] = Arrays.copyOf(stored[f], capacity);
+			}
+		}
+		headers[size] = header;
+		stored[VALUES][size] = ++sequence;
+		ids.put(header, size);
+		return size++;
+	}
+
+	/**
+	 * Removes a column, shifting the ids of all columns after it down by one
+	 *
+	 * @param id column id
+	 */
+	void remove(int id) {
+		ids.remove(headers[id]);
+		int moved = size - id - 1;
+		System.arraycopy(headers, id + 1, headers, id, moved);
+		for (int f = 0; f < FAMILIES; f++) {
+			System.arraycopy(data[f], id + 1, data[f], id, moved);
+			System.arraycopy(views[f], id + 1, views[f], id, moved);
+			System.arraycopy(lazies[f], id + 1, lazies[f], id, moved);
+			System.arraycopy(stored[f], id + 1, stored[f], id, moved);
+			data[f][size - 1] = null;
+			views[f][size - 1] = null;
+			lazies[f][size - 1] = null;
+		}
+		size--;
+		headers[size] = null;
+		for (int i = id; i < size; i++) {
+			ids.put(headers[i], i);
+		}
+	}
+
+	/**
+	 * Clears all values of a family, i.e. all derivatives
+	 *
+	 * @param family one of {@link #VALUES}, {@link #DIFF} or {@link #DERIV}
+	 */
+	void clear(int family) {
+		Arrays.fill(data[family], 0, size, null);
+		Arrays.fill(views[family], 0, size, null);
+		Arrays.fill(lazies[family], 0, size, null);
+	}
+
+	/**
+	 * @param family one of {@link #VALUES}, {@link #DIFF} or {@link #DERIV}
+	 * @return ids of the columns with values stored for this family, in the order
+	 *         the values were first stored. For {@link #VALUES} this is the order
+	 *         of the columns.
+	 */
+	int[] order(int family) {
+		int[] ids = new int[count(family)];
+		int n = 0;
+		for (int i = 0; i < size; i++) {
+			if (_has(family, i)) {
+				// insertion sort, there are only ever a few columns
+				int j = n++;
+				while (j > 0 && stored[family][ids[j - 1]] > stored[family][i]) {
+					ids[j] = ids[j - 1];
+					j--;
+				}
+				ids[j] = i;
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * @param family one of {@link #VALUES}, {@link #DIFF} or {@link #DERIV}
+	 * @return number of columns with values stored for this family
+	 */
+	int count(int family) {
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			if (_has(family, i)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private boolean _has(int family, int id) {
+		return data[family][id] != null || views[family][id] != null || lazies[family][id] != null;
+	}
+
+}
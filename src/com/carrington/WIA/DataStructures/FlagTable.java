@@ -0,0 +1,420 @@
+package com.carrington.WIA.DataStructures;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.carrington.WIA.IO.Header;
+
+/**
+ * Flags (i.e. {@link HemoData#TYPE_PRESSURE}) assigned to the headers of a
+ * {@link HemoData}, stored as bitsets instead of sets of strings.
+ * <p>
+ * Every distinct flag is given an id once, shared by all tables. Each flagged
+ * header is given a slot in the order first flagged. The table then keeps the
+ * flag ids of each slot, and the slots of each flag id, so that both
+ * {@link #has(Header, String)} and {@link #headersWith(String)} are a hash lookup
+ * followed by bit tests. Removing a header moves the headers flagged after it
+ * down a slot, so that the slots stay in order without gaps.
+ * </p>
+ * <p>
+ * Flag ids are never freed, as flags are the fixed names of {@link HemoData}
+ * (i.e. types and units), so there are only as many as those in use.
+ * </p>
+ */
+final class FlagTable {
+
+	/** Id of each flag */
+	private static final ConcurrentHashMap<String, Integer> FLAG_IDS = new ConcurrentHashMap<String, Integer>();
+	/** Ids of all flags which are equal ignoring case, by the lower case flag */
+	private static final ConcurrentHashMap<String, int[]> FOLDED_IDS = new ConcurrentHashMap<String, int[]>();
+	/** Flag of each id */
+	private static final List<String> FLAG_NAMES = new ArrayList<String>();
+
+	private static final int[] NO_IDS = new int[0];
+
+	private final HashMap<Header, Integer> slots = new HashMap<Header, Integer>();
+	private Header[] slotHeaders = new Header[4];
+	private BitSet[] flagsBySlot = new BitSet[4];
+	private BitSet[] slotsByFlag = new BitSet[16];
+	private int slotCount = 0;
+
+	/**
+	 * Adds flags to a header
+	 *
+	 * @param header the header
+	 * @param flags  flags to add
+	 */
+	void add(Header header, String... flags) {
+		int slot = _slot(header, true);
+		BitSet headerFlags = flagsBySlot[slot];
+		for (String flag : flags) {
+			int id = _register(flag);
+			headerFlags.set(id);
+			_slotsByFlag(id).set(slot);
+		}
+	}
+
+	/**
+	 * Removes flags from a header, if it has them
+	 *
+	 * @param header the header
+	 * @param flags  flags to remove
+	 */
+	void remove(Header header, String... flags) {
+		int slot = _slot(header, false);
+		if (slot < 0) {
+			return;
+		}
+		for (String flag : flags) {
+			Integer id = flag == null ? null : FLAG_IDS.get(flag);
+			if (id != null) {
+				_remove(slot, id);
+			}
+		}
+	}
+
+	/**
+	 * Removes a header and all of its flags
+	 *
+	 * @param header the header
+	 */
+	void removeHeader(Header header) {
+		Integer removed = slots.remove(header);
+		if (removed == null) {
+			return;
+		}
+
+		// move the later headers down, keeping the order they were first flagged
+		int slot = removed;
+		int moved = slotCount - slot - 1;
+		System.arraycopy(slotHeaders, slot + 1, slotHeaders, slot, moved);
+		System.arraycopy(flagsBySlot, slot + 1, flagsBySlot, slot, moved);
+		slotCount--;
+		slotHeaders[slotCount] = null;
+		flagsBySlot[slotCount] = null;
+		for (int i = slot; i < slotCount; i++) {
+			slots.put(slotHeaders[i], i);
+		}
+
+		Arrays.fill(slotsByFlag, null);
+		for (int i = 0; i < slotCount; i++) {
+			BitSet headerFlags = flagsBySlot[i];
+			for (int id = headerFlags.nextSetBit(0); id >= 0; id = headerFlags.nextSetBit(id + 1)) {
+				_slotsByFlag(id).set(i);
+			}
+		}
+	}
+
+	/**
+	 * Removes all headers and flags
+	 */
+	void clear() {
+		slots.clear();
+		Arrays.fill(slotHeaders, null);
+		Arrays.fill(flagsBySlot, null);
+		Arrays.fill(slotsByFlag, null);
+		slotCount = 0;
+	}
+
+	/**
+	 * @param header the header
+	 * @return true if the header has been flagged, even if its flags were since
+	 *         removed
+	 */
+	boolean isFlagged(Header header) {
+		return header != null && slots.containsKey(header);
+	}
+
+	/**
+	 * @param header the header
+	 * @param flag   the flag, case sensitive
+	 * @return true if the header has the flag
+	 */
+	boolean has(Header header, String flag) {
+		if (header == null || flag == null) {
+			return false;
+		}
+		Integer slot = slots.get(header);
+		Integer id = FLAG_IDS.get(flag);
+		return slot != null && id != null && flagsBySlot[slot].get(id);
+	}
+
+	/**
+	 * @param flag the flag, ignoring case
+	 * @return headers with the flag, in the order first flagged
+	 */
+	List<Header> headersWith(String flag) {
+		List<Header> headers = new ArrayList<Header>();
+		int[] ids = _foldedIds(flag);
+		if (ids.length == 1) {
+			BitSet flagSlots = ids[0] < slotsByFlag.length ? slotsByFlag[ids[0]] : null;
+			if (flagSlots != null) {
+				for (int slot = flagSlots.nextSetBit(0); slot >= 0; slot = flagSlots.nextSetBit(slot + 1)) {
+					headers.add(slotHeaders[slot]);
+				}
+			}
+		} else if (ids.length > 1) {
+			BitSet flagSlots = new BitSet();
+			for (int id : ids) {
+				if (id < slotsByFlag.length && slotsByFlag[id] != null) {
+					flagSlots.or(slotsByFlag[id]);
+				}
+			}
+			for (int slot = flagSlots.nextSetBit(0); slot >= 0; slot = flagSlots.nextSetBit(slot + 1)) {
+				headers.add(slotHeaders[slot]);
+			}
+		}
+		return headers;
+	}
+
+	/**
+	 * @param flag    the flag, ignoring case
+	 * @param exclude header to ignore, or null
+	 * @return true if any header other than the excluded one has the flag
+	 */
+	boolean exists(String flag, Header exclude) {
+		Integer excludeSlot = exclude == null ? null : slots.get(exclude);
+		for (int id : _foldedIds(flag)) {
+			BitSet flagSlots = id < slotsByFlag.length ? slotsByFlag[id] : null;
+			if (flagSlots == null) {
+				continue;
+			}
+			int first = flagSlots.nextSetBit(0);
+			if (first >= 0 && (excludeSlot == null || first != excludeSlot
+					|| flagSlots.nextSetBit(first + 1) >= 0)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return all headers which have been flagged, in the order first flagged
+	 */
+	List<Header> headers() {
+		List<Header> headers = new ArrayList<Header>(slots.size());
+		for (int slot = 0; slot < slotCount; slot++) {
+			headers.add(slotHeaders[slot]);
+		}
+		return headers;
+	}
+
+	/**
+	 * Gets the flags of a header, as a set backed by this table. Adding and
+	 * removing flags from the set adds and removes them from the header.
+	 *
+	 * @param header the header, which must have been flagged (see
+	 *               {@link #isFlagged(Header)})
+	 * @return the flags
+	 */
+	FlagSet flags(Header header) {
+		return new FlagSet(header);
+	}
+
+	/**
+	 * Copies the flags of every header which has at least one flag into another
+	 * table
+	 *
+	 * @param target table to copy into
+	 */
+	void copyInto(FlagTable target) {
+		for (int slot = 0; slot < slotCount; slot++) {
+			if (flagsBySlot[slot].isEmpty()) {
+				continue;
+			}
+			int targetSlot = target._slot(slotHeaders[slot], true);
+			BitSet headerFlags = flagsBySlot[slot];
+			target.flagsBySlot[targetSlot].or(headerFlags);
+			for (int id = headerFlags.nextSetBit(0); id >= 0; id = headerFlags.nextSetBit(id + 1)) {
+				target._slotsByFlag(id).set(targetSlot);
+			}
+		}
+	}
+
+	private void _remove(int slot, int id) {
+		flagsBySlot[slot].clear(id);
+		if (id < slotsByFlag.length && slotsByFlag[id] != null) {
+			slotsByFlag[id].clear(slot);
+		}
+	}
+
+	/**
+	 * Slot of the header, or -1 if not flagged and not created
+	 */
+	private int _slot(Header header, boolean create) {
+		Integer slot = slots.get(header);
+		if (slot != null) {
+			return slot;
+		} else if (!create) {
+			return -1;
+		}
+
+		if (slotCount == slotHeaders.length) {
+			slotHeaders = Arrays.copyOf(slotHeaders, slotCount * 2);
+			flagsBySlot = Arrays.copyOf(flagsBySlot, slotCount * 2);
+		}
+		slotHeaders[slotCount] = header;
+		flagsBySlot[slotCount] = new BitSet();
+		slots.put(header, slotCount);
+		return slotCount++;
+	}
+
+	private BitSet _slotsByFlag(int id) {
+		if (id >= slotsByFlag.length) {
+			slotsByFlag = Arrays.copyOf(slotsByFlag, Math.max(slotsByFlag.length * 2, id + 1));
+		}
+		if (slotsByFlag[id] == null) {
+			slotsByFlag[id] = new BitSet();
+		}
+		return slotsByFlag[id];
+	}
+
+	/**
+	 * Ids of all flags equal to this one ignoring case
+	 */
+	private static int[] _foldedIds(String flag) {
+		if (flag == null) {
+			return NO_IDS;
+		}
+		int[] ids = FOLDED_IDS.get(flag.toLowerCase(Locale.ROOT));
+		return ids == null ? NO_IDS : ids;
+	}
+
+	/**
+	 * Gets the id of the flag, giving it one if it is new
+	 */
+	private static int _register(String flag) {
+		if (flag == null) {
+			throw new IllegalArgumentException("Cannot accept null flag");
+		}
+		Integer id = FLAG_IDS.get(flag);
+		if (id != null) {
+			return id;
+		}
+		synchronized (FLAG_NAMES) {
+			id = FLAG_IDS.get(flag);
+			if (id == null) {
+				id = FLAG_NAMES.size();
+				FLAG_NAMES.add(flag);
+				String folded = flag.toLowerCase(Locale.ROOT);
+				int[] existing = FOLDED_IDS.get(folded);
+				int[] ids = existing == null ? new int[1] : Arrays.copyOf(existing, existing.length + 1);
+				ids[ids.length - 1] = id;
+				FOLDED_IDS.put(folded, ids);
+				FLAG_IDS.put(flag, id);
+			}
+			return id;
+		}
+	}
+
+	private static String _name(int id) {
+		synchronized (FLAG_NAMES) {
+			return FLAG_NAMES.get(id);
+		}
+	}
+
+	/**
+	 * The flags of a single header, backed by the table. The header's slot is
+	 * looked up each time, as it moves when an earlier header is removed.
+	 */
+	final class FlagSet extends AbstractSet<String> {
+
+		private final Header header;
+
+		private FlagSet(Header header) {
+			this.header = header;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			if (!(o instanceof String)) {
+				return false;
+			}
+			Integer id = FLAG_IDS.get(o);
+			return id != null && _bits().get(id);
+		}
+
+		@Override
+		public boolean add(String flag) {
+			int id = _register(flag);
+			int slot = _slot(header, false);
+			if (slot < 0 || flagsBySlot[slot].get(id)) {
+				// already has it, or the header was removed from the table since
+				return false;
+			}
+			flagsBySlot[slot].set(id);
+			_slotsByFlag(id).set(slot);
+			return true;
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			if (!(o instanceof String)) {
+				return false;
+			}
+			Integer id = FLAG_IDS.get(o);
+			if (id == null || !_bits().get(id)) {
+				return false;
+			}
+			_remove(_slot(header, false), id);
+			return true;
+		}
+
+		@Override
+		public int size() {
+			return _bits().cardinality();
+		}
+
+		@Override
+		public Iterator<String> iterator() {
+			BitSet bits = _bits();
+			return new Iterator<String>() {
+
+				private int next = bits.nextSetBit(0);
+				private int last = -1;
+
+				@Override
+				public boolean hasNext() {
+					return next >= 0;
+				}
+
+				@Override
+				public String next() {
+					if (next < 0) {
+						throw new NoSuchElementException();
+					}
+					last = next;
+					next = bits.nextSetBit(next + 1);
+					return _name(last);
+				}
+
+				@Override
+				public void remove() {
+					if (last < 0) {
+						throw new IllegalStateException();
+					}
+					int slot = _slot(header, false);
+					if (slot >= 0) {
+						_remove(slot, last);
+					}
+					last = -1;
+				}
+			};
+		}
+
+		private BitSet _bits() {
+			int slot = _slot(header, false);
+			// header was removed from the table since
+			return slot >= 0 ? flagsBySlot[slot] : new BitSet();
+		}
+	}
+
+}
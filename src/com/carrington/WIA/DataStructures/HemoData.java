@@ -2,11 +2,11 @@ package com.carrington.WIA.DataStructures;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -16,25 +16,34 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
 
 import org.apache.commons.lang3.SerializationException;
-import org.apache.commons.lang3.SerializationUtils;
 
 import com.carrington.WIA.Utils;
 import com.carrington.WIA.GUIs.BackgroundProgressRecorder;
+import com.carrington.WIA.IO.ColumnarFile;
+import com.carrington.WIA.IO.ColumnarReader;
+import com.carrington.WIA.IO.ColumnarWriter;
 import com.carrington.WIA.IO.Header;
 import com.carrington.WIA.Math.DataResampler;
 import com.carrington.WIA.Math.DataResampler.ResampleException;
+import com.carrington.WIA.Math.ResampleMethod;
 import com.carrington.WIA.Math.ResampleResult;
 import com.opencsv.CSVWriter;
 
 /**
  * The main data structure used to carry information in this program.
+ * <p>
+ * Arrays returned by the getters are not copied and must not be modified in
+ * place. Subsets read the same arrays, and differentials and derivatives are
+ * calculated from them when first requested, so values are changed by replacing
+ * the array (e.g. {@link #replaceYData(Header, double[])}) instead.
+ * </p>
  */
 @SuppressWarnings("javadoc")
 public class HemoData implements Serializable {
@@ -90,18 +99,6 @@ public class HemoData implements Serializable {
 	private Header xHeader = null;
 	/** The array of primary independent variable data (typically time). */
 	private double[] xData = null;
-	
-	/** A map of headers to their corresponding primary dependent variable data arrays. */
-	private LinkedHashMap<Header, double[]> yValues = new LinkedHashMap<Header, double[]>();
-	
-	/** A map of headers to their corresponding calculated differential data arrays. */
-	private LinkedHashMap<Header, double[]> yValuesDiff = new LinkedHashMap<Header, double[]>();
-	
-	/** A map of headers to their corresponding calculated derivative data arrays. */
-	private LinkedHashMap<Header, double[]> yValuesDeriv = new LinkedHashMap<Header, double[]>();
-
-	/** A map of headers to a set of associated string flags (e.g., units, types). */
-	private final HashMap<Header, Set<String>> flaggedHeaders = new LinkedHashMap<Header, Set<String>>();
 
 	//////////////////////////////////////////////////////////////////
 	//////////////////////////////////////////////////////////////////
@@ -111,6 +108,37 @@ public class HemoData implements Serializable {
 	//////////////////////////////////////////////////////////////////
 	//////////////////////////////////////////////////////////////////
 
+	/**
+	 * Layout of the legacy Java serialization stream. Before the Y data was moved
+	 * to {@link #columns} and the flags to {@link #headerFlags}, the fields in the
+	 * block above were followed by the maps yValues, yValuesDiff and yValuesDeriv
+	 * (Header to double[]) and flaggedHeaders (Header to Set of String). Files
+	 * saved in that format must still be readable, so the stream keeps those
+	 * fields in that order: {@link #writeObject} and {@link #readObject} convert
+	 * the columns and flags to and from the old maps.
+	 */
+	private static final ObjectStreamField[] serialPersistentFields = {
+			new ObjectStreamField("file", File.class), new ObjectStreamField("fileName", String.class),
+			new ObjectStreamField("name", String.class), new ObjectStreamField("xHeader", Header.class),
+			new ObjectStreamField("xData", double[].class), new ObjectStreamField("yValues", LinkedHashMap.class),
+			new ObjectStreamField("yValuesDiff", LinkedHashMap.class),
+			new ObjectStreamField("yValuesDeriv", LinkedHashMap.class),
+			new ObjectStreamField("flaggedHeaders", HashMap.class) };
+
+	/**
+	 * The X data as a slice of another array, i.e. of the {@link HemoData} this
+	 * is a subset of, until needed. When set, {@link #xData} is null (see
+	 * {@link #_xData()}). Not serialized, as {@link #writeObject} writes the X data
+	 * itself.
+	 */
+	private transient ArraySlice xView = null;
+
+	/** The primary dependent variable data, and calculated differentials and derivatives, by column. */
+	private transient ColumnStore columns = new ColumnStore();
+
+	/** Flags (e.g., units, types) associated with the X and Y headers. */
+	private transient FlagTable headerFlags = new FlagTable();
+
 	/**
 	 * Creates a new object. It stores the arguments passed in, but does nothing
 	 * else.
@@ -136,30 +164,32 @@ public class HemoData implements Serializable {
 	 * Trims based on the zero-based indexing of the data.
 	 * 
 	 * warning: RESETS derivatives / differentials / filters
+	 * 
+	 * @throws IllegalArgumentException if the data is not valid or the indices are
+	 *                                  out of range, in which case nothing is
+	 *                                  changed
 	 */
 	public void trimByIndex(int startIndex, int endIndex) {
 
 		if (isValid() != null) {
 			throw new IllegalArgumentException("Invalid state for data structure");
 		}
-		if (startIndex < 0 || endIndex >= this.xData.length) {
-			new IllegalArgumentException("too high of index");
+		if (startIndex < 0 || endIndex >= getSize() || startIndex > endIndex) {
+			throw new IllegalArgumentException("too high of index");
 		}
 
-		this.xData = copyAndShift(xData, startIndex, endIndex);
-
-		LinkedHashMap<Header, double[]> newyVals = new LinkedHashMap<Header, double[]>();
+		ArraySlice[] trimmed = new ArraySlice[columns.size()];
+		for (int i = 0; i < trimmed.length; i++) {
+			trimmed[i] = columns.view(ColumnStore.VALUES, i).slice(startIndex, endIndex + 1);
+		}
 
-		Iterator<Entry<Header, double[]>> enitr = this.yValues.entrySet().iterator();
-		while (enitr.hasNext()) {
-			Entry<Header, double[]> en = enitr.next();
-			newyVals.put(en.getKey(), Arrays.copyOfRange(en.getValue(), startIndex, endIndex + 1));
-			enitr.remove();
+		this.xData = copyAndShift(_xData(), startIndex, endIndex);
+		for (int i = 0; i < trimmed.length; i++) {
+			columns.setView(ColumnStore.VALUES, i, trimmed[i]);
 		}
-		this.yValues = newyVals;
 
-		this.yValuesDeriv.clear();
-		this.yValuesDiff.clear();
+		columns.clear(ColumnStore.DERIV);
+		columns.clear(ColumnStore.DIFF);
 
 	}
 
@@ -192,35 +222,66 @@ public class HemoData implements Serializable {
 	}
 
 	/**
-	 * Resamples the data at the specified resampling rate.
+	 * Resamples the data at the specified resampling rate by the given method. The
+	 * Y columns are resampled in parallel, one per thread (see
+	 * {@link DataResampler}). They are all read into their own arrays on this
+	 * thread first, so that no thread copies a shared slice.
 	 * 
 	 * @param resampleRate Resample rate (x intervals)
+	 * @param method       how to resample, see {@link ResampleMethod}
+	 * @param progRecorder records progress as each column is resampled, or null
 	 * @return new {@link HemoData} object which has been resampled
-	 * @throws ResampleException if there was an issue with resampling
+	 * @throws ResampleException if there was an issue with resampling, including
+	 *                           data which cannot be resampled by the method
 	 */
-	public HemoData resampleAt(double resampleRate, BackgroundProgressRecorder progRecorder) throws ResampleException {
+	public HemoData resampleAt(double resampleRate, ResampleMethod method, BackgroundProgressRecorder progRecorder)
+			throws ResampleException {
 
-		if (resampleRate <= 0 || this.xData == null || this.xHeader == null || this.yValues == null
-				|| this.yValues.isEmpty()) {
+		if (resampleRate <= 0 || _xData() == null || this.xHeader == null || this.columns.isEmpty()) {
 			throw new IllegalStateException("Data structure not prepared properly for resampling...");
 		}
 		HemoData resampled = new HemoData(this.file, this.fileName, this.name);
-		ResampleResult rr = DataResampler.resample(resampleRate, true, progRecorder, this.xData,
-				yValues.values().toArray(new double[0][]));
+		ResampleResult rr = method.resample(resampleRate, true, progRecorder, _xData(), _family(ColumnStore.VALUES));
 
-		String[] flags = this.flaggedHeaders.containsKey(this.xHeader) ? getFlags(this.xHeader).toArray(new String[0])
-				: new String[0];
-		resampled.setXData(this.xHeader, rr.timePoints, flags);
+		resampled.setXData(this.xHeader, rr.timePoints, getFlagsAsArray(this.xHeader));
 
-		int counter = 0;
-		for (Entry<Header, double[]> origEn : yValues.entrySet()) {
-			resampled.addYData(origEn.getKey(), rr.values[counter], getFlagsAsArray(origEn.getKey()));
-			counter++;
+		for (int i = 0; i < columns.size(); i++) {
+			Header header = columns.header(i);
+			resampled.addYData(header, rr.values[i], getFlagsAsArray(header));
 		}
 
 		return resampled;
 
 	}
+
+	/**
+	 * Resamples the data at the specified resampling rate by cubic spline (see
+	 * {@link #resampleAt(double, ResampleMethod, BackgroundProgressRecorder)}).
+	 * 
+	 * @param resampleRate Resample rate (x intervals)
+	 * @param progRecorder records progress as each column is resampled, or null
+	 * @return new {@link HemoData} object which has been resampled
+	 * @throws ResampleException if there was an issue with resampling
+	 */
+	public HemoData resampleAt(double resampleRate, BackgroundProgressRecorder progRecorder) throws ResampleException {
+
+		return resampleAt(resampleRate, ResampleMethod.SPLINE, progRecorder);
+
+	}
+
+	/**
+	 * Resamples the data at the specified resampling rate by the given method.
+	 * 
+	 * @param resampleRate Resample rate (x intervals)
+	 * @param method       how to resample, see {@link ResampleMethod}
+	 * @return new {@link HemoData} object which has been resampled
+	 * @throws ResampleException if there was an issue with resampling
+	 */
+	public HemoData resampleAt(double resampleRate, ResampleMethod method) throws ResampleException {
+
+		return resampleAt(resampleRate, method, null);
+
+	}
 	
 	/**
 	 * Resamples the data at the specified resampling rate.
@@ -231,14 +292,15 @@ public class HemoData implements Serializable {
 	 */
 	public HemoData resampleAt(double resampleRate) throws ResampleException {
 
-		return resampleAt(resampleRate, null);
+		return resampleAt(resampleRate, ResampleMethod.SPLINE, null);
 
 	}
 
 	/**
 	 * Calculates and stores the derivative for the specified {@link Header}. This
 	 * can then be retrieved using {@link #getCalculatedDeriv(Header)} in the
-	 * future.
+	 * future. The derivative is of the current values, but is only actually
+	 * calculated the first time it is retrieved.
 	 * 
 	 * @param yHeader       the {@link Header} to calculate derivative.
 	 * @param fixedInterval interval to integrate over, or null to use X.
@@ -246,41 +308,49 @@ public class HemoData implements Serializable {
 	 *                                  contained or has no data
 	 */
 	public void calculateDerivative(Header yHeader, Double fixedInterval) throws IllegalArgumentException {
-		yHeader = resolveHeader(yHeader);
-		if (!yValues.containsKey(yHeader))
+		int id = columns.id(resolveHeader(yHeader));
+		if (id < 0)
 			throw new IllegalArgumentException("Y values for " + yHeader + " do not exist");
 
-		double[] dataToCalcDerivFor = yValues.get(yHeader);
+		_calculateDerivative(id, fixedInterval);
+	}
 
-		if (dataToCalcDerivFor == null)
-			throw new IllegalArgumentException("Y values not found for " + yHeader);
+	/**
+	 * Stores the derivative for the column, to be calculated when first needed
+	 */
+	private void _calculateDerivative(int id, Double fixedInterval) {
+		ArraySlice dataToCalcDerivFor = columns.view(ColumnStore.VALUES, id);
 
 		if (fixedInterval == null || fixedInterval <= 0) {
-			yValuesDeriv.put(yHeader, calculateDerivative(xData, dataToCalcDerivFor));
+			columns.setLazy(ColumnStore.DERIV, id, LazyDerivative.derivative(_xView(), dataToCalcDerivFor));
 		} else {
-			yValuesDeriv.put(yHeader, calculateDerivativeByFixedXInterval(fixedInterval, dataToCalcDerivFor));
+			columns.setLazy(ColumnStore.DERIV, id, LazyDerivative.derivative(fixedInterval, dataToCalcDerivFor));
 		}
 	}
 
+	/**
+	 * Stores the differential for the column, to be calculated when first needed
+	 */
+	private void _calculateDiff(int id) {
+		columns.setLazy(ColumnStore.DIFF, id, LazyDerivative.differential(columns.view(ColumnStore.VALUES, id)));
+	}
+
 	/**
 	 * Calculates and stores the differential for the specified {@link Header}. This
 	 * can then be retrieved using {@link #getCalculatedDiff(Header)} in the future.
+	 * As with {@link #calculateDerivative(Header, Double)}, it is only actually
+	 * calculated the first time it is retrieved.
 	 * 
 	 * @param yHeader the {@link Header} to calculate differential.
 	 * @throws IllegalArgumentException if the passed {@link Header} is not
 	 *                                  contained or has no data.
 	 */
 	public void calculateDiff(Header yHeader) throws IllegalArgumentException {
-		yHeader = resolveHeader(yHeader);
-		if (!yValues.containsKey(yHeader))
+		int id = columns.id(resolveHeader(yHeader));
+		if (id < 0)
 			throw new IllegalArgumentException("Y values for " + yHeader + " do not exist");
 
-		double[] dataToCalcDiffFor = yValues.get(yHeader);
-
-		if (dataToCalcDiffFor == null)
-			throw new IllegalArgumentException("Y values not found for " + yHeader);
-
-		this.yValuesDiff.put(yHeader, calculateDifferential(yValues.get(yHeader)));
+		_calculateDiff(id);
 
 	}
 
@@ -290,15 +360,17 @@ public class HemoData implements Serializable {
 	 * @param header the {@link Header} for data for which we will retrieve the
 	 *               differential
 	 * @return the calculated differential, null if not calculated via
-	 *         {@link #calculateDiff(Header)}
+	 *         {@link #calculateDiff(Header)}. Not copied, so must not be
+	 *         modified.
 	 * @throws IllegalArgumentException if this {@link HemoData} does not contain
 	 *                                  the specified {@link Header}
 	 */
 	public double[] getCalculatedDiff(Header header) throws IllegalArgumentException {
-		if (!yValues.containsKey(header))
+		int id = columns.id(header);
+		if (id < 0)
 			throw new IllegalArgumentException("No y values contained for " + header);
 
-		return this.yValuesDiff.get(header);
+		return columns.get(ColumnStore.DIFF, id);
 	}
 
 	/**
@@ -307,15 +379,17 @@ public class HemoData implements Serializable {
 	 * @param header the {@link Header} for data for which we will retrieve the
 	 *               derivative
 	 * @return the calculated derivative, null if not calculated via
-	 *         {@link #calculateDerivative(Header, Double)}
+	 *         {@link #calculateDerivative(Header, Double)}. Not copied, so must
+	 *         not be modified.
 	 * @throws IllegalArgumentException if this {@link HemoData} does not contain
 	 *                                  the specified {@link Header}
 	 */
 	public double[] getCalculatedDeriv(Header header) throws IllegalArgumentException {
-		if (!yValues.containsKey(header))
+		int id = columns.id(header);
+		if (id < 0)
 			throw new IllegalArgumentException("No y values contained for " + header);
 
-		return this.yValuesDeriv.get(header);
+		return columns.get(ColumnStore.DERIV, id);
 	}
 
 	/**
@@ -324,7 +398,8 @@ public class HemoData implements Serializable {
 	 * {@link Header}
 	 */
 	public boolean isDerivativeCalculated(Header header) {
-		return this.yValuesDeriv.containsKey(header);
+		int id = columns.id(header);
+		return id >= 0 && columns.length(ColumnStore.DERIV, id) >= 0;
 	}
 
 	/**
@@ -332,26 +407,29 @@ public class HemoData implements Serializable {
 	 * {@link #calculateDiff(Header)}) for the specified {@link Header}
 	 */
 	public boolean isDiffCalculated(Header header) {
-		return this.yValuesDiff.containsKey(header);
+		int id = columns.id(header);
+		return id >= 0 && columns.length(ColumnStore.DIFF, id) >= 0;
 	}
 
 	/**
 	 * @return values for the y variable specified. returns null if the header is
-	 *         not contained
+	 *         not contained. Not copied, so must not be modified (see
+	 *         {@link #replaceYData(Header, double[])})
 	 */
 	public double[] getYData(Header header) {
-		return this.yValues.get(header);
+		return columns.get(ColumnStore.VALUES, header);
 	}
 
 	/**
 	 * @return values for the y variable specified. returns null if the header is
-	 *         not contained
+	 *         not contained. Not copied, so must not be modified (see
+	 *         {@link #replaceYData(Header, double[])})
 	 */
 	public double[] getYData(String name) {
 
-		for (Entry<Header, double[]> en : yValues.entrySet()) {
-			if (en.getKey().getName().equalsIgnoreCase(name)) {
-				return en.getValue();
+		for (int i = 0; i < columns.size(); i++) {
+			if (columns.header(i).getName().equalsIgnoreCase(name)) {
+				return columns.get(ColumnStore.VALUES, i);
 			}
 		}
 
@@ -365,7 +443,7 @@ public class HemoData implements Serializable {
 	 * @return list of {@link Header}s
 	 */
 	public List<Header> getYHeaders() {
-		return new ArrayList<Header>(this.yValues.keySet());
+		return columns.headers();
 
 	}
 
@@ -384,14 +462,37 @@ public class HemoData implements Serializable {
 	 * @return true if point > min domain and < max domain
 	 */
 	public boolean containsXData(double point) {
-		return point >= this.xData[0] && point <= this.xData[this.xData.length - 1];
+		ArraySlice x = _xView();
+		return point >= x.get(0) && point <= x.get(x.length() - 1);
 	}
 
 	/**
-	 * @return raw domain (x) data
+	 * @return raw domain (x) data. Not copied, so must not be modified (see
+	 *         {@link #setXData(Header, double[], String...)})
 	 */
 	public double[] getXData() {
-		return this.xData;
+		return _xData();
+	}
+
+	/**
+	 * The X data, copying it out of {@link #xView} first if this is a subset
+	 */
+	private double[] _xData() {
+		if (xView != null) {
+			xData = xView.toArray();
+			xView = null;
+		}
+		return xData;
+	}
+
+	/**
+	 * The X data, without copying it if this is a subset
+	 */
+	private ArraySlice _xView() {
+		if (xView != null) {
+			return xView;
+		}
+		return xData == null ? null : ArraySlice.of(xData);
 	}
 
 	/**
@@ -408,7 +509,7 @@ public class HemoData implements Serializable {
 			throw new IllegalArgumentException("Number of X values is not the same as other data.");
 		}
 
-		if (yValues.containsKey(xHeader)) {
+		if (columns.contains(xHeader)) {
 			throw new IllegalArgumentException("X header is already contained as a y value.");
 		}
 
@@ -417,6 +518,7 @@ public class HemoData implements Serializable {
 		}
 
 		this.xData = values;
+		this.xView = null;
 		this.xHeader = xHeader;
 
 		if (flags != null && flags.length != 0) {
@@ -428,7 +530,7 @@ public class HemoData implements Serializable {
 	 * Modifies this {@link HemoData} object. Shifts all X values to zero.
 	 */
 	public void shiftXToZero() {
-		this.xData = Utils.shiftToZero(this.xData);
+		this.xData = Utils.shiftToZero(_xData());
 	}
 
 	/**
@@ -445,27 +547,17 @@ public class HemoData implements Serializable {
 
 		if (units.equals(UNIT_SECONDS)) {
 			if (xFlags.contains(UNIT_MILLISECONDS)) {
-				this.xData = Utils.divideArray(xData, 1000);
+				this.xData = Utils.divideArray(_xData(), 1000);
 				xFlags.remove(UNIT_MILLISECONDS);
 				xFlags.add(UNIT_SECONDS);
-				for (Header header : new HashSet<Header>(yValuesDiff.keySet())) {
-					calculateDiff(header);
-				}
-				for (Header header : new HashSet<Header>(yValuesDeriv.keySet())) {
-					calculateDerivative(header, null);
-				}
+				_recalculateDerivatives();
 			}
 		} else if (units.equals(UNIT_MILLISECONDS)) {
 			if (xFlags.contains(UNIT_SECONDS)) {
-				this.xData = Utils.multiplyArray(xData, 1000);
+				this.xData = Utils.multiplyArray(_xData(), 1000);
 				xFlags.remove(UNIT_SECONDS);
 				xFlags.add(UNIT_MILLISECONDS);
-				for (Header header : new HashSet<Header>(yValuesDiff.keySet())) {
-					calculateDiff(header);
-				}
-				for (Header header : new HashSet<Header>(yValuesDeriv.keySet())) {
-					calculateDerivative(header, null);
-				}
+				_recalculateDerivatives();
 			}
 		}
 
@@ -479,7 +571,7 @@ public class HemoData implements Serializable {
 	 */
 	public double[] convertXUnitsCopy(String units) {
 		Set<String> xFlags = getFlags(xHeader);
-		double[] copy = Arrays.copyOf(xData, xData.length);
+		double[] copy = Arrays.copyOf(_xData(), getSize());
 		if (xFlags.contains(units))
 			return copy; // already in the specific units
 
@@ -516,7 +608,7 @@ public class HemoData implements Serializable {
 
 		if (units.equals(UNIT_MMHG)) {
 			if (yFlags.contains(UNIT_PASCAL)) {
-				yValues.put(header, Utils.convertPascalsToMMHG(yValues.get(header)));
+				columns.set(ColumnStore.VALUES, columns.id(header), Utils.convertPascalsToMMHG(getYData(header)));
 				yFlags.remove(UNIT_PASCAL);
 				yFlags.add(UNIT_MMHG);
 				edited = true;
@@ -525,7 +617,7 @@ public class HemoData implements Serializable {
 			}
 		} else if (units.equals(UNIT_PASCAL)) {
 			if (yFlags.contains(UNIT_MMHG)) {
-				yValues.put(header, Utils.convertToPascals(yValues.get(header)));
+				columns.set(ColumnStore.VALUES, columns.id(header), Utils.convertToPascals(getYData(header)));
 				yFlags.remove(UNIT_MMHG);
 				yFlags.add(UNIT_PASCAL);
 				edited = true;
@@ -535,7 +627,7 @@ public class HemoData implements Serializable {
 		} else if (units.equals(UNIT_MperS)) {
 			if (yFlags.contains(UNIT_CMperS)) {
 
-				yValues.put(header, Utils.divideArray(yValues.get(header), 100));
+				columns.set(ColumnStore.VALUES, columns.id(header), Utils.divideArray(getYData(header), 100));
 				yFlags.remove(UNIT_CMperS);
 				yFlags.add(UNIT_MperS);
 				edited = true;
@@ -544,7 +636,7 @@ public class HemoData implements Serializable {
 			}
 		} else if (units.equals(UNIT_CMperS)) {
 			if (yFlags.contains(UNIT_MperS)) {
-				yValues.put(header, Utils.multiplyArray(yValues.get(header), 100));
+				columns.set(ColumnStore.VALUES, columns.id(header), Utils.multiplyArray(getYData(header), 100));
 				yFlags.remove(UNIT_MperS);
 				yFlags.add(UNIT_CMperS);
 				edited = true;
@@ -581,11 +673,11 @@ public class HemoData implements Serializable {
 		if (!validateSize(values)) {
 			throw new IllegalArgumentException("Number of Y values is not the same as other data.");
 		}
-		if (yValues.containsKey(yHeader) || (xHeader != null && xHeader.equals(yHeader))) {
+		if (columns.contains(yHeader) || (xHeader != null && xHeader.equals(yHeader))) {
 			throw new IllegalArgumentException("Y header is already contained in this data structure.");
 		}
 
-		this.yValues.put(yHeader, values);
+		columns.add(yHeader, values);
 
 		if (flags != null && flags.length != 0) {
 			addFlags(yHeader, flags);
@@ -594,7 +686,8 @@ public class HemoData implements Serializable {
 	}
 
 	/**
-	 * Replaces the data for the specified Y {@link Header}.
+	 * Replaces the data for the specified Y {@link Header}. If its differential or
+	 * derivative has been calculated, it will be recalculated for the new values.
 	 * 
 	 * @param yHeader the {@link Header} whose data should be replaced
 	 * @param values  the new values
@@ -611,10 +704,12 @@ public class HemoData implements Serializable {
 		if (!validateSize(values)) {
 			throw new IllegalArgumentException("Number of Y values is not the same as other data.");
 		}
-		if (!yValues.containsKey(yHeader)) {
+		int id = columns.id(yHeader);
+		if (id < 0) {
 			throw new IllegalArgumentException("Tried to replace a Y header that does not exist.");
 		}
-		this.yValues.put(yHeader, values);
+		columns.set(ColumnStore.VALUES, id, values);
+		_recalculateDerivatives(id);
 
 	}
 
@@ -626,9 +721,8 @@ public class HemoData implements Serializable {
 	 */
 	public void deleteYVars(Header... headersToIgnore) {
 
-		Iterator<Header> itr = this.yValues.keySet().iterator();
-		while (itr.hasNext()) {
-			Header thisHeader = itr.next();
+		for (int i = columns.size() - 1; i >= 0; i--) {
+			Header thisHeader = columns.header(i);
 			boolean keep = false;
 			for (Header header : headersToIgnore) {
 				if (header.equals(thisHeader)) {
@@ -637,10 +731,8 @@ public class HemoData implements Serializable {
 				}
 			}
 			if (!keep) {
-				itr.remove();
-				this.yValuesDeriv.remove(thisHeader);
-				this.yValuesDiff.remove(thisHeader);
-				this.flaggedHeaders.remove(thisHeader);
+				columns.remove(i);
+				headerFlags.removeHeader(thisHeader);
 
 			}
 		}
@@ -650,25 +742,7 @@ public class HemoData implements Serializable {
 	 * always returns a list - empty if no headers with the flag
 	 */
 	public List<Header> getHeaderByFlag(String flag) {
-		List<Header> headers = new ArrayList<Header>();
-
-		for (Entry<Header, Set<String>> flagsEn : this.flaggedHeaders.entrySet()) {
-
-			Set<String> flags = flagsEn.getValue();
-			if (flags == null) {
-				continue;
-			}
-
-			for (String qFlag : flags) {
-				if (qFlag.equalsIgnoreCase(flag)) {
-					headers.add(flagsEn.getKey());
-					break;
-				}
-			}
-
-		}
-
-		return headers;
+		return headerFlags.headersWith(flag);
 	}
 	
 	/**
@@ -680,20 +754,7 @@ public class HemoData implements Serializable {
 		if (flag == null || flag.length() == 0)
 			throw new IllegalArgumentException("Null flag");
 		
-		for (Entry<Header, Set<String>> flagsEn : this.flaggedHeaders.entrySet()) {
-
-			Set<String> flags = flagsEn.getValue();
-			if (flags != null) {
-				for (String qFlag : flags) {
-					if (qFlag.equalsIgnoreCase(flag)) {
-						return true;
-					}
-				}
-			}
-
-		}
-
-		return false;
+		return headerFlags.exists(flag, null);
 	}
 
 	/**
@@ -708,18 +769,11 @@ public class HemoData implements Serializable {
 		if (flags == null || header == null) {
 			throw new IllegalArgumentException("Cannot accept null argument");
 		}
-		if (!header.equals(xHeader) && !this.yValues.containsKey(header)) {
+		if (!header.equals(xHeader) && !columns.contains(header)) {
 			throw new IllegalArgumentException(
 					"Cannot flag a header " + header + " which is not contained in this data structure.");
 		}
-		Header cannonical = resolveHeader(header);
-		Set<String> existingFlags = this.flaggedHeaders.get(cannonical);
-		if (existingFlags == null) {
-			existingFlags = new HashSet<String>();
-		}
-		existingFlags.addAll(Arrays.asList(flags));
-
-		this.flaggedHeaders.put(cannonical, existingFlags);
+		headerFlags.add(resolveHeader(header), flags);
 
 	}
 
@@ -734,16 +788,11 @@ public class HemoData implements Serializable {
 		if (flags == null || header == null) {
 			throw new IllegalArgumentException("Cannot accept null argument");
 		}
-		if (!header.equals(xHeader) && !this.yValues.containsKey(header)) {
+		if (!header.equals(xHeader) && !columns.contains(header)) {
 			return;
 		}
 
-		Set<String> existingFlags = this.flaggedHeaders.get(resolveHeader(header));
-		if (existingFlags == null) {
-			return;
-		} else {
-			existingFlags.removeAll(Arrays.asList(flags));
-		}
+		headerFlags.remove(resolveHeader(header), flags);
 
 	}
 
@@ -751,7 +800,7 @@ public class HemoData implements Serializable {
 	 * @return true if the header is contained either as X or Y
 	 */
 	public boolean hasHeader(Header query) {
-		return xHeader.equals(query) || yValues.containsKey(query);
+		return xHeader.equals(query) || columns.contains(query);
 	}
 
 	/**
@@ -759,7 +808,7 @@ public class HemoData implements Serializable {
 	 * @return flags in an {@link Set} form. Does not return null.
 	 */
 	public Set<String> getFlags(Header header) {
-		return flaggedHeaders.containsKey(header) ? flaggedHeaders.get(header) : new HashSet<String>();
+		return headerFlags.isFlagged(header) ? headerFlags.flags(header) : new HashSet<String>();
 	}
 
 	/**
@@ -785,16 +834,7 @@ public class HemoData implements Serializable {
 	 *         specified flag
 	 */
 	public boolean hasFlag(Header header, String flag) {
-		if (this.flaggedHeaders.containsKey(header)) {
-
-			Set<String> flags = this.flaggedHeaders.get(header);
-			if (flags != null && flags.contains(flag)) {
-				return true;
-			}
-
-		}
-
-		return false;
+		return headerFlags.has(header, flag);
 	}
 
 	/**
@@ -804,18 +844,7 @@ public class HemoData implements Serializable {
 	 * @return true if flag is assigned for the Y data
 	 */
 	public boolean flagExistsInYData(String flag) {
-		for (Entry<Header, Set<String>> entry : this.flaggedHeaders.entrySet()) {
-
-			if (entry.getKey().equals(xHeader))
-				continue;
-
-			for (String qFlag : entry.getValue()) {
-				if (qFlag.equalsIgnoreCase(flag))
-					return true;
-			}
-		}
-
-		return false;
+		return headerFlags.exists(flag, xHeader);
 	}
 
 	/**
@@ -823,15 +852,7 @@ public class HemoData implements Serializable {
 	 * @return true if flag exists for the X data or any of the Y data
 	 */
 	public boolean flagExists(String flag) {
-		for (Set<String> flags : this.flaggedHeaders.values()) {
-
-			for (String qFlag : flags) {
-				if (qFlag.equalsIgnoreCase(flag))
-					return true;
-			}
-		}
-
-		return false;
+		return headerFlags.exists(flag, null);
 	}
 
 	/**
@@ -865,23 +886,25 @@ public class HemoData implements Serializable {
 		}
 		
 
-		subData.setXData(this.xHeader, this.xData, getFlagsAsArray(xHeader));
+		subData.setXData(this.xHeader, _xData(), getFlagsAsArray(xHeader));
 
 		int numBeats = otherData.size() + 1; // +1 to include this beat.
 
-		for (Entry<Header, double[]> en : this.yValues.entrySet()) {
+		for (int col = 0; col < columns.size(); col++) {
 
-			double[] ensemble = Arrays.copyOf(en.getValue(), en.getValue().length);
+			Header header = columns.header(col);
+			double[] values = columns.get(ColumnStore.VALUES, col);
+			double[] ensemble = Arrays.copyOf(values, values.length);
 
 			for (HemoData hdOther : otherData) {
 				double[] hdOtherYValues = null;
 
 				switch (type) {
 				case ENSEMBLE_TRIM:
-					hdOtherYValues = hdOther.getYData(en.getKey());
+					hdOtherYValues = hdOther.getYData(header);
 					break;
 				case ENSEMBLE_SCALE:
-					hdOtherYValues = DataResampler.resample(hdOther.getYData(en.getKey()), ensemble.length);
+					hdOtherYValues = DataResampler.resample(hdOther.getYData(header), ensemble.length);
 					break;
 				default:
 					throw new IllegalArgumentException("Invalid ensemble type");
@@ -899,23 +922,25 @@ public class HemoData implements Serializable {
 				ensemble[i] = ensemble[i] / numBeats;
 			}
 
-			subData.addYData(en.getKey(), ensemble, getFlagsAsArray(en.getKey()));
+			subData.addYData(header, ensemble, getFlagsAsArray(header));
 
 		}
 
-		for (Entry<Header, double[]> en : this.yValuesDiff.entrySet()) {
+		for (int col : columns.order(ColumnStore.DIFF)) {
 
-			double[] ensembleDiff = Arrays.copyOf(en.getValue(), en.getValue().length);
+			Header header = columns.header(col);
+			double[] diff = columns.get(ColumnStore.DIFF, col);
+			double[] ensembleDiff = Arrays.copyOf(diff, diff.length);
 
 			for (HemoData hdOther : otherData) {
 				double[] hdOtherYDiffValues = null;
 
 				switch (type) {
 				case ENSEMBLE_TRIM:
-					hdOtherYDiffValues = hdOther.getCalculatedDiff(en.getKey());
+					hdOtherYDiffValues = hdOther.getCalculatedDiff(header);
 					break;
 				case ENSEMBLE_SCALE:
-					hdOtherYDiffValues = DataResampler.resample(hdOther.getCalculatedDiff(en.getKey()),
+					hdOtherYDiffValues = DataResampler.resample(hdOther.getCalculatedDiff(header),
 							ensembleDiff.length);
 					break;
 				default:
@@ -933,23 +958,25 @@ public class HemoData implements Serializable {
 			for (int i = 0; i < ensembleDiff.length; i++) {
 				ensembleDiff[i] = ensembleDiff[i] / numBeats;
 			}
-			subData.yValuesDiff.put(en.getKey(), ensembleDiff);
+			subData.columns.set(ColumnStore.DIFF, col, ensembleDiff);
 
 		}
 
-		for (Entry<Header, double[]> en : this.yValuesDeriv.entrySet()) {
+		for (int col : columns.order(ColumnStore.DERIV)) {
 
-			double[] ensembleDeriv = Arrays.copyOf(en.getValue(), en.getValue().length);
+			Header header = columns.header(col);
+			double[] deriv = columns.get(ColumnStore.DERIV, col);
+			double[] ensembleDeriv = Arrays.copyOf(deriv, deriv.length);
 
 			for (HemoData hdOther : otherData) {
 				double[] hdOtherYDerivValues = null;
 
 				switch (type) {
 				case ENSEMBLE_TRIM:
-					hdOtherYDerivValues = hdOther.getCalculatedDeriv(en.getKey());
+					hdOtherYDerivValues = hdOther.getCalculatedDeriv(header);
 					break;
 				case ENSEMBLE_SCALE:
-					hdOtherYDerivValues = DataResampler.resample(hdOther.getCalculatedDeriv(en.getKey()),
+					hdOtherYDerivValues = DataResampler.resample(hdOther.getCalculatedDeriv(header),
 							ensembleDeriv.length);
 					break;
 				default:
@@ -967,7 +994,7 @@ public class HemoData implements Serializable {
 			for (int i = 0; i < ensembleDeriv.length; i++) {
 				ensembleDeriv[i] = ensembleDeriv[i] / numBeats;
 			}
-			subData.yValuesDeriv.put(en.getKey(), ensembleDeriv);
+			subData.columns.set(ColumnStore.DERIV, col, ensembleDeriv);
 
 		}
 
@@ -984,16 +1011,19 @@ public class HemoData implements Serializable {
 	 * 
 	 * end index non inclusive.
 	 * 
-	 * returns a new HemoData;
+	 * returns a new HemoData, which shares the arrays of this one and only copies
+	 * its range of each array when first requested (i.e. by {@link #getYData(Header)}).
 	 */
 	public HemoData subset(String name, int startIndex, int endIndex) {
 		HemoData subData = new HemoData(this.file, this.fileName, name);
-		subData.xData = Arrays.copyOfRange(xData, startIndex, endIndex);
+		subData.xView = _xView().slice(startIndex, endIndex);
 		subData.xHeader = xHeader;
 
-		_copyDataRange(this.yValues, subData.yValues, startIndex, endIndex);
-		_copyDataRange(this.yValuesDeriv, subData.yValuesDeriv, startIndex, endIndex);
-		_copyDataRange(this.yValuesDiff, subData.yValuesDiff, startIndex, endIndex);
+		for (int i = 0; i < columns.size(); i++) {
+			subData.columns.addView(columns.header(i), columns.view(ColumnStore.VALUES, i).slice(startIndex, endIndex));
+		}
+		_copyFamilyRange(subData, ColumnStore.DERIV, startIndex, endIndex);
+		_copyFamilyRange(subData, ColumnStore.DIFF, startIndex, endIndex);
 		_copyFlags(subData);
 
 		return subData;
@@ -1001,16 +1031,12 @@ public class HemoData implements Serializable {
 	}
 
 	/**
-	 * Utility method
+	 * Utility method. Target must have the same columns as this object.
 	 */
-	private void _copyDataRange(LinkedHashMap<Header, double[]> source, LinkedHashMap<Header, double[]> target,
-			int startIndex, int endIndex) {
-
-		if (source == null || source.isEmpty())
-			return;
+	private void _copyFamilyRange(HemoData target, int family, int startIndex, int endIndex) {
 
-		for (Entry<Header, double[]> sourceEn : source.entrySet()) {
-			target.put(sourceEn.getKey(), Arrays.copyOfRange(sourceEn.getValue(), startIndex, endIndex));
+		for (int i : columns.order(family)) {
+			columns.slice(family, i, target.columns, startIndex, endIndex);
 		}
 
 	}
@@ -1024,10 +1050,11 @@ public class HemoData implements Serializable {
 	 */
 	public void applyIndexOffset(Header header, int numberOfIndices) {
 
-		if (header == null || numberOfIndices == 0 || !this.yValues.containsKey(header)) {
+		int id = columns.id(header);
+		if (header == null || numberOfIndices == 0 || id < 0) {
 			throw new IllegalArgumentException("Invalid header or number of shift units.");
 		}
-		if (xData.length - Math.abs(numberOfIndices) <= 0) {
+		if (getSize() - Math.abs(numberOfIndices) <= 0) {
 			throw new IllegalArgumentException("Cannot offset data that far.");
 		}
 
@@ -1040,18 +1067,18 @@ public class HemoData implements Serializable {
 			// shift this header backward. basically trim the front end of it. trim back end
 			// of all the others.
 			startTarget = Math.abs(numberOfIndices);
-			endTarget = xData.length;
+			endTarget = getSize();
 			startOthers = 0;
-			endOthers = xData.length - Math.abs(numberOfIndices);
+			endOthers = getSize() - Math.abs(numberOfIndices);
 
 		} else {
 			// shift this header forward. basically trim the back end of it. trim front end
 			// of all the others.
 
 			startTarget = 0;
-			endTarget = xData.length - numberOfIndices;
+			endTarget = getSize() - numberOfIndices;
 			startOthers = numberOfIndices;
-			endOthers = xData.length;
+			endOthers = getSize();
 
 		}
 
@@ -1060,46 +1087,11 @@ public class HemoData implements Serializable {
 		int startOthersDD = startOthers;
 		int endOthersDD = endOthers - 1;
 
-		LinkedHashMap<Header, double[]> data = new LinkedHashMap<Header, double[]>();
-		Iterator<Entry<Header, double[]>> entryItr = this.yValues.entrySet().iterator();
-		while (entryItr.hasNext()) {
-			Entry<Header, double[]> entry = entryItr.next();
-			if (entry.getKey().equals(header)) {
-				data.put(entry.getKey(), Arrays.copyOfRange(entry.getValue(), startTarget, endTarget));
-			} else {
-				data.put(entry.getKey(), Arrays.copyOfRange(entry.getValue(), startOthers, endOthers));
-			}
-			entryItr.remove();
-		}
-
-		this.yValues = data;
-		this.xData = Arrays.copyOfRange(xData, startOthers, endOthers);
-
-		LinkedHashMap<Header, double[]> dataDiff = new LinkedHashMap<Header, double[]>();
-		Iterator<Entry<Header, double[]>> entryItrDiff = this.yValuesDiff.entrySet().iterator();
-		while (entryItrDiff.hasNext()) {
-			Entry<Header, double[]> entry = entryItrDiff.next();
-			if (entry.getKey().equals(header)) {
-				dataDiff.put(entry.getKey(), Arrays.copyOfRange(entry.getValue(), startTargetDD, endTargetDD));
-			} else {
-				dataDiff.put(entry.getKey(), Arrays.copyOfRange(entry.getValue(), startOthersDD, endOthersDD));
-			}
-			entryItrDiff.remove();
-		}
-		this.yValuesDiff = dataDiff;
+		_sliceFamily(ColumnStore.VALUES, id, startTarget, endTarget, startOthers, endOthers);
+		this.xData = Arrays.copyOfRange(_xData(), startOthers, endOthers);
 
-		LinkedHashMap<Header, double[]> dataDeriv = new LinkedHashMap<Header, double[]>();
-		Iterator<Entry<Header, double[]>> entryItrDeriv = this.yValuesDeriv.entrySet().iterator();
-		while (entryItrDeriv.hasNext()) {
-			Entry<Header, double[]> entry = entryItrDeriv.next();
-			if (entry.getKey().equals(header)) {
-				dataDeriv.put(entry.getKey(), Arrays.copyOfRange(entry.getValue(), startTargetDD, endTargetDD));
-			} else {
-				dataDeriv.put(entry.getKey(), Arrays.copyOfRange(entry.getValue(), startOthersDD, endOthersDD));
-			}
-			entryItrDeriv.remove();
-		}
-		this.yValuesDeriv = dataDeriv;
+		_sliceFamily(ColumnStore.DIFF, id, startTargetDD, endTargetDD, startOthersDD, endOthersDD);
+		_sliceFamily(ColumnStore.DERIV, id, startTargetDD, endTargetDD, startOthersDD, endOthersDD);
 
 	}
 	
@@ -1113,71 +1105,60 @@ public class HemoData implements Serializable {
 	 * @param xShift  the amount to shift in X units
 	 */
 	public void applyXOffset(Header header, double xShift) {
-		if (header == null || xShift == 0.0 || !this.yValues.containsKey(header)) {
+		int id = columns.id(header);
+		if (header == null || xShift == 0.0 || id < 0) {
 			throw new IllegalArgumentException("Invalid header or zero shift.");
 		}
 
+		double[] x = _xData();
 		int shiftIndex = 0;
-		double baseX = xData[0];
+		double baseX = x[0];
 		double shiftedX = baseX + xShift;
 
 		if (xShift > 0) {
 			// find first index where x >= base + xShift
-			while (shiftIndex < xData.length && xData[shiftIndex] < shiftedX) {
+			while (shiftIndex < getSize() && x[shiftIndex] < shiftedX) {
 				shiftIndex++;
 			}
 		} else {
 			// find how many steps from the end to go back
-			while (shiftIndex < xData.length && xData[xData.length - 1 - shiftIndex] > shiftedX) {
+			while (shiftIndex < getSize() && x[x.length - 1 - shiftIndex] > shiftedX) {
 				shiftIndex++;
 			}
 		}
 
-		if (xData.length - shiftIndex <= 0) {
+		if (getSize() - shiftIndex <= 0) {
 			throw new IllegalArgumentException("Cannot offset data that far.");
 		}
 
 		int startTarget = (xShift > 0) ? shiftIndex : 0;
-		int endTarget = (xShift > 0) ? xData.length : xData.length - shiftIndex;
+		int endTarget = (xShift > 0) ? getSize() : getSize() - shiftIndex;
 		int startOthers = (xShift > 0) ? 0 : shiftIndex;
-		int endOthers = (xShift > 0) ? xData.length - shiftIndex : xData.length;
-
-		LinkedHashMap<Header, double[]> data = new LinkedHashMap<>();
-		for (Entry<Header, double[]> entry : this.yValues.entrySet()) {
-			Header h = entry.getKey();
-			double[] values = entry.getValue();
-			if (h.equals(header)) {
-				data.put(h, Arrays.copyOfRange(values, startTarget, endTarget));
-			} else {
-				data.put(h, Arrays.copyOfRange(values, startOthers, endOthers));
-			}
-		}
-		this.yValues = data;
-		this.xData = Arrays.copyOfRange(xData, startOthers, endOthers);
+		int endOthers = (xShift > 0) ? getSize() - shiftIndex : getSize();
 
-		LinkedHashMap<Header, double[]> dataDiff = new LinkedHashMap<>();
-		for (Entry<Header, double[]> entry : this.yValuesDiff.entrySet()) {
-			Header h = entry.getKey();
-			double[] values = entry.getValue();
-			if (h.equals(header)) {
-				dataDiff.put(h, Arrays.copyOfRange(values, startTarget, endTarget - 1));
-			} else {
-				dataDiff.put(h, Arrays.copyOfRange(values, startOthers, endOthers - 1));
-			}
-		}
-		this.yValuesDiff = dataDiff;
+		_sliceFamily(ColumnStore.VALUES, id, startTarget, endTarget, startOthers, endOthers);
+		this.xData = Arrays.copyOfRange(_xData(), startOthers, endOthers);
+
+		_sliceFamily(ColumnStore.DIFF, id, startTarget, endTarget - 1, startOthers, endOthers - 1);
+		_sliceFamily(ColumnStore.DERIV, id, startTarget, endTarget - 1, startOthers, endOthers - 1);
+	}
 
-		LinkedHashMap<Header, double[]> dataDeriv = new LinkedHashMap<>();
-		for (Entry<Header, double[]> entry : this.yValuesDeriv.entrySet()) {
-			Header h = entry.getKey();
-			double[] values = entry.getValue();
-			if (h.equals(header)) {
-				dataDeriv.put(h, Arrays.copyOfRange(values, startTarget, endTarget - 1));
+	/**
+	 * Utility method. Replaces each column of the family with a range of it, using
+	 * one range for the target column and another for all others.
+	 */
+	private void _sliceFamily(int family, int targetId, int startTarget, int endTarget, int startOthers,
+			int endOthers) {
+		for (int i = 0; i < columns.size(); i++) {
+			if (columns.length(family, i) < 0) {
+				continue;
+			}
+			if (i == targetId) {
+				columns.slice(family, i, columns, startTarget, endTarget);
 			} else {
-				dataDeriv.put(h, Arrays.copyOfRange(values, startOthers, endOthers - 1));
+				columns.slice(family, i, columns, startOthers, endOthers);
 			}
 		}
-		this.yValuesDeriv = dataDeriv;
 	}
 
 	/**
@@ -1190,18 +1171,18 @@ public class HemoData implements Serializable {
 	 * @param filteredData filtered data
 	 */
 	public void applyFilter(Header header, double[] filteredData) {
-		header = resolveHeader(header);
-		if (!yValues.containsKey(header)) {
+		int id = columns.id(resolveHeader(header));
+		if (id < 0) {
 			throw new IllegalArgumentException(
 					"Error filtering HD. Header " + header.getName() + " was not contained.");
-		} else if (filteredData == null || yValues.get(header).length != filteredData.length) {
+		} else if (filteredData == null || columns.length(ColumnStore.VALUES, id) != filteredData.length) {
 			throw new IllegalArgumentException(
 					"Error filtering HD. Filtered data is null or not the same size as existing Y values.");
 		}
 
-		yValues.put(header, filteredData);
-		yValuesDeriv.remove(header);
-		yValuesDiff.remove(header);
+		columns.set(ColumnStore.VALUES, id, filteredData);
+		columns.set(ColumnStore.DERIV, id, null);
+		columns.set(ColumnStore.DIFF, id, null);
 
 	}
 
@@ -1230,7 +1211,9 @@ public class HemoData implements Serializable {
 	 *         values stored)
 	 */
 	public int getSize() {
-		if (this.xData == null)
+		if (this.xView != null)
+			return this.xView.length();
+		else if (this.xData == null)
 			return 0;
 		else
 			return this.xData.length;
@@ -1284,10 +1267,11 @@ public class HemoData implements Serializable {
 			throw new IllegalArgumentException("Null argument");
 
 		if (header.equals(xHeader)) {
-			return new double[] { xData[0], xData[xData.length - 1] };
-		} else if (yValues.containsKey(header)) {
+			ArraySlice x = _xView();
+			return new double[] { x.get(0), x.get(x.length() - 1) };
+		} else if (columns.contains(header)) {
 
-			double[] yData = yValues.get(header);
+			double[] yData = getYData(header);
 
 			double min = Double.NaN;
 			double max = Double.NaN;
@@ -1324,7 +1308,7 @@ public class HemoData implements Serializable {
 		HemoData hd = new HemoData(this.file, this.fileName, name == null ? this.name : name);
 
 		if (copyXData) {
-			hd.setXData(this.xHeader, Arrays.copyOf(xData, xData.length), getFlagsAsArray(xHeader));
+			hd.setXData(this.xHeader, Arrays.copyOf(_xData(), getSize()), getFlagsAsArray(xHeader));
 		}
 		return hd;
 	}
@@ -1340,7 +1324,7 @@ public class HemoData implements Serializable {
 	public HemoData blankCopyOf(String name, Header... yHeaders) {
 		HemoData hd = new HemoData(this.file, this.fileName, name);
 
-		hd.setXData(this.xHeader, Arrays.copyOf(this.xData, this.xData.length), this.getFlagsAsArray(xHeader));
+		hd.setXData(this.xHeader, Arrays.copyOf(_xData(), getSize()), this.getFlagsAsArray(xHeader));
 
 		// If no yHeaders were specified then this will not run
 		for (Header header : yHeaders) {
@@ -1364,7 +1348,7 @@ public class HemoData implements Serializable {
 	 */
 	public HemoData blankCopy(String name) {
 		HemoData hd = new HemoData(this.file, this.fileName, name);
-		hd.setXData(this.xHeader, Arrays.copyOf(this.xData, this.xData.length), this.getFlagsAsArray(xHeader));
+		hd.setXData(this.xHeader, Arrays.copyOf(_xData(), getSize()), this.getFlagsAsArray(xHeader));
 		for (Header header : this.getYHeaders()) {
 
 			double[] yData = this.getYData(header);
@@ -1386,13 +1370,13 @@ public class HemoData implements Serializable {
 	private boolean validateSize(double[] data) {
 
 		if (xHeader != null) {
-			if (data.length != xData.length) {
+			if (data.length != getSize()) {
 				return false;
 			}
 		}
 
-		for (Entry<Header, double[]> en : yValues.entrySet()) {
-			if (en.getValue().length != data.length) {
+		for (int i = 0; i < columns.size(); i++) {
+			if (columns.length(ColumnStore.VALUES, i) != data.length) {
 				return false;
 			}
 		}
@@ -1406,15 +1390,15 @@ public class HemoData implements Serializable {
 	 */
 	public String isValid() {
 
-		if (this.xData == null || this.xHeader == null || this.yValues.isEmpty())
+		if (_xData() == null || this.xHeader == null || this.columns.isEmpty())
 			return "Lacking either X or Y data.";
-		else if (!isAscending(xData)) {
+		else if (!isAscending(_xData())) {
 			return "X values must be ascending only.";
 
 		} else {
 
-			for (double[] values : this.yValues.values()) {
-				if (values.length != this.xData.length) {
+			for (int i = 0; i < columns.size(); i++) {
+				if (columns.length(ColumnStore.VALUES, i) != getSize()) {
 					return "Number of X and Y data points are not the same. Check input file.";
 				}
 			} 
@@ -1427,10 +1411,46 @@ public class HemoData implements Serializable {
 
 	/**
 	 * @return a deep copy of this object, including all sub-objects / data
-	 *         structures.
+	 *         structures. The copy shares no arrays with this object, so either
+	 *         may be changed without affecting the other.
 	 */
 	public HemoData copy() {
-		return SerializationUtils.clone(this);
+		HemoData copy = new HemoData(file, fileName, name);
+		IdentityHashMap<Header, Header> headerCopies = new IdentityHashMap<Header, Header>();
+		copy.xHeader = _copyHeader(xHeader, headerCopies);
+		copy.xData = xView != null ? xView.toArray() : xData == null ? null : xData.clone();
+		for (int i = 0; i < columns.size(); i++) {
+			copy.columns.add(_copyHeader(columns.header(i), headerCopies), null);
+			columns.copy(ColumnStore.VALUES, i, copy.columns);
+		}
+		for (int family : new int[] { ColumnStore.DIFF, ColumnStore.DERIV }) {
+			for (int i : columns.order(family)) {
+				columns.copy(family, i, copy.columns);
+			}
+		}
+		for (Header header : headerFlags.headers()) {
+			copy.headerFlags.add(_copyHeader(header, headerCopies), getFlagsAsArray(header));
+		}
+		return copy;
+	}
+
+	/**
+	 * Copies a header, including its additional metadata. Each header is only
+	 * copied once, so headers which were the same object remain so.
+	 */
+	private static Header _copyHeader(Header header, IdentityHashMap<Header, Header> copies) {
+		if (header == null) {
+			return null;
+		}
+		Header copy = copies.get(header);
+		if (copy == null) {
+			copy = new Header(header.getName(), header.getCol(), header.isX());
+			for (String key : header.getAdditionalMetaKeys()) {
+				copy.addAdditionalMeta(key, header.getAdditionalMeta(key));
+			}
+			copies.put(header, copy);
+		}
+		return copy;
 	}
 
 	/**
@@ -1486,11 +1506,11 @@ public class HemoData implements Serializable {
 		}
 		fixedHeader = resolveHeader(fixedHeader);
 		adjustedHeader = resolveHeader(adjustedHeader);
-		if (!this.yValues.containsKey(fixedHeader) || !this.yValues.containsKey(adjustedHeader)) {
+		if (!columns.contains(fixedHeader) || !columns.contains(adjustedHeader)) {
 			throw new IllegalArgumentException("Both fixed and adjusted headers must be present in the data.");
 		}
 
-		int N = this.xData.length;
+		int N = getSize();
 		if (indexFixed < 0 || indexFixed >= N || indexAdjusted < 0 || indexAdjusted >= N) {
 			throw new IllegalArgumentException("Alignment indices must be within the bounds of the data arrays.");
 		}
@@ -1527,14 +1547,12 @@ public class HemoData implements Serializable {
 						newData.addYData(header, Arrays.copyOf(origY, origY.length), this.getFlagsAsArray(header));
 					}
 				}
-				newData.yValuesDiff.clear();
-				newData.yValuesDeriv.clear();
-				for (Header header : newData.getYHeaders()) {
-					newData.calculateDerivative(header, null);
-					newData.calculateDiff(header);
+				for (int i = 0; i < newData.columns.size(); i++) {
+					newData._calculateDerivative(i, null);
+					newData._calculateDiff(i);
 				}
-				newData.flaggedHeaders.clear();
-				newData.flaggedHeaders.putAll(this.flaggedHeaders);
+				newData.headerFlags.clear();
+				this.headerFlags.copyInto(newData.headerFlags);
 				return newData;
 			} else {
 				throw new ArithmeticException("Cannot wrap - excessive discordance at the ends");
@@ -1551,7 +1569,7 @@ public class HemoData implements Serializable {
 			int cropStart = (delta >= 0) ? 0 : absDelta;
 			int cropEnd = cropStart + L;
 			HemoData newData = this.blankCopyOf(false, this.name + "_aligned");
-			double[] newX = Arrays.copyOfRange(this.xData, cropStart, cropEnd);
+			double[] newX = Arrays.copyOfRange(_xData(), cropStart, cropEnd);
 			newX = Utils.shiftToZero(newX);
 			newData.setXData(this.xHeader, newX, this.getFlagsAsArray(this.xHeader));
 
@@ -1570,42 +1588,20 @@ public class HemoData implements Serializable {
 				newData.addYData(header, newY, this.getFlagsAsArray(header));
 			}
 
-			LinkedHashMap<Header, double[]> newDiff = new LinkedHashMap<>();
-			for (Entry<Header, double[]> entry : this.yValuesDiff.entrySet()) {
-				double[] origDiff = entry.getValue();
-				double[] newDiffArr;
-				if (entry.getKey().equals(adjustedHeader)) {
-					newDiffArr = (delta >= 0) ? Arrays.copyOfRange(origDiff, delta, delta + L)
-							: Arrays.copyOfRange(origDiff, 0, L);
-				} else {
-					newDiffArr = Arrays.copyOfRange(origDiff, cropStart, cropEnd);
-				}
-				newDiff.put(entry.getKey(), newDiffArr);
+			newData.headerFlags.clear();
+			this.headerFlags.copyInto(newData.headerFlags);
+
+			// differentials and derivatives are recalculated for the cropped data rather
+			// than cropped from this object's, keeping the order they were calculated in
+			for (int i : this.columns.order(ColumnStore.DIFF)) {
+				newData._calculateDiff(i);
 			}
-			newData.yValuesDiff.clear();
-			newData.yValuesDiff.putAll(newDiff);
-
-			LinkedHashMap<Header, double[]> newDeriv = new LinkedHashMap<>();
-			for (Entry<Header, double[]> entry : this.yValuesDeriv.entrySet()) {
-				double[] origDeriv = entry.getValue();
-				double[] newDerivArr;
-				if (entry.getKey().equals(adjustedHeader)) {
-					newDerivArr = (delta >= 0) ? Arrays.copyOfRange(origDeriv, delta, delta + L)
-							: Arrays.copyOfRange(origDeriv, 0, L);
-				} else {
-					newDerivArr = Arrays.copyOfRange(origDeriv, cropStart, cropEnd);
-				}
-				newDeriv.put(entry.getKey(), newDerivArr);
+			for (int i : this.columns.order(ColumnStore.DERIV)) {
+				newData._calculateDerivative(i, null);
 			}
-			newData.yValuesDeriv.clear();
-			newData.yValuesDeriv.putAll(newDeriv);
-
-			newData.flaggedHeaders.clear();
-			newData.flaggedHeaders.putAll(this.flaggedHeaders);
-
-			for (Header header : newData.getYHeaders()) {
-				newData.calculateDerivative(header, null);
-				newData.calculateDiff(header);
+			for (int i = 0; i < newData.columns.size(); i++) {
+				newData._calculateDerivative(i, null);
+				newData._calculateDiff(i);
 			}
 
 			return newData;
@@ -1621,41 +1617,41 @@ public class HemoData implements Serializable {
 	 * skipping values in the middle if there are essentially over 100 values)
 	 */
 	public void printToConsole() {
-		int numberResults = Math.min(100, this.xData.length);
+		int numberResults = Math.min(100, getSize());
 		System.out.println("========= HemoData READ FROM START =========");
-		System.out.println(xHeader + " " + Utils.getStringFromArray(xData, numberResults));
-		for (Entry<Header, double[]> yEn : this.yValues.entrySet()) {
-			System.out.println(yEn.getKey() + " ::: " + Utils.getStringFromArray(yEn.getValue(), numberResults));
-		}
-		for (Entry<Header, double[]> yEn : this.yValuesDiff.entrySet()) {
-			System.out.println("Diff " + yEn.getKey() + " ::: " + Utils.getStringFromArray(yEn.getValue(), numberResults));
-		}
-		for (Entry<Header, double[]> yEn : this.yValuesDeriv.entrySet()) {
-			System.out.println("Deriv " + yEn.getKey() + " ::: " + Utils.getStringFromArray(yEn.getValue(), numberResults));
-		}
-		for (Entry<Header, Set<String>> flags : this.flaggedHeaders.entrySet()) {
-			System.out.println("FLAGS for " + flags.getKey() + " are ::: " + flags.getValue().toString());
+		System.out.println(xHeader + " " + Utils.getStringFromArray(_xData(), numberResults));
+		_printFamily(ColumnStore.VALUES, "", numberResults, false);
+		_printFamily(ColumnStore.DIFF, "Diff ", numberResults, false);
+		_printFamily(ColumnStore.DERIV, "Deriv ", numberResults, false);
+		for (Header header : headerFlags.headers()) {
+			System.out.println("FLAGS for " + header + " are ::: " + getFlags(header).toString());
 		}
 		System.out.println("========= HemoData READ FROM END =========");
-		System.out.println(xHeader + " " + Utils.getStringFromTerminalArray(xData, numberResults));
-		for (Entry<Header, double[]> yEn : this.yValues.entrySet()) {
-			System.out.println(yEn.getKey() + " ::: " + Utils.getStringFromTerminalArray(yEn.getValue(), numberResults));
-		}
-		for (Entry<Header, double[]> yEn : this.yValuesDiff.entrySet()) {
-			System.out
-					.println("Diff " + yEn.getKey() + " ::: " + Utils.getStringFromTerminalArray(yEn.getValue(), numberResults));
-		}
-		for (Entry<Header, double[]> yEn : this.yValuesDeriv.entrySet()) {
-			System.out
-					.println("Deriv " + yEn.getKey() + " ::: " + Utils.getStringFromTerminalArray(yEn.getValue(), numberResults));
-		}
-		for (Entry<Header, Set<String>> flags : this.flaggedHeaders.entrySet()) {
-			System.out.println("FLAGS for " + flags.getKey() + " are ::: " + flags.getValue().toString());
+		System.out.println(xHeader + " " + Utils.getStringFromTerminalArray(_xData(), numberResults));
+		_printFamily(ColumnStore.VALUES, "", numberResults, true);
+		_printFamily(ColumnStore.DIFF, "Diff ", numberResults, true);
+		_printFamily(ColumnStore.DERIV, "Deriv ", numberResults, true);
+		for (Header header : headerFlags.headers()) {
+			System.out.println("FLAGS for " + header + " are ::: " + getFlags(header).toString());
 		}
 		System.out.println("========= DONE =========");
 
 	}
 
+	/**
+	 * Utility method for {@link #printToConsole()}
+	 */
+	private void _printFamily(int family, String prefix, int numberResults, boolean fromEnd) {
+		for (int i : columns.order(family)) {
+			double[] values = columns.get(family, i);
+			if (values != null) {
+				System.out.println(prefix + columns.header(i) + " ::: " + (fromEnd
+						? Utils.getStringFromTerminalArray(values, numberResults)
+						: Utils.getStringFromArray(values, numberResults)));
+			}
+		}
+	}
+
 	/**
 	 * Compiles this {@link HemoData} object and others into a 2D string array suitable
 	 * for printing or saving (outer array is row, inner array has the columns)
@@ -1684,23 +1680,24 @@ public class HemoData implements Serializable {
 			writer.writeNext(new String[] { "PRIMARY DATA" });
 			ArrayList<String> headers = new ArrayList<String>();
 			headers.add(xHeader.getName());
-			for (Header header : this.yValues.keySet()) {
+			for (Header header : columns.headers()) {
 				headers.add(header.getName());
 			}
 
 			writer.writeNext(headers.toArray(new String[0]));
 
 			// now write the data
-			String[][] rows = new String[xData.length][yValues.size() + 1]; // + 1 to include the x columns
+			String[][] rows = new String[getSize()][columns.size() + 1]; // + 1 to include the x columns
 			DecimalFormat formatter = new DecimalFormat("#.#####");
 			// X
+			double[] x = _xData();
 			for (int i = 0; i < rows.length; i++) {
-				rows[i][0] = formatter.format(xData[i]);
+				rows[i][0] = formatter.format(x[i]);
 			}
 			// Y
 			int columnCurr = 1;
-			for (Entry<Header, double[]> yColumn : this.yValues.entrySet()) {
-				double[] yData = yColumn.getValue();
+			for (int col = 0; col < columns.size(); col++) {
+				double[] yData = columns.get(ColumnStore.VALUES, col);
 				for (int i = 0; i < rows.length; i++) {
 					rows[i][columnCurr] = formatter.format(yData[i]);
 				}
@@ -1717,21 +1714,17 @@ public class HemoData implements Serializable {
 			// Write differentials
 			writer.writeNext(new String[] { "DIFFERENTIALS" });
 
-			if (!yValuesDiff.isEmpty()) {
+			List<double[]> calculated = _calculated(ColumnStore.DIFF, headers);
+			if (!calculated.isEmpty()) {
 
 				// write headers
-				for (Header header : this.yValuesDiff.keySet()) {
-					headers.add(header.getName());
-				}
-
 				writer.writeNext(headers.toArray(new String[0]));
 
 				// write data
-				int numVals = yValuesDiff.values().iterator().next().length;
-				rows = new String[numVals][yValuesDiff.size()];
+				int numVals = calculated.get(0).length;
+				rows = new String[numVals][calculated.size()];
 
-				for (Entry<Header, double[]> yDiff : yValuesDiff.entrySet()) {
-					double[] yData = yDiff.getValue();
+				for (double[] yData : calculated) {
 					for (int i = 0; i < rows.length; i++) {
 
 						rows[i][columnCurr] = formatter.format(yData[i]);
@@ -1752,21 +1745,17 @@ public class HemoData implements Serializable {
 			writer.writeNext(new String[] { "" });
 			writer.writeNext(new String[] { "DERIVATIVES" });
 
-			if (!yValuesDeriv.isEmpty()) {
+			calculated = _calculated(ColumnStore.DERIV, headers);
+			if (!calculated.isEmpty()) {
 
 				// write headers
-				for (Header header : this.yValuesDeriv.keySet()) {
-					headers.add(header.getName());
-				}
-
 				writer.writeNext(headers.toArray(new String[0]));
 
 				// write data
-				int numVals = yValuesDeriv.values().iterator().next().length;
-				rows = new String[numVals][yValuesDeriv.size()];
+				int numVals = calculated.get(0).length;
+				rows = new String[numVals][calculated.size()];
 
-				for (Entry<Header, double[]> yDiff : yValuesDeriv.entrySet()) {
-					double[] yData = yDiff.getValue();
+				for (double[] yData : calculated) {
 					for (int i = 0; i < rows.length; i++) {
 						rows[i][columnCurr] = formatter.format(yData[i]);
 					}
@@ -1785,10 +1774,10 @@ public class HemoData implements Serializable {
 			// Flags
 			writer.writeNext(new String[] { "" });
 			writer.writeNext(new String[] { "Flags" });
-			for (Entry<Header, Set<String>> flags : this.flaggedHeaders.entrySet()) {
+			for (Header header : headerFlags.headers()) {
 				List<String> flagsForHeader = new ArrayList<String>();
-				flagsForHeader.add(flags.getKey().getName());
-				for (String flag : flags.getValue()) {
+				flagsForHeader.add(header.getName());
+				for (String flag : getFlags(header)) {
 					flagsForHeader.add(flag);
 				}
 				writer.writeNext(flagsForHeader.toArray(new String[0]));
@@ -1810,24 +1799,83 @@ public class HemoData implements Serializable {
 	 */
 	public int maxRows() {
 
-		int maxRows = xData.length;
-		for (double[] yValue : yValues.values()) {
-			if (yValue.length > maxRows) {
-				maxRows = yValue.length;
+		int maxRows = getSize();
+		for (int family : new int[] { ColumnStore.VALUES, ColumnStore.DIFF, ColumnStore.DERIV }) {
+			for (int i = 0; i < columns.size(); i++) {
+				double[] values = columns.get(family, i);
+				if (values != null && values.length > maxRows) {
+					maxRows = values.length;
+				}
 			}
 		}
-		for (double[] yValueDiff : yValuesDiff.values()) {
-			if (yValueDiff.length > maxRows) {
-				maxRows = yValueDiff.length;
+
+		return maxRows;
+	}
+
+	/**
+	 * Utility method. Gets the calculated values of a family (differentials or
+	 * derivatives), in column order.
+	 *
+	 * @param headerNames list to add the header names of the calculated columns to
+	 */
+	private List<double[]> _calculated(int family, List<String> headerNames) {
+		List<double[]> calculated = new ArrayList<double[]>();
+		for (int i : columns.order(family)) {
+			double[] values = columns.get(family, i);
+			if (values != null) {
+				calculated.add(values);
+				headerNames.add(columns.header(i).getName());
 			}
 		}
-		for (double[] yValueDeriv : yValuesDeriv.values()) {
-			if (yValueDeriv.length > maxRows) {
-				maxRows = yValueDeriv.length;
+		return calculated;
+	}
+
+	/**
+	 * Utility method. Gets the values of all columns of a family, i.e. for
+	 * {@link DataResampler}
+	 */
+	private double[][] _family(int family) {
+		double[][] values = new double[columns.size()][];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = columns.get(family, i);
+		}
+		return values;
+	}
+
+	/**
+	 * Recalculates all differentials and derivatives which have been calculated,
+	 * i.e. after the X values change
+	 */
+	private void _recalculateDerivatives() {
+		for (int i = 0; i < columns.size(); i++) {
+			if (columns.length(ColumnStore.DIFF, i) >= 0) {
+				_calculateDiff(i);
+			}
+			if (columns.length(ColumnStore.DERIV, i) >= 0) {
+				_calculateDerivative(i, null);
 			}
 		}
+	}
 
-		return maxRows;
+	/**
+	 * Recalculates the differential and derivative of a column, if they have been
+	 * calculated, after its values change. Each is calculated the same way it was
+	 * before (i.e. with the same fixed X interval).
+	 */
+	private void _recalculateDerivatives(int id) {
+		ArraySlice values = columns.view(ColumnStore.VALUES, id);
+		for (int family : new int[] { ColumnStore.DIFF, ColumnStore.DERIV }) {
+			LazyDerivative lazy = columns.lazy(family, id);
+			if (lazy != null) {
+				columns.setLazy(family, id, lazy.of(_xView(), values));
+			} else if (columns.length(family, id) >= 0) {
+				if (family == ColumnStore.DIFF) {
+					_calculateDiff(id);
+				} else {
+					_calculateDerivative(id, null);
+				}
+			}
+		}
 	}
 
 	/**
@@ -1837,14 +1885,7 @@ public class HemoData implements Serializable {
 	 * @param target the target {@link HemoData} to copy this object's flags into.
 	 */
 	private void _copyFlags(HemoData target) {
-		for (Entry<Header, Set<String>> flags : this.flaggedHeaders.entrySet()) {
-			if (flags.getValue() == null || flags.getValue().isEmpty())
-				continue;
-
-			target.flaggedHeaders.put(flags.getKey(), new HashSet<String>(flags.getValue()));
-
-		}
-
+		headerFlags.copyInto(target.headerFlags);
 	}
 
 	/**
@@ -1961,41 +2002,23 @@ public class HemoData implements Serializable {
 		int columnLevel = 0;
 		int rowLevel = 2;
 		for (HemoData hd : datas) {
-			for (double dTime : hd.xData) {
+			for (double dTime : hd._xData()) {
 				concatData[rowLevel][columnLevel] = String.valueOf(dTime);
 				rowLevel++;
 			}
 			rowLevel = 2;
 			columnLevel++;
 
-			for (Entry<Header, double[]> yValueCol : hd.yValues.entrySet()) {
-				for (double yValAtRow : yValueCol.getValue()) {
-					concatData[rowLevel][columnLevel] = String.valueOf(yValAtRow);
-					rowLevel++;
-
-				}
-				columnLevel++;
-				rowLevel = 2;
-			}
-			rowLevel = 2;
-
-			for (Entry<Header, double[]> yValueDiffCol : hd.yValuesDiff.entrySet()) {
-				for (double yValDiffAtRow : yValueDiffCol.getValue()) {
-					concatData[rowLevel][columnLevel] = String.valueOf(yValDiffAtRow);
-					rowLevel++;
-				}
-				columnLevel++;
-				rowLevel = 2;
-			}
-			rowLevel = 2;
-
-			for (Entry<Header, double[]> yValueDerivCol : hd.yValuesDeriv.entrySet()) {
-				for (double yValDerivAtRow : yValueDerivCol.getValue()) {
-					concatData[rowLevel][columnLevel] = String.valueOf(yValDerivAtRow);
-					rowLevel++;
+			for (int family : new int[] { ColumnStore.VALUES, ColumnStore.DIFF, ColumnStore.DERIV }) {
+				for (int i : hd.columns.order(family)) {
+					double[] values = hd.columns.get(family, i);
+					for (double yValAtRow : values) {
+						concatData[rowLevel][columnLevel] = String.valueOf(yValAtRow);
+						rowLevel++;
+					}
+					columnLevel++;
+					rowLevel = 2;
 				}
-				columnLevel++;
-				rowLevel = 2;
 			}
 			rowLevel = 2;
 
@@ -2016,17 +2039,13 @@ public class HemoData implements Serializable {
 		for (HemoData data : datas) {
 			sectionName.add(data.name);
 			headers.add(data.xHeader.getName());
-			for (Header header : data.yValues.keySet()) {
-				sectionName.add("");
-				headers.add(header.getName());
-			}
-			for (Header header : data.yValuesDiff.keySet()) {
-				sectionName.add("");
-				headers.add("Diff " + header.getName());
-			}
-			for (Header header : data.yValuesDeriv.keySet()) {
-				sectionName.add("");
-				headers.add("Deriv " + header.getName());
+			String[] prefixes = { "", "Diff ", "Deriv " };
+			int[] families = { ColumnStore.VALUES, ColumnStore.DIFF, ColumnStore.DERIV };
+			for (int f = 0; f < families.length; f++) {
+				for (int i : data.columns.order(families[f])) {
+					sectionName.add("");
+					headers.add(prefixes[f] + data.columns.header(i).getName());
+				}
 			}
 
 		}
@@ -2121,15 +2140,21 @@ public class HemoData implements Serializable {
 
 	    if (xHeader != null && xHeader.equals(input)) return xHeader;
 
-	    for (Header h : yValues.keySet()) {
-	        if (h.equals(input)) return h;
+	    int id = columns.id(input);
+	    if (id >= 0) return columns.header(id);
+
+	    // headers are equal ignoring case, but hashed with case
+	    for (int i = 0; i < columns.size(); i++) {
+	        if (columns.header(i).equals(input)) return columns.header(i);
 	    }
 
 	    return input; // not found — might be new
 	}
 
 	/**
-	 * Creates a {@link HemoData} object from a specified {@link File}.
+	 * Creates a {@link HemoData} object from a specified {@link File}. Both the
+	 * binary columnar format (see {@link ColumnarFile}) and the older Java
+	 * serialization format can be read.
 	 * 
 	 * @param loadLocation input file, must not be null, exist in the file system,
 	 *                     be readable
@@ -2144,6 +2169,15 @@ public class HemoData implements Serializable {
 					"Unable to read HemoData stored state from file as the input file was null. ");
 
 		try {
+			if (ColumnarFile.isColumnarFile(loadLocation)) {
+				try (ColumnarReader reader = ColumnarReader.open(loadLocation, true)) {
+					if (reader.getKind() != ColumnarFile.KIND_HEMODATA) {
+						throw new IOException("File does not contain HemoData");
+					}
+					return readFrom(reader);
+				}
+			}
+
 			FileInputStream fileInputStream = new FileInputStream(loadLocation);
 			ObjectInputStream objInputStream = new ObjectInputStream(fileInputStream);
 
@@ -2162,8 +2196,9 @@ public class HemoData implements Serializable {
 	}
 
 	/**
-	 * Serializes a {@link HemoData} object to file. Does not check if something
-	 * already exists at the path - will just go ahead and overwrite it.
+	 * Serializes a {@link HemoData} object to file in the binary columnar format
+	 * (see {@link ColumnarFile}). Does not check if something already exists at
+	 * the path - will just go ahead and overwrite it.
 	 * 
 	 * @throws SerializationException if there was an issue with saving.
 	 */
@@ -2177,15 +2212,10 @@ public class HemoData implements Serializable {
 					+ "', which has incorrect extension. Expected \".hd\"");
 		}
 
-		FileOutputStream fileOutStream = null;
-		ObjectOutputStream objOutStream = null;
 		try {
-			fileOutStream = new FileOutputStream(saveLocation);
-			objOutStream = new ObjectOutputStream(fileOutStream);
-			objOutStream.writeObject(objToSerialize);
-
-			objOutStream.close();
-			fileOutStream.close();
+			ColumnarWriter writer = new ColumnarWriter(ColumnarFile.KIND_HEMODATA);
+			objToSerialize.writeTo(writer);
+			writer.save(saveLocation);
 		} catch (IOException e) {
 			throw new SerializationException(
 					"Unable to write serialized version of HemoData to a file. This could be due to the program not being able to "
@@ -2195,4 +2225,169 @@ public class HemoData implements Serializable {
 
 	}
 
+	/**
+	 * Writes all fields of this object. Read back with
+	 * {@link #readFrom(ColumnarReader)}.
+	 * 
+	 * @param writer the writer to write to
+	 */
+	void writeTo(ColumnarWriter writer) {
+		writer.writeString(file.getPath());
+		writer.writeString(fileName);
+		writer.writeString(name);
+		writer.writeHeader(xHeader);
+		writer.writeColumn(_xData());
+		_writeColumns(writer, ColumnStore.VALUES);
+		_writeColumns(writer, ColumnStore.DIFF);
+		_writeColumns(writer, ColumnStore.DERIV);
+
+		List<Header> flagged = headerFlags.headers();
+		writer.writeInt(flagged.size());
+		for (Header header : flagged) {
+			Set<String> flags = getFlags(header);
+			writer.writeHeader(header);
+			writer.writeInt(flags.size());
+			for (String flag : flags) {
+				writer.writeString(flag);
+			}
+		}
+	}
+
+	/**
+	 * Reads an object written with {@link #writeTo(ColumnarWriter)}. If the reader
+	 * was opened for metadata only, all data arrays will be null, so the returned
+	 * object is only useful for its names, headers and flags.
+	 * 
+	 * @param reader the reader to read from
+	 * @return the new object
+	 * @throws IOException if the data could not be read
+	 */
+	static HemoData readFrom(ColumnarReader reader) throws IOException {
+		String path = reader.readString();
+		String fileName = reader.readString();
+		if (path == null || fileName == null) {
+			throw new IOException("Stored HemoData is missing its file name");
+		}
+		HemoData data = new HemoData(new File(path), fileName, reader.readString());
+		data.xHeader = reader.readHeader();
+		data.xData = reader.readColumn();
+		data._readColumns(reader, ColumnStore.VALUES);
+		data._readColumns(reader, ColumnStore.DIFF);
+		data._readColumns(reader, ColumnStore.DERIV);
+
+		int flagged = reader.readInt();
+		for (int i = 0; i < flagged; i++) {
+			Header header = reader.readHeader();
+			int count = reader.readInt();
+			String[] flags = new String[count];
+			for (int j = 0; j < count; j++) {
+				flags[j] = reader.readString();
+			}
+			data.headerFlags.add(header, flags);
+		}
+		return data;
+	}
+
+	private void _writeColumns(ColumnarWriter writer, int family) {
+		int[] order = columns.order(family);
+		writer.writeInt(order.length);
+		for (int i : order) {
+			writer.writeHeader(columns.header(i));
+			writer.writeColumn(columns.get(family, i));
+		}
+	}
+
+	private void _readColumns(ColumnarReader reader, int family) throws IOException {
+		int count = reader.readInt();
+		for (int i = 0; i < count; i++) {
+			Header header = reader.readHeader();
+			double[] values = reader.readColumn();
+			if (family == ColumnStore.VALUES) {
+				columns.add(header, values);
+			} else {
+				int id = columns.id(header);
+				if (id < 0) {
+					throw new IOException("Stored HemoData has calculated values for missing column " + header);
+				}
+				columns.set(family, id, values);
+			}
+		}
+	}
+
+	/**
+	 * Writes this object with Java serialization, converting the Y data and flags
+	 * to the maps used by older versions (see {@link #serialPersistentFields}).
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("file", file);
+		fields.put("fileName", fileName);
+		fields.put("name", name);
+		fields.put("xHeader", xHeader);
+		fields.put("xData", _xData());
+		fields.put("yValues", _toMap(ColumnStore.VALUES));
+		fields.put("yValuesDiff", _toMap(ColumnStore.DIFF));
+		fields.put("yValuesDeriv", _toMap(ColumnStore.DERIV));
+		HashMap<Header, Set<String>> flaggedHeaders = new LinkedHashMap<Header, Set<String>>();
+		for (Header header : headerFlags.headers()) {
+			flaggedHeaders.put(header, new HashSet<String>(getFlags(header)));
+		}
+		fields.put("flaggedHeaders", flaggedHeaders);
+		out.writeFields();
+	}
+
+	/**
+	 * Reads an object saved with Java serialization, including by older versions
+	 * (see {@link #serialPersistentFields}).
+	 */
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		file = (File) fields.get("file", null);
+		fileName = (String) fields.get("fileName", null);
+		name = (String) fields.get("name", null);
+		xHeader = (Header) fields.get("xHeader", null);
+		xData = (double[]) fields.get("xData", null);
+		columns = new ColumnStore();
+		headerFlags = new FlagTable();
+
+		LinkedHashMap<Header, double[]> yValues = (LinkedHashMap<Header, double[]>) fields.get("yValues", null);
+		if (yValues != null) {
+			for (Entry<Header, double[]> en : yValues.entrySet()) {
+				columns.add(en.getKey(), en.getValue());
+			}
+		}
+		_fromMap(ColumnStore.DIFF, (LinkedHashMap<Header, double[]>) fields.get("yValuesDiff", null));
+		_fromMap(ColumnStore.DERIV, (LinkedHashMap<Header, double[]>) fields.get("yValuesDeriv", null));
+
+		HashMap<Header, Set<String>> flaggedHeaders = (HashMap<Header, Set<String>>) fields.get("flaggedHeaders",
+				null);
+		if (flaggedHeaders != null) {
+			for (Entry<Header, Set<String>> en : flaggedHeaders.entrySet()) {
+				headerFlags.add(en.getKey(),
+						en.getValue() == null ? new String[0] : en.getValue().toArray(new String[0]));
+			}
+		}
+	}
+
+	private LinkedHashMap<Header, double[]> _toMap(int family) {
+		LinkedHashMap<Header, double[]> map = new LinkedHashMap<Header, double[]>();
+		for (int i : columns.order(family)) {
+			map.put(columns.header(i), columns.get(family, i));
+		}
+		return map;
+	}
+
+	private void _fromMap(int family, LinkedHashMap<Header, double[]> map) {
+		if (map == null) {
+			return;
+		}
+		for (Entry<Header, double[]> en : map.entrySet()) {
+			int id = columns.id(en.getKey());
+			if (id >= 0) {
+				columns.set(family, id, en.getValue());
+			}
+		}
+	}
+
 }
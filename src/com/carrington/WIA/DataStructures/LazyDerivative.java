@@ -0,0 +1,108 @@
+package com.carrington.WIA.DataStructures;
+
+/**
+ * A differential or derivative of a column of a {@link HemoData} which has been
+ * requested but not yet calculated. It is calculated the first time the values
+ * are needed (see {@link ColumnStore#get(int, int)}), so that data which is
+ * never read (i.e. the derivatives of every beat) is never calculated.
+ * <p>
+ * The values are calculated exactly as by
+ * {@link HemoData#calculateDifferential(double[])},
+ * {@link HemoData#calculateDerivative(double[], double[])} and
+ * {@link HemoData#calculateDerivativeByFixedXInterval(double, double[])}. A
+ * range of it (see {@link #slice(int, int)}) gives the same values as the range
+ * of the calculated array would, including at its end.
+ * </p>
+ * <p>
+ * It reads the X and Y arrays when calculated rather than when requested, so
+ * these must not be modified in the meantime.
+ * </p>
+ */
+final class LazyDerivative {
+
+	/** X values to divide by, or null to divide by {@link #interval} */
+	private final ArraySlice x;
+	private final ArraySlice y;
+	private final double interval;
+	private final int from;
+	private final int length;
+
+	private LazyDerivative(ArraySlice x, ArraySlice y, double interval, int from, int length) {
+		this.x = x;
+		this.y = y;
+		this.interval = interval;
+		this.from = from;
+		this.length = length;
+	}
+
+	/**
+	 * @param y the values
+	 * @return the differential of the values
+	 */
+	static LazyDerivative differential(ArraySlice y) {
+		return new LazyDerivative(null, y, 1, 0, y.length());
+	}
+
+	/**
+	 * @param x the X values
+	 * @param y the Y values
+	 * @return the derivative of the Y values
+	 */
+	static LazyDerivative derivative(ArraySlice x, ArraySlice y) {
+		return new LazyDerivative(x, y, 1, 0, y.length());
+	}
+
+	/**
+	 * @param fixedX fixed X interval
+	 * @param y      the Y values
+	 * @return the derivative of the Y values using a fixed X interval
+	 */
+	static LazyDerivative derivative(double fixedX, ArraySlice y) {
+		return new LazyDerivative(null, y, fixedX, 0, y.length());
+	}
+
+	/**
+	 * @param x the new X values, if this is a derivative by X
+	 * @param y the new Y values
+	 * @return the same kind of differential or derivative, of new values
+	 */
+	LazyDerivative of(ArraySlice x, ArraySlice y) {
+		return new LazyDerivative(this.x == null ? null : x, y, interval, 0, y.length());
+	}
+
+	/**
+	 * @param from start index, inclusive
+	 * @param to   end index, exclusive
+	 * @return a range of this differential or derivative
+	 * @throws IndexOutOfBoundsException if the range is outside of this one
+	 */
+	LazyDerivative slice(int from, int to) {
+		if (from < 0 || to > length || from > to) {
+			throw new IndexOutOfBoundsException("Range " + from + " to " + to + " outside of length " + length);
+		}
+		return new LazyDerivative(x, y, interval, this.from + from, to - from);
+	}
+
+	/**
+	 * @return number of values
+	 */
+	int length() {
+		return length;
+	}
+
+	/**
+	 * @return the calculated values
+	 */
+	double[] calculate() {
+		double[] values = new double[length];
+		// the final value of the whole differential is the same as the second to last
+		int last = y.length() - 2;
+		for (int j = 0; j < length; j++) {
+			int i = Math.min(from + j, last);
+			double dx = x == null ? interval : x.get(i + 1) - x.get(i);
+			values[j] = (y.get(i + 1) - y.get(i)) / dx;
+		}
+		return values;
+	}
+
+}
@@ -2,29 +2,32 @@ package com.carrington.WIA.DataStructures;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.DoubleStream;
 
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.SerializationException;
 import org.apache.commons.math3.stat.descriptive.moment.Mean;
 
 import com.carrington.WIA.Utils;
 import com.carrington.WIA.Cardio.Wave;
 import com.carrington.WIA.Cardio.Wave.WaveClassification;
+import com.carrington.WIA.IO.ColumnarFile;
+import com.carrington.WIA.IO.ColumnarReader;
+import com.carrington.WIA.IO.ColumnarWriter;
 import com.carrington.WIA.IO.Header;
+import com.carrington.WIA.Math.WaveIntensityIndex;
+import com.carrington.WIA.Math.WaveIntensityKernel;
 
 /**
  * An object which carries wave intensity analysis data. This object can be
@@ -35,6 +38,10 @@ import com.carrington.WIA.IO.Header;
  * also supports serialization/deserialization, and allows updating of the raw
  * data.
  * </p>
+ * <p>
+ * Arrays returned by the getters belong to the underlying {@link HemoData} and
+ * must not be modified in place.
+ * </p>
  */
 public class WIAData implements Serializable {
 
@@ -103,6 +110,36 @@ public class WIAData implements Serializable {
 	private transient Double percIncACh = null;
 	private transient Double hMR = null;
 	private transient Double rMR = null; // resting microvascular resistance
+	/**
+	 * Values otherwise calculated from the data arrays, if this object was read
+	 * with {@link #deserializeSummary(File)} and the arrays are not yet loaded.
+	 */
+	private transient ArraySummary summary = null;
+
+	// Calculated values which are only recalculated when what they were
+	// calculated from has changed
+	/**
+	 * Results of {@link #runAnalysis()} for the current and original data, so
+	 * that switching back to data already analysed (i.e.
+	 * {@link #revertToOriginalHemoData()}) does not run the analysis again
+	 */
+	private transient IdentityHashMap<HemoData, Analysis> analyses = null;
+	/** Average interval of {@link #sepWaveIntensity} in seconds */
+	private transient BigDecimal sepIntervalS = null;
+	/**
+	 * The {@link #sepWaveIntensity} that {@link #sepIntervalS} and the integrals
+	 * are for
+	 */
+	private transient HemoData sepIntervalFor = null;
+	/** Index of the forward separated wave intensity, built when first needed */
+	private transient WaveIntensityIndex sepIndexForward = null;
+	/** Index of the backward separated wave intensity, built when first needed */
+	private transient WaveIntensityIndex sepIndexBackward = null;
+	/**
+	 * The {@link #sepWaveIntensity} each wave's peak and cumulative intensity was
+	 * last calculated from
+	 */
+	private transient IdentityHashMap<Wave, HemoData> wavesCalculatedFor = null;
 
 	/**
 	 * constant denoting location of diameter of coronary artery used for
@@ -131,6 +168,12 @@ public class WIAData implements Serializable {
 
 	}
 
+	/**
+	 * Constructs an empty object, for reading from a file. No analysis is run.
+	 */
+	private WIAData() {
+	}
+
 	/**
 	 * Adds the specified wave
 	 *
@@ -182,6 +225,10 @@ public class WIAData implements Serializable {
 	 */
 	public void removeWave(Wave wave) {
 		this.waves.remove(wave);
+		if (wavesCalculatedFor != null) {
+			// waves are equal by name, so the one removed may not be this instance
+			wavesCalculatedFor.keySet().removeIf(calculated -> !_isStoredWave(calculated));
+		}
 	}
 
 	/**
@@ -189,6 +236,7 @@ public class WIAData implements Serializable {
 	 */
 	public void clearWaves() {
 		this.waves.clear();
+		wavesCalculatedFor = null;
 	}
 
 	/**
@@ -213,6 +261,7 @@ public class WIAData implements Serializable {
 	 * @return the set of data used for wave intensity analysis
 	 */
 	public HemoData getData() {
+		_loadArrays();
 		return this.rawData;
 	}
 
@@ -259,27 +308,51 @@ public class WIAData implements Serializable {
 	/**
 	 * Returns the time array from the raw data.
 	 *
-	 * @return an array of time values
+	 * @return an array of time values. Not copied, so must not be modified
 	 */
 	public double[] getTime() {
+		_loadArrays();
 		return this.rawData.getXData();
 	}
 
+	/**
+	 * @return first value of the time array
+	 */
+	private double _timeStart() {
+		if (summary != null) {
+			return summary.timeStart;
+		}
+		return getTime()[0];
+	}
+
+	/**
+	 * @return last value of the time array
+	 */
+	private double _timeEnd() {
+		if (summary != null) {
+			return summary.timeEnd;
+		}
+		double[] time = getTime();
+		return time[time.length - 1];
+	}
+
 	/**
 	 * Returns the raw pressure data.
 	 *
-	 * @return an array of pressure values
+	 * @return an array of pressure values. Not copied, so must not be modified
 	 */
 	public double[] getRawPressure() {
+		_loadArrays();
 		return this.rawData.getYData(rawData.getHeaderByFlag(HemoData.TYPE_PRESSURE).get(0));
 	}
 
 	/**
 	 * Returns the raw flow data.
 	 *
-	 * @return an array of flow values
+	 * @return an array of flow values. Not copied, so must not be modified
 	 */
 	public double[] getRawFlow() {
+		_loadArrays();
 
 		return this.rawData.getYData(rawData.getHeaderByFlag(HemoData.TYPE_FLOW).get(0));
 	}
@@ -305,7 +378,7 @@ public class WIAData implements Serializable {
 	public double getMinPressure(boolean mmHg) {
 		boolean ismmHg = !rawData.getFlags(rawData.getHeaderByFlag(HemoData.TYPE_PRESSURE).get(0))
 				.contains(HemoData.UNIT_PASCAL);
-		double min = Utils.min(getRawPressure());
+		double min = summary != null ? summary.pressureMin : Utils.min(getRawPressure());
 		if (mmHg && !ismmHg) {
 			return Utils.convertPascalsToMMHG(min);
 		} else if (!mmHg && ismmHg) {
@@ -323,7 +396,7 @@ public class WIAData implements Serializable {
 	public double getMaxPressure(boolean mmHg) {
 		boolean ismmHg = !rawData.getFlags(rawData.getHeaderByFlag(HemoData.TYPE_PRESSURE).get(0))
 				.contains(HemoData.UNIT_PASCAL);
-		double max = Utils.max(getRawPressure());
+		double max = summary != null ? summary.pressureMax : Utils.max(getRawPressure());
 		if (mmHg && !ismmHg) {
 			return Utils.convertPascalsToMMHG(max);
 		} else if (!mmHg && ismmHg) {
@@ -354,7 +427,7 @@ public class WIAData implements Serializable {
 	public double getMinFlow(boolean cms) {
 		boolean isCMS = rawData.getFlags(rawData.getHeaderByFlag(HemoData.TYPE_FLOW).get(0))
 				.contains(HemoData.UNIT_CMperS);
-		double min = Utils.min(getRawFlow());
+		double min = summary != null ? summary.flowMin : Utils.min(getRawFlow());
 		if (cms && !isCMS) {
 			return Utils.multiply(min, 100).doubleValue();
 		} else if (!cms && isCMS) {
@@ -373,7 +446,7 @@ public class WIAData implements Serializable {
 	public double getMaxFlow(boolean cms) {
 		boolean isCMS = rawData.getFlags(rawData.getHeaderByFlag(HemoData.TYPE_FLOW).get(0))
 				.contains(HemoData.UNIT_CMperS);
-		double max = Utils.max(getRawFlow());
+		double max = summary != null ? summary.flowMax : Utils.max(getRawFlow());
 		if (cms && !isCMS) {
 			return Utils.multiply(max, 100).doubleValue();
 		} else if (!cms && isCMS) {
@@ -387,10 +460,12 @@ public class WIAData implements Serializable {
 	/**
 	 * Returns the calculated flow derivative.
 	 *
-	 * @return an array of flow derivative values
+	 * @return an array of flow derivative values. Not copied, so must not be
+	 *         modified
 	 * @throws IllegalStateException if the flow derivative has not been calculated
 	 */
 	public double[] getFlowDeriv() {
+		_loadArrays();
 		if (!this.rawData.isDerivativeCalculated(rawData.getHeaderByFlag(HemoData.TYPE_FLOW).get(0))) {
 			throw new IllegalStateException("Flow derivative not calculated.");
 		}
@@ -400,11 +475,13 @@ public class WIAData implements Serializable {
 	/**
 	 * Returns the calculated pressure derivative.
 	 *
-	 * @return an array of pressure derivative values
+	 * @return an array of pressure derivative values. Not copied, so must not
+	 *         be modified
 	 * @throws IllegalStateException if the pressure derivative has not been
 	 *                               calculated
 	 */
 	public double[] getPressureDeriv() {
+		_loadArrays();
 		if (!this.rawData.isDerivativeCalculated(rawData.getHeaderByFlag(HemoData.TYPE_PRESSURE).get(0))) {
 			throw new IllegalStateException("Pressure derivative not calculated.");
 		}
@@ -414,10 +491,12 @@ public class WIAData implements Serializable {
 	/**
 	 * Returns the net wave intensity.
 	 *
-	 * @return an array of net wave intensity values
+	 * @return an array of net wave intensity values. Not copied, so must not be
+	 *         modified
 	 * @throws IllegalStateException if the net wave intensity has not been stored
 	 */
 	public double[] getNetWaveIntensity() {
+		_loadArrays();
 		if (this.netWaveIntensity == null) {
 			throw new IllegalStateException("Net wave intenstiy not yet stored.");
 		}
@@ -427,11 +506,13 @@ public class WIAData implements Serializable {
 	/**
 	 * Returns the separated forward flow derivative.
 	 *
-	 * @return an array of separated forward flow derivative values
+	 * @return an array of separated forward flow derivative values. Not copied,
+	 *         so must not be modified
 	 * @throws IllegalStateException if the separated flow derivative data has not
 	 *                               been stored
 	 */
 	public double[] getSepFlowForwardDeriv() {
+		_loadArrays();
 		if (this.sepFlowDeriv == null) {
 			throw new IllegalStateException("Separated flow not yet stored.");
 		}
@@ -443,11 +524,13 @@ public class WIAData implements Serializable {
 	/**
 	 * Returns the separated backward flow derivative.
 	 *
-	 * @return an array of separated backward flow derivative values
+	 * @return an array of separated backward flow derivative values. Not
+	 *         copied, so must not be modified
 	 * @throws IllegalStateException if the separated flow derivative data has not
 	 *                               been stored
 	 */
 	public double[] getSepFlowBackwardDeriv() {
+		_loadArrays();
 		if (this.sepFlowDeriv == null) {
 			throw new IllegalStateException("Separated flow not yet stored.");
 		}
@@ -459,11 +542,13 @@ public class WIAData implements Serializable {
 	/**
 	 * Returns the separated forward wave intensity.
 	 *
-	 * @return an array of separated forward wave intensity values
+	 * @return an array of separated forward wave intensity values. Not copied,
+	 *         so must not be modified
 	 * @throws IllegalStateException if the separated wave intensity data has not
 	 *                               been stored
 	 */
 	public double[] getWIForward() {
+		_loadArrays();
 		if (this.sepWaveIntensity == null) {
 			throw new IllegalStateException("Separated wave intensity not yet stored.");
 		}
@@ -478,11 +563,13 @@ public class WIAData implements Serializable {
 	/**
 	 * Returns the separated backward wave intensity.
 	 *
-	 * @return an array of separated backward wave intensity values
+	 * @return an array of separated backward wave intensity values. Not copied,
+	 *         so must not be modified
 	 * @throws IllegalStateException if the separated wave intensity data has not
 	 *                               been stored
 	 */
 	public double[] getWIBackward() {
+		_loadArrays();
 		if (this.sepWaveIntensity == null) {
 			throw new IllegalStateException("Separated wave intensity not yet stored.");
 		}
@@ -676,8 +763,7 @@ public class WIAData implements Serializable {
 			// systole or diastole was not set by the user
 			return null;
 		}
-		double[] time = getTime();
-		double end = isValidDouble(cycleEndManual) ? cycleEndManual : time[time.length - 1];
+		double end = isValidDouble(cycleEndManual) ? cycleEndManual : _timeEnd();
 
 		if (systoleTime > end && diastoleTime > end) {
 			return null;
@@ -685,7 +771,7 @@ public class WIAData implements Serializable {
 
 		double diastoleDuration;
 		if (diastoleTime > systoleTime) {
-			diastoleDuration = (end - diastoleTime) + (systoleTime - time[0]);
+			diastoleDuration = (end - diastoleTime) + (systoleTime - _timeStart());
 		} else {
 			diastoleDuration = systoleTime - diastoleTime;
 
@@ -707,6 +793,8 @@ public class WIAData implements Serializable {
 		if (!isValidDouble(systoleTime, diastoleTime)) {
 			// systole or diastole was not set by the user
 			return null;
+		} else if (summary != null) {
+			return summary.diastoleToFlowPeak;
 		}
 
 		double[] flow = getRawFlow();
@@ -751,9 +839,8 @@ public class WIAData implements Serializable {
 	 */
 	public Double getCycleDuration() {
 
-		double[] time = getTime();
-		double timeEnd = isValidDouble(cycleEndManual) ? cycleEndManual : time[time.length - 1];
-		double cycleLength = timeEnd - time[0];
+		double timeEnd = isValidDouble(cycleEndManual) ? cycleEndManual : _timeEnd();
+		double cycleLength = timeEnd - _timeStart();
 
 		if (cycleLength < 250)
 			return null;
@@ -769,6 +856,7 @@ public class WIAData implements Serializable {
 	 * @return a two-dimensional String array representing CSV rows and columns
 	 */
 	public String[][] toCSV(String name) {
+		_loadArrays();
 		if (name == null)
 			name = "";
 
@@ -898,7 +986,10 @@ public class WIAData implements Serializable {
 	 * Recalculates the wave peaks and resistance.
 	 */
 	public void retryCalculations() {
-		calculateWavePeaksAndSum();
+		if (summary == null) {
+			// otherwise the peaks stored with the summary are already current
+			calculateWavePeaksAndSum();
+		}
 		calculateResistance();
 	}
 
@@ -919,9 +1010,16 @@ public class WIAData implements Serializable {
 	}
 
 	/**
-	 * Calculates the peaks and cumulative intensities for a wave.
+	 * Calculates the peaks and cumulative intensities for a wave. Nothing is done
+	 * if they were already calculated for the current separated wave intensity.
 	 */
 	public void calculateWavePeaksAndSum(Wave wave) {
+		_loadArrays();
+		if (wavesCalculatedFor == null) {
+			wavesCalculatedFor = new IdentityHashMap<Wave, HemoData>();
+		} else if (wavesCalculatedFor.get(wave) == sepWaveIntensity) {
+			return;
+		}
 		double[] waveIntensity;
 		if (wave.isProximal()) {
 			waveIntensity = this.sepWaveIntensity
@@ -932,19 +1030,77 @@ public class WIAData implements Serializable {
 					.getYData(sepWaveIntensity.getHeaderByFlag(HemoData.TYPE_SEP_WIA_BACK).get(0));
 
 		}
+		WaveIntensityIndex index = _sepIndex(wave.isProximal(), waveIntensity);
 
+		// bounds are clamped to the data, as when the wave was taken as a sub array
 		int[] waveBoundIndices = wave.getBoundsTimeIndex();
-		double[] subWaveIntensity = ArrayUtils.subarray(waveIntensity, waveBoundIndices[0], waveBoundIndices[1]);
+		int start = Math.max(waveBoundIndices[0], 0);
+		int end = Math.max(Math.min(waveBoundIndices[1], index.size()), start);
+
+		wave.setCumulativeIntensity(index.integral(start, end));
+		int peakIndex = index.peakIndex(start, end);
+		if (peakIndex < 0) {
+			wave.setPeakTime(Double.NaN);
+			wave.setPeak(Double.NEGATIVE_INFINITY);
+		} else {
+			wave.setPeakTime(sepWaveIntensity.getXData()[peakIndex]);
+			wave.setPeak(index.get(peakIndex));
+		}
+		if (!_isStoredWave(wave)) {
+			// i.e. a preview while selecting a wave, which is only calculated once
+			return;
+		}
+		wavesCalculatedFor.put(wave, sepWaveIntensity);
+	}
 
-		BigDecimal timeIntervalS = new BigDecimal(
-				HemoData.calculateAverageInterval(sepWaveIntensity.convertXUnitsCopy(HemoData.UNIT_SECONDS)));
+	/**
+	 * @return average time interval of the separated wave intensity, in seconds
+	 */
+	private BigDecimal _sepIntervalS() {
+		if (sepIntervalFor != sepWaveIntensity) {
+			sepIntervalS = new BigDecimal(
+					HemoData.calculateAverageInterval(sepWaveIntensity.convertXUnitsCopy(HemoData.UNIT_SECONDS)));
+			sepIntervalFor = sepWaveIntensity;
+			sepIndexForward = null;
+			sepIndexBackward = null;
+		}
+		return sepIntervalS;
+	}
 
-		wave.setCumulativeIntensity(Utils.getAreaUnderCurve(timeIntervalS, subWaveIntensity));
-		double[] peakData = Utils.absoluteMax(
-				ArrayUtils.subarray(sepWaveIntensity.getXData(), waveBoundIndices[0], waveBoundIndices[1]),
-				subWaveIntensity);
-		wave.setPeakTime(peakData[0]);
-		wave.setPeak(peakData[1]);
+	/**
+	 * Gets the index of the forward or backward separated wave intensity, building
+	 * it the first time it is needed for the current separated wave intensity, so
+	 * that each wave is calculated without going over its range again
+	 *
+	 * @param forward       true for forward, false for backward
+	 * @param waveIntensity the forward or backward separated wave intensity
+	 * @return the index
+	 */
+	private WaveIntensityIndex _sepIndex(boolean forward, double[] waveIntensity) {
+		double interval = _sepIntervalS().doubleValue();
+		if (forward) {
+			if (sepIndexForward == null) {
+				sepIndexForward = new WaveIntensityIndex(interval, waveIntensity);
+			}
+			return sepIndexForward;
+		} else {
+			if (sepIndexBackward == null) {
+				sepIndexBackward = new WaveIntensityIndex(interval, waveIntensity);
+			}
+			return sepIndexBackward;
+		}
+	}
+
+	/**
+	 * @return true if this exact wave (not just one with the same name) is stored
+	 */
+	private boolean _isStoredWave(Wave wave) {
+		for (Wave stored : waves) {
+			if (stored == wave) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	/**
@@ -1064,10 +1220,12 @@ public class WIAData implements Serializable {
 	 * Reverts the current raw data to the originally stored data.
 	 * <p>
 	 * If an original data copy exists, it replaces the current raw data and re-runs
-	 * the analysis.
+	 * the analysis. If the original data was analysed by this object before and
+	 * has not changed since, the results of that analysis are restored instead.
 	 * </p>
 	 */
 	public void revertToOriginalHemoData() {
+		_loadArrays();
 		if (this.originalData != null) {
 			this.rawData = this.originalData;
 			this.originalData = null;
@@ -1089,6 +1247,7 @@ public class WIAData implements Serializable {
 	 *                                  headers
 	 */
 	public void setNewHemoData(HemoData newData) {
+		_loadArrays();
 		if (newData == null) {
 			throw new IllegalArgumentException("New HemoData cannot be null.");
 		}
@@ -1147,7 +1306,7 @@ public class WIAData implements Serializable {
 		diastolePressure = Double.NaN;
 		diastoleTime = Double.NaN;
 		cycleEndManual = null;
-		waves.clear();
+		clearWaves();
 
 		// Clear transient calculated parameters.
 		cfr = null;
@@ -1174,11 +1333,24 @@ public class WIAData implements Serializable {
 	 * and re-calculating wave peaks and resistance. Finally, the raw data's time
 	 * units are restored.
 	 * </p>
+	 * <p>
+	 * If the raw data was already analysed by this object, and its time, pressure
+	 * and flow have not changed since, the stored results are used instead of
+	 * calculating them again.
+	 * </p>
 	 *
 	 * @throws IllegalStateException if the analysis cannot be performed due to
 	 *                               missing data
 	 */
 	public void runAnalysis() throws IllegalStateException {
+		_loadArrays();
+		Analysis analysis = analyses == null ? null : analyses.get(rawData);
+		if (analysis != null && analysis.isCurrent(rawData)) {
+			analysis.restore(this);
+			retryCalculations();
+			return;
+		}
+
 		rawData.convertXUnits(HemoData.UNIT_SECONDS); // TODO: make this smarter
 		Header headerPressure = rawData.getHeaderByFlag(HemoData.TYPE_PRESSURE).get(0);
 		rawData.convertYUnits(headerPressure, HemoData.UNIT_PASCAL);
@@ -1189,11 +1361,8 @@ public class WIAData implements Serializable {
 		rawData.calculateDerivative(headerFlow, null);
 		rawData.calculateDiff(headerFlow);
 
-		// calculate the C value.
-		_calculateSinglePointWavespeed();
-		_calculateNetWaveIntensity();
-		_calculateSeparatedWaveIntensity();
-		_calculateSeparatedFlow();
+		// calculate the C value, then wave intensity
+		_calculateWaveIntensity();
 		_calculateTotalCumulativeIntensities();
 
 		retryCalculations();
@@ -1201,119 +1370,59 @@ public class WIAData implements Serializable {
 		// kept in miliseconds at default for ease of displaying
 		rawData.convertXUnits(HemoData.UNIT_MILLISECONDS);
 
+		// only the current and original data can be switched back to
+		IdentityHashMap<HemoData, Analysis> kept = new IdentityHashMap<HemoData, Analysis>();
+		if (originalData != null && analyses != null && analyses.containsKey(originalData)) {
+			kept.put(originalData, analyses.get(originalData));
+		}
+		kept.put(rawData, new Analysis(this));
+		analyses = kept;
+
 	}
 
 	/**
-	 * Helper method to {@link WIAData#runAnalysis()}
+	 * Helper method to {@link WIAData#runAnalysis()}. Calculates the single point
+	 * wave speed, then net and separated wave intensity and separated flow (see
+	 * {@link WaveIntensityKernel}).
 	 */
-	private void _calculateNetWaveIntensity() {
-		// note the derivative arrays should be the same sime
+	private void _calculateWaveIntensity() {
+
+		// dU+ = (1 / [2 * p * c]) * (dP + [p * c * dU])
+		// dU- = -1 / ( 2 * p * c * [ dP - [p * c * dU] ] )
 
 		double[] pressureDeriv = getPressureDeriv();
 		double[] flowDeriv = getFlowDeriv();
 
-		double[] netWaveIntensityD = new double[pressureDeriv.length];
+		double rhoC = WaveIntensityKernel.rhoC(pressureDeriv, flowDeriv);
+		rho = rhoC;
+		waveSpeedC = rhoC / density;
 
-		for (int der = 0; der < pressureDeriv.length; der++) {
-			netWaveIntensityD[der] = pressureDeriv[der] * flowDeriv[der];
-		}
+		int n = pressureDeriv.length;
+		double[] netWaveIntensityD = new double[n];
+		double[] separatedWIForward = new double[n];
+		double[] separatedWIBackward = new double[n];
+		double[] dUPos = new double[n];
+		double[] dUNeg = new double[n];
+		WaveIntensityKernel.separate(pressureDeriv, flowDeriv, rho, netWaveIntensityD, separatedWIForward,
+				separatedWIBackward, dUPos, dUNeg);
 
 		HemoData hdNetWI = rawData.blankCopyOf(true, "Net Wave Intensity");
-
 		hdNetWI.addYData(new Header("Net Wave Intensity", 1, false), netWaveIntensityD, HemoData.TYPE_NET_WIA,
 				HemoData.UNIT_WAVE);
-
 		this.netWaveIntensity = hdNetWI;
-	}
-
-	/**
-	 * Helper method to {@link WIAData#runAnalysis()}
-	 */
-	private void _calculateSinglePointWavespeed() {
-
-		double[] pressureDiff = getPressureDeriv();
-		double[] flowDiff = getFlowDeriv();
-
-		double[] squaredPressureDiff = new double[pressureDiff.length];
-		double[] squaredFlowDiff = new double[flowDiff.length];
-
-		for (int i = 0; i < flowDiff.length; i++) {
-
-			squaredPressureDiff[i] = Math.pow(pressureDiff[i], 2);
-			squaredFlowDiff[i] = Math.pow(flowDiff[i], 2);
-		}
-
-		double sumOfSquaresPressure = DoubleStream.of(squaredPressureDiff).sum();
-		double sumOfSquaresFlow = DoubleStream.of(squaredFlowDiff).sum();
-
-		double rhoC = Math.sqrt(sumOfSquaresPressure / sumOfSquaresFlow);
-
-		double c = rhoC / density;
-
-		rho = rhoC;
-		waveSpeedC = c;
-
-	}
-
-	/**
-	 * Helper method to {@link WIAData#runAnalysis()}
-	 */
-	private void _calculateSeparatedWaveIntensity() {
-		double[] pressureDeriv = getPressureDeriv();
-		double[] flowDeriv = getFlowDeriv();
-
-		double multipConstantForward = 1.0 / (4.0 * rho);
-		double multipConstantBackward = -1.0 / (4.0 * rho);
-
-		double[] separatedWIForward = new double[pressureDeriv.length];
-		double[] separatedWIBackward = new double[pressureDeriv.length];
-
-		for (int i = 0; i < flowDeriv.length; i++) {
-			double pcdUdT = rho * flowDeriv[i];
-			double dPdT = pressureDeriv[i];
-			separatedWIForward[i] = multipConstantForward * Math.pow((dPdT + pcdUdT), 2);
-			separatedWIBackward[i] = multipConstantBackward * Math.pow((dPdT - pcdUdT), 2);
-
-		}
 
 		HemoData hdSepWI = rawData.blankCopyOf(true, "Separated Wave Intensity");
-
 		hdSepWI.addYData(new Header("Separated WI Forward", 1, false), separatedWIForward, HemoData.TYPE_SEP_WIA_FORW,
 				HemoData.UNIT_WAVE);
 		hdSepWI.addYData(new Header("Separated WI Backward", 2, false), separatedWIBackward, HemoData.TYPE_SEP_WIA_BACK,
 				HemoData.UNIT_WAVE);
-
 		this.sepWaveIntensity = hdSepWI;
 
-	}
-
-	/**
-	 * Helper method to {@link WIAData#runAnalysis()}
-	 */
-	private void _calculateSeparatedFlow() {
-
-		// dU+ = (1 / [2 * p * c]) * (dP + [p * c * dU])
-		// dU- = -1 / ( 2 * p * c * [ dP - [p * c * dU] ] )
-
-		double[] pressureDeriv = getPressureDeriv();
-		double[] flowDeriv = getFlowDeriv();
-		double[] time = getTime();
-
-		double[] dUPos = new double[pressureDeriv.length];
-		double[] dUNeg = new double[pressureDeriv.length];
-
-		for (int i = 0; i < time.length; i++) {
-			dUPos[i] = (1.0 / (2.0 * rho)) * (pressureDeriv[i] + (rho * flowDeriv[i]));
-			dUNeg[i] = -1.0 / (2.0 * rho * (pressureDeriv[i] - (rho * flowDeriv[i])));
-		}
-
 		HemoData hdSepFlowDeriv = rawData.blankCopyOf(true, "Separated Flow Derivative (Separated Acceleration)");
-
 		hdSepFlowDeriv.addYData(new Header("Separated Flow Deriv Forward", 1, false), dUPos,
 				HemoData.TYPE_SEP_FLOW_DERIV_FORW, HemoData.UNIT_ACCEL_MS);
 		hdSepFlowDeriv.addYData(new Header("Separated Flow Deriv Backward", 2, false), dUNeg,
 				HemoData.TYPE_SEP_FLOW_DERIV_BACK, HemoData.UNIT_ACCEL_MS);
-
 		this.sepFlowDeriv = hdSepFlowDeriv;
 
 	}
@@ -1322,16 +1431,16 @@ public class WIAData implements Serializable {
 	 * Helper method to {@link WIAData#runAnalysis()}
 	 */
 	private void _calculateTotalCumulativeIntensities() {
-		BigDecimal timeIntervalSepS = new BigDecimal(
-				HemoData.calculateAverageInterval(sepWaveIntensity.convertXUnitsCopy(HemoData.UNIT_SECONDS)));
+		// Convert from milliseconds to seconds (is in ms for easier display on graph).
+		// Net and separated wave intensity are both copied from the same raw X data,
+		// so share the interval
+		// The totals are a single pass each, so they do not build the wave indices,
+		// which are only needed once waves are selected
+		BigDecimal timeIntervalS = _sepIntervalS();
 
-		this.cumulativeWIForward = Utils.getAreaUnderCurve(timeIntervalSepS, getWIForward());
-		this.cumulativeWIBackward = Utils.getAreaUnderCurve(timeIntervalSepS, getWIBackward());
-
-		// Convert from milliseconds to seconds (is in ms for easier display on graph)
-		BigDecimal timeIntervalNetS = new BigDecimal(
-				HemoData.calculateAverageInterval(netWaveIntensity.convertXUnitsCopy(HemoData.UNIT_SECONDS)));
-		this.cumulativeWINet = Utils.getAreaUnderCurve(timeIntervalNetS, getNetWaveIntensity());
+		this.cumulativeWIForward = Utils.getAreaUnderCurve(timeIntervalS, getWIForward());
+		this.cumulativeWIBackward = Utils.getAreaUnderCurve(timeIntervalS, getWIBackward());
+		this.cumulativeWINet = Utils.getAreaUnderCurve(timeIntervalS, getNetWaveIntensity());
 
 	}
 
@@ -1520,10 +1629,21 @@ public class WIAData implements Serializable {
 
 		retryCalculations();
 
-		double maxPressure = Utils.convertPascalsToMMHG(Utils.max(getRawPressure()));
-		double minPressure = Utils.convertPascalsToMMHG(Utils.min(getRawPressure()));
-		double maxFlow = Utils.max(getRawFlow());
-		double minFlow = Utils.min(getRawFlow());
+		double maxPressure;
+		double minPressure;
+		double maxFlow;
+		double minFlow;
+		if (summary != null) {
+			maxPressure = Utils.convertPascalsToMMHG(summary.pressureMax);
+			minPressure = Utils.convertPascalsToMMHG(summary.pressureMin);
+			maxFlow = summary.flowMax;
+			minFlow = summary.flowMin;
+		} else {
+			maxPressure = Utils.convertPascalsToMMHG(Utils.max(getRawPressure()));
+			minPressure = Utils.convertPascalsToMMHG(Utils.min(getRawPressure()));
+			maxFlow = Utils.max(getRawFlow());
+			minFlow = Utils.min(getRawFlow());
+		}
 
 		paramValues.put("File Name", rawData.getFile().getPath());
 		paramValues.put("Selection Name", this.selectionName == null ? "" : this.selectionName);
@@ -1707,7 +1827,8 @@ public class WIAData implements Serializable {
 	}
 
 	/**
-	 * Deserializes the object from a file.
+	 * Deserializes the object from a file. Both the binary columnar format (see
+	 * {@link ColumnarFile}) and the older Java serialization format can be read.
 	 * 
 	 * @param file The file to load from
 	 * @return the {@link WIAData} object if could be created
@@ -1716,14 +1837,24 @@ public class WIAData implements Serializable {
 	public static WIAData deserialize(File file) throws SerializationException {
 
 		try {
-			FileInputStream fileInputStream = new FileInputStream(file);
-			ObjectInputStream objInputStream = new ObjectInputStream(fileInputStream);
+			WIAData data;
+			if (ColumnarFile.isColumnarFile(file)) {
+				try (ColumnarReader reader = ColumnarReader.open(file, true)) {
+					if (reader.getKind() != ColumnarFile.KIND_WIADATA) {
+						throw new IOException("File does not contain WIA data");
+					}
+					data = _readFrom(reader);
+				}
+			} else {
+				FileInputStream fileInputStream = new FileInputStream(file);
+				ObjectInputStream objInputStream = new ObjectInputStream(fileInputStream);
 
-			WIAData data = (WIAData) objInputStream.readObject();
-			data.deserializedFile = file;
+				data = (WIAData) objInputStream.readObject();
 
-			objInputStream.close();
-			fileInputStream.close();
+				objInputStream.close();
+				fileInputStream.close();
+			}
+			data.deserializedFile = file;
 
 			return data;
 		} catch (IOException | ClassNotFoundException e) {
@@ -1737,22 +1868,88 @@ public class WIAData implements Serializable {
 	}
 
 	/**
-	 * Serializes this object to file. Does not check if something already exists at
-	 * the path - will just go ahead and overwrite it.
+	 * Reads only the stored values needed for statistics (names, waves, scalar
+	 * values and a summary of the data arrays) without loading any of the data
+	 * arrays, which are usually the bulk of the file. If anything later needs the
+	 * arrays, i.e. {@link #getData()}, they are loaded from the file at that
+	 * point.
+	 * <p>
+	 * Files in the older Java serialization format, or saved before the summary
+	 * was stored, are loaded in full.
+	 * </p>
+	 * 
+	 * @param file The file to load from
+	 * @return the {@link WIAData} object if could be created
+	 * @throws SerializationException if there was any issue during deserialization
+	 */
+	public static WIAData deserializeSummary(File file) throws SerializationException {
+
+		try {
+			if (ColumnarFile.isColumnarFile(file)) {
+				try (ColumnarReader reader = ColumnarReader.open(file, false)) {
+					if (hasSummary(reader)) {
+						return readSummary(reader, file);
+					}
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new SerializationException(
+					"Unable to read WIA data stored state from file. This may be due to lack of access / permission of this program "
+							+ "to read files from your file system. Check administrator privileges. System error msg: <br><br>"
+							+ e.getMessage());
+		}
+
+		return deserialize(file);
+	}
+
+	/**
+	 * Determines if the values needed for statistics can be read from this reader
+	 * with {@link #readSummary(ColumnarReader, File)}, which requires it to hold
+	 * a {@link WIAData} saved with a summary of its data arrays.
+	 * 
+	 * @param reader reader opened for metadata only
+	 * @return true if a summary can be read
+	 */
+	public static boolean hasSummary(ColumnarReader reader) {
+		return reader.getKind() == ColumnarFile.KIND_WIADATA && reader.getVersion() >= 2 && !reader.hasColumns();
+	}
+
+	/**
+	 * Reads the values needed for statistics from a reader opened for metadata
+	 * only, as with {@link #deserializeSummary(File)}. This allows the metadata to
+	 * come from somewhere other than the file itself, i.e. a
+	 * {@link com.carrington.WIA.IO.CohortIndex}.
+	 * 
+	 * @param reader reader opened for metadata only, positioned at the start
+	 * @param file   the file the metadata was read from, and from which the data
+	 *               arrays will be loaded if needed
+	 * @return the {@link WIAData} object
+	 * @throws IOException if the metadata is invalid or does not hold a summary
+	 *                     (see {@link #hasSummary(ColumnarReader)})
+	 */
+	public static WIAData readSummary(ColumnarReader reader, File file) throws IOException {
+		if (!hasSummary(reader)) {
+			throw new IOException("File " + file.getName() + " does not contain a summary of WIA data");
+		}
+		WIAData data = _readFrom(reader);
+		data.deserializedFile = file;
+		return data;
+	}
+
+	/**
+	 * Serializes this object to file in the binary columnar format (see
+	 * {@link ColumnarFile}). Does not check if something already exists at the
+	 * path - will just go ahead and overwrite it.
 	 * 
 	 * @throws SerializationException if there was an issue with saving.
 	 */
 	public static void serialize(WIAData serialize, File file) throws SerializationException {
 
-		FileOutputStream fileOutStream = null;
-		ObjectOutputStream objOutStream = null;
 		try {
-			fileOutStream = new FileOutputStream(file);
-			objOutStream = new ObjectOutputStream(fileOutStream);
-			objOutStream.writeObject(serialize);
-
-			objOutStream.close();
-			fileOutStream.close();
+			ColumnarWriter writer = new ColumnarWriter(ColumnarFile.KIND_WIADATA);
+			serialize._writeTo(writer);
+			writer.save(file);
 		} catch (IOException e) {
 			throw new SerializationException(
 					"Unable to write serialized version of WIA data to a file. This could be due to the program not being able to "
@@ -1762,4 +1959,275 @@ public class WIAData implements Serializable {
 
 	}
 
+	/**
+	 * Converts a file saved with the older Java serialization format to the binary
+	 * columnar format, in place. Files already in the columnar format are left
+	 * alone.
+	 * 
+	 * @param file the file to convert
+	 * @return true if the file was converted, false if it was already in the
+	 *         columnar format
+	 * @throws SerializationException if the file could not be read or rewritten
+	 */
+	public static boolean migrate(File file) throws SerializationException {
+		try {
+			if (ColumnarFile.isColumnarFile(file)) {
+				return false;
+			}
+		} catch (IOException e) {
+			throw new SerializationException("Unable to read WIA data file " + file.getName() + ". System error msg: "
+					+ e.getMessage());
+		}
+		serialize(deserialize(file), file);
+		return true;
+	}
+
+	/**
+	 * Writes all stored fields. Read back with {@link #_readFrom(ColumnarReader)}.
+	 */
+	private void _writeTo(ColumnarWriter writer) {
+		_loadArrays();
+		writer.writeString(selectionName);
+		_writeHemoData(writer, rawData);
+		_writeHemoData(writer, sepWaveIntensity);
+		_writeHemoData(writer, netWaveIntensity);
+		_writeHemoData(writer, sepFlowDeriv);
+		writer.writeDouble(waveSpeedC);
+		writer.writeDouble(rho);
+		writer.writeDouble(flowAvg);
+		writer.writeDouble(pressureAvg);
+
+		writer.writeNullableDouble(systoleTime);
+		writer.writeNullableDouble(systolePressure);
+		writer.writeNullableDouble(systoleFlow);
+		writer.writeNullableDouble(diastoleTime);
+		writer.writeNullableDouble(diastolePressure);
+		writer.writeNullableDouble(diastoleFlow);
+		writer.writeNullableDouble(resistCycle);
+		writer.writeNullableDouble(resistSystole);
+		writer.writeNullableDouble(resistDiastole);
+
+		writer.writeDouble(cumulativeWIForward);
+		writer.writeDouble(cumulativeWIBackward);
+		writer.writeDouble(cumulativeWINet);
+
+		writer.writeInt(waves.size());
+		for (Wave wave : waves) {
+			double[] bounds = wave.getBoundsTime();
+			int[] boundsIndex = wave.getBoundsTimeIndex();
+			writer.writeString(wave.getAbbrev());
+			writer.writeString(wave.getType().name());
+			writer.writeDouble(bounds[0]);
+			writer.writeDouble(bounds[1]);
+			writer.writeInt(boundsIndex[0]);
+			writer.writeInt(boundsIndex[1]);
+			writer.writeBoolean(wave.isProximal());
+			writer.writeDouble(wave.getPeak());
+			writer.writeDouble(wave.getPeakTime());
+			writer.writeDouble(wave.getCumulativeIntensity());
+		}
+
+		writer.writeNullableDouble(vesselDiameter);
+		_writeHemoData(writer, originalData);
+		writer.writeNullableDouble(cycleEndManual);
+
+		// summary of the arrays, for reading with deserializeSummary()
+		double[] time = getTime();
+		double[] pressure = getRawPressure();
+		double[] flow = getRawFlow();
+		writer.writeDouble(time[0]);
+		writer.writeDouble(time[time.length - 1]);
+		writer.writeDouble(Utils.min(pressure));
+		writer.writeDouble(Utils.max(pressure));
+		writer.writeDouble(Utils.min(flow));
+		writer.writeDouble(Utils.max(flow));
+		writer.writeNullableDouble(getDiastoleToFlowPeakDuration());
+	}
+
+	/**
+	 * Reads an object written with {@link #_writeTo(ColumnarWriter)}, without
+	 * re-running the analysis.
+	 */
+	private static WIAData _readFrom(ColumnarReader reader) throws IOException {
+		WIAData data = new WIAData();
+		data.selectionName = reader.readString();
+		data.rawData = _readHemoData(reader);
+		data.sepWaveIntensity = _readHemoData(reader);
+		data.netWaveIntensity = _readHemoData(reader);
+		data.sepFlowDeriv = _readHemoData(reader);
+		data.waveSpeedC = reader.readDouble();
+		data.rho = reader.readDouble();
+		data.flowAvg = reader.readDouble();
+		data.pressureAvg = reader.readDouble();
+
+		data.systoleTime = reader.readNullableDouble();
+		data.systolePressure = reader.readNullableDouble();
+		data.systoleFlow = reader.readNullableDouble();
+		data.diastoleTime = reader.readNullableDouble();
+		data.diastolePressure = reader.readNullableDouble();
+		data.diastoleFlow = reader.readNullableDouble();
+		data.resistCycle = reader.readNullableDouble();
+		data.resistSystole = reader.readNullableDouble();
+		data.resistDiastole = reader.readNullableDouble();
+
+		data.cumulativeWIForward = reader.readDouble();
+		data.cumulativeWIBackward = reader.readDouble();
+		data.cumulativeWINet = reader.readDouble();
+
+		int waveCount = reader.readInt();
+		for (int i = 0; i < waveCount; i++) {
+			String name = reader.readString();
+			String typeName = reader.readString();
+			WaveClassification type = WaveClassification.OTHER;
+			for (WaveClassification classification : WaveClassification.values()) {
+				if (classification.name().equals(typeName)) {
+					type = classification;
+					break;
+				}
+			}
+			double timeStart = reader.readDouble();
+			double timeEnd = reader.readDouble();
+			int indexStart = reader.readInt();
+			int indexEnd = reader.readInt();
+			boolean proximal = reader.readBoolean();
+			Wave wave = new Wave(name, type, timeStart, timeEnd, indexStart, indexEnd, proximal);
+			wave.setPeak(reader.readDouble());
+			wave.setPeakTime(reader.readDouble());
+			wave.setCumulativeIntensity(reader.readDouble());
+			data.waves.add(wave);
+		}
+
+		data.vesselDiameter = reader.readNullableDouble();
+		data.originalData = _readHemoData(reader);
+		data.cycleEndManual = reader.readNullableDouble();
+
+		if (reader.getVersion() >= 2) {
+			ArraySummary summary = new ArraySummary();
+			summary.timeStart = reader.readDouble();
+			summary.timeEnd = reader.readDouble();
+			summary.pressureMin = reader.readDouble();
+			summary.pressureMax = reader.readDouble();
+			summary.flowMin = reader.readDouble();
+			summary.flowMax = reader.readDouble();
+			summary.diastoleToFlowPeak = reader.readNullableDouble();
+			if (!reader.hasColumns()) {
+				data.summary = summary;
+			}
+		}
+		return data;
+	}
+
+	/**
+	 * If this object was read with {@link #deserializeSummary(File)}, loads the
+	 * data arrays from the file. Values which may have been changed since (i.e.
+	 * selection name, waves) are kept.
+	 * 
+	 * @throws IllegalStateException if the file could no longer be read
+	 */
+	private void _loadArrays() {
+		if (summary == null) {
+			return;
+		}
+
+		WIAData full;
+		try {
+			full = deserialize(deserializedFile);
+		} catch (SerializationException e) {
+			throw new IllegalStateException("Could not load data from " + deserializedFile.getPath() + ": "
+					+ e.getMessage());
+		}
+		summary = null;
+		rawData = full.rawData;
+		sepWaveIntensity = full.sepWaveIntensity;
+		netWaveIntensity = full.netWaveIntensity;
+		sepFlowDeriv = full.sepFlowDeriv;
+		originalData = full.originalData;
+		if (selectionName != null && !selectionName.equals(full.selectionName)) {
+			rawData.setName(selectionName);
+			if (originalData != null) {
+				originalData.setName(selectionName);
+			}
+		}
+	}
+
+	private static void _writeHemoData(ColumnarWriter writer, HemoData hemoData) {
+		writer.writeBoolean(hemoData != null);
+		if (hemoData != null) {
+			hemoData.writeTo(writer);
+		}
+	}
+
+	private static HemoData _readHemoData(ColumnarReader reader) throws IOException {
+		return reader.readBoolean() ? HemoData.readFrom(reader) : null;
+	}
+
+	/**
+	 * The results of {@link WIAData#runAnalysis()} for one {@link HemoData}, along
+	 * with copies of the arrays they were calculated from. These are compared by
+	 * value, so the results are not reused if an array was modified in place.
+	 */
+	private static class Analysis {
+		private final double[] time;
+		private final double[] pressure;
+		private final double[] flow;
+		private final HemoData sepWaveIntensity;
+		private final HemoData netWaveIntensity;
+		private final HemoData sepFlowDeriv;
+		private final double waveSpeedC;
+		private final double rho;
+		private final double cumulativeWIForward;
+		private final double cumulativeWIBackward;
+		private final double cumulativeWINet;
+
+		private Analysis(WIAData data) {
+			this.time = data.rawData.getXData().clone();
+			this.pressure = data.getRawPressure().clone();
+			this.flow = data.getRawFlow().clone();
+			this.sepWaveIntensity = data.sepWaveIntensity;
+			this.netWaveIntensity = data.netWaveIntensity;
+			this.sepFlowDeriv = data.sepFlowDeriv;
+			this.waveSpeedC = data.waveSpeedC;
+			this.rho = data.rho;
+			this.cumulativeWIForward = data.cumulativeWIForward;
+			this.cumulativeWIBackward = data.cumulativeWIBackward;
+			this.cumulativeWINet = data.cumulativeWINet;
+		}
+
+		/**
+		 * @return true if none of the arrays analysed have changed since
+		 */
+		private boolean isCurrent(HemoData rawData) {
+			List<Header> headerPressure = rawData.getHeaderByFlag(HemoData.TYPE_PRESSURE);
+			List<Header> headerFlow = rawData.getHeaderByFlag(HemoData.TYPE_FLOW);
+			return !headerPressure.isEmpty() && !headerFlow.isEmpty() && Arrays.equals(rawData.getXData(), time)
+					&& Arrays.equals(rawData.getYData(headerPressure.get(0)), pressure)
+					&& Arrays.equals(rawData.getYData(headerFlow.get(0)), flow);
+		}
+
+		private void restore(WIAData data) {
+			data.sepWaveIntensity = sepWaveIntensity;
+			data.netWaveIntensity = netWaveIntensity;
+			data.sepFlowDeriv = sepFlowDeriv;
+			data.waveSpeedC = waveSpeedC;
+			data.rho = rho;
+			data.cumulativeWIForward = cumulativeWIForward;
+			data.cumulativeWIBackward = cumulativeWIBackward;
+			data.cumulativeWINet = cumulativeWINet;
+		}
+	}
+
+	/**
+	 * Values calculated from the data arrays, stored so that statistics can be run
+	 * without loading the arrays.
+	 */
+	private static class ArraySummary {
+		private double timeStart;
+		private double timeEnd;
+		private double pressureMin;
+		private double pressureMax;
+		private double flowMin;
+		private double flowMax;
+		private Double diastoleToFlowPeak;
+	}
+
 }
@@ -59,6 +59,7 @@ import com.carrington.WIA.IO.ReadResult;
 import com.carrington.WIA.IO.Saver;
 import com.carrington.WIA.IO.SheetDataReader;
 import com.carrington.WIA.Math.DataResampler.ResampleException;
+import com.carrington.WIA.Math.ResampleMethod;
 import com.carrington.WIA.Math.Savgol;
 import com.carrington.WIA.Math.Savgol.SavGolSettings;
 
@@ -132,6 +133,7 @@ public class CombowireGUI extends JFrame implements WIACaller {
 	private JCButton btnSaveSelectionEnsembledBeat;
 	private JCButton btnSaveIndividualBeatImages;
 	private JTextField txtSampleRate;
+	private JComboBox<ResampleMethod> cbResampleMethod;
 
 	private JTextField txtSelectionName;
 	private JTextField txtSelectionRemaining;
@@ -759,6 +761,11 @@ public class CombowireGUI extends JFrame implements WIACaller {
 		txtSampleRate = new JTextField("");
 		txtSampleRate.setText(config.getResampleString());
 		int fontWidthTxtSampleRate = Utils.getFontParams(Utils.getTextFont(false), "0.00001")[1];
+		JLabel lblResampMethod = new JLabel("Method:");
+		cbResampleMethod = new JComboBox<ResampleMethod>(ResampleMethod.values());
+		cbResampleMethod.setSelectedItem(ResampleMethod.SPLINE);
+		cbResampleMethod.setToolTipText(
+				"Polyphase filtering is faster and does not alias, but needs evenly sampled data");
 
 		btnRunBeatSel = new JCButton("Start");
 		btnRunBeatSel.addActionListener(new ActionListener() {
@@ -783,7 +790,10 @@ public class CombowireGUI extends JFrame implements WIACaller {
 						.addComponent(chUseFilesRWaves))
 						.addGroup(gl_pnlBeats.createSequentialGroup().addContainerGap().addComponent(lblSampRate)
 								.addPreferredGap(ComponentPlacement.RELATED).addComponent(txtSampleRate,
-										GroupLayout.PREFERRED_SIZE, fontWidthTxtSampleRate, GroupLayout.PREFERRED_SIZE))
+										GroupLayout.PREFERRED_SIZE, fontWidthTxtSampleRate, GroupLayout.PREFERRED_SIZE)
+								.addPreferredGap(ComponentPlacement.UNRELATED).addComponent(lblResampMethod).addGap(3)
+								.addComponent(cbResampleMethod, GroupLayout.PREFERRED_SIZE, GroupLayout.PREFERRED_SIZE,
+										GroupLayout.PREFERRED_SIZE))
 						.addGroup(gl_pnlBeats.createSequentialGroup().addContainerGap().addComponent(separator,
 								GroupLayout.PREFERRED_SIZE, GroupLayout.PREFERRED_SIZE, Short.MAX_VALUE))
 						.addGroup(gl_pnlBeats.createSequentialGroup().addContainerGap().addComponent(btnRunBeatSel)
@@ -803,7 +813,8 @@ public class CombowireGUI extends JFrame implements WIACaller {
 						.addComponent(lblFlowOffset).addComponent(lblMS))
 				.addPreferredGap(ComponentPlacement.UNRELATED)
 				.addGroup(gl_pnlBeats
-						.createParallelGroup(Alignment.CENTER).addComponent(lblSampRate).addComponent(txtSampleRate))
+						.createParallelGroup(Alignment.CENTER).addComponent(lblSampRate).addComponent(txtSampleRate)
+						.addComponent(lblResampMethod).addComponent(cbResampleMethod))
 				.addPreferredGap(ComponentPlacement.UNRELATED)
 				.addGroup(gl_pnlBeats.createParallelGroup(Alignment.CENTER)
 						.addComponent(btnRunBeatSel, GroupLayout.PREFERRED_SIZE, GroupLayout.PREFERRED_SIZE,
@@ -819,7 +830,7 @@ public class CombowireGUI extends JFrame implements WIACaller {
 
 		Utils.setFont(Utils.getTextFont(true), btnRunBeatSel);
 		Utils.setFont(Utils.getTextFont(false), lblFlowOffset, lblMS, txtFlowOffset, chUseFilesRWaves, lblEnsembleType,
-				cbEnsembleType, lblSampRate, txtSampleRate);
+				cbEnsembleType, lblSampRate, txtSampleRate, lblResampMethod, cbResampleMethod);
 		Utils.setFont(Utils.getSubTitleFont(), lblBeats);
 	}
 
@@ -1048,8 +1059,8 @@ public class CombowireGUI extends JFrame implements WIACaller {
 			Utils.setEnabledDeep(true, false, true, pnlSelectFile, pnlBeats, pnlWIA);
 
 			Utils.setEnabled(false, false, btnBrowseFile, cbECG, cbRWave, cbFlow, cbPressure, btnRunBeatSel,
-					txtFlowOffset, txtSampleRate, chUseFilesRWaves, cbEnsembleType, btnNextFile, btnNextSelection,
-					btnSaveMetrics, txtSelectionName, txtSelectionRemaining, btnRunWIA
+					txtFlowOffset, txtSampleRate, cbResampleMethod, chUseFilesRWaves, cbEnsembleType, btnNextFile,
+					btnNextSelection, btnSaveMetrics, txtSelectionName, txtSelectionRemaining, btnRunWIA
 
 			);
 
@@ -1246,10 +1257,10 @@ public class CombowireGUI extends JFrame implements WIACaller {
 			if (Math.abs(sampleRate - currSampleRate) > 0.0000001) {
 				// Resample because they are not sampled at the specified rate
 				try {
-					data = data.resampleAt(sampleRate);
+					data = data.resampleAt(sampleRate, (ResampleMethod) cbResampleMethod.getSelectedItem());
 				} catch (ResampleException e) {
 					e.printStackTrace();
-					Utils.showMessage(Utils.ERROR, "Internal error. Could not resample.", this);
+					Utils.showMessage(Utils.ERROR, "Could not resample. " + e.getMessage(), this);
 					return;
 				}
 			}
@@ -71,6 +71,7 @@ import com.carrington.WIA.IO.SheetDataReader;
 import com.carrington.WIA.IO.WIAResourceReader;
 import com.carrington.WIA.Math.DataResampler;
 import com.carrington.WIA.Math.DataResampler.ResampleException;
+import com.carrington.WIA.Math.ResampleMethod;
 import com.carrington.WIA.Math.Savgol;
 import com.carrington.WIA.Math.Savgol.SavGolSettings;
 
@@ -108,6 +109,7 @@ public class SeparateWireGUI extends JFrame implements WIACaller {
 	// Fields for Resample panel
 	private JPanel pnlResample;
 	private JTextField txtResampFreq;
+	private JComboBox<ResampleMethod> cbResampleMethod;
 	private JCButton btnStartResamp;
 	private JCSaveButton btnSaveResampled;
 	private final Border borderDefaultResamp = new JTextField().getBorder();
@@ -725,13 +727,17 @@ public class SeparateWireGUI extends JFrame implements WIACaller {
 					Utils.showMessage(Utils.ERROR, e1.getMessage(), ref.get());
 					return;
 				}
+				ResampleMethod method = (ResampleMethod) cbResampleMethod.getSelectedItem();
 				btnStartResamp.setEnabled(false);
+				// the reason resampling failed, e.g. data which the method cannot resample
+				String[] error = new String[1];
 				BackgroundTaskExecutor.executeTask((BackgroundProgressRecorder progress) -> {
 					try {
-						HemoData resampled1 = dataManager.data1.resampleAt(resampleRate, progress);
-						HemoData resampled2 = dataManager.data2.resampleAt(resampleRate, progress);
+						HemoData resampled1 = dataManager.data1.resampleAt(resampleRate, method, progress);
+						HemoData resampled2 = dataManager.data2.resampleAt(resampleRate, method, progress);
 						return new HemoData[] { resampled1, resampled2 };
 					} catch (ResampleException e1) {
+						error[0] = e1.getMessage();
 						return null;
 					}
 
@@ -739,7 +745,8 @@ public class SeparateWireGUI extends JFrame implements WIACaller {
 
 					if (resampledHD == null) {
 						btnStartResamp.setEnabled(true);
-						Utils.showMessage(Utils.ERROR, "Error occurred while resampling.", ref.get());
+						Utils.showMessage(Utils.ERROR, "Error occurred while resampling."
+								+ (error[0] != null ? " " + error[0] : ""), ref.get());
 						return;
 					}
 
@@ -754,6 +761,12 @@ public class SeparateWireGUI extends JFrame implements WIACaller {
 
 		txtResampFreq = new JTextField();
 		txtResampFreq.setColumns(10);
+
+		JLabel lblResampMethod = new JLabel("Method");
+		cbResampleMethod = new JComboBox<ResampleMethod>(ResampleMethod.values());
+		cbResampleMethod.setSelectedItem(ResampleMethod.SPLINE);
+		cbResampleMethod.setToolTipText(
+				"Polyphase filtering is faster and does not alias, but needs evenly sampled data");
 		txtResampFreq.getDocument().addDocumentListener(new DocumentListener() {
 			void validateField() {
 				if (!txtResampFreq.isEnabled()) {
@@ -843,6 +856,10 @@ public class SeparateWireGUI extends JFrame implements WIACaller {
 										.addComponent(lblResampFreq).addPreferredGap(ComponentPlacement.RELATED)
 										.addComponent(txtResampFreq, fontWidth, GroupLayout.PREFERRED_SIZE,
 												Short.MAX_VALUE)
+										.addPreferredGap(ComponentPlacement.UNRELATED).addComponent(lblResampMethod)
+										.addPreferredGap(ComponentPlacement.RELATED)
+										.addComponent(cbResampleMethod, GroupLayout.PREFERRED_SIZE,
+												GroupLayout.PREFERRED_SIZE, GroupLayout.PREFERRED_SIZE)
 										.addPreferredGap(ComponentPlacement.RELATED).addComponent(btnStartResamp)))
 						.addContainerGap()));
 		gl_pnlResample.setVerticalGroup(gl_pnlResample.createParallelGroup(Alignment.LEADING)
@@ -851,12 +868,13 @@ public class SeparateWireGUI extends JFrame implements WIACaller {
 								.addComponent(btnHelp).addComponent(btnSaveResampled))
 						.addPreferredGap(ComponentPlacement.RELATED)
 						.addGroup(gl_pnlResample.createParallelGroup(Alignment.BASELINE).addComponent(lblResampFreq)
-								.addComponent(txtResampFreq).addComponent(btnStartResamp))
+								.addComponent(txtResampFreq).addComponent(lblResampMethod).addComponent(cbResampleMethod)
+								.addComponent(btnStartResamp))
 						.addContainerGap()));
 		pnlResample.setLayout(gl_pnlResample);
 
 		Utils.setFont(Utils.getSubTitleFont(), lblResamp);
-		Utils.setFont(Utils.getTextFont(false), lblResampFreq, txtResampFreq);
+		Utils.setFont(Utils.getTextFont(false), lblResampFreq, txtResampFreq, lblResampMethod, cbResampleMethod);
 	}
 
 	/**
@@ -1412,15 +1430,15 @@ public class SeparateWireGUI extends JFrame implements WIACaller {
 			txtResampFreq.setBorder(borderDefaultResamp);
 			Utils.setEnabledDeep(false, false, true, pnlAlign, pnlWIA);
 			Utils.setEnabledDeep(true, false, true, pnlFileOne, pnlFileTwo, pnlResample, pnlTrim);
-			Utils.setEnabled(false, false, btnSelectFile1, btnSelectFile2, btnStartResamp, txtResampFreq, btnSaveTrim1,
-					btnSaveTrim2);
+			Utils.setEnabled(false, false, btnSelectFile1, btnSelectFile2, btnStartResamp, txtResampFreq,
+					cbResampleMethod, btnSaveTrim1, btnSaveTrim2);
 			Utils.setEnabled(true, false, btnSaveResampled);
 			break;
 		case STATE_ALIGN:
 			Utils.setEnabledDeep(false, false, true, pnlWIA);
 			Utils.setEnabledDeep(true, false, true, pnlFileOne, pnlFileTwo, pnlResample, pnlTrim, pnlAlign);
 			Utils.setEnabled(false, false, btnSelectFile1, btnSelectFile2, btnStartResamp, txtResampFreq,
-					btnSaveResampled, btnSaveTrim1, btnSaveTrim2, btnAcceptTrims, btnTrim1, btnTrim2,
+					cbResampleMethod, btnSaveResampled, btnSaveTrim1, btnSaveTrim2, btnAcceptTrims, btnTrim1, btnTrim2,
 					btnSaveSelectionEnsembledBeat, btnSaveIndividualBeatImages);
 			cbAlignEnsembleType.setSelectedItem(config.getEnsembleType());
 			chPreAlignFilter.setSelected(config.isPreBeatSelectionFilterEnabled());
@@ -1435,9 +1453,10 @@ public class SeparateWireGUI extends JFrame implements WIACaller {
 		case STATE_WIA:
 			Utils.setEnabledDeep(true, false, true, pnlFileOne, pnlFileTwo, pnlResample, pnlTrim, pnlAlign, pnlWIA);
 			Utils.setEnabled(false, false, btnSelectFile1, btnSelectFile2, btnStartResamp, txtResampFreq,
-					btnSaveResampled, btnSaveTrim1, btnSaveTrim2, btnAcceptTrims, btnTrim1, btnTrim2, btnRunAlignment,
-					chPreAlignFilter, txtSavPolynomialOrder, txtSavSampleRate, txtSavWindow, cbAlignEnsembleType,
-					txtSelectionName, btnRunWIA, btnNextSelection, btnNextFiles, btnSaveMetrics, txtSelectionRemaining);
+					cbResampleMethod, btnSaveResampled, btnSaveTrim1, btnSaveTrim2, btnAcceptTrims, btnTrim1, btnTrim2,
+					btnRunAlignment, chPreAlignFilter, txtSavPolynomialOrder, txtSavSampleRate, txtSavWindow,
+					cbAlignEnsembleType, txtSelectionName, btnRunWIA, btnNextSelection, btnNextFiles, btnSaveMetrics,
+					txtSelectionRemaining);
 			break;
 		}
 	}
@@ -1696,8 +1715,10 @@ public class SeparateWireGUI extends JFrame implements WIACaller {
 				if (Math.abs(sampleRate - currSampleRate) > 0.0000001) {
 					// Resample because they are not sampled at the specified rate
 					try {
-						dataManager.resampled1 = dataManager.resampled1.resampleAt(sampleRate);
-						dataManager.resampled2 = dataManager.resampled2.resampleAt(sampleRate);
+						// by the method chosen when the files were first resampled
+						ResampleMethod method = (ResampleMethod) cbResampleMethod.getSelectedItem();
+						dataManager.resampled1 = dataManager.resampled1.resampleAt(sampleRate, method);
+						dataManager.resampled2 = dataManager.resampled2.resampleAt(sampleRate, method);
 					} catch (ResampleException e) {
 						e.printStackTrace();
 						Utils.showMessage(Utils.ERROR, "Internal error. Could not resample.", this);
@@ -17,6 +17,7 @@ import javax.swing.GroupLayout;
 import javax.swing.GroupLayout.Alignment;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JSeparator;
 import javax.swing.LayoutStyle.ComponentPlacement;
@@ -39,6 +40,7 @@ import com.carrington.WIA.GUIs.Components.WIAFileSelectionTable;
 import com.carrington.WIA.GUIs.Components.WIAFileSelectionTable.WIATableListener;
 import com.carrington.WIA.GUIs.Components.WIATxNameTable;
 import com.carrington.WIA.GUIs.Configs.ComboFileConfigGUI;
+import com.carrington.WIA.IO.LoadResult;
 import com.carrington.WIA.IO.Saver;
 import com.carrington.WIA.IO.WIAStats;
 import com.carrington.WIA.IO.WIAStats.StandardWave;
@@ -78,6 +80,7 @@ public class WIAStatsGUI extends JFrame
 	private volatile JCButton btnSaveStats;
 	private volatile JCButton btnSaveCompiledData;
 	private JCButton btnGroup;
+	private volatile JProgressBar progressBar;
 
 	private static final int STATE_INIT = 0;
 	private static final int STATE_LOADED = 1;
@@ -264,17 +267,39 @@ public class WIAStatsGUI extends JFrame
 			e.printStackTrace();
 		}
 
-		wiastat = new WIAStats("test");
-		String errors = wiastat.loadFiles(file, true);
-		if (errors != null) {
-			Utils.showMessage(Utils.ERROR, errors, this);
-			return;
-		}
-		setPanelState(STATE_LOADED);
+		// files are loaded in the background, showing how many have been loaded
+		btnBrowse.setEnabled(false);
+		WIAStats stats = new WIAStats("test");
+		BackgroundTaskExecutor.executeTask((BackgroundProgressRecorder progress) -> {
+			try {
+				return stats.loadFiles(file, true, progress);
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+				return null;
+			}
+		}, progressBar, result -> {
+
+			if (result == null) {
+				btnBrowse.setEnabled(true);
+				Utils.showMessage(Utils.ERROR, "Error occurred while loading files.", ref.get());
+				return;
+			}
+			String errors = result.getErrors();
+			if (result.getLoadedCount() == 0) {
+				btnBrowse.setEnabled(true);
+				Utils.showMessage(Utils.ERROR, errors != null ? errors : "No .wia files found in folder.", ref.get());
+				return;
+			} else if (errors != null) {
+				// some files loaded, so still continue with those
+				Utils.showMessage(Utils.WARN, errors, ref.get());
+			}
+			wiastat = stats;
+			setPanelState(STATE_LOADED);
 
-		tableWIASelections.addWIAData(wiastat);
-		tableWIATxNames.addTreatments(wiastat);
-		tableStandardWave.addWaves(wiastat);
+			tableWIASelections.addWIAData(wiastat);
+			tableWIATxNames.addTreatments(wiastat);
+			tableStandardWave.addWaves(wiastat);
+		});
 
 		// config.tryToSetLastDir(file);
 
@@ -462,6 +487,11 @@ public class WIAStatsGUI extends JFrame
 			}
 		});
 
+		progressBar = new JProgressBar(0, 100);
+		progressBar.setVisible(false);
+		progressBar.setStringPainted(true);
+
+		pnlBottom.add(progressBar);
 		pnlBottom.add(btnReset);
 		pnlBottom.add(btnBack);
 		pnlBottom.add(btnQuit);
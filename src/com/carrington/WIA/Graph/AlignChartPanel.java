@@ -51,8 +51,8 @@ import org.jfree.data.xy.XYSeriesCollection;
 import com.carrington.WIA.Utils;
 import com.carrington.WIA.Cardio.Beat;
 import com.carrington.WIA.Cardio.BeatSelection;
+import com.carrington.WIA.Cardio.ParallelQRSDetector;
 import com.carrington.WIA.Cardio.QRS;
-import com.carrington.WIA.Cardio.QRSDetector;
 import com.carrington.WIA.DataStructures.HemoData;
 import com.carrington.WIA.GUIs.Components.KeyChecker;
 import com.carrington.WIA.IO.Header;
@@ -1024,8 +1024,8 @@ public class AlignChartPanel extends JPanel {
 		if (alignHeader == null) {
 			return null;
 		}
-		List<QRS> qrsComplexes = QRSDetector.getQRSOnSubset(cr.hd.getXData(), cr.hd.getYData(alignHeader), startIndex,
-				endIndex, hz, true);
+		List<QRS> qrsComplexes = ParallelQRSDetector.getQRSOnSubset(cr.hd.getXData(), cr.hd.getYData(alignHeader),
+				startIndex, endIndex, hz, true);
 		if (qrsComplexes.size() < 2) {
 			return null;
 		}
@@ -1062,8 +1062,8 @@ public class AlignChartPanel extends JPanel {
 		if (alignHeader == null) {
 			return null;
 		}
-		List<QRS> qrsComplexes = QRSDetector.getQRSOnSubset(cr.hd.getXData(), cr.hd.getYData(alignHeader), startIndex,
-				endIndex, hz, true);
+		List<QRS> qrsComplexes = ParallelQRSDetector.getQRSOnSubset(cr.hd.getXData(), cr.hd.getYData(alignHeader),
+				startIndex, endIndex, hz, true);
 		if (qrsComplexes.size() < 2) {
 			return null;
 		}
@@ -1107,8 +1107,8 @@ public class AlignChartPanel extends JPanel {
 		if (alignHeader == null) {
 			return null;
 		}
-		List<QRS> qrsComplexes = QRSDetector.getQRSOnSubset(hd.getXData(), hd.getYData(alignHeader), startIndex,
-				endIndex, hz, true);
+		List<QRS> qrsComplexes = ParallelQRSDetector.getQRSOnSubset(hd.getXData(), hd.getYData(alignHeader),
+				startIndex, endIndex, hz, true);
 		if (qrsComplexes.size() < 2) {
 			return null;
 		}
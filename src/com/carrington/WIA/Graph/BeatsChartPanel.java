@@ -51,8 +51,8 @@ import org.jfree.data.xy.XYSeriesCollection;
 import com.carrington.WIA.Utils;
 import com.carrington.WIA.Cardio.Beat;
 import com.carrington.WIA.Cardio.BeatSelection;
+import com.carrington.WIA.Cardio.ParallelQRSDetector;
 import com.carrington.WIA.Cardio.QRS;
-import com.carrington.WIA.Cardio.QRSDetector;
 import com.carrington.WIA.DataStructures.HemoData;
 import com.carrington.WIA.GUIs.Components.KeyChecker;
 import com.carrington.WIA.IO.Header;
@@ -971,7 +971,7 @@ public class BeatsChartPanel extends ChartPanel {
 
 	/**
 	 * Detects the two nearest R-wave complexes around a given time by running the
-	 * {@link QRSDetector} on the currently visible ECG subset.
+	 * {@link ParallelQRSDetector} on the currently visible ECG subset.
 	 *
 	 * @param tQuery the domain time around which to search for R waves
 	 * @return an array of two QRS objects: [closestBelow, closestAbove], or null if
@@ -986,8 +986,8 @@ public class BeatsChartPanel extends ChartPanel {
 			return null;
 		}
 		Header ecgHeader = data.getHeaderByFlag(HemoData.TYPE_ECG).get(0);
-		List<QRS> qrsComplexes = QRSDetector.getQRSOnSubset(data.getXData(), data.getYData(ecgHeader), startIndex,
-				endIndex, hz, true);
+		List<QRS> qrsComplexes = ParallelQRSDetector.getQRSOnSubset(data.getXData(), data.getYData(ecgHeader),
+				startIndex, endIndex, hz, true);
 		if (qrsComplexes.size() < 2) {
 			return null;
 		}
@@ -1060,8 +1060,8 @@ public class BeatsChartPanel extends ChartPanel {
 
 	/**
 	 * Detects all QRS complexes between x1 and x2 (inclusive), plus one immediately
-	 * before and one immediately after, by running the {@link QRSDetector} on the
-	 * visible ECG subset.
+	 * before and one immediately after, by running the {@link ParallelQRSDetector}
+	 * on the visible ECG subset.
 	 *
 	 * @param x1 the start of the time window
 	 * @param x2 the end of the time window
@@ -1079,8 +1079,8 @@ public class BeatsChartPanel extends ChartPanel {
 		if (alignHeader == null) {
 			return null;
 		}
-		List<QRS> qrsComplexes = QRSDetector.getQRSOnSubset(data.getXData(), data.getYData(alignHeader), startIndex,
-				endIndex, hz, true);
+		List<QRS> qrsComplexes = ParallelQRSDetector.getQRSOnSubset(data.getXData(), data.getYData(alignHeader),
+				startIndex, endIndex, hz, true);
 		if (qrsComplexes.size() < 2) {
 			return null;
 		}
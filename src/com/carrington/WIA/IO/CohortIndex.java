@@ -0,0 +1,209 @@
+package com.carrington.WIA.IO;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.SerializationException;
+
+import com.carrington.WIA.DataStructures.WIAData;
+
+/**
+ * A cache of the stored values of every .wia file within a cohort folder, kept
+ * in a single file ({@link #FILE_NAME}) in that folder. For each file, the
+ * metadata block (names, waves, scalar values and summary of the data arrays;
+ * see {@link WIAData#deserializeSummary(File)}) is stored along with the size
+ * and last modified time of the file when it was read. If the file has not
+ * changed since, it is loaded from the index without opening the file at all.
+ * <p>
+ * Only files saved in the binary columnar format with a summary of the data
+ * arrays (see {@link WIAData#hasSummary(ColumnarReader)}) can be indexed.
+ * Older files are loaded from the file each time, until migrated (see
+ * {@link WIAData#migrate(File)}).
+ * </p>
+ * <p>
+ * {@link #load(File)} may be called from multiple threads at once.
+ * </p>
+ */
+public class CohortIndex {
+
+	/** Name of the index file within the cohort folder */
+	public static final String FILE_NAME = ".wiastats.index";
+
+	private final File root;
+	private final Map<String, IndexEntry> entries;
+	private final AtomicInteger hits = new AtomicInteger();
+	private volatile boolean changed = false;
+
+	private CohortIndex(File root, Map<String, IndexEntry> entries) {
+		this.root = root;
+		this.entries = entries;
+	}
+
+	/**
+	 * Opens the index for the cohort folder. If there is no index yet, or it
+	 * cannot be read (i.e. corrupted, or saved with a newer version of this
+	 * program), an empty index is returned and will be rebuilt as files are
+	 * loaded.
+	 *
+	 * @param root the cohort folder
+	 * @return the index
+	 */
+	public static CohortIndex open(File root) {
+		Map<String, IndexEntry> entries = new ConcurrentHashMap<String, IndexEntry>();
+		File indexFile = new File(root, FILE_NAME);
+		if (indexFile.isFile()) {
+			try (ColumnarReader reader = ColumnarReader.open(indexFile, false)) {
+				if (reader.getKind() == ColumnarFile.KIND_COHORT_INDEX) {
+					int count = reader.readInt();
+					for (int i = 0; i < count; i++) {
+						String path = reader.readString();
+						IndexEntry entry = new IndexEntry(reader.readLong(), reader.readLong(), reader.readInt(),
+								reader.readBytes());
+						entries.put(path, entry);
+					}
+				}
+			} catch (IOException e) {
+				// start over, it will be rewritten on save
+				e.printStackTrace();
+				entries.clear();
+			}
+		}
+		return new CohortIndex(root, entries);
+	}
+
+	/**
+	 * Loads the stored values needed for statistics from a .wia file within the
+	 * cohort folder, as with {@link WIAData#deserializeSummary(File)}. If the file
+	 * is unchanged since it was indexed, its values are taken from the index.
+	 * Otherwise the file is read and the index updated.
+	 *
+	 * @param file the .wia file
+	 * @return the {@link WIAData} object if could be created
+	 * @throws SerializationException if there was any issue during deserialization
+	 */
+	public WIAData load(File file) throws SerializationException {
+
+		String key = _key(file);
+		BasicFileAttributes attrs;
+		try {
+			attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+		} catch (IOException e) {
+			throw new SerializationException("Unable to read WIA data file " + file.getName()
+					+ ". System error msg: " + e.getMessage());
+		}
+		long size = attrs.size();
+		long modified = attrs.lastModifiedTime().toMillis();
+
+		IndexEntry entry = entries.get(key);
+		if (entry != null && entry.size == size && entry.modified == modified) {
+			try {
+				WIAData data = WIAData.readSummary(
+						ColumnarReader.wrap(entry.version, ColumnarFile.KIND_WIADATA, entry.metadata), file);
+				hits.incrementAndGet();
+				return data;
+			} catch (IOException | RuntimeException e) {
+				// fall through and read from the file instead
+				e.printStackTrace();
+			}
+		}
+
+		try {
+			if (ColumnarFile.isColumnarFile(file)) {
+				try (ColumnarReader reader = ColumnarReader.open(file, false)) {
+					if (WIAData.hasSummary(reader)) {
+						WIAData data = WIAData.readSummary(reader, file);
+						entries.put(key, new IndexEntry(size, modified, reader.getVersion(), reader.getMetadata()));
+						changed = true;
+						return data;
+					}
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new SerializationException(
+					"Unable to read WIA data stored state from file. This may be due to lack of access / permission of this program "
+							+ "to read files from your file system. Check administrator privileges. System error msg: <br><br>"
+							+ e.getMessage());
+		}
+
+		return WIAData.deserializeSummary(file);
+	}
+
+	/**
+	 * @return number of files loaded from the index rather than the file itself
+	 */
+	public int getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * Saves the index to the cohort folder, if anything changed since it was
+	 * opened. Entries for files which no longer exist are removed.
+	 *
+	 * @throws IOException if the index could not be written, i.e. the folder is
+	 *                     read only
+	 */
+	public void save() throws IOException {
+
+		Iterator<String> itr = entries.keySet().iterator();
+		while (itr.hasNext()) {
+			if (!new File(root, itr.next()).isFile()) {
+				itr.remove();
+				changed = true;
+			}
+		}
+
+		if (!changed) {
+			return;
+		}
+
+		ColumnarWriter writer = new ColumnarWriter(ColumnarFile.KIND_COHORT_INDEX);
+		writer.writeInt(entries.size());
+		for (Entry<String, IndexEntry> en : entries.entrySet()) {
+			IndexEntry entry = en.getValue();
+			writer.writeString(en.getKey());
+			writer.writeLong(entry.size);
+			writer.writeLong(entry.modified);
+			writer.writeInt(entry.version);
+			writer.writeBytes(entry.metadata);
+		}
+		writer.save(new File(root, FILE_NAME));
+		changed = false;
+	}
+
+	/**
+	 * Path of the file relative to the cohort folder, so the index remains valid
+	 * if the folder is moved
+	 */
+	private String _key(File file) {
+		Path path = root.toPath().toAbsolutePath().normalize()
+				.relativize(file.toPath().toAbsolutePath().normalize());
+		return path.toString().replace(File.separatorChar, '/');
+	}
+
+	/**
+	 * Stored metadata of a single file
+	 */
+	private static class IndexEntry {
+		private final long size;
+		private final long modified;
+		private final int version;
+		private final byte[] metadata;
+
+		private IndexEntry(long size, long modified, int version, byte[] metadata) {
+			this.size = size;
+			this.modified = modified;
+			this.version = version;
+			this.metadata = metadata;
+		}
+	}
+
+}
@@ -0,0 +1,74 @@
+package com.carrington.WIA.IO;
+
+import java.util.Arrays;
+
+/**
+ * A growable buffer of primitive doubles used to collect a single column of
+ * values while a file is being read, avoiding the boxing of every cell into a
+ * {@link Double}.
+ */
+final class ColumnBuffer {
+
+	/** Largest array size which can safely be allocated on most VMs */
+	private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+	private double[] values;
+	private int size = 0;
+
+	/**
+	 * Creates a new buffer
+	 *
+	 * @param initialCapacity expected number of values. Does not need to be exact,
+	 *                        the buffer will grow as needed.
+	 */
+	ColumnBuffer(int initialCapacity) {
+		this.values = new double[Math.max(16, initialCapacity)];
+	}
+
+	/**
+	 * Appends a value to the end of this buffer
+	 *
+	 * @param value the value to add
+	 */
+	void add(double value) {
+		if (size == values.length) {
+			_grow(size + 1);
+		}
+		values[size++] = value;
+	}
+
+	/**
+	 * @return number of values stored
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the stored values. If the buffer is exactly full the backing array
+	 * is returned directly, otherwise a trimmed copy is made. The buffer should
+	 * not be used afterwards.
+	 *
+	 * @return the values in the order added
+	 */
+	double[] toArray() {
+		if (size == values.length) {
+			return values;
+		}
+		double[] trimmed = Arrays.copyOf(values, size);
+		values = trimmed;
+		return trimmed;
+	}
+
+	/**
+	 * Grows the backing array by 50%, or to the minimum capacity if larger.
+	 */
+	private void _grow(int minCapacity) {
+		if (minCapacity > MAX_CAPACITY) {
+			throw new OutOfMemoryError("Too many values to store in a single column");
+		}
+		long newCapacity = Math.max((long) minCapacity, values.length + ((long) values.length >> 1));
+		values = Arrays.copyOf(values, (int) Math.min(MAX_CAPACITY, newCapacity));
+	}
+
+}
@@ -0,0 +1,28 @@
+package com.carrington.WIA.IO;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import com.carrington.WIA.GUIs.BackgroundProgressRecorder;
+
+/**
+ * Reads selected columns of numerical data from a file directly into primitive
+ * arrays, without holding the rest of the file in memory.
+ */
+public interface ColumnReader {
+
+	/**
+	 * Reads the requested columns from the file.
+	 *
+	 * @param columns The {@link Header}s (name and column number) to read
+	 * @param prog    A recorder to display progress; can be null.
+	 * @return The data for each requested header which was found, in column order.
+	 *         The first header found is set as the X (domain) header.
+	 * @throws IOException if the file could not be read, or contained
+	 *                     non-numerical values in the requested columns
+	 */
+	public LinkedHashMap<Header, double[]> read(List<Header> columns, BackgroundProgressRecorder prog)
+			throws IOException;
+
+}
@@ -0,0 +1,98 @@
+package com.carrington.WIA.IO;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Constants and layout of the versioned binary container used to store
+ * {@link com.carrington.WIA.DataStructures.HemoData} (.hd) and
+ * {@link com.carrington.WIA.DataStructures.WIAData} (.wia) files, replacing Java
+ * object serialization.
+ * <p>
+ * All values are little-endian. The file is laid out as:
+ * </p>
+ * <ol>
+ * <li>a fixed header of {@link #HEADER_SIZE} bytes: the magic bytes
+ * {@code WIAC}, format version, kind of object stored, length of the metadata
+ * block, and number of columns</li>
+ * <li>the metadata block, holding names, headers, flags, waves and scalar
+ * values. Each column is referenced here by its index in the column table</li>
+ * <li>the column table, holding the offset and length of each column</li>
+ * <li>the raw columns of doubles, each aligned to 8 bytes</li>
+ * </ol>
+ * <p>
+ * Because the metadata comes first and the columns are stored raw, a file can
+ * be opened without reading any columns, and each column is read in bulk
+ * straight into its array. See {@link ColumnarReader}.
+ * </p>
+ */
+public final class ColumnarFile {
+
+	/** Magic bytes at the start of every file ("WIAC") */
+	static final int MAGIC = 0x43414957;
+
+	/**
+	 * Current version of the format. Readers reject files with a newer version.
+	 * <ol>
+	 * <li>initial version</li>
+	 * <li>adds a summary of the data arrays to WIAData files</li>
+	 * </ol>
+	 */
+	public static final int VERSION = 2;
+
+	/** Size of the fixed header, in bytes */
+	static final int HEADER_SIZE = 24;
+
+	/** Size of each entry in the column table, in bytes */
+	static final int COLUMN_ENTRY_SIZE = 12;
+
+	/** Kind of file storing a single HemoData */
+	public static final int KIND_HEMODATA = 1;
+	/** Kind of file storing a single WIAData */
+	public static final int KIND_WIADATA = 2;
+	/** Kind of file storing a {@link CohortIndex} */
+	public static final int KIND_COHORT_INDEX = 3;
+
+	// tags for values of unknown type (i.e. Header metadata)
+	static final byte VALUE_NULL = 0;
+	static final byte VALUE_STRING = 1;
+	static final byte VALUE_BOOLEAN = 2;
+	static final byte VALUE_INTEGER = 3;
+	static final byte VALUE_LONG = 4;
+	static final byte VALUE_DOUBLE = 5;
+	static final byte VALUE_COLOR = 6;
+
+	// tags for headers
+	static final byte HEADER_NULL = 0;
+	static final byte HEADER_NEW = 1;
+	static final byte HEADER_REFERENCE = 2;
+
+	private ColumnarFile() {
+	}
+
+	/**
+	 * Determines if the file is stored in this format, rather than (for instance)
+	 * the older Java serialization format, by checking its magic bytes.
+	 *
+	 * @param file the file to check
+	 * @return true if the file starts with the magic bytes of this format
+	 * @throws IOException if the file could not be read
+	 */
+	public static boolean isColumnarFile(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer buf = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+			while (buf.hasRemaining()) {
+				if (channel.read(buf) < 0) {
+					return false;
+				}
+			}
+			buf.flip();
+			return buf.getInt() == MAGIC;
+		}
+	}
+
+}
@@ -0,0 +1,374 @@
+package com.carrington.WIA.IO;
+
+import java.awt.Color;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads a {@link ColumnarFile} written by {@link ColumnarWriter}. Values must be
+ * read in the same order they were written.
+ * <p>
+ * Only the fixed header and metadata block are read when opened. Columns are
+ * read in chunks into heap arrays when {@link #readColumn()} is called, or not
+ * touched at all if the file was opened for metadata only. The file is not
+ * memory mapped: a mapping is only released when garbage collected, and on
+ * Windows a file with a live mapping cannot be replaced when it is saved again.
+ * </p>
+ */
+public class ColumnarReader implements Closeable {
+
+	/** Bytes of a column read from the file at a time */
+	private static final int COLUMN_BUFFER_SIZE = 1 << 16;
+
+	private final FileChannel channel;
+	private final int version;
+	private final int kind;
+	private final ByteBuffer meta;
+	private final long[] columnOffsets;
+	private final int[] columnLengths;
+	private final List<Header> headers = new ArrayList<Header>();
+	/** Buffer for reading columns, created on the first one */
+	private ByteBuffer columnBuffer = null;
+
+	private ColumnarReader(FileChannel channel, int version, int kind, ByteBuffer meta, long[] columnOffsets,
+			int[] columnLengths) {
+		this.channel = channel;
+		this.version = version;
+		this.kind = kind;
+		this.meta = meta;
+		this.columnOffsets = columnOffsets;
+		this.columnLengths = columnLengths;
+	}
+
+	/**
+	 * Opens a file, reading its header and metadata block.
+	 *
+	 * @param file        the file to open
+	 * @param loadColumns if false, only the metadata is read and
+	 *                    {@link #readColumn()} will always return null. The file
+	 *                    is closed before returning.
+	 * @return the reader, which must be closed when done
+	 * @throws IOException if the file could not be read, is not in this format,
+	 *                     or was written by a newer version
+	 */
+	public static ColumnarReader open(File file, boolean loadColumns) throws IOException {
+
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			ByteBuffer head = _readFully(channel, 0, ColumnarFile.HEADER_SIZE);
+			if (head.getInt() != ColumnarFile.MAGIC) {
+				throw new IOException("Not a recognized data file: " + file.getName());
+			}
+			int version = head.getInt();
+			if (version < 1 || version > ColumnarFile.VERSION) {
+				throw new IOException("File " + file.getName() + " was saved with a newer version (" + version
+						+ ") of this program and cannot be read.");
+			}
+			int kind = head.getInt();
+			int metaLength = head.getInt();
+			int columnCount = head.getInt();
+			if (metaLength < 0 || columnCount < 0) {
+				throw new IOException("File " + file.getName() + " is corrupted.");
+			}
+
+			ByteBuffer meta = _readFully(channel, ColumnarFile.HEADER_SIZE, metaLength);
+
+			if (!loadColumns) {
+				channel.close();
+				return new ColumnarReader(null, version, kind, meta, null, null);
+			}
+
+			long[] offsets = new long[columnCount];
+			int[] lengths = new int[columnCount];
+			ByteBuffer table = _readFully(channel, ColumnarFile.HEADER_SIZE + (long) metaLength,
+					columnCount * ColumnarFile.COLUMN_ENTRY_SIZE);
+			long fileSize = channel.size();
+			for (int i = 0; i < columnCount; i++) {
+				offsets[i] = table.getLong();
+				lengths[i] = table.getInt();
+				if (lengths[i] < 0 || offsets[i] < 0 || offsets[i] + (long) lengths[i] * Double.BYTES > fileSize) {
+					throw new IOException("File " + file.getName() + " is corrupted or incomplete.");
+				}
+			}
+			return new ColumnarReader(channel, version, kind, meta, offsets, lengths);
+
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Creates a reader over a metadata block previously obtained with
+	 * {@link #getMetadata()}, i.e. one stored in a {@link CohortIndex}. As with a
+	 * file opened for metadata only, {@link #readColumn()} will always return
+	 * null.
+	 *
+	 * @param version  format version the metadata was written with
+	 * @param kind     kind of object stored
+	 * @param metadata the metadata block
+	 * @return the reader
+	 * @throws IOException if the version is not supported
+	 */
+	public static ColumnarReader wrap(int version, int kind, byte[] metadata) throws IOException {
+		if (version < 1 || version > ColumnarFile.VERSION) {
+			throw new IOException("Metadata was saved with a newer version (" + version
+					+ ") of this program and cannot be read.");
+		}
+		return new ColumnarReader(null, version, kind, ByteBuffer.wrap(metadata).order(ByteOrder.LITTLE_ENDIAN),
+				null, null);
+	}
+
+	/**
+	 * @return a copy of the whole metadata block, regardless of how much has been
+	 *         read
+	 */
+	public byte[] getMetadata() {
+		return Arrays.copyOfRange(meta.array(), meta.arrayOffset(), meta.arrayOffset() + meta.limit());
+	}
+
+	/**
+	 * @return the format version the file was written with
+	 */
+	public int getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * @return the kind of object stored, i.e. {@link ColumnarFile#KIND_WIADATA}
+	 */
+	public int getKind() {
+		return this.kind;
+	}
+
+	/**
+	 * @return true if columns can be read, false if the file was opened for
+	 *         metadata only
+	 */
+	public boolean hasColumns() {
+		return this.channel != null;
+	}
+
+	/**
+	 * @return next byte
+	 * @throws IOException if past the end of the metadata
+	 */
+	public byte readByte() throws IOException {
+		try {
+			return meta.get();
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Unexpected end of file metadata");
+		}
+	}
+
+	/**
+	 * @return next boolean
+	 * @throws IOException if past the end of the metadata
+	 */
+	public boolean readBoolean() throws IOException {
+		return readByte() != 0;
+	}
+
+	/**
+	 * @return next int
+	 * @throws IOException if past the end of the metadata
+	 */
+	public int readInt() throws IOException {
+		try {
+			return meta.getInt();
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Unexpected end of file metadata");
+		}
+	}
+
+	/**
+	 * @return next long
+	 * @throws IOException if past the end of the metadata
+	 */
+	public long readLong() throws IOException {
+		try {
+			return meta.getLong();
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Unexpected end of file metadata");
+		}
+	}
+
+	/**
+	 * @return next double
+	 * @throws IOException if past the end of the metadata
+	 */
+	public double readDouble() throws IOException {
+		try {
+			return meta.getDouble();
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Unexpected end of file metadata");
+		}
+	}
+
+	/**
+	 * @return next double, which may be null
+	 * @throws IOException if past the end of the metadata
+	 */
+	public Double readNullableDouble() throws IOException {
+		return readBoolean() ? readDouble() : null;
+	}
+
+	/**
+	 * @return next string, which may be null
+	 * @throws IOException if past the end of the metadata
+	 */
+	public String readString() throws IOException {
+		int length = readInt();
+		if (length < 0) {
+			return null;
+		} else if (length > meta.remaining()) {
+			throw new IOException("Unexpected end of file metadata");
+		}
+		String value = new String(meta.array(), meta.arrayOffset() + meta.position(), length,
+				StandardCharsets.UTF_8);
+		meta.position(meta.position() + length);
+		return value;
+	}
+
+	/**
+	 * @return next bytes, which may be null
+	 * @throws IOException if past the end of the metadata
+	 */
+	public byte[] readBytes() throws IOException {
+		int length = readInt();
+		if (length < 0) {
+			return null;
+		} else if (length > meta.remaining()) {
+			throw new IOException("Unexpected end of file metadata");
+		}
+		byte[] value = new byte[length];
+		meta.get(value);
+		return value;
+	}
+
+	/**
+	 * @return next value written with {@link ColumnarWriter#writeValue(Object)}
+	 * @throws IOException if past the end of the metadata or the type is unknown
+	 */
+	public Object readValue() throws IOException {
+		byte type = readByte();
+		switch (type) {
+		case ColumnarFile.VALUE_NULL:
+			return null;
+		case ColumnarFile.VALUE_STRING:
+			return readString();
+		case ColumnarFile.VALUE_BOOLEAN:
+			return readBoolean();
+		case ColumnarFile.VALUE_INTEGER:
+			return readInt();
+		case ColumnarFile.VALUE_LONG:
+			return readLong();
+		case ColumnarFile.VALUE_DOUBLE:
+			return readDouble();
+		case ColumnarFile.VALUE_COLOR:
+			return new Color(readInt(), true);
+		default:
+			throw new IOException("Unknown value type in file: " + type);
+		}
+	}
+
+	/**
+	 * @return next header written with
+	 *         {@link ColumnarWriter#writeHeader(Header)}, which may be null. A
+	 *         header written more than once is returned as the same object.
+	 * @throws IOException if past the end of the metadata or the header is invalid
+	 */
+	public Header readHeader() throws IOException {
+		byte tag = readByte();
+		switch (tag) {
+		case ColumnarFile.HEADER_NULL:
+			return null;
+		case ColumnarFile.HEADER_REFERENCE:
+			int ref = readInt();
+			if (ref < 0 || ref >= headers.size()) {
+				throw new IOException("Invalid header reference in file");
+			}
+			return headers.get(ref);
+		case ColumnarFile.HEADER_NEW:
+			String name = readString();
+			int col = readInt();
+			boolean isX = readBoolean();
+			Header header = new Header(name, col, isX);
+			int metaCount = readInt();
+			for (int i = 0; i < metaCount; i++) {
+				header.addAdditionalMeta(readString(), readValue());
+			}
+			headers.add(header);
+			return header;
+		default:
+			throw new IOException("Invalid header in file");
+		}
+	}
+
+	/**
+	 * Reads the next column into a new array
+	 *
+	 * @return the values, or null if a null column was written or the file was
+	 *         opened for metadata only
+	 * @throws IOException if the column could not be read
+	 */
+	public double[] readColumn() throws IOException {
+		int index = readInt();
+		if (index < 0 || channel == null) {
+			return null;
+		} else if (index >= columnOffsets.length) {
+			throw new IOException("Invalid column reference in file");
+		}
+
+		double[] values = new double[columnLengths[index]];
+		if (columnBuffer == null) {
+			columnBuffer = ByteBuffer.allocate(COLUMN_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		long position = columnOffsets[index];
+		int read = 0;
+		while (read < values.length) {
+			int count = Math.min(values.length - read, COLUMN_BUFFER_SIZE / Double.BYTES);
+			columnBuffer.clear();
+			columnBuffer.limit(count * Double.BYTES);
+			while (columnBuffer.hasRemaining()) {
+				if (channel.read(columnBuffer, position + columnBuffer.position()) < 0) {
+					throw new IOException("Unexpected end of file");
+				}
+			}
+			columnBuffer.flip();
+			columnBuffer.asDoubleBuffer().get(values, read, count);
+			read += count;
+			position += (long) count * Double.BYTES;
+		}
+		return values;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (channel != null) {
+			channel.close();
+		}
+	}
+
+	private static ByteBuffer _readFully(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (buf.hasRemaining()) {
+			if (channel.read(buf, position + buf.position()) < 0) {
+				throw new IOException("Unexpected end of file");
+			}
+		}
+		buf.flip();
+		return buf;
+	}
+
+}
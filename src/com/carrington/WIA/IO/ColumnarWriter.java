@@ -0,0 +1,346 @@
+package com.carrington.WIA.IO;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Writes a {@link ColumnarFile}. Values are written to the metadata block in
+ * order, and must be read back in the same order with a {@link ColumnarReader}.
+ * Columns are written with {@link #writeColumn(double[])}, which stores a
+ * reference in the metadata and the values themselves at the end of the file.
+ * <p>
+ * Nothing is written to disk until {@link #save(File)} is called.
+ * </p>
+ */
+public class ColumnarWriter {
+
+	private static final int COPY_BUFFER_DOUBLES = 1 << 13;
+
+	private final int kind;
+	private ByteBuffer meta = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+	private final List<double[]> columns = new ArrayList<double[]>();
+	private final IdentityHashMap<Header, Integer> headers = new IdentityHashMap<Header, Integer>();
+
+	/**
+	 * Creates a new writer
+	 *
+	 * @param kind kind of object being stored, i.e.
+	 *             {@link ColumnarFile#KIND_WIADATA}
+	 */
+	public ColumnarWriter(int kind) {
+		this.kind = kind;
+	}
+
+	/**
+	 * @param value byte to write
+	 */
+	public void writeByte(byte value) {
+		_ensure(1);
+		meta.put(value);
+	}
+
+	/**
+	 * @param value boolean to write
+	 */
+	public void writeBoolean(boolean value) {
+		writeByte(value ? (byte) 1 : (byte) 0);
+	}
+
+	/**
+	 * @param value int to write
+	 */
+	public void writeInt(int value) {
+		_ensure(4);
+		meta.putInt(value);
+	}
+
+	/**
+	 * @param value long to write
+	 */
+	public void writeLong(long value) {
+		_ensure(8);
+		meta.putLong(value);
+	}
+
+	/**
+	 * @param value double to write
+	 */
+	public void writeDouble(double value) {
+		_ensure(8);
+		meta.putDouble(value);
+	}
+
+	/**
+	 * @param value double to write, which may be null
+	 */
+	public void writeNullableDouble(Double value) {
+		writeBoolean(value != null);
+		if (value != null) {
+			writeDouble(value);
+		}
+	}
+
+	/**
+	 * @param value string to write, which may be null
+	 */
+	public void writeString(String value) {
+		if (value == null) {
+			writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeInt(bytes.length);
+		_ensure(bytes.length);
+		meta.put(bytes);
+	}
+
+	/**
+	 * @param value bytes to write, which may be null
+	 */
+	public void writeBytes(byte[] value) {
+		if (value == null) {
+			writeInt(-1);
+			return;
+		}
+		writeInt(value.length);
+		_ensure(value.length);
+		meta.put(value);
+	}
+
+	/**
+	 * Writes a value of one of the supported types: null, {@link String},
+	 * {@link Boolean}, {@link Integer}, {@link Long}, {@link Double} or
+	 * {@link Color}. Any other type is stored as its {@link Object#toString()}.
+	 *
+	 * @param value value to write
+	 */
+	public void writeValue(Object value) {
+		if (value == null) {
+			writeByte(ColumnarFile.VALUE_NULL);
+		} else if (value instanceof String) {
+			writeByte(ColumnarFile.VALUE_STRING);
+			writeString((String) value);
+		} else if (value instanceof Boolean) {
+			writeByte(ColumnarFile.VALUE_BOOLEAN);
+			writeBoolean((Boolean) value);
+		} else if (value instanceof Integer) {
+			writeByte(ColumnarFile.VALUE_INTEGER);
+			writeInt((Integer) value);
+		} else if (value instanceof Long) {
+			writeByte(ColumnarFile.VALUE_LONG);
+			writeLong((Long) value);
+		} else if (value instanceof Double) {
+			writeByte(ColumnarFile.VALUE_DOUBLE);
+			writeDouble((Double) value);
+		} else if (value instanceof Color) {
+			writeByte(ColumnarFile.VALUE_COLOR);
+			writeInt(((Color) value).getRGB());
+		} else {
+			writeByte(ColumnarFile.VALUE_STRING);
+			writeString(value.toString());
+		}
+	}
+
+	/**
+	 * Writes a {@link Header}, including its additional metadata. If the same
+	 * header object was already written, only a reference to it is stored, so that
+	 * it is read back as the same object.
+	 *
+	 * @param header the header to write, which may be null
+	 */
+	public void writeHeader(Header header) {
+		if (header == null) {
+			writeByte(ColumnarFile.HEADER_NULL);
+			return;
+		}
+
+		Integer ref = headers.get(header);
+		if (ref != null) {
+			writeByte(ColumnarFile.HEADER_REFERENCE);
+			writeInt(ref);
+			return;
+		}
+
+		headers.put(header, headers.size());
+		writeByte(ColumnarFile.HEADER_NEW);
+		writeString(header.getName());
+		writeInt(header.getCol());
+		writeBoolean(header.isX());
+		List<String> keys = new ArrayList<String>(header.getAdditionalMetaKeys());
+		writeInt(keys.size());
+		for (String key : keys) {
+			writeString(key);
+			writeValue(header.getAdditionalMeta(key));
+		}
+	}
+
+	/**
+	 * Stores a column of values. The array is not copied, so must not be modified
+	 * until after {@link #save(File)}.
+	 *
+	 * @param values the values, which may be null
+	 */
+	public void writeColumn(double[] values) {
+		if (values == null) {
+			writeInt(-1);
+			return;
+		}
+		writeInt(columns.size());
+		columns.add(values);
+	}
+
+	/**
+	 * Writes the file, overwriting anything already at that location. The data is
+	 * first written to a temporary file next to it, which then replaces the
+	 * target, so an existing file is not left half written if saving fails. The
+	 * saved file keeps the permissions of the file it replaces, or otherwise has
+	 * the default permissions for a new file.
+	 *
+	 * @param file the file to write to
+	 * @throws IOException if there was an error writing
+	 */
+	public void save(File file) throws IOException {
+		Path target = file.toPath().toAbsolutePath();
+		Path temp = _createTemp(target);
+		try {
+			_write(temp);
+			_copyPermissions(target, temp);
+			try {
+				Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Creates an empty file with a unique name next to the target. Unlike
+	 * {@link Files#createTempFile(Path, String, String, java.nio.file.attribute.FileAttribute...)},
+	 * which makes a file only its owner can read, the file gets the default
+	 * permissions, so a file saved to a shared folder stays readable by others.
+	 */
+	private static Path _createTemp(Path target) throws IOException {
+		while (true) {
+			Path temp = target.resolveSibling("." + target.getFileName() + "."
+					+ Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+			try {
+				return Files.createFile(temp);
+			} catch (FileAlreadyExistsException e) {
+				// try another name
+			}
+		}
+	}
+
+	/**
+	 * Gives the temporary file the POSIX permissions of the file it will replace,
+	 * if there is one
+	 */
+	private static void _copyPermissions(Path target, Path temp) {
+		if (Files.getFileAttributeView(target, PosixFileAttributeView.class) == null || !Files.exists(target)) {
+			return;
+		}
+		try {
+			Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(target));
+		} catch (IOException | UnsupportedOperationException e) {
+			// keep the default permissions rather than fail to save
+		}
+	}
+
+	/**
+	 * Writes the header, metadata, column table and columns.
+	 */
+	private void _write(Path path) throws IOException {
+
+		int metaLength = meta.position();
+		long tableStart = ColumnarFile.HEADER_SIZE + (long) metaLength;
+		long dataStart = _align(tableStart + (long) columns.size() * ColumnarFile.COLUMN_ENTRY_SIZE);
+
+		ByteBuffer head = ByteBuffer.allocate(ColumnarFile.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		head.putInt(ColumnarFile.MAGIC);
+		head.putInt(ColumnarFile.VERSION);
+		head.putInt(kind);
+		head.putInt(metaLength);
+		head.putInt(columns.size());
+		head.putInt(0); // reserved
+
+		ByteBuffer table = ByteBuffer.allocate((int) (dataStart - tableStart)).order(ByteOrder.LITTLE_ENDIAN);
+		long offset = dataStart;
+		for (double[] column : columns) {
+			table.putLong(offset);
+			table.putInt(column.length);
+			offset += (long) column.length * Double.BYTES;
+		}
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+			head.flip();
+			_writeFully(channel, head);
+			ByteBuffer metaOut = meta.duplicate();
+			metaOut.flip();
+			_writeFully(channel, metaOut);
+			table.clear(); // includes the padding
+			_writeFully(channel, table);
+
+			ByteBuffer copy = ByteBuffer.allocateDirect(COPY_BUFFER_DOUBLES * Double.BYTES)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			DoubleBuffer copyDoubles = copy.asDoubleBuffer();
+			for (double[] column : columns) {
+				for (int i = 0; i < column.length; i += COPY_BUFFER_DOUBLES) {
+					int n = Math.min(COPY_BUFFER_DOUBLES, column.length - i);
+					copyDoubles.clear();
+					copyDoubles.put(column, i, n);
+					copy.clear();
+					copy.limit(n * Double.BYTES);
+					_writeFully(channel, copy);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Makes sure the metadata buffer has room for the specified number of bytes
+	 */
+	private void _ensure(int bytes) {
+		if (meta.remaining() < bytes) {
+			int capacity = Math.max(meta.capacity() * 2, meta.position() + bytes);
+			ByteBuffer grown = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+			meta.flip();
+			grown.put(meta);
+			meta = grown;
+		}
+	}
+
+	/**
+	 * Rounds up to the next multiple of 8 bytes
+	 */
+	private static long _align(long position) {
+		return (position + 7) & ~7L;
+	}
+
+	private static void _writeFully(FileChannel channel, ByteBuffer buf) throws IOException {
+		while (buf.hasRemaining()) {
+			channel.write(buf);
+		}
+	}
+
+}
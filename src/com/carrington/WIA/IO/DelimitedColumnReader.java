@@ -0,0 +1,349 @@
+package com.carrington.WIA.IO;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import com.carrington.WIA.Utils;
+import com.carrington.WIA.GUIs.BackgroundProgressRecorder;
+
+/**
+ * Streams a CSV or tab-delimited text file line by line, tokenizing only the
+ * requested columns and parsing their values straight into primitive arrays.
+ * Unlike {@link Reader}, the full grid of cell text is never held in memory, so
+ * the peak memory used is roughly the size of the returned data.
+ * <p>
+ * Cells are converted to numbers using a {@link NumberParser}, the same as
+ * {@link Reader#getNumber(int, int)}, without creating substrings. Quoted CSV fields are supported, but a
+ * quoted field may not span multiple lines.
+ * </p>
+ */
+public class DelimitedColumnReader implements ColumnReader {
+
+	/**
+	 * Maximum number of lines to search through when auto-detecting the header
+	 * row. Realistically headers will not be this far down.
+	 */
+	static final int MAX_HEADER_SEARCH_LINES = 10000;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	// visible to subclasses in this package which read the file differently
+	final File file;
+	final char delimiter;
+	final boolean quoted;
+	final int skipLines;
+
+	private final NumberParser parser = new NumberParser();
+
+	/**
+	 * Creates a new reader. Nothing is read until {@link #read(List, BackgroundProgressRecorder)}
+	 * is called.
+	 *
+	 * @param file      The file to read from
+	 * @param type      the type of file, one of {@link Reader#CSV} or
+	 *                  {@link Reader#TXT_TABBED}
+	 * @param skipLines Number of lines to skip before the header row; If -1, will
+	 *                  auto-determine the header row.
+	 * @throws IllegalArgumentException if the type is not a delimited type
+	 */
+	public DelimitedColumnReader(File file, int type, int skipLines) throws IllegalArgumentException {
+		this.file = file;
+		this.skipLines = skipLines >= 0 ? skipLines : -1;
+
+		switch (type) {
+		case Reader.CSV:
+			this.delimiter = ',';
+			this.quoted = true;
+			break;
+		case Reader.TXT_TABBED:
+			this.delimiter = '\t';
+			this.quoted = false;
+			break;
+		default:
+			throw new IllegalArgumentException("Not a delimited file type: " + type);
+		}
+	}
+
+	@Override
+	public LinkedHashMap<Header, double[]> read(List<Header> columns, BackgroundProgressRecorder prog)
+			throws IOException {
+
+		long fileLength = Math.max(1, file.length());
+		long charsRead = 0;
+		int lastPermille = 0;
+
+		if (prog != null) {
+			prog.setProgressBarEnabled(true, 0, 1000);
+		}
+
+		try (BufferedReader br = new BufferedReader(new FileReader(file), BUFFER_SIZE)) {
+
+			// Locate the header row. Any lines read past the header (only while
+			// auto-detecting) still need to be treated as data.
+			List<String> lines = new ArrayList<String>();
+			int headerIndex;
+			String line;
+			if (skipLines >= 0) {
+				while (lines.size() <= skipLines) {
+					line = br.readLine();
+					if (line == null) {
+						throw new IOException("Not enough data in file");
+					}
+					charsRead += line.length() + 1;
+					lines.add(line);
+				}
+				headerIndex = skipLines;
+			} else {
+				List<String[]> rows = new ArrayList<String[]>();
+				headerIndex = -1;
+				while (lines.size() < MAX_HEADER_SEARCH_LINES && (line = br.readLine()) != null) {
+					charsRead += line.length() + 1;
+					lines.add(line);
+					rows.add(tokenize(line));
+					headerIndex = Reader.determineMeaningfulStart(rows);
+					if (headerIndex != -1) {
+						break;
+					}
+				}
+				if (lines.isEmpty()) {
+					throw new IOException("Not enough data in file");
+				}
+				headerIndex = Math.max(0, headerIndex);
+			}
+
+			LinkedHashMap<Header, Integer> selected = selectColumns(tokenize(lines.get(headerIndex)), columns);
+			int[] cols = toColumnIndices(selected);
+
+			ColumnBuffer[] buffers = null;
+			int pendingBlank = 0;
+			int lineIndex = headerIndex + 1;
+			while (true) {
+				if (lineIndex < lines.size()) {
+					line = lines.get(lineIndex);
+					lines.set(lineIndex, null);
+				} else {
+					if (!lines.isEmpty()) {
+						lines.clear();
+					}
+					line = br.readLine();
+					if (line == null)
+						break;
+					charsRead += line.length() + 1;
+				}
+				lineIndex++;
+
+				if (line.length() == 0) {
+					// only count blank lines if they are followed by more data
+					pendingBlank++;
+					continue;
+				}
+
+				if (buffers == null) {
+					// estimate the number of rows from this first line so that buffers rarely
+					// need to grow
+					long estimate = (long) ((fileLength - charsRead) / (line.length() + 1) * 1.05) + pendingBlank + 2;
+					buffers = new ColumnBuffer[cols.length];
+					for (int i = 0; i < buffers.length; i++) {
+						buffers[i] = new ColumnBuffer((int) Math.min(Integer.MAX_VALUE - 8, estimate));
+					}
+				}
+
+				for (; pendingBlank > 0; pendingBlank--) {
+					for (ColumnBuffer buffer : buffers) {
+						buffer.add(0);
+					}
+				}
+
+				_parseRow(line, cols, buffers);
+
+				if (prog != null) {
+					int permille = (int) Math.min(1000, charsRead * 1000 / fileLength);
+					if (permille != lastPermille) {
+						prog.setProgressBarProgress(permille);
+						lastPermille = permille;
+					}
+				}
+			}
+
+			if (buffers == null) {
+				throw new IOException("Not enough data in file");
+			}
+
+			LinkedHashMap<Header, double[]> data = new LinkedHashMap<Header, double[]>();
+			int counter = 0;
+			for (Header header : selected.keySet()) {
+				data.put(header, buffers[counter].toArray());
+				buffers[counter] = null;
+				counter++;
+			}
+			return data;
+
+		} catch (FileNotFoundException e) {
+			throw new IOException(
+					"Could not read file. May it has been deleted, moved, or you do not have permission. "
+							+ e.getMessage());
+		} finally {
+			if (prog != null) {
+				prog.setProgressBarEnabled(false, -1, -1);
+			}
+		}
+
+	}
+
+	/**
+	 * Parses the requested columns of a single line into the buffers. Columns past
+	 * the end of the line are treated as blank.
+	 *
+	 * @param line    the line of text
+	 * @param cols    ascending column indices to parse
+	 * @param buffers buffer for each column in cols
+	 * @throws IOException if a cell is not numerical
+	 */
+	private void _parseRow(String line, int[] cols, ColumnBuffer[] buffers) throws IOException {
+		int colI = 0;
+		int start = 0;
+		int target = 0;
+		int length = line.length();
+		while (target < cols.length) {
+			if (start > length) {
+				// ran out of fields
+				buffers[target++].add(0);
+				continue;
+			}
+			int end = _fieldEnd(line, start);
+			if (colI == cols[target]) {
+				int fieldStart = start;
+				int fieldEnd = end;
+				if (quoted && fieldEnd - fieldStart >= 2 && line.charAt(fieldStart) == '"'
+						&& line.charAt(fieldEnd - 1) == '"') {
+					fieldStart++;
+					fieldEnd--;
+				}
+				if (parser.parse(line, fieldStart, fieldEnd) == NumberParser.NOT_A_NUMBER) {
+					throw new IOException("Data area contained a non-numerical value.");
+				}
+				buffers[target++].add(parser.getValue());
+			}
+			colI++;
+			start = end + 1;
+		}
+	}
+
+	/**
+	 * Matches the requested columns against the header row. Header and column
+	 * number must both match.
+	 *
+	 * @param headerRow the fields of the header row
+	 * @param columns   the requested {@link Header}s
+	 * @return each found {@link Header} mapped to its column index, in column
+	 *         order. The first is set as the X (domain) header.
+	 * @throws IOException if none of the requested columns were found
+	 */
+	static LinkedHashMap<Header, Integer> selectColumns(String[] headerRow, List<Header> columns)
+			throws IOException {
+		LinkedHashMap<Header, Integer> selected = new LinkedHashMap<Header, Integer>();
+		boolean primary = true;
+		for (int colI = 0; colI < headerRow.length; colI++) {
+			String possibHeader = headerRow[colI];
+			if (possibHeader != null && possibHeader.length() > 0) {
+				Header header = new Header(possibHeader, colI, primary);
+				if (Utils.isHeaderContained(columns, header)) {
+					selected.put(header, colI);
+					primary = false;
+				}
+			}
+		}
+
+		if (selected.isEmpty()) {
+			throw new IOException("None of the selected headers were found in the file.");
+		}
+		return selected;
+	}
+
+	/**
+	 * @param selected output of {@link #selectColumns(String[], List)}
+	 * @return the column indices, ascending
+	 */
+	static int[] toColumnIndices(LinkedHashMap<Header, Integer> selected) {
+		int[] cols = new int[selected.size()];
+		int counter = 0;
+		for (Integer col : selected.values()) {
+			cols[counter++] = col;
+		}
+		return cols;
+	}
+
+	/**
+	 * Splits a full line into its fields.
+	 *
+	 * @param line line of text
+	 * @return all fields of the line
+	 */
+	String[] tokenize(String line) {
+		List<String> fields = new ArrayList<String>();
+		int start = 0;
+		while (start <= line.length()) {
+			int end = _fieldEnd(line, start);
+			fields.add(_fieldText(line, start, end));
+			start = end + 1;
+		}
+
+		if (!quoted) {
+			// consistent with String.split, which drops trailing blanks
+			while (!fields.isEmpty() && fields.get(fields.size() - 1).length() == 0) {
+				fields.remove(fields.size() - 1);
+			}
+		}
+		return fields.toArray(new String[0]);
+	}
+
+	/**
+	 * Finds the end of a field.
+	 *
+	 * @param line  line of text
+	 * @param start index of the first character of the field
+	 * @return index of the delimiter ending the field, or the length of the line
+	 */
+	private int _fieldEnd(String line, int start) {
+		int length = line.length();
+		int i = start;
+		if (quoted && i < length && line.charAt(i) == '"') {
+			i++;
+			while (i < length) {
+				if (line.charAt(i) == '"') {
+					if (i + 1 < length && line.charAt(i + 1) == '"') {
+						i += 2;
+						continue;
+					}
+					i++;
+					break;
+				}
+				i++;
+			}
+			while (i < length && line.charAt(i) != delimiter) {
+				i++;
+			}
+			return i;
+		}
+
+		int end = line.indexOf(delimiter, i);
+		return end < 0 ? length : end;
+	}
+
+	/**
+	 * Extracts the text of a field, removing surrounding quotes if present.
+	 */
+	private String _fieldText(String line, int start, int end) {
+		if (quoted && end - start >= 2 && line.charAt(start) == '"' && line.charAt(end - 1) == '"') {
+			return line.substring(start + 1, end - 1).replace("\"\"", "\"");
+		}
+		return line.substring(start, end);
+	}
+
+}
@@ -0,0 +1,457 @@
+package com.carrington.WIA.IO;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.apache.poi.openxml4j.exceptions.InvalidOperationException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.model.SharedStrings;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import com.carrington.WIA.GUIs.BackgroundProgressRecorder;
+
+/**
+ * Streams the first sheet of an Excel (.xlsx) workbook using the event based
+ * (SAX) API of Apache POI, rather than loading the whole workbook into memory.
+ * The requested columns are parsed row by row straight into primitive arrays.
+ * <p>
+ * Formulas are not evaluated; the result cached in the workbook when it was last
+ * saved is used instead. Error cells (i.e. #N/A) are read as blank, so as 0.
+ * Rows which are entirely missing from the sheet are skipped, the same as
+ * {@link Reader}.
+ * </p>
+ */
+public class ExcelColumnReader implements ColumnReader {
+
+	private final File file;
+	private final int skipLines;
+
+	/**
+	 * Creates a new reader. Nothing is read until
+	 * {@link #read(List, BackgroundProgressRecorder)} is called.
+	 *
+	 * @param file      The .xlsx file to read from
+	 * @param skipLines Number of lines to skip before the header row; If -1, will
+	 *                  auto-determine the header row.
+	 */
+	public ExcelColumnReader(File file, int skipLines) {
+		this.file = file;
+		this.skipLines = skipLines >= 0 ? skipLines : -1;
+	}
+
+	@Override
+	public LinkedHashMap<Header, double[]> read(List<Header> columns, BackgroundProgressRecorder prog)
+			throws IOException {
+
+		DataHandler handler = new DataHandler(columns);
+		try {
+			_parseFirstSheet(file, handler, prog);
+		} finally {
+			if (prog != null) {
+				prog.setProgressBarEnabled(false, -1, -1);
+			}
+		}
+		return handler.getData();
+	}
+
+	/**
+	 * Reads the first rows of the first sheet as text, stopping once enough rows
+	 * have been read rather than opening the whole sheet. Cells are placed by their
+	 * column, with missing cells left blank.
+	 *
+	 * @param file    the .xlsx file
+	 * @param maxRows number of rows to read, or less than 1 to read all rows
+	 * @return the rows read, which may be fewer than requested if the sheet is
+	 *         short
+	 * @throws IOException if the file could not be read
+	 */
+	public static List<String[]> readRows(File file, int maxRows) throws IOException {
+		RowTextHandler handler = new RowTextHandler(maxRows);
+		_parseFirstSheet(file, handler, null);
+		return handler.rows;
+	}
+
+	/**
+	 * Streams the first sheet to the handler. The handler may throw
+	 * {@link StopReading} to end early.
+	 */
+	private static void _parseFirstSheet(File file, RowTextHandler handler, BackgroundProgressRecorder prog)
+			throws IOException {
+
+		try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+			XSSFReader reader = new XSSFReader(pkg);
+			XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+			if (!sheets.hasNext()) {
+				throw new IOException("Could not obtain Excel sheet");
+			}
+
+			try (InputStream sheet = sheets.next()) {
+				long sheetSize = sheets.getSheetPart().getSize();
+				InputStream in = prog != null && sheetSize > 0 ? new ProgressInputStream(sheet, sheetSize, prog)
+						: sheet;
+
+				XMLReader parser = XMLHelper.newXMLReader();
+				parser.setContentHandler(new ErrorMarkingHandler(reader.getStylesTable(),
+						new ReadOnlySharedStringsTable(pkg), handler));
+				parser.parse(new InputSource(in));
+			} catch (StopReading e) {
+				// read enough
+			} catch (DataException e) {
+				throw e.getCause();
+			}
+
+		} catch (OpenXML4JException | InvalidOperationException | SAXException e) {
+			throw new IOException("Could not read Excel workbook: " + e.getMessage(), e);
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException("Error reading excel: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Gets the zero-based column index from a cell reference (i.e. "AB12") without
+	 * creating any objects.
+	 */
+	private static int _columnOf(String cellReference) {
+		int col = 0;
+		for (int i = 0; i < cellReference.length(); i++) {
+			char c = cellReference.charAt(i);
+			if (c >= 'A' && c <= 'Z') {
+				col = col * 26 + (c - 'A' + 1);
+			} else if (c >= 'a' && c <= 'z') {
+				col = col * 26 + (c - 'a' + 1);
+			} else {
+				break;
+			}
+		}
+		return col - 1;
+	}
+
+	/**
+	 * Collects rows as text.
+	 */
+	private static class RowTextHandler implements SheetContentsHandler {
+
+		private final int maxRows;
+		private final List<String[]> rows = new ArrayList<String[]>();
+		private final List<String> current = new ArrayList<String>();
+		/** If the next cell is an error, set by {@link ErrorMarkingHandler} */
+		private boolean errorCell = false;
+
+		private RowTextHandler(int maxRows) {
+			this.maxRows = maxRows;
+		}
+
+		@Override
+		public void startRow(int rowNum) {
+			current.clear();
+		}
+
+		@Override
+		public void endRow(int rowNum) {
+			rows.add(current.toArray(new String[0]));
+			if (maxRows > 0 && rows.size() >= maxRows) {
+				throw new StopReading();
+			}
+		}
+
+		@Override
+		public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+			int col = cellReference == null ? current.size() : _columnOf(cellReference);
+			while (current.size() < col) {
+				current.add("");
+			}
+			current.add(formattedValue == null || errorCell ? "" : formattedValue);
+		}
+	}
+
+	/**
+	 * Locates the header row, then parses the selected columns of every row after
+	 * it.
+	 */
+	private class DataHandler extends RowTextHandler {
+
+		private final List<Header> columns;
+		private final NumberParser parser = new NumberParser();
+
+		private LinkedHashMap<Header, Integer> selected = null;
+		/** For each column index, the index of the buffer it goes in, or -1 */
+		private int[] targets;
+		private ColumnBuffer[] buffers;
+		private double[] rowValues;
+		private boolean rowHasCells = false;
+		private int pendingBlank = 0;
+
+		private DataHandler(List<Header> columns) {
+			super(-1);
+			this.columns = columns;
+		}
+
+		@Override
+		public void startRow(int rowNum) {
+			if (selected == null) {
+				super.startRow(rowNum);
+			} else {
+				Arrays.fill(rowValues, 0);
+				rowHasCells = false;
+			}
+		}
+
+		@Override
+		public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+			if (selected == null) {
+				super.cell(cellReference, formattedValue, comment);
+				return;
+			}
+
+			rowHasCells = true;
+			int col = _columnOf(cellReference);
+			if (col >= 0 && col < targets.length && targets[col] >= 0) {
+				rowValues[targets[col]] = super.errorCell ? 0 : _parse(formattedValue);
+			}
+		}
+
+		@Override
+		public void endRow(int rowNum) {
+			if (selected != null) {
+				_addRow(rowHasCells);
+				return;
+			}
+
+			super.endRow(rowNum);
+			List<String[]> rows = super.rows;
+			int headerIndex = -1;
+			if (skipLines >= 0) {
+				if (rows.size() > skipLines) {
+					headerIndex = skipLines;
+				}
+			} else {
+				headerIndex = Reader.determineMeaningfulStart(rows);
+				if (headerIndex == -1 && rows.size() >= DelimitedColumnReader.MAX_HEADER_SEARCH_LINES) {
+					headerIndex = 0;
+				}
+			}
+
+			if (headerIndex != -1) {
+				_startData(headerIndex);
+			}
+		}
+
+		@Override
+		public void endSheet() {
+			if (selected == null && !super.rows.isEmpty() && skipLines < 0) {
+				// could not determine start, so use the first row
+				_startData(0);
+			}
+		}
+
+		/**
+		 * Selects the columns from the header row, then parses any rows already read
+		 * past the header.
+		 */
+		private void _startData(int headerIndex) {
+			List<String[]> rows = super.rows;
+			try {
+				selected = DelimitedColumnReader.selectColumns(rows.get(headerIndex), columns);
+			} catch (IOException e) {
+				throw new DataException(e);
+			}
+			int[] cols = DelimitedColumnReader.toColumnIndices(selected);
+			targets = new int[cols[cols.length - 1] + 1];
+			Arrays.fill(targets, -1);
+			for (int i = 0; i < cols.length; i++) {
+				targets[cols[i]] = i;
+			}
+
+			buffers = new ColumnBuffer[cols.length];
+			for (int i = 0; i < buffers.length; i++) {
+				buffers[i] = new ColumnBuffer(1024);
+			}
+			rowValues = new double[cols.length];
+
+			for (int r = headerIndex + 1; r < rows.size(); r++) {
+				String[] row = rows.get(r);
+				for (int i = 0; i < cols.length; i++) {
+					rowValues[i] = cols[i] < row.length ? _parse(row[cols[i]]) : 0;
+				}
+				_addRow(row.length > 0);
+			}
+			rows.clear();
+		}
+
+		private double _parse(String value) {
+			if (parser.parse(value) == NumberParser.NOT_A_NUMBER) {
+				throw new DataException(new IOException("Data area contained a non-numerical value."));
+			}
+			return parser.getValue();
+		}
+
+		/**
+		 * Adds the current row values, deferring empty rows until there is more data
+		 * after them.
+		 */
+		private void _addRow(boolean hasCells) {
+			if (!hasCells) {
+				pendingBlank++;
+				return;
+			}
+			for (; pendingBlank > 0; pendingBlank--) {
+				for (ColumnBuffer buffer : buffers) {
+					buffer.add(0);
+				}
+			}
+			for (int i = 0; i < buffers.length; i++) {
+				buffers[i].add(rowValues[i]);
+			}
+		}
+
+		private LinkedHashMap<Header, double[]> getData() throws IOException {
+			if (selected == null || buffers[0].size() == 0) {
+				throw new IOException("Not enough data in Excel sheet");
+			}
+
+			LinkedHashMap<Header, double[]> data = new LinkedHashMap<Header, double[]>();
+			Iterator<Header> itr = selected.keySet().iterator();
+			for (int i = 0; i < buffers.length; i++) {
+				data.put(itr.next(), buffers[i].toArray());
+				buffers[i] = null;
+			}
+			return data;
+		}
+	}
+
+	/**
+	 * Formats numeric cells as their full value rather than how they are
+	 * displayed in Excel, so that no precision is lost. Dates are still
+	 * formatted.
+	 */
+	private static class RawValueFormatter extends DataFormatter {
+
+		@Override
+		public String formatRawCellContents(double value, int formatIndex, String formatString) {
+			if (DateUtil.isADateFormat(formatIndex, formatString)) {
+				return super.formatRawCellContents(value, formatIndex, formatString);
+			}
+			return Double.toString(value);
+		}
+	}
+
+	/**
+	 * Marks error cells on the {@link RowTextHandler} before they are passed to
+	 * it. The handler is otherwise given the text "ERROR:" followed by the error,
+	 * which cannot be told apart from a text cell.
+	 */
+	private static class ErrorMarkingHandler extends XSSFSheetXMLHandler {
+
+		private final RowTextHandler handler;
+
+		private ErrorMarkingHandler(StylesTable styles, SharedStrings strings, RowTextHandler handler) {
+			super(styles, strings, handler, new RawValueFormatter(), false);
+			this.handler = handler;
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes)
+				throws SAXException {
+			if ("c".equals(localName)) {
+				handler.errorCell = "e".equals(attributes.getValue("t"));
+			}
+			super.startElement(uri, localName, qName, attributes);
+		}
+	}
+
+	/**
+	 * Reports the progress of reading through the sheet.
+	 */
+	private static class ProgressInputStream extends FilterInputStream {
+
+		private final long size;
+		private final BackgroundProgressRecorder prog;
+		private long read = 0;
+		private int lastPermille = 0;
+
+		private ProgressInputStream(InputStream in, long size, BackgroundProgressRecorder prog) {
+			super(in);
+			this.size = size;
+			this.prog = prog;
+			prog.setProgressBarEnabled(true, 0, 1000);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0) {
+				_advance(1);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0) {
+				_advance(n);
+			}
+			return n;
+		}
+
+		private void _advance(int n) {
+			read += n;
+			int permille = (int) Math.min(1000, read * 1000 / size);
+			if (permille != lastPermille) {
+				prog.setProgressBarProgress(permille);
+				lastPermille = permille;
+			}
+		}
+	}
+
+	/**
+	 * Thrown by a handler to stop reading the sheet once it has read enough.
+	 */
+	private static class StopReading extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		private StopReading() {
+			super(null, null, false, false);
+		}
+	}
+
+	/**
+	 * Carries an {@link IOException} out of the SAX handler.
+	 */
+	private static class DataException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		private DataException(IOException cause) {
+			super(cause);
+		}
+
+		@Override
+		public synchronized IOException getCause() {
+			return (IOException) super.getCause();
+		}
+	}
+
+}
@@ -1,8 +1,10 @@
 package com.carrington.WIA.IO;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Represents a data column header, containing its name, column number, primary
@@ -108,6 +110,14 @@ public class Header implements Serializable {
 		return additionalMeta.get(s);
 	}
 
+	/**
+	 * @return the keys of all metadata added to this header. This set is
+	 *         unmodifiable.
+	 */
+	public Set<String> getAdditionalMetaKeys() {
+		return Collections.unmodifiableSet(additionalMeta.keySet());
+	}
+
 	/**
 	 * Returns a string representation of the header, in the format of "[name]
 	 * (column [number])"
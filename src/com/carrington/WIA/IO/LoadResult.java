@@ -0,0 +1,87 @@
+package com.carrington.WIA.IO;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * A data structure to hold the result of loading a cohort of files, containing
+ * how many were loaded, how long it took, and the errors for any files which
+ * could not be loaded.
+ */
+public class LoadResult {
+
+	/** Maximum number of individual file errors listed by {@link #getErrors()} */
+	private static final int MAX_ERRORS_LISTED = 10;
+
+	private final int loaded;
+	private final long elapsedNanos;
+	private final LinkedHashMap<File, String> fileErrors;
+
+	/**
+	 * Constructs a new LoadResult.
+	 *
+	 * @param loaded       number of files loaded successfully
+	 * @param elapsedNanos time taken to find and load the files, in nanoseconds
+	 * @param fileErrors   error message for each file (or folder) which could not
+	 *                     be read
+	 */
+	public LoadResult(int loaded, long elapsedNanos, LinkedHashMap<File, String> fileErrors) {
+		this.loaded = loaded;
+		this.elapsedNanos = elapsedNanos;
+		this.fileErrors = fileErrors;
+	}
+
+	/**
+	 * @return number of files loaded successfully
+	 */
+	public int getLoadedCount() {
+		return loaded;
+	}
+
+	/**
+	 * @return error message for each file (or folder) which could not be read.
+	 *         This map is unmodifiable.
+	 */
+	public Map<File, String> getFileErrors() {
+		return Collections.unmodifiableMap(fileErrors);
+	}
+
+	/**
+	 * @return time taken to find and load the files, in milliseconds
+	 */
+	public double getElapsedMillis() {
+		return elapsedNanos / 1e6;
+	}
+
+	/**
+	 * @return number of files loaded per second
+	 */
+	public double getFilesPerSecond() {
+		return elapsedNanos > 0 ? loaded / (elapsedNanos / 1e9) : 0;
+	}
+
+	/**
+	 * @return a description of all errors that occurred, or {@code null} if none
+	 */
+	public String getErrors() {
+		if (fileErrors.isEmpty()) {
+			return null;
+		}
+
+		StringBuilder sb = new StringBuilder();
+		sb.append("Could not load ").append(fileErrors.size()).append(fileErrors.size() == 1 ? " file:" : " files:");
+		int counter = 0;
+		for (Entry<File, String> en : fileErrors.entrySet()) {
+			if (counter++ == MAX_ERRORS_LISTED) {
+				sb.append("\n... and ").append(fileErrors.size() - MAX_ERRORS_LISTED).append(" more");
+				break;
+			}
+			sb.append("\n").append(en.getKey().getPath()).append(": ").append(en.getValue());
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,495 @@
+package com.carrington.WIA.IO;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.carrington.WIA.GUIs.BackgroundProgressRecorder;
+
+/**
+ * Reads very large CSV or tab-delimited text files by memory mapping them. The
+ * delimiters and newlines are scanned directly on the mapped bytes, so the file
+ * is never decoded into {@link String}s except for the header row.
+ * <p>
+ * Reading happens in two passes. The first indexes where rows start, which
+ * gives the exact number of rows so the output arrays can be allocated once.
+ * The second parses only the requested columns into those arrays. Both passes
+ * are sequential reads of the file, so reading is bounded by disk bandwidth.
+ * </p>
+ * <p>
+ * Once the rows are indexed, the second pass can be split into chunks which
+ * are parsed in parallel on a {@link ForkJoinPool}, each writing into its own
+ * range of the output arrays. See {@link #setParallelism(int)}.
+ * </p>
+ * <p>
+ * The data area is assumed to be single-byte (ASCII compatible) text; the
+ * header row is decoded with the platform charset, the same as
+ * {@link DelimitedColumnReader}.
+ * </p>
+ */
+public class MappedColumnReader extends DelimitedColumnReader {
+
+	/**
+	 * Default file size (in bytes) at or above which {@link SheetDataReader} uses
+	 * this reader instead of {@link DelimitedColumnReader}.
+	 */
+	public static final long DEFAULT_THRESHOLD = 64L * 1024 * 1024;
+
+	/** Number of rows between entries in the row offset index */
+	static final int INDEX_BLOCK = 1024;
+
+	/** Largest region of the file mapped at one time */
+	private static final int MAX_WINDOW = 1 << 30;
+
+	/** Largest number of rows which can be stored in a single array */
+	private static final int MAX_ROWS = Integer.MAX_VALUE - 8;
+
+	/** Rows between progress updates during parsing */
+	private static final int PROGRESS_INTERVAL = 4096;
+
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Creates a new reader. Nothing is read until
+	 * {@link #read(List, BackgroundProgressRecorder)} is called.
+	 *
+	 * @param file      The file to read from
+	 * @param type      the type of file, one of {@link Reader#CSV} or
+	 *                  {@link Reader#TXT_TABBED}
+	 * @param skipLines Number of lines to skip before the header row; If -1, will
+	 *                  auto-determine the header row.
+	 * @throws IllegalArgumentException if the type is not a delimited type
+	 */
+	public MappedColumnReader(File file, int type, int skipLines) throws IllegalArgumentException {
+		super(file, type, skipLines);
+	}
+
+	/**
+	 * Sets the number of threads used to parse the data area. Defaults to the
+	 * number of available processors.
+	 * 
+	 * @param parallelism number of threads; 1 or less parses on the calling thread
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	@Override
+	public LinkedHashMap<Header, double[]> read(List<Header> columns, BackgroundProgressRecorder prog)
+			throws IOException {
+
+		if (prog != null) {
+			prog.setProgressBarEnabled(true, 0, 1000);
+		}
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+			long fileLength = channel.size();
+			if (fileLength == 0) {
+				throw new IOException("Not enough data in file");
+			}
+
+			MappedByteBuffer start = channel.map(MapMode.READ_ONLY, 0, Math.min(fileLength, MAX_WINDOW));
+			long[] headerBounds = _locateHeader(start);
+			String headerLine = _decode(start, (int) headerBounds[0], (int) headerBounds[1]);
+			start = null;
+
+			LinkedHashMap<Header, Integer> selected = selectColumns(tokenize(headerLine), columns);
+			int[] cols = toColumnIndices(selected);
+
+			RowIndex index = indexRows(channel, headerBounds[2], fileLength, prog);
+			if (index.rows == 0) {
+				throw new IOException("Not enough data in file");
+			}
+
+			double[][] values = new double[cols.length][index.rows];
+			ParseProgress progress = new ParseProgress(prog, index.rows);
+			int blocks = (index.rows + INDEX_BLOCK - 1) / INDEX_BLOCK;
+			if (parallelism <= 1 || blocks <= 1) {
+				parseRows(channel, index.offsetOfRow(0), 0, index.rows, cols, values, progress);
+			} else {
+				_parseRowsParallel(channel, index, blocks, cols, values, progress);
+			}
+
+			LinkedHashMap<Header, double[]> data = new LinkedHashMap<Header, double[]>();
+			int counter = 0;
+			for (Header header : selected.keySet()) {
+				data.put(header, values[counter++]);
+			}
+			return data;
+
+		} catch (NoSuchFileException e) {
+			throw new IOException(
+					"Could not read file. May it has been deleted, moved, or you do not have permission. "
+							+ e.getMessage());
+		} finally {
+			if (prog != null) {
+				prog.setProgressBarEnabled(false, -1, -1);
+			}
+		}
+	}
+
+	/**
+	 * Finds the header row, either by skipping the set number of lines or by
+	 * auto-detecting it.
+	 *
+	 * @param buf the start of the file
+	 * @return array of size 3: [start of header, end of header (exclusive, without
+	 *         line terminators), start of the line after the header]
+	 * @throws IOException if there were not enough lines
+	 */
+	private long[] _locateHeader(ByteBuffer buf) throws IOException {
+
+		int limit = buf.limit();
+		List<int[]> lineBounds = new ArrayList<int[]>();
+		List<String[]> rows = new ArrayList<String[]>();
+		int headerIndex = -1;
+		int lineStart = 0;
+
+		while (lineStart < limit) {
+			int lineEnd = _indexOfNewline(buf, lineStart, limit);
+			int next = lineEnd < 0 ? limit : lineEnd + 1;
+			int contentEnd = _trimCarriageReturn(buf, lineStart, lineEnd < 0 ? limit : lineEnd);
+			lineBounds.add(new int[] { lineStart, contentEnd, next });
+			lineStart = next;
+
+			if (skipLines >= 0) {
+				if (lineBounds.size() > skipLines) {
+					headerIndex = skipLines;
+					break;
+				}
+			} else {
+				rows.add(tokenize(_decode(buf, lineBounds.get(lineBounds.size() - 1)[0], contentEnd)));
+				headerIndex = Reader.determineMeaningfulStart(rows);
+				if (headerIndex != -1 || rows.size() >= MAX_HEADER_SEARCH_LINES) {
+					break;
+				}
+			}
+		}
+
+		if (skipLines >= 0 && headerIndex == -1) {
+			throw new IOException("Not enough data in file");
+		} else if (lineBounds.isEmpty()) {
+			throw new IOException("Not enough data in file");
+		}
+
+		int[] header = lineBounds.get(Math.max(0, headerIndex));
+		return new long[] { header[0], header[1], header[2] };
+	}
+
+	/**
+	 * First pass over the data area. Counts the rows and records the offset of
+	 * every {@link #INDEX_BLOCK}th row. Blank lines at the very end of the file
+	 * are not counted as rows.
+	 *
+	 * @param channel    the open file
+	 * @param dataStart  offset of the first data row
+	 * @param fileLength length of the file
+	 * @param prog       progress recorder, can be null. Reports from 0 to 500 of
+	 *                   1000.
+	 * @return the index
+	 * @throws IOException if the file could not be read or has too many rows
+	 */
+	RowIndex indexRows(FileChannel channel, long dataStart, long fileLength, BackgroundProgressRecorder prog)
+			throws IOException {
+
+		long[] blockOffsets = new long[16];
+		int blocks = 0;
+		blockOffsets[blocks++] = dataStart;
+
+		int line = 0;
+		int lastNonBlank = -1;
+		boolean hasContent = false;
+
+		for (long winStart = dataStart; winStart < fileLength; winStart += MAX_WINDOW) {
+			int winSize = (int) Math.min(MAX_WINDOW, fileLength - winStart);
+			MappedByteBuffer buf = channel.map(MapMode.READ_ONLY, winStart, winSize);
+
+			for (int i = 0; i < winSize; i++) {
+				byte b = buf.get(i);
+				if (b == '\n') {
+					if (hasContent) {
+						lastNonBlank = line;
+						hasContent = false;
+					}
+					line++;
+					if (line >= MAX_ROWS) {
+						throw new IOException("Too many rows in file");
+					}
+					if (line % INDEX_BLOCK == 0) {
+						if (blocks == blockOffsets.length) {
+							blockOffsets = Arrays.copyOf(blockOffsets, blocks * 2);
+						}
+						blockOffsets[blocks++] = winStart + i + 1;
+					}
+				} else if (b != '\r') {
+					hasContent = true;
+				}
+
+				if (prog != null && (i & 0xFFFFF) == 0) {
+					prog.setProgressBarProgress((int) ((winStart + i - dataStart) * 500 / (fileLength - dataStart)));
+				}
+			}
+		}
+
+		if (hasContent) {
+			lastNonBlank = line; // last line had no line terminator
+		}
+
+		return new RowIndex(Arrays.copyOf(blockOffsets, blocks), lastNonBlank + 1);
+	}
+
+	/**
+	 * Splits the data area into chunks of whole index blocks and parses them in
+	 * parallel.
+	 *
+	 * @throws IOException if any chunk failed to parse
+	 */
+	private void _parseRowsParallel(FileChannel channel, RowIndex index, int blocks, int[] cols,
+			double[][] values, ParseProgress progress) throws IOException {
+
+		int chunks = Math.min(parallelism, blocks);
+		int blocksPerChunk = (blocks + chunks - 1) / chunks;
+
+		ForkJoinPool pool = new ForkJoinPool(chunks);
+		try {
+			List<ForkJoinTask<Void>> tasks = new ArrayList<ForkJoinTask<Void>>();
+			for (int firstBlock = 0; firstBlock < blocks; firstBlock += blocksPerChunk) {
+				final int firstRow = firstBlock * INDEX_BLOCK;
+				final int rowCount = Math.min(index.rows, (firstBlock + blocksPerChunk) * INDEX_BLOCK) - firstRow;
+				tasks.add(pool.submit(() -> {
+					parseRows(channel, index.offsetOfRow(firstRow), firstRow, rowCount, cols, values, progress);
+					return null;
+				}));
+			}
+
+			for (ForkJoinTask<Void> task : tasks) {
+				try {
+					task.get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof IOException) {
+						throw (IOException) e.getCause();
+					}
+					throw new IOException("Error parsing file: " + e.getCause().getMessage(), e.getCause());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while parsing file");
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Second pass over the data area. Parses the requested columns of a range of
+	 * rows into the output arrays.
+	 *
+	 * @param channel     the open file
+	 * @param startOffset offset of the first row to parse
+	 * @param firstRow    index of the first row to parse, used for storing
+	 * @param rowCount    number of rows to parse
+	 * @param cols        ascending column indices to parse
+	 * @param values      output array for each column in cols
+	 * @param progress    tracks rows parsed across all threads
+	 * @throws IOException if the file could not be read, or a cell was not
+	 *                     numerical
+	 */
+	void parseRows(FileChannel channel, long startOffset, int firstRow, int rowCount, int[] cols,
+			double[][] values, ParseProgress progress) throws IOException {
+
+		long fileLength = channel.size();
+		long winStart = startOffset;
+		int winSize = (int) Math.min(MAX_WINDOW, fileLength - winStart);
+		MappedByteBuffer buf = channel.map(MapMode.READ_ONLY, winStart, winSize);
+		NumberParser parser = new NumberParser();
+
+		int pos = 0;
+		for (int r = 0; r < rowCount; r++) {
+			int end = _indexOfNewline(buf, pos, winSize);
+			if (end < 0 && winStart + winSize < fileLength) {
+				// line continues past the mapped window, so map the next window starting
+				// from this line
+				winStart += pos;
+				winSize = (int) Math.min(MAX_WINDOW, fileLength - winStart);
+				buf = channel.map(MapMode.READ_ONLY, winStart, winSize);
+				pos = 0;
+				end = _indexOfNewline(buf, pos, winSize);
+				if (end < 0 && winStart + winSize < fileLength) {
+					throw new IOException("Line too long in file");
+				}
+			}
+			if (end < 0) {
+				end = winSize;
+			}
+
+			_parseRow(buf, pos, _trimCarriageReturn(buf, pos, end), cols, values, firstRow + r, parser);
+			pos = end + 1;
+
+			if ((r + 1) % PROGRESS_INTERVAL == 0) {
+				progress.rowsParsed(PROGRESS_INTERVAL);
+			}
+		}
+		progress.rowsParsed(rowCount % PROGRESS_INTERVAL);
+	}
+
+	/**
+	 * Parses the requested columns of a single line. Columns past the end of the
+	 * line are treated as blank.
+	 *
+	 * @throws IOException if a cell is not numerical
+	 */
+	private void _parseRow(ByteBuffer buf, int lineStart, int lineEnd, int[] cols, double[][] values, int row,
+			NumberParser parser) throws IOException {
+		int colI = 0;
+		int start = lineStart;
+		int target = 0;
+		while (target < cols.length) {
+			if (start > lineEnd) {
+				// ran out of fields
+				values[target++][row] = 0;
+				continue;
+			}
+			int end = _fieldEnd(buf, start, lineEnd);
+			if (colI == cols[target]) {
+				int fieldStart = start;
+				int fieldEnd = end;
+				if (quoted && fieldEnd - fieldStart >= 2 && buf.get(fieldStart) == '"'
+						&& buf.get(fieldEnd - 1) == '"') {
+					fieldStart++;
+					fieldEnd--;
+				}
+				if (parser.parse(buf, fieldStart, fieldEnd) == NumberParser.NOT_A_NUMBER) {
+					throw new IOException("Data area contained a non-numerical value.");
+				}
+				values[target++][row] = parser.getValue();
+			}
+			colI++;
+			start = end + 1;
+		}
+	}
+
+	/**
+	 * Finds the end of a field.
+	 *
+	 * @return index of the delimiter ending the field, or the end of the line
+	 */
+	private int _fieldEnd(ByteBuffer buf, int start, int lineEnd) {
+		int i = start;
+		if (quoted && i < lineEnd && buf.get(i) == '"') {
+			i++;
+			while (i < lineEnd) {
+				if (buf.get(i) == '"') {
+					if (i + 1 < lineEnd && buf.get(i + 1) == '"') {
+						i += 2;
+						continue;
+					}
+					i++;
+					break;
+				}
+				i++;
+			}
+		}
+		while (i < lineEnd && buf.get(i) != delimiter) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * @return index of the next '\n' at or after start, or -1 if there is none
+	 *         before limit
+	 */
+	private static int _indexOfNewline(ByteBuffer buf, int start, int limit) {
+		for (int i = start; i < limit; i++) {
+			if (buf.get(i) == '\n') {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return end of the line, excluding a trailing '\r' if present
+	 */
+	private static int _trimCarriageReturn(ByteBuffer buf, int start, int end) {
+		return (end > start && buf.get(end - 1) == '\r') ? end - 1 : end;
+	}
+
+	/**
+	 * Decodes part of the buffer into a {@link String} using the platform charset
+	 */
+	private static String _decode(ByteBuffer buf, int start, int end) {
+		byte[] bytes = new byte[end - start];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buf.get(start + i);
+		}
+		return new String(bytes, Charset.defaultCharset());
+	}
+
+	/**
+	 * Aggregates the number of rows parsed by each thread and reports it from 500
+	 * to 1000 of 1000.
+	 */
+	static class ParseProgress {
+
+		private final BackgroundProgressRecorder prog;
+		private final int totalRows;
+		private final AtomicInteger parsed = new AtomicInteger(0);
+
+		ParseProgress(BackgroundProgressRecorder prog, int totalRows) {
+			this.prog = prog;
+			this.totalRows = totalRows;
+		}
+
+		/**
+		 * @param rows number of additional rows parsed
+		 */
+		void rowsParsed(int rows) {
+			int done = parsed.addAndGet(rows);
+			if (prog != null) {
+				prog.setProgressBarProgress(500 + (int) ((long) done * 500 / totalRows));
+			}
+		}
+	}
+
+	/**
+	 * Index of the rows in the data area of a file.
+	 */
+	static class RowIndex {
+
+		/** Offset in the file of every {@link MappedColumnReader#INDEX_BLOCK}th row */
+		final long[] blockOffsets;
+		/** Number of rows in the data area */
+		final int rows;
+
+		private RowIndex(long[] blockOffsets, int rows) {
+			this.blockOffsets = blockOffsets;
+			this.rows = rows;
+		}
+
+		/**
+		 * @param row a row index which is a multiple of
+		 *            {@link MappedColumnReader#INDEX_BLOCK}
+		 * @return the offset in the file of the start of that row
+		 */
+		long offsetOfRow(int row) {
+			return blockOffsets[row / INDEX_BLOCK];
+		}
+	}
+
+}
@@ -0,0 +1,252 @@
+package com.carrington.WIA.IO;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Parses numbers from ranges of characters or bytes without creating
+ * substrings, and classifies each cell as a number, blank, time stamp or
+ * something else. Values give the same result as {@link Double#parseDouble(String)}.
+ * <p>
+ * Plain decimal and scientific values (i.e. "-12.5", "8.474e-01") with up to 15
+ * significant digits and small exponents are converted directly, and are
+ * correctly rounded. Anything else (i.e. "NaN", "Infinity", hex, padding with
+ * whitespace) falls back to {@link Double#parseDouble(String)}.
+ * </p>
+ * <p>
+ * An instance keeps the result of the last parse and a scratch buffer, so it
+ * must not be shared between threads.
+ * </p>
+ */
+public final class NumberParser {
+
+	/** Cell was empty. Value is 0. */
+	public static final int BLANK = 0;
+	/** Cell was a number */
+	public static final int NUMBER = 1;
+	/** Cell was a time stamp (only digits and colons). Value is 0. */
+	public static final int TIMESTAMP = 2;
+	/** Cell was text, "NaN", or otherwise not a number. Value is {@link Double#NaN} */
+	public static final int NOT_A_NUMBER = 3;
+
+	/** Maximum number of significant digits which fit in a long */
+	private static final int MAX_DIGITS = 18;
+
+	/** Largest integer for which every smaller integer is exactly represented */
+	private static final long MAX_EXACT = 1L << 53;
+
+	/** Powers of ten which are exactly represented as a double */
+	private static final double[] POW10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+			1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private char[] scratch = new char[64];
+	private double value = Double.NaN;
+
+	/**
+	 * Parses a whole {@link String}
+	 *
+	 * @param text the text
+	 * @return the classification, one of {@link #BLANK}, {@link #NUMBER},
+	 *         {@link #TIMESTAMP}, or {@link #NOT_A_NUMBER}
+	 */
+	public int parse(String text) {
+		return parse(text, 0, text.length());
+	}
+
+	/**
+	 * Parses part of a {@link String}
+	 *
+	 * @param text  the text
+	 * @param start first character (inclusive)
+	 * @param end   last character (exclusive)
+	 * @return the classification, one of {@link #BLANK}, {@link #NUMBER},
+	 *         {@link #TIMESTAMP}, or {@link #NOT_A_NUMBER}
+	 */
+	public int parse(String text, int start, int end) {
+		int length = end - start;
+		_ensureScratch(length);
+		text.getChars(start, end, scratch, 0);
+		return parse(scratch, 0, length);
+	}
+
+	/**
+	 * Parses a range of single-byte (ASCII) characters
+	 *
+	 * @param buf   the bytes
+	 * @param start first byte (inclusive)
+	 * @param end   last byte (exclusive)
+	 * @return the classification, one of {@link #BLANK}, {@link #NUMBER},
+	 *         {@link #TIMESTAMP}, or {@link #NOT_A_NUMBER}
+	 */
+	public int parse(ByteBuffer buf, int start, int end) {
+		int length = end - start;
+		_ensureScratch(length);
+		for (int i = 0; i < length; i++) {
+			scratch[i] = (char) (buf.get(start + i) & 0xFF);
+		}
+		return parse(scratch, 0, length);
+	}
+
+	/**
+	 * Parses a range of characters
+	 *
+	 * @param chars the characters
+	 * @param start first character (inclusive)
+	 * @param end   last character (exclusive)
+	 * @return the classification, one of {@link #BLANK}, {@link #NUMBER},
+	 *         {@link #TIMESTAMP}, or {@link #NOT_A_NUMBER}
+	 */
+	public int parse(char[] chars, int start, int end) {
+
+		if (end <= start) {
+			value = 0;
+			return BLANK;
+		}
+
+		int i = start;
+		boolean negative = false;
+		char c = chars[i];
+		if (c == '-' || c == '+') {
+			negative = c == '-';
+			i++;
+		}
+
+		long mantissa = 0;
+		int digits = 0; // significant digits in the mantissa
+		int exp10 = 0;
+		boolean anyDigits = false;
+
+		// integer part
+		while (i < end && (c = chars[i]) >= '0' && c <= '9') {
+			anyDigits = true;
+			if (mantissa != 0 || c != '0') {
+				if (++digits > MAX_DIGITS) {
+					return _parseSlow(chars, start, end);
+				}
+				mantissa = mantissa * 10 + (c - '0');
+			}
+			i++;
+		}
+
+		if (i < end && chars[i] == '.') {
+			i++;
+			while (i < end && (c = chars[i]) >= '0' && c <= '9') {
+				anyDigits = true;
+				if (mantissa != 0 || c != '0') {
+					if (++digits > MAX_DIGITS) {
+						return _parseSlow(chars, start, end);
+					}
+					mantissa = mantissa * 10 + (c - '0');
+				}
+				exp10--;
+				i++;
+			}
+		}
+
+		if (anyDigits && i < end && ((c = chars[i]) == 'e' || c == 'E')) {
+			i++;
+			boolean expNegative = false;
+			if (i < end && ((c = chars[i]) == '-' || c == '+')) {
+				expNegative = c == '-';
+				i++;
+			}
+			int exp = 0;
+			boolean expDigits = false;
+			while (i < end && (c = chars[i]) >= '0' && c <= '9') {
+				expDigits = true;
+				if (exp < 100000) {
+					exp = exp * 10 + (c - '0');
+				}
+				i++;
+			}
+			if (!expDigits) {
+				return _parseSlow(chars, start, end);
+			}
+			exp10 += expNegative ? -exp : exp;
+		}
+
+		if (i != end || !anyDigits) {
+			return _parseSlow(chars, start, end);
+		}
+
+		if (mantissa == 0) {
+			value = negative ? -0.0d : 0.0d;
+			return NUMBER;
+		} else if (mantissa <= MAX_EXACT && exp10 >= -22 && exp10 <= 22) {
+			// both the mantissa and power of ten are exact, so one operation gives a
+			// correctly rounded result
+			double d = (double) mantissa;
+			d = exp10 < 0 ? d / POW10[-exp10] : d * POW10[exp10];
+			value = negative ? -d : d;
+			return NUMBER;
+		}
+
+		return _parseSlow(chars, start, end);
+	}
+
+	/**
+	 * @return the value from the last parse; 0 for {@link #BLANK} and
+	 *         {@link #TIMESTAMP}, {@link Double#NaN} for {@link #NOT_A_NUMBER}
+	 */
+	public double getValue() {
+		return value;
+	}
+
+	/**
+	 * Determines if the passed input is a time stamp, equivalent to
+	 * {@link com.carrington.WIA.Utils#isATimeStamp(String)}
+	 *
+	 * @param chars the characters
+	 * @param start first character (inclusive)
+	 * @param end   last character (exclusive)
+	 * @return true if the range only has digits and colons
+	 */
+	public static boolean isTimeStamp(char[] chars, int start, int end) {
+		for (int i = start; i < end; i++) {
+			char c = chars[i];
+			if (c != ':' && (c < '0' || c > '9')) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parses using {@link Double#parseDouble(String)}, for anything the fast path
+	 * does not handle. Time stamps are checked first, as they would otherwise fail
+	 * with an exception.
+	 */
+	private int _parseSlow(char[] chars, int start, int end) {
+		if (isTimeStamp(chars, start, end)) {
+			// only digits and colons. If there is no colon, it is a long integer.
+			boolean hasColon = false;
+			for (int i = start; i < end; i++) {
+				if (chars[i] == ':') {
+					hasColon = true;
+					break;
+				}
+			}
+			if (hasColon) {
+				value = 0;
+				return TIMESTAMP;
+			}
+		}
+
+		try {
+			value = Double.parseDouble(new String(chars, start, end - start));
+			return Double.isNaN(value) ? NOT_A_NUMBER : NUMBER;
+		} catch (NumberFormatException e) {
+			value = Double.NaN;
+			return NOT_A_NUMBER;
+		}
+	}
+
+	/**
+	 * Makes sure the scratch buffer can hold the specified number of characters
+	 */
+	private void _ensureScratch(int length) {
+		if (length > scratch.length) {
+			scratch = new char[Math.max(length, scratch.length * 2)];
+		}
+	}
+
+}
@@ -50,6 +50,8 @@ public class Reader {
 
 	private int skipLines;
 
+	private final NumberParser parser = new NumberParser();
+
 	/**
 	 * 
 	 * @param file                The file to read from
@@ -151,19 +153,8 @@ public class Reader {
 		if (row < this.mainData.length) {
 			if (column < this.mainData[row].length) {
 
-				String value = mainData[row][column];
-				if (value.length() == 0)
-					value = "0";
-
-				try {
-					return Double.parseDouble(value);
-				} catch (Exception e) {
-					if (Utils.isATimeStamp(value)) {
-						return 0d;
-					} else {
-						return Double.NaN;
-					}
-				}
+				parser.parse(mainData[row][column]);
+				return parser.getValue();
 
 			}
 		}
@@ -180,16 +171,51 @@ public class Reader {
 
 		if (mainData != null)
 			return;
-		
+
 		if (prog != null) {
 			prog.setProgressBarEnabled(true, 1, 4);
 		}
-		
+
+		if (file.getName().toLowerCase().endsWith(".xlsx")) {
+			// stream the sheet, stopping once enough rows are read, rather than loading
+			// the whole workbook
+			int linesToRead = numLines <= 0 ? -1 : numLines + Math.max(0, skipLines);
+			List<String[]> data = ExcelColumnReader.readRows(file, linesToRead);
+			if (linesToRead > 0 && data.size() < linesToRead) {
+				throw new IOException("Not enough rows");
+			}
+			this.mainData = data.toArray(new String[0][]);
+
+		} else {
+			_initExcelWorkbook(numLines, prog);
+		}
+
+		if (this.mainData == null || (this.mainData.length <= skipLines)) {
+			throw new IOException("Not enough data in Excel sheet");
+
+		}
+		if (prog != null) {
+			prog.setProgressBarProgress(4);
+		}
+
+	}
+
+	/**
+	 * Reads an Excel file by loading the entire workbook. Used for the older .xls
+	 * format, which cannot be streamed.
+	 *
+	 * @param numLines The number of lines to read; if -1, reads the entire sheet.
+	 * @throws IOException if the file cannot be read or parsed.
+	 */
+	private void _initExcelWorkbook(int numLines, BackgroundProgressRecorder prog) throws IOException {
+
 		Workbook workbook = WorkbookFactory.create(file);
 		if (workbook == null)
 			throw new IOException("Could not obtain Excel workbook");
 
-		prog.setProgressBarProgress(2);
+		if (prog != null) {
+			prog.setProgressBarProgress(2);
+		}
 
 		Sheet sheet = workbook.getSheetAt(0);
 		if (sheet == null)
@@ -200,8 +226,6 @@ public class Reader {
 
 		try {
 
-			prog.setProgressBarProgress(2);
-
 			List<String[]> data = new ArrayList<String[]>();
 			if (numLines <= 0) {
 
@@ -236,7 +260,9 @@ public class Reader {
 
 				}
 			}
-			prog.setProgressBarProgress(3);
+			if (prog != null) {
+				prog.setProgressBarProgress(3);
+			}
 
 			this.mainData = data.toArray(new String[0][]);
 
@@ -248,14 +274,6 @@ public class Reader {
 				workbook.close();
 		}
 
-		if (this.mainData == null || (this.mainData.length <= skipLines)) {
-			throw new IOException("Not enough data in Excel sheet");
-
-		}
-		prog.setProgressBarProgress(4);
-
-
-
 	}
 
 	/**
@@ -361,7 +379,7 @@ public class Reader {
 					try {
 						String[] line = scanner.nextLine().split("\\t");
 						lines.add(line);
-						int start = _determineMeaningfulStart(lines);
+						int start = determineMeaningfulStart(lines);
 						if (start != -1) {
 							break;
 						}
@@ -393,7 +411,7 @@ public class Reader {
 	 * @param data A list of string arrays representing the raw file data.
 	 * @return The 0-based index of the header row, or -1 if not found.
 	 */
-	private static int _determineMeaningfulStart(List<String[]> data) {
+	static int determineMeaningfulStart(List<String[]> data) {
 		return _determineMeaningfulStart(data.toArray(new String[0][]));
 	}
 
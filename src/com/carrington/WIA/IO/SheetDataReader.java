@@ -23,6 +23,9 @@ public class SheetDataReader {
 	private File file;
 	private String fileName = null;
 	private int ignoreLines = -1;
+	private boolean streaming = true;
+	private long mappedThreshold = MappedColumnReader.DEFAULT_THRESHOLD;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
 
 	/**
 	 * New sheet reader
@@ -38,6 +41,42 @@ public class SheetDataReader {
 		this.ignoreLines = ignoreLines;
 	}
 
+	/**
+	 * Sets whether files are read in streaming mode (the default), where only the
+	 * requested columns are parsed directly into primitive arrays via
+	 * {@link DelimitedColumnReader} or, for .xlsx files,
+	 * {@link ExcelColumnReader}. If false, the whole file is first loaded into
+	 * memory via {@link Reader}. Older .xls files are never streamed.
+	 * 
+	 * @param streaming true to read files in streaming mode
+	 */
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+
+	/**
+	 * Sets the file size at or above which CSV and tab-delimited text files are
+	 * memory mapped and read via {@link MappedColumnReader}, rather than streamed.
+	 * Only applies in streaming mode (see {@link #setStreaming(boolean)}).
+	 * 
+	 * @param bytes the size threshold in bytes. Use {@link Long#MAX_VALUE} to never
+	 *              memory map.
+	 */
+	public void setMappedThreshold(long bytes) {
+		this.mappedThreshold = bytes;
+	}
+
+	/**
+	 * Sets the number of threads used to parse memory mapped files (see
+	 * {@link #setMappedThreshold(long)}). Defaults to the number of available
+	 * processors.
+	 * 
+	 * @param parallelism number of threads; 1 parses on the calling thread
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
 	/**
 	 * Reads the header row from the input file. It auto-detects the file type and
 	 * attempts to locate the header row if not specified.
@@ -127,6 +166,25 @@ public class SheetDataReader {
 			return new ReadResult(null, "Input file did not have the extension .csv, .txt,  .xls, or .xlsx");
 		}
 
+		if (streaming && (readerType != Reader.EXCEL || this.fileName.toLowerCase().endsWith(".xlsx"))) {
+			try {
+				ColumnReader reader;
+				if (readerType == Reader.EXCEL) {
+					reader = new ExcelColumnReader(this.file, this.ignoreLines);
+				} else if (this.file.length() >= this.mappedThreshold) {
+					MappedColumnReader mappedReader = new MappedColumnReader(this.file, readerType, this.ignoreLines);
+					mappedReader.setParallelism(this.parallelism);
+					reader = mappedReader;
+				} else {
+					reader = new DelimitedColumnReader(this.file, readerType, this.ignoreLines);
+				}
+				return new ReadResult(_toHemoData(reader.read(columns, progDisplayer)), null);
+			} catch (Exception e) {
+				e.printStackTrace();
+				return new ReadResult(null, e.getMessage());
+			}
+		}
+
 		Reader reader;
 		try {
 		
@@ -177,17 +235,7 @@ public class SheetDataReader {
 
 			}
 
-			HemoData hd = new HemoData(file, fileName, null); // don't know name yet.
-			for (Entry<Header, double[]> en : data.entrySet()) {
-				if (en.getKey().isX()) {
-					hd.setXData(en.getKey(), en.getValue());
-				} else {
-
-					hd.addYData(en.getKey(), en.getValue());
-				}
-			}
-
-			return new ReadResult(hd, null);
+			return new ReadResult(_toHemoData(data), null);
 
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -197,4 +245,23 @@ public class SheetDataReader {
 
 	}
 
+	/**
+	 * Builds a {@link HemoData} from the columns read from the file.
+	 *
+	 * @param data the read columns; the header flagged as X becomes the domain
+	 * @return new {@link HemoData}, which does not have a name yet
+	 */
+	private HemoData _toHemoData(LinkedHashMap<Header, double[]> data) {
+		HemoData hd = new HemoData(file, fileName, null); // don't know name yet.
+		for (Entry<Header, double[]> en : data.entrySet()) {
+			if (en.getKey().isX()) {
+				hd.setXData(en.getKey(), en.getValue());
+			} else {
+
+				hd.addYData(en.getKey(), en.getValue());
+			}
+		}
+		return hd;
+	}
+
 }
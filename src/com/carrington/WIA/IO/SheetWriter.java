@@ -7,18 +7,19 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.usermodel.FillPatternType;
 import org.apache.poi.ss.usermodel.IndexedColors;
 import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.DefaultIndexedColorMap;
-import org.apache.poi.xssf.usermodel.XSSFCell;
 import org.apache.poi.xssf.usermodel.XSSFColor;
 import org.apache.poi.xssf.usermodel.XSSFFont;
-import org.apache.poi.xssf.usermodel.XSSFRow;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 import com.carrington.WIA.Utils;
@@ -27,11 +28,20 @@ import com.carrington.WIA.Utils;
  * Utility class for writing data to an Excel (.xlsx) spreadsheet using Apache
  * POI. It handles the creation of workbooks, sheets, cells, and applying
  * various styles.
+ * <p>
+ * By default the whole workbook is kept in memory until saved. For large
+ * exports, use {@link #SheetWriter(int)} to write in streaming mode, where only
+ * a window of the most recent rows is kept in memory and older rows are flushed
+ * to a temporary file.
+ * </p>
  */
 public class SheetWriter {
 
-	private XSSFWorkbook workbook = null;
-	private XSSFSheet sheet = null;
+	/** Default number of rows kept in memory in streaming mode */
+	public static final int DEFAULT_ROW_WINDOW = SXSSFWorkbook.DEFAULT_WINDOW_SIZE;
+
+	private final Workbook workbook;
+	private Sheet sheet = null;
 	private int nextRowNum = 0;
 
 	/** Font style for main text. */
@@ -54,14 +64,42 @@ public class SheetWriter {
 
 	/**
 	 * Constructs a new writer, initializing the workbook and predefined cell styles
-	 * for fonts, colors, and patterns.
+	 * for fonts, colors, and patterns. The workbook is kept in memory until saved.
 	 */
 	public SheetWriter() {
+		this(new XSSFWorkbook(), null);
+	}
+
+	/**
+	 * Constructs a new writer in streaming mode, so that memory use does not grow
+	 * with the number of rows written. Rows which have scrolled out of the window
+	 * are flushed to a temporary file and can no longer be accessed, so rows can
+	 * only be written in order.
+	 *
+	 * @param rowWindow number of most recent rows to keep in memory, i.e.
+	 *                  {@link #DEFAULT_ROW_WINDOW}
+	 * @throws IllegalArgumentException if rowWindow is less than 1
+	 */
+	public SheetWriter(int rowWindow) {
+		this(new XSSFWorkbook(), _checkWindow(rowWindow));
+	}
+
+	/**
+	 * Sets up the styles on the base workbook, which are shared with the streaming
+	 * workbook if there is one.
+	 */
+	private SheetWriter(XSSFWorkbook base, Integer rowWindow) {
 
-		workbook = new XSSFWorkbook();
+		if (rowWindow != null) {
+			SXSSFWorkbook streaming = new SXSSFWorkbook(base, rowWindow);
+			streaming.setCompressTempFiles(true);
+			workbook = streaming;
+		} else {
+			workbook = base;
+		}
 
-		styleMainBold = workbook.createCellStyle();
-		XSSFFont fontMainBold = workbook.createFont();
+		styleMainBold = base.createCellStyle();
+		XSSFFont fontMainBold = base.createFont();
 		fontMainBold.setBold(true);
 		fontMainBold.setColor(IndexedColors.BLACK.getIndex());
 		fontMainBold.setFontHeight(12);
@@ -70,8 +108,8 @@ public class SheetWriter {
 		styleMainBold.setFillPattern(FillPatternType.NO_FILL);
 		styleMainBold.setFillForegroundColor(IndexedColors.WHITE.getIndex());
 
-		styleMain = workbook.createCellStyle();
-		XSSFFont fontMain = workbook.createFont();
+		styleMain = base.createCellStyle();
+		XSSFFont fontMain = base.createFont();
 		fontMain.setBold(false);
 		fontMain.setColor(IndexedColors.BLACK.getIndex());
 		fontMain.setFontHeight(12);
@@ -80,8 +118,8 @@ public class SheetWriter {
 		styleMain.setFillPattern(FillPatternType.NO_FILL);
 		styleMain.setFillForegroundColor(IndexedColors.WHITE.getIndex());
 
-		styleGreen = workbook.createCellStyle();
-		XSSFFont fontGreen = workbook.createFont();
+		styleGreen = base.createCellStyle();
+		XSSFFont fontGreen = base.createFont();
 		fontGreen.setBold(true);
 		fontGreen
 				.setColor(new XSSFColor(new byte[] { (byte) 25, (byte) 107, (byte) 36 }, new DefaultIndexedColorMap()));
@@ -93,8 +131,8 @@ public class SheetWriter {
 		styleGreen.setFillForegroundColor(
 				new XSSFColor(new byte[] { (byte) 193, (byte) 240, (byte) 200 }, new DefaultIndexedColorMap()));
 
-		styleRed = workbook.createCellStyle();
-		XSSFFont fontRed = workbook.createFont();
+		styleRed = base.createCellStyle();
+		XSSFFont fontRed = base.createFont();
 		fontRed.setBold(true);
 		fontRed.setColor(new XSSFColor(new byte[] { (byte) 255, (byte) 0, (byte) 0 }, new DefaultIndexedColorMap()));
 
@@ -104,8 +142,8 @@ public class SheetWriter {
 		styleRed.setFillPattern(FillPatternType.NO_FILL);
 		styleMainBold.setFillForegroundColor(IndexedColors.WHITE.getIndex());
 
-		styleTitle = workbook.createCellStyle();
-		XSSFFont fontTitle = workbook.createFont();
+		styleTitle = base.createCellStyle();
+		XSSFFont fontTitle = base.createFont();
 		fontTitle.setBold(true);
 		fontTitle.setFontHeight(16);
 		fontTitle.setColor(new XSSFColor(new byte[] { (byte) 16, (byte) 72, (byte) 97 }, new DefaultIndexedColorMap()));
@@ -116,6 +154,16 @@ public class SheetWriter {
 				new XSSFColor(new byte[] { (byte) 192, (byte) 230, (byte) 245 }, new DefaultIndexedColorMap()));
 	}
 
+	/**
+	 * Validates the number of rows to keep in memory in streaming mode
+	 */
+	private static Integer _checkWindow(int rowWindow) {
+		if (rowWindow < 1) {
+			throw new IllegalArgumentException("Row window must be at least 1, but was " + rowWindow);
+		}
+		return rowWindow;
+	}
+
 	/**
 	 * Creates a new sheet in the workbook with the specified name and resets the
 	 * row counter
@@ -136,9 +184,9 @@ public class SheetWriter {
 	/**
 	 * Gets the currently active sheet
 	 *
-	 * @return The current {@link XSSFSheet} instance
+	 * @return The current {@link Sheet} instance
 	 */
-	public XSSFSheet getCurrentSheet() {
+	public Sheet getCurrentSheet() {
 		return this.sheet;
 	}
 
@@ -175,7 +223,9 @@ public class SheetWriter {
 	}
 
 	/**
-	 * Saves the workbook content to the specified file.
+	 * Saves the workbook content to the specified file. In streaming mode the
+	 * flushed rows are released once saved, so the workbook can only be saved
+	 * once.
 	 *
 	 * @param file The file to save the workbook to. Must have a '.xlsx' extension.
 	 * @throws IOException              if any error with writing
@@ -191,10 +241,14 @@ public class SheetWriter {
 		if (!Utils.hasOkayExtension(file, ".xlsx")) {
 			throw new IllegalArgumentException("Only '.xlsx' extension allowed, but trid to save " + file.getName());
 		}
-		FileOutputStream out = new FileOutputStream(file);
-		workbook.write(out);
-
-		out.close();
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			workbook.write(out);
+		} finally {
+			if (workbook instanceof SXSSFWorkbook) {
+				// remove the temporary files which held the flushed rows
+				((SXSSFWorkbook) workbook).dispose();
+			}
+		}
 
 	}
 
@@ -206,13 +260,13 @@ public class SheetWriter {
 	 */
 	public void writeData(Object[] data) {
 
-		XSSFRow row = sheet.createRow(nextRowNum);
+		Row row = sheet.createRow(nextRowNum);
 		if (data == null || data.length == 0)
 			return;
 
 		for (int i = 0; i < data.length; i++) {
 			Object ob = data[i];
-			XSSFCell cell = null;
+			Cell cell = null;
 			if (ob instanceof Double) {
 				cell = row.createCell(i, CellType.NUMERIC);
 				cell.setCellValue((Double) ob);
@@ -249,14 +303,14 @@ public class SheetWriter {
 	 */
 	public void writeData(Object[] data, int[] fontSelection) {
 
-		XSSFRow row = sheet.createRow(nextRowNum);
+		Row row = sheet.createRow(nextRowNum);
 
 		if (data == null || data.length == 0)
 			return;
 
 		for (int i = 0; i < data.length; i++) {
 			Object ob = data[i];
-			XSSFCell cell = null;
+			Cell cell = null;
 			if (ob instanceof Double) {
 				cell = row.createCell(i, CellType.NUMERIC);
 				cell.setCellValue((Double) ob);
@@ -329,8 +383,8 @@ public class SheetWriter {
 	 *                      {@link SheetWriter#FONT_TITLE_LARGE}
 	 */
 	public void writeMergedRow(Object value, int mergeToColumn, int fontSelection) {
-		XSSFRow row = sheet.createRow(nextRowNum);
-		XSSFCell cell = row.createCell(0);
+		Row row = sheet.createRow(nextRowNum);
+		Cell cell = row.createCell(0);
 
 		if (value instanceof Double) {
 			cell.setCellValue((Double) value);
@@ -387,7 +441,7 @@ public class SheetWriter {
 	/**
 	 * Calculates the maximum number of columns in the current sheet. This is a more
 	 * time intense process than would be expected, because maximum column number
-	 * isn't stored or retrievable from {@link XSSFSheet} by default. This method
+	 * isn't stored or retrievable from {@link Sheet} by default. This method
 	 * iterates over every row to find the max
 	 *
 	 * @return The number of columns as an integer.
@@ -4,10 +4,17 @@ import java.awt.Color;
 import java.awt.Component;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -15,6 +22,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 import javax.swing.GroupLayout;
@@ -30,6 +41,7 @@ import com.carrington.WIA.Utils;
 import com.carrington.WIA.Cardio.Wave;
 import com.carrington.WIA.DataStructures.InsensitiveNonDupList;
 import com.carrington.WIA.DataStructures.WIAData;
+import com.carrington.WIA.GUIs.BackgroundProgressRecorder;
 import com.carrington.WIA.GUIs.Components.JCLabel;
 import com.carrington.WIA.stats.DataCollection;
 import com.carrington.WIA.stats.DataType;
@@ -52,6 +64,9 @@ public class WIAStats {
 	private List<StatisticalComparison> statsComparisons = new ArrayList<StatisticalComparison>();
 
 	private boolean skipDiameters = false;
+	private int loadThreads = Runtime.getRuntime().availableProcessors();
+	private boolean useIndex = true;
+	private boolean migrate = false;
 	private String name;
 
 	private final int TYPE_ENDO_INDEP = 1;
@@ -299,9 +314,50 @@ public class WIAStats {
 		return standardWaveGroups.remove(standardWaveGroup);
 	}
 
+	/**
+	 * Sets the number of threads used to load files in
+	 * {@link #loadFiles(File, boolean, BackgroundProgressRecorder)}. Defaults to
+	 * the number of available processors.
+	 * 
+	 * @param threads number of threads; 1 loads on a single background thread
+	 * @throws IllegalArgumentException if threads is less than 1
+	 */
+	public void setLoadThreads(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Must load with at least 1 thread, but was " + threads);
+		}
+		this.loadThreads = threads;
+	}
+
+	/**
+	 * Sets whether {@link #loadFiles(File, boolean, BackgroundProgressRecorder)}
+	 * uses a {@link CohortIndex} in the folder being loaded, so that files which
+	 * have not changed since the last load are not read again. Enabled by
+	 * default.
+	 * 
+	 * @param useIndex true to read and update the index
+	 */
+	public void setUseIndex(boolean useIndex) {
+		this.useIndex = useIndex;
+	}
+
+	/**
+	 * Sets whether {@link #loadFiles(File, boolean, BackgroundProgressRecorder)}
+	 * converts files saved in the older Java serialization format to the columnar
+	 * format before reading them (see {@link WIAData#migrate(File)}), so that later
+	 * loads only need to read their summary. Disabled by default, as the files are
+	 * rewritten in place.
+	 * 
+	 * @param migrate true to convert older files while loading
+	 */
+	public void setMigrate(boolean migrate) {
+		this.migrate = migrate;
+	}
+
 	/**
 	 * Loads WIA data files. These must have extension ".wia" and be serialized
-	 * {@link WIAData} objects.
+	 * {@link WIAData} objects. Only the values needed for statistics are read (see
+	 * {@link WIAData#deserializeSummary(File)}), not the data arrays.
 	 * 
 	 * @param file      the file to load with extension ".wia", or a folder
 	 * @param recursive true if should get all WIA files within the input
@@ -312,105 +368,167 @@ public class WIAStats {
 	 *         {@link WIAData} objects.
 	 */
 	public String loadFiles(File file, boolean recursive) {
-
-		List<WIAData> listOfWIA = new ArrayList<WIAData>();
-		String errors;
-		if (recursive) {
-			errors = getFilesRecursively(file, listOfWIA);
-		} else {
-			errors = getFiles(file, listOfWIA);
-		}
-		for (WIAData data : listOfWIA) {
-			data.retryCalculations();
-		}
-		wiaData.addAll(listOfWIA);
-
-		_findStandardWaves();
-		_findStandardTreatments();
-		addCalculatedFields();
-
-		return errors;
-
+		return loadFiles(file, recursive, null).getErrors();
 	}
 
 	/**
-	 * Collects .wia files from a specified directory or loads a single .wia file.
-	 * This method is not recursive.
-	 *
-	 * @param file The directory or file to inspect.
-	 * @param set  The list to populate with deserialized {@link WIAData} objects.
-	 * @return An error message if reading fails, otherwise null.
-	 */
-	private String getFiles(File file, List<WIAData> set) {
-		String errorRead = Utils.checkCanReadFile(file);
-		if (errorRead != null)
-			return errorRead;
-
-		return null;
-
-	}
-
-	/**
-	 * Recursively collects .wia files from a root directory and all its
-	 * subdirectories.
+	 * Loads WIA data files. These must have extension ".wia" and be serialized
+	 * {@link WIAData} objects. Only the values needed for statistics are read (see
+	 * {@link WIAData#deserializeSummary(File)}), not the data arrays.
+	 * <p>
+	 * Files are read and their calculations re-run in parallel (see
+	 * {@link #setLoadThreads(int)}). A file which cannot be read does not stop the
+	 * others from loading; its error is recorded in the result instead.
+	 * </p>
+	 * <p>
+	 * Unless disabled with {@link #setUseIndex(boolean)}, files are loaded through
+	 * a {@link CohortIndex} kept in the folder, which is updated afterwards. If
+	 * enabled with {@link #setMigrate(boolean)}, files in the older format are
+	 * converted first, and a file which cannot be converted is not loaded.
+	 * </p>
 	 * 
-	 * @param file The root directory to start searching from.
-	 * @param set  The list to populate with deserialized {@link WIAData} objects.
-	 * @return An error message if reading fails at any point, otherwise null.
+	 * @param file      the file to load with extension ".wia", or a folder
+	 * @param recursive true if should get all WIA files within the input
+	 *                  {@link File} and its sub folders. Otherwise only files
+	 *                  directly within the folder are loaded.
+	 * @param prog      progress of the files loaded so far, or null
+	 * @return the number of files loaded, time taken, and any errors
 	 */
-	private String getFilesRecursively(File file, List<WIAData> set) {
+	public LoadResult loadFiles(File file, boolean recursive, BackgroundProgressRecorder prog) {
 
-		String errorRead = Utils.checkCanReadFile(file);
-		if (errorRead != null) {
-			return errorRead;
+		long start = System.nanoTime();
+		LinkedHashMap<File, String> errors = new LinkedHashMap<File, String>();
+		List<File> files = _findFiles(file, recursive, errors);
+		CohortIndex cohortIndex = useIndex && !files.isEmpty()
+				? CohortIndex.open(file.isDirectory() ? file : file.getAbsoluteFile().getParentFile())
+				: null;
 
-		}
+		WIAData[] loaded = new WIAData[files.size()];
+		if (!files.isEmpty()) {
+			if (prog != null) {
+				prog.setProgressBarEnabled(true, 0, files.size());
+			}
 
-		if (!file.isDirectory()) {
+			ExecutorService pool = Executors.newFixedThreadPool(Math.min(loadThreads, files.size()));
+			try {
+				CompletionService<Integer> completion = new ExecutorCompletionService<Integer>(pool);
+				String[] fileErrors = new String[files.size()];
+				for (int i = 0; i < files.size(); i++) {
+					final int index = i;
+					completion.submit(() -> {
+						try {
+							if (migrate) {
+								WIAData.migrate(files.get(index));
+							}
+							WIAData data = cohortIndex != null ? cohortIndex.load(files.get(index))
+									: WIAData.deserializeSummary(files.get(index));
+							data.retryCalculations();
+							loaded[index] = data;
+						} catch (Throwable e) {
+							// including errors such as running out of memory, so that every file
+							// is either loaded or reported. An error's message alone (e.g. "Java
+							// heap space") does not say what went wrong, so it keeps its type
+							fileErrors[index] = e instanceof Exception && e.getMessage() != null ? e.getMessage()
+									: e.toString();
+						}
+						return index;
+					});
+				}
 
-			if (Utils.hasOkayExtension(file, ".wia")) {
-				try {
-					WIAData data = WIAData.deserialize(file);
-					set.add(data);
+				for (int i = 0; i < files.size(); i++) {
+					completion.take();
+					if (prog != null) {
+						prog.setProgressBarProgress(i + 1);
+					}
+				}
 
-				} catch (SerializationException e) {
-					return e.getMessage();
+				for (int i = 0; i < files.size(); i++) {
+					if (fileErrors[i] != null) {
+						errors.put(files.get(i), fileErrors[i]);
+					}
+				}
+
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				errors.put(file, "Loading was interrupted");
+			} finally {
+				pool.shutdownNow();
+				if (prog != null) {
+					prog.setProgressBarEnabled(false, -1, -1);
 				}
 			}
-			return null;
 		}
 
-		for (File qFile : file.listFiles()) {
+		// keep the order the files were found in
+		int count = 0;
+		for (WIAData data : loaded) {
+			if (data != null) {
+				wiaData.add(data);
+				count++;
+			}
+		}
 
-			errorRead = Utils.checkCanReadFile(file);
-			if (errorRead != null) {
-				return errorRead;
+		if (cohortIndex != null) {
+			try {
+				cohortIndex.save();
+			} catch (IOException e) {
+				// fail silently, files will just be read again next time
+				e.printStackTrace();
 			}
+		}
 
-			if (qFile.isDirectory()) {
+		_findStandardWaves();
+		_findStandardTreatments();
+		addCalculatedFields();
 
-				String errors = getFilesRecursively(qFile, set);
-				if (errors != null) {
+		return new LoadResult(count, System.nanoTime() - start, errors);
 
-					return errors;
-				}
+	}
 
-			} else if (Utils.hasOkayExtension(qFile, ".wia")) {
+	/**
+	 * Finds .wia files within a folder, or the file itself if not a folder. Folders
+	 * which cannot be read are recorded as errors and skipped.
+	 *
+	 * @param file      The directory or file to inspect.
+	 * @param recursive true to search sub folders as well
+	 * @param errors    map to add errors to
+	 * @return the files found, sorted by path within each folder
+	 */
+	private List<File> _findFiles(File file, boolean recursive, Map<File, String> errors) {
+		List<File> files = new ArrayList<File>();
 
-				try {
-					WIAData data = WIAData.deserialize(qFile);
-					set.add(data);
+		String errorRead = Utils.checkCanReadFile(file);
+		if (errorRead != null) {
+			errors.put(file, errorRead);
+			return files;
+		}
 
-				} catch (SerializationException e) {
+		try {
+			Files.walkFileTree(file.toPath(), EnumSet.noneOf(FileVisitOption.class), recursive ? Integer.MAX_VALUE : 1,
+					new SimpleFileVisitor<Path>() {
 
-					return e.getMessage();
-				}
-			}
+						@Override
+						public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+							File qFile = path.toFile();
+							if (attrs.isRegularFile() && Utils.hasOkayExtension(qFile, ".wia")) {
+								files.add(qFile);
+							}
+							return FileVisitResult.CONTINUE;
+						}
 
-		}
+						@Override
+						public FileVisitResult visitFileFailed(Path path, IOException e) {
+							errors.put(path.toFile(), "Could not read: " + e.getMessage());
+							return FileVisitResult.CONTINUE;
+						}
 
-		return null;
+					});
+		} catch (IOException e) {
+			errors.put(file, "Could not read: " + e.getMessage());
+		}
 
+		files.sort(null);
+		return files;
 	}
 
 	/**
@@ -1160,9 +1278,9 @@ public class WIAStats {
 		List<WIAData[]> subset = new ArrayList<WIAData[]>();
 
 		for (WIAData data : txData1) {
-			String filePath = data.getData().getFile().getPath();
+			String filePath = data.getFileName();
 			WIAData dataComparator = txData2.stream()
-					.filter(wia -> wia.getData().getFile().getPath().equalsIgnoreCase(filePath)).findFirst()
+					.filter(wia -> wia.getFileName().equalsIgnoreCase(filePath)).findFirst()
 					.orElse(null);
 			if (dataComparator == null) {
 				// WIAData in first collection is not present in the second collection. SKIP
@@ -1206,9 +1324,9 @@ public class WIAStats {
 		List<WIAData[]> subset = new ArrayList<WIAData[]>();
 
 		for (WIAData data : txData1) {
-			String filePath = data.getData().getFile().getPath();
+			String filePath = data.getFileName();
 			WIAData dataComparator = txData2.stream()
-					.filter(wia -> wia.getData().getFile().getPath().equalsIgnoreCase(filePath)).findFirst()
+					.filter(wia -> wia.getFileName().equalsIgnoreCase(filePath)).findFirst()
 					.orElse(null);
 			if (dataComparator == null) {
 				// WIAData in first collection is not present in the second collection. SKIP
@@ -1277,9 +1395,9 @@ public class WIAStats {
 		List<WIAData[]> subset = new ArrayList<WIAData[]>();
 
 		for (WIAData data : txData1) {
-			String filePath = data.getData().getFile().getPath();
+			String filePath = data.getFileName();
 			WIAData dataComparator = txData2.stream()
-					.filter(wia -> wia.getData().getFile().getPath().equalsIgnoreCase(filePath)).findFirst()
+					.filter(wia -> wia.getFileName().equalsIgnoreCase(filePath)).findFirst()
 					.orElse(null);
 			if (dataComparator == null) {
 				// WIAData in first collection is not present in the second collection. SKIP
@@ -1337,9 +1455,9 @@ public class WIAStats {
 		List<WIAData[]> subset = new ArrayList<WIAData[]>();
 
 		for (WIAData data : txData1) {
-			String filePath = data.getData().getFile().getPath();
+			String filePath = data.getFileName();
 			WIAData dataComparator = txData2.stream()
-					.filter(wia -> wia.getData().getFile().getPath().equalsIgnoreCase(filePath)).findFirst()
+					.filter(wia -> wia.getFileName().equalsIgnoreCase(filePath)).findFirst()
 					.orElse(null);
 			if (dataComparator == null) {
 				// WIAData in first collection is not present in the second collection. SKIP
@@ -1510,7 +1628,8 @@ public class WIAStats {
 		if (statsComparisons.isEmpty())
 			return;
 
-		SheetWriter writer = new SheetWriter();
+		// stream rows, as large cohorts produce many comparisons
+		SheetWriter writer = new SheetWriter(SheetWriter.DEFAULT_ROW_WINDOW);
 		writer.newSheet("Summary");
 
 		for (StatisticalComparison sc : this.statsComparisons) {
@@ -34,6 +34,22 @@ public class Convolution {
 	private double[] kernel;
 	private double[] output;
 
+	/**
+	 * Kernel length from which convolution is done by FFT (see
+	 * {@link FFTConvolution}) rather than directly. Below about 24 the two are
+	 * much the same; from 48 the FFT is about 1.5 to 2 times as fast for signals of
+	 * 2,000 to 200,000 values, and the difference grows with the kernel length.
+	 * Shorter kernels, which include the usual Savitzky-Golay windows, are left to
+	 * the exact direct sum. Measured by ConvolutionBenchmark in the tests.
+	 */
+	static final int FFT_MIN_KERNEL = 48;
+
+	private static final int PAD_REFLECT = 0;
+	private static final int PAD_CONSTANT = 1;
+	private static final int PAD_NEAREST = 2;
+	private static final int PAD_MIRROR = 3;
+	private static final int PAD_WRAP = 4;
+
 	/**
 	 * This constructor initialises the prerequisites required to perform
 	 * convolution.
@@ -55,7 +71,7 @@ public class Convolution {
 	 */
 	public double[] convolve() {
 		// Works in "full" mode
-		this.output = MathArrays.convolve(this.signal, this.kernel);
+		this.output = _full(this.signal, this.kernel);
 		return this.output;
 	}
 
@@ -69,7 +85,7 @@ public class Convolution {
 	 * @return double[] Result of convolution.
 	 */
 	public double[] convolve(String mode) {
-		double[] temp = MathArrays.convolve(this.signal, this.kernel);
+		double[] temp = _full(this.signal, this.kernel);
 		if (mode.equals("full")) {
 			this.output = temp;
 		} else if (mode.equals("same")) {
@@ -103,10 +119,18 @@ public class Convolution {
 	private double[] convolve(double[] sig, double[] w) {
 		// Works in "full" mode
 		double[] output;
-		output = MathArrays.convolve(sig, w);
+		output = _full(sig, w);
 		return output;
 	}
 
+	/**
+	 * "Full" convolution, by FFT if the kernel is at least
+	 * {@link #FFT_MIN_KERNEL} long, otherwise directly
+	 */
+	private static double[] _full(double[] sig, double[] w) {
+		return w.length >= FFT_MIN_KERNEL ? FFTConvolution.convolve(sig, w) : MathArrays.convolve(sig, w);
+	}
+
 	/**
 	 * This method perform convolution using padding in different modes.
 	 * 
@@ -150,6 +174,133 @@ public class Convolution {
 		output = splitByIndex(temp, startVal, startVal + this.signal.length);
 		return output;
 	}
+
+	/**
+	 * Convolves a signal with a kernel in the specified padding mode, giving the
+	 * same result as {@link #convolve1d(String)}, but directly into the supplied
+	 * output without padding the signal or allocating any intermediate arrays.
+	 * Values beyond the ends of the signal are taken from the signal according to
+	 * the mode, only where the kernel overlaps an end. Kernels of at least
+	 * {@link #FFT_MIN_KERNEL} are convolved by FFT, over the signal padded only by
+	 * the length of the kernel, so the result may differ by rounding.
+	 * 
+	 * @param signal Signal to be convolved
+	 * @param kernel Kernel for convolution
+	 * @param mode   Mode in which convolution will work. Can be 'reflect',
+	 *               'constant', 'nearest', 'mirror' or 'wrap'
+	 * @param output Array to write the result into, the same length as the signal
+	 *               but not the signal itself
+	 * @throws java.lang.IllegalArgumentException if the mode is invalid, or the
+	 *                                            output is the signal or is not the
+	 *                                            same length
+	 * @return double[] The output, containing the result of convolution
+	 */
+	public static double[] convolve1d(double[] signal, double[] kernel, String mode, double[] output)
+			throws IllegalArgumentException {
+		int padding = _padding(mode);
+		if (output == signal) {
+			throw new IllegalArgumentException("convolve1d output cannot be the signal itself");
+		} else if (output.length != signal.length) {
+			throw new IllegalArgumentException("convolve1d output must be the same length as the signal");
+		}
+
+		int n = signal.length;
+		int m = kernel.length;
+		int half = m / 2;
+		if (n < m || (padding == PAD_MIRROR && n < 3)) {
+			// the kernel reaches past the padding, so pad as before
+			double[] result = new Convolution(signal, kernel).convolve1d(mode);
+			System.arraycopy(result, 0, output, 0, n);
+			return output;
+		}
+
+		if (m >= FFT_MIN_KERNEL) {
+			// pad only as far as the kernel reaches, and keep the values which overlap
+			// the whole kernel
+			int before = m - 1 - half;
+			double[] padded = new double[n + m - 1];
+			for (int i = 0; i < padded.length; i++) {
+				padded[i] = _padded(signal, padding, i - before);
+			}
+			System.arraycopy(FFTConvolution.convolve(padded, kernel), m - 1, output, 0, n);
+			return output;
+		}
+
+		// the kernel only reaches past the ends of the signal before interiorStart
+		// and from interiorEnd
+		int interiorStart = m - 1 - half;
+		int interiorEnd = n - half;
+		for (int i = 0; i < interiorStart; i++) {
+			output[i] = _convolveEdge(signal, kernel, padding, i + half);
+		}
+		for (int i = interiorStart; i < interiorEnd; i++) {
+			// same order of summation as MathArrays.convolve
+			double sum = 0;
+			int j = i + half;
+			for (int k = 0; k < m; k++) {
+				sum += signal[j - k] * kernel[k];
+			}
+			output[i] = sum;
+		}
+		for (int i = interiorEnd; i < n; i++) {
+			output[i] = _convolveEdge(signal, kernel, padding, i + half);
+		}
+		return output;
+	}
+
+	private static int _padding(String mode) {
+		switch (mode) {
+		case "reflect":
+			return PAD_REFLECT;
+		case "constant":
+			return PAD_CONSTANT;
+		case "nearest":
+			return PAD_NEAREST;
+		case "mirror":
+			return PAD_MIRROR;
+		case "wrap":
+			return PAD_WRAP;
+		default:
+			throw new IllegalArgumentException(
+					"convolve1d modes can only be reflect, constant, nearest mirror, " + "or wrap");
+		}
+	}
+
+	/**
+	 * One value of the convolution, where the kernel overlaps an end of the signal
+	 */
+	private static double _convolveEdge(double[] signal, double[] kernel, int padding, int j) {
+		double sum = 0;
+		for (int k = 0; k < kernel.length; k++) {
+			sum += _padded(signal, padding, j - k) * kernel[k];
+		}
+		return sum;
+	}
+
+	/**
+	 * Value of the signal at an index up to one signal length before or after it,
+	 * as {@link #padSignal(double[], String)} would pad it
+	 */
+	private static double _padded(double[] signal, int padding, int index) {
+		int n = signal.length;
+		if (index >= 0 && index < n) {
+			return signal[index];
+		}
+		switch (padding) {
+		case PAD_REFLECT:
+			return signal[index < 0 ? -index - 1 : 2 * n - 1 - index];
+		case PAD_NEAREST:
+			return signal[index < 0 ? 0 : n - 1];
+		case PAD_MIRROR:
+			int period = 2 * n - 2;
+			int folded = ((index % period) + period) % period;
+			return signal[folded < n ? folded : period - folded];
+		case PAD_WRAP:
+			return signal[index < 0 ? index + n : index - n];
+		default:
+			return 0;
+		}
+	}
 	
 
     /**
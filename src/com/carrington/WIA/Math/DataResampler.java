@@ -4,14 +4,17 @@ import java.math.BigDecimal;
 import java.math.MathContext;
 import java.math.RoundingMode;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
 
 import org.apache.commons.lang3.ArrayUtils;
-import org.apache.commons.math3.analysis.UnivariateFunction;
-import org.apache.commons.math3.analysis.interpolation.SplineInterpolator;
 import org.apache.commons.math3.exception.MathIllegalArgumentException;
 
 import com.carrington.WIA.Utils;
@@ -26,6 +29,10 @@ import com.carrington.WIA.IO.Header;
  */
 public abstract class DataResampler {
 
+	/** Powers of ten which are exact as doubles */
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
 	/**
 	 * Resamples a single data array to the specified number of samples using cubic
 	 * spline interpolation. Assumes that the original data is sampled at equal time
@@ -50,9 +57,8 @@ public abstract class DataResampler {
 			xData[i] = i;
 		}
 
-		// Create the spline interpolator.
-		SplineInterpolator interpolator = new SplineInterpolator();
-		UnivariateFunction spline = interpolator.interpolate(xData, data);
+		// Create the spline.
+		NaturalCubicSpline spline = new NaturalCubicSpline(xData, data);
 
 		// Prepare the output array.
 		double[] output = new double[numberOfSamples];
@@ -61,16 +67,16 @@ public abstract class DataResampler {
 		double step = (xMax - xMin) / (numberOfSamples - 1);
 
 		// Evaluate the spline at equally spaced new x-values.
+		double[] newX = new double[numberOfSamples];
 		for (int i = 0; i < numberOfSamples; i++) {
-			double x;
 			if (i == numberOfSamples - 1) {
 				// Use xMax - epsilon on the last point to stay within the allowed domain.
-				x = xMax - 1e-8;
+				newX[i] = xMax - 1e-8;
 			} else {
-				x = xMin + i * step;
+				newX[i] = xMin + i * step;
 			}
-			output[i] = spline.value(x);
 		}
+		spline.values(newX, output);
 
 		return output;
 	}
@@ -172,76 +178,214 @@ public abstract class DataResampler {
 		int numberOfResamples = (int) BigDecimal.valueOf(lend).subtract(lstart, MathContext.DECIMAL128)
 				.divide(BigDecimal.valueOf(resampleRate)).setScale(0, RoundingMode.FLOOR).doubleValue() + 1;
 
-		double[] newXVals = new double[numberOfResamples];
-		BigDecimal currentX = lstart;
-		BigDecimal sampleRateBD = BigDecimal.valueOf(resampleRate);
-		for (int i = 0; i < numberOfResamples; i++) {
-			newXVals[i] = currentX.doubleValue();
-			currentX = currentX.add(sampleRateBD);
-		}
+		double[] newXVals = sampleTimes(lstart, BigDecimal.valueOf(resampleRate), numberOfResamples);
 
 		double[][] newYVals = new double[yValues.length][numberOfResamples];
 
-		// Identify which series are "binary" (only one or two distinct values).
-		boolean[] isBinaryArray = new boolean[yValues.length];
-		for (int i = 0; i < yValues.length; i++) {
-			isBinaryArray[i] = isBinary(yValues[i]);
-		}
+		forEachSeries(yValues.length, progressRecorder,
+				series -> _resampleSeries(series, xDataAdjusted, yValues[series], newXVals, newYVals[series]));
 
-		// For continuous series, create spline interpolators using the adjusted xData.
-		SplineInterpolator interpolator = new SplineInterpolator();
-		UnivariateFunction[] splineFunctions = new UnivariateFunction[yValues.length];
-		for (int i = 0; i < yValues.length; i++) {
-			if (!isBinaryArray[i]) {
-				try {
-					splineFunctions[i] = interpolator.interpolate(xDataAdjusted, yValues[i]);
-				} catch (MathIllegalArgumentException e) {
-					throw new ResampleException("Error creating spline for series " + i + ": " + e.getMessage());
-				}
-			}
+		if (progressRecorder != null) {
+			progressRecorder.setProgressBarEnabled(false, -1, -1);
 		}
 
-		// Processing each set of Y values
-		for (int j = 0; j < yValues.length; j++) {
+		return new ResampleResult(newXVals, newYVals);
+	}
 
-			if (isBinaryArray[j]) {
-				// For binary arrays, find the closest new X for each original non-zero point.
+	/**
+	 * Resamples each series. Series are independent, so they are resampled in
+	 * parallel, one per thread, and progress is reported from 0 to 100 as each
+	 * finishes.
+	 *
+	 * @param seriesCount      number of series
+	 * @param progressRecorder An object to record background progress (can be
+	 *                         null).
+	 * @param resampler        resamples the series of the given index
+	 * @throws ResampleException if a series could not be resampled, or resampling
+	 *                           was interrupted
+	 */
+	static void forEachSeries(int seriesCount, BackgroundProgressRecorder progressRecorder, IntConsumer resampler)
+			throws ResampleException {
+		SeriesProgress progress = new SeriesProgress(progressRecorder, seriesCount);
+		int threads = Math.min(Runtime.getRuntime().availableProcessors(), seriesCount);
+		if (threads <= 1) {
+			for (int j = 0; j < seriesCount; j++) {
+				resampler.accept(j);
+				progress.seriesDone();
+			}
+			return;
+		}
 
-				// start wtih all zeros
-				for (int i = 0; i < numberOfResamples; i++) {
-					newYVals[j][i] = 0.0;
-				}
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			List<ForkJoinTask<Void>> tasks = new ArrayList<ForkJoinTask<Void>>();
+			for (int j = 0; j < seriesCount; j++) {
+				final int series = j;
+				tasks.add(pool.submit(() -> {
+					resampler.accept(series);
+					progress.seriesDone();
+					return null;
+				}));
+			}
 
-				// place the original non-zero values at the closest new time point.
-				for (int k = 0; k < yValues[j].length; k++) {
-					if (yValues[j][k] > 0.00001) { // detected non-zero (active) binary state
-						double origX = xDataAdjusted[k]; // Use adjusted X for correct mapping
-						int idx = Utils.getClosestIndex(origX, newXVals);
-						if (idx >= 0 && idx < newYVals[j].length) {
-							newYVals[j][idx] = yValues[j][k]; // assign the binary value
-						}
+			for (ForkJoinTask<Void> task : tasks) {
+				try {
+					task.get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof RuntimeException) {
+						throw (RuntimeException) e.getCause();
 					}
+					throw new ResampleException("Error resampling: " + e.getCause().getMessage());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new ResampleException("Interrupted while resampling");
 				}
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
 
-			} else {
-				// For continuous (non-binary) arrays, use spline interpolation.
-				for (int i = 0; i < numberOfResamples; i++) {
-					newYVals[j][i] = splineFunctions[j].value(newXVals[i]);
+	/**
+	 * Resamples one series. For series with only one or two distinct values, each
+	 * original non-zero value is placed at the closest new time point. Other series
+	 * are interpolated by cubic spline.
+	 *
+	 * @param series   index of the series, for errors
+	 * @param xData    the original x (time) data, adjusted
+	 * @param yData    the original y values
+	 * @param newXVals the new x values
+	 * @param newYVals array to write the new y values into
+	 * @throws ResampleException if the spline could not be created
+	 */
+	private static void _resampleSeries(int series, double[] xData, double[] yData, double[] newXVals,
+			double[] newYVals) throws ResampleException {
+
+		if (isBinary(yData)) {
+			resampleBinary(xData, yData, newXVals, newYVals);
+
+		} else {
+			// For continuous (non-binary) arrays, use spline interpolation.
+			NaturalCubicSpline spline;
+			try {
+				spline = new NaturalCubicSpline(xData, yData);
+			} catch (MathIllegalArgumentException e) {
+				throw new ResampleException("Error creating spline for series " + series + ": " + e.getMessage());
+			}
+			spline.values(newXVals, newYVals);
+		}
+	}
+
+	/**
+	 * Resamples a series with only one or two distinct values (see
+	 * {@link #isBinary(double[])}), such as markers, by placing each original
+	 * non-zero value at the closest new time point, so that they are not smeared
+	 * by interpolation
+	 *
+	 * @param xData    the original x (time) data
+	 * @param yData    the original y values
+	 * @param newXVals the new x values, ascending
+	 * @param newYVals array to write the new y values into
+	 */
+	static void resampleBinary(double[] xData, double[] yData, double[] newXVals, double[] newYVals) {
+		// start wtih all zeros
+		Arrays.fill(newYVals, 0.0);
+
+		// place the original non-zero values at the closest new time point.
+		for (int k = 0; k < yData.length; k++) {
+			if (yData[k] > 0.00001) { // detected non-zero (active) binary state
+				double origX = xData[k]; // Use adjusted X for correct mapping
+				int idx = _closestIndex(origX, newXVals);
+				if (idx >= 0 && idx < newYVals.length) {
+					newYVals[idx] = yData[k]; // assign the binary value
 				}
 			}
+		}
+	}
 
-			// Update progress after each series is processed.
-			if (progressRecorder != null) {
-				int progress = (int) Math.round(((double) (j + 1) / yValues.length) * 100.0);
-				progressRecorder.setProgressBarProgress(progress);
+	/**
+	 * Finds the index of the closest value, the same as
+	 * {@link Utils#getClosestIndex(double, double[])} (the first of equally close
+	 * values), but by binary search as the values are ascending
+	 *
+	 * @param query  the value to search for
+	 * @param source ascending values
+	 * @return index of the closest value, or -1 if none
+	 */
+	private static int _closestIndex(double query, double[] source) {
+		if (Double.isNaN(query) || source.length == 0) {
+			return -1;
+		}
+		// first index at or above the query
+		int low = 0;
+		int high = source.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (source[mid] < query) {
+				low = mid + 1;
+			} else {
+				high = mid;
 			}
 		}
-		
-		if (progressRecorder != null) {
-			progressRecorder.setProgressBarEnabled(false, -1, -1);
+
+		int closest;
+		if (low == source.length) {
+			closest = low - 1;
+		} else if (low > 0 && Math.abs(source[low - 1] - query) <= Math.abs(source[low] - query)) {
+			closest = low - 1;
+		} else {
+			closest = low;
+		}
+		double minDiff = Math.abs(source[closest] - query);
+		if (!(minDiff < Double.MAX_VALUE)) {
+			return -1;
+		}
+		// differences below the query may round to the same value
+		while (closest > 0 && Math.abs(source[closest - 1] - query) == minDiff) {
+			closest--;
 		}
+		return closest;
+	}
 
-		return new ResampleResult(newXVals, newYVals);
+	/**
+	 * Generates evenly spaced sample times, each the nearest double to start + i *
+	 * step calculated exactly in decimal. Where start and step have few enough
+	 * decimal places that every time is an integer of at most 53 bits over a power
+	 * of ten, each is converted by a single division, which rounds the same as
+	 * {@link BigDecimal#doubleValue()}. Otherwise they are added as
+	 * {@link BigDecimal}s.
+	 *
+	 * @param start first time
+	 * @param step  interval between times
+	 * @param count number of times
+	 * @return the times
+	 */
+	static double[] sampleTimes(BigDecimal start, BigDecimal step, int count) {
+		double[] times = new double[count];
+		int scale = Math.max(start.scale(), step.scale());
+		if (scale >= 0 && scale < POWERS_OF_TEN.length) {
+			try {
+				long first = start.setScale(scale).unscaledValue().longValueExact();
+				long interval = step.setScale(scale).unscaledValue().longValueExact();
+				long end = Math.addExact(first, Math.multiplyExact(interval, (long) Math.max(count - 1, 0)));
+				if (Math.max(Math.abs(first), Math.abs(end)) <= 1L << 53) {
+					double power = POWERS_OF_TEN[scale];
+					for (int i = 0; i < count; i++) {
+						times[i] = (first + i * interval) / power;
+					}
+					return times;
+				}
+			} catch (ArithmeticException e) {
+				// too many digits, so add as decimals
+			}
+		}
+
+		BigDecimal current = start;
+		for (int i = 0; i < count; i++) {
+			times[i] = current.doubleValue();
+			current = current.add(step);
+		}
+		return times;
 	}
 
 	// Helper: ensures that each row in yValues has the same length as xData.
@@ -255,7 +399,7 @@ public abstract class DataResampler {
 
 	// Helper: checks if an array is "binary", meaning it contains one or two
 	// distinct values.
-	private static boolean isBinary(double[] array) {
+	static boolean isBinary(double[] array) {
 		Set<Double> uniqueValues = new HashSet<>();
 		for (double v : array) {
 			uniqueValues.add(v);
@@ -307,6 +451,33 @@ public abstract class DataResampler {
 
 	}
 
+	/**
+	 * Aggregates the number of series resampled by each thread and reports it from
+	 * 0 to 100.
+	 */
+	private static class SeriesProgress {
+
+		private final BackgroundProgressRecorder prog;
+		private final int totalSeries;
+		private int done = 0;
+
+		private SeriesProgress(BackgroundProgressRecorder prog, int totalSeries) {
+			this.prog = prog;
+			this.totalSeries = totalSeries;
+		}
+
+		/**
+		 * Reports that another series has been resampled. Synchronized so that
+		 * progress is reported in order.
+		 */
+		private synchronized void seriesDone() {
+			done++;
+			if (prog != null) {
+				prog.setProgressBarProgress((int) Math.round(((double) done / totalSeries) * 100.0));
+			}
+		}
+	}
+
 	/**
 	 * Custom exception for errors occurring during the data resampling process.
 	 */
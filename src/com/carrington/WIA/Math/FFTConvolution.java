@@ -0,0 +1,141 @@
+package com.carrington.WIA.Math;
+
+import java.util.Arrays;
+
+/**
+ * "Full" discrete linear convolution by FFT overlap-add, for kernels long
+ * enough that the direct sum over every value of the kernel (see
+ * {@link org.apache.commons.math3.util.MathArrays#convolve(double[], double[])})
+ * is slower. The kernel is transformed once, and the signal is convolved in
+ * blocks, two at a time: as the kernel is real, one block can go in the real
+ * part of the transform and the next in the imaginary part.
+ * <p>
+ * The results differ from the direct sum only by rounding, on the order of
+ * 1e-15 of the largest value of the output.
+ * </p>
+ */
+final class FFTConvolution {
+
+	private FFTConvolution() {
+	}
+
+	/**
+	 * @param signal the signal
+	 * @param kernel the kernel
+	 * @return the full convolution, of length signal.length + kernel.length - 1
+	 */
+	static double[] convolve(double[] signal, double[] kernel) {
+		int n = signal.length;
+		int m = kernel.length;
+		if (n == 0 || m == 0) {
+			throw new IllegalArgumentException("Signal and kernel cannot be empty");
+		}
+		double[] output = new double[n + m - 1];
+
+		// blocks several times as long as the kernel, but no longer than needed
+		int size = Math.min(Integer.highestOneBit(m - 1) << 3, Integer.highestOneBit(n + m - 2) << 1);
+		size = Math.max(size, 2);
+		int block = size - m + 1;
+
+		double[] cos = new double[size / 2];
+		double[] sin = new double[size / 2];
+		for (int i = 0; i < size / 2; i++) {
+			double angle = -2 * Math.PI * i / size;
+			cos[i] = Math.cos(angle);
+			sin[i] = Math.sin(angle);
+		}
+
+		double[] kernelRe = new double[size];
+		double[] kernelIm = new double[size];
+		System.arraycopy(kernel, 0, kernelRe, 0, m);
+		_transform(kernelRe, kernelIm, cos, sin);
+
+		double[] re = new double[size];
+		double[] im = new double[size];
+		for (int start = 0; start < n; start += 2 * block) {
+			int second = start + block;
+			int lengthA = Math.min(block, n - start);
+			int lengthB = Math.max(Math.min(block, n - second), 0);
+
+			System.arraycopy(signal, start, re, 0, lengthA);
+			Arrays.fill(re, lengthA, size, 0);
+			if (lengthB > 0) {
+				System.arraycopy(signal, second, im, 0, lengthB);
+			}
+			Arrays.fill(im, lengthB, size, 0);
+
+			_transform(re, im, cos, sin);
+			for (int i = 0; i < size; i++) {
+				double r = re[i] * kernelRe[i] - im[i] * kernelIm[i];
+				double j = re[i] * kernelIm[i] + im[i] * kernelRe[i];
+				// conjugate, so that the forward transform is also the inverse
+				re[i] = r;
+				im[i] = -j;
+			}
+			_transform(re, im, cos, sin);
+
+			double scale = 1.0 / size;
+			int end = Math.min(lengthA + m - 1, output.length - start);
+			for (int i = 0; i < end; i++) {
+				output[start + i] += re[i] * scale;
+			}
+			if (lengthB > 0) {
+				end = Math.min(lengthB + m - 1, output.length - second);
+				for (int i = 0; i < end; i++) {
+					// imaginary part, conjugated back
+					output[second + i] -= im[i] * scale;
+				}
+			}
+		}
+		return output;
+	}
+
+	/**
+	 * In place iterative radix-2 forward transform
+	 *
+	 * @param re  real parts, length a power of two
+	 * @param im  imaginary parts
+	 * @param cos cosines of the twiddle angles, half the length
+	 * @param sin sines of the twiddle angles
+	 */
+	private static void _transform(double[] re, double[] im, double[] cos, double[] sin) {
+		int size = re.length;
+
+		// bit reversal permutation
+		for (int i = 1, j = 0; i < size; i++) {
+			int bit = size >> 1;
+			for (; (j & bit) != 0; bit >>= 1) {
+				j ^= bit;
+			}
+			j ^= bit;
+			if (i < j) {
+				double t = re[i];
+				re[i] = re[j];
+				re[j] = t;
+				t = im[i];
+				im[i] = im[j];
+				im[j] = t;
+			}
+		}
+
+		for (int length = 2; length <= size; length <<= 1) {
+			int halfLength = length >> 1;
+			int step = size / length;
+			for (int i = 0; i < size; i += length) {
+				for (int k = 0; k < halfLength; k++) {
+					double wr = cos[k * step];
+					double wi = sin[k * step];
+					int a = i + k;
+					int b = a + halfLength;
+					double xr = re[b] * wr - im[b] * wi;
+					double xi = re[b] * wi + im[b] * wr;
+					re[b] = re[a] - xr;
+					im[b] = im[a] - xi;
+					re[a] += xr;
+					im[a] += xi;
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,140 @@
+package com.carrington.WIA.Math;
+
+import java.util.Arrays;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.NonMonotonicSequenceException;
+import org.apache.commons.math3.exception.NumberIsTooSmallException;
+import org.apache.commons.math3.exception.OutOfRangeException;
+import org.apache.commons.math3.exception.util.LocalizedFormats;
+import org.apache.commons.math3.util.MathArrays;
+
+/**
+ * Natural cubic spline through a series of points, calculated exactly as by
+ * commons-math's
+ * {@link org.apache.commons.math3.analysis.interpolation.SplineInterpolator},
+ * so that the values are identical, but kept in primitive arrays instead of one
+ * polynomial object per knot.
+ * <p>
+ * Only the second order coefficient of each interval is stored, solved from the
+ * tridiagonal system in one pass each way. The first and third order
+ * coefficients are calculated from it when an interval is evaluated, with the
+ * same arithmetic as the interpolator. Many ascending points can be evaluated in
+ * one walk over the knots (see {@link #values(double[], double[])}) rather than
+ * a binary search for each.
+ * </p>
+ */
+final class NaturalCubicSpline {
+
+	private final double[] x;
+	private final double[] y;
+	/** Second order coefficient of each interval, and 0 at the last knot */
+	private final double[] c;
+
+	/**
+	 * Solves the spline
+	 *
+	 * @param x the knots, strictly ascending, which are kept and must not be
+	 *          modified
+	 * @param y the values at the knots, which are kept and must not be modified
+	 * @throws DimensionMismatchException    if the arrays are not the same length
+	 * @throws NumberIsTooSmallException     if there are fewer than 3 points
+	 * @throws NonMonotonicSequenceException if the knots are not strictly
+	 *                                       ascending
+	 */
+	NaturalCubicSpline(double[] x, double[] y)
+			throws DimensionMismatchException, NumberIsTooSmallException, NonMonotonicSequenceException {
+		if (x.length != y.length) {
+			throw new DimensionMismatchException(x.length, y.length);
+		}
+		if (x.length < 3) {
+			throw new NumberIsTooSmallException(LocalizedFormats.NUMBER_OF_POINTS, x.length, 3, true);
+		}
+		MathArrays.checkOrder(x);
+		this.x = x;
+		this.y = y;
+
+		int n = x.length - 1;
+		double[] mu = new double[n];
+		// z is solved into c, then c is solved from the end in place
+		double[] c = new double[n + 1];
+		for (int i = 1; i < n; i++) {
+			double hPrev = x[i] - x[i - 1];
+			double h = x[i + 1] - x[i];
+			double g = 2d * (x[i + 1] - x[i - 1]) - hPrev * mu[i - 1];
+			mu[i] = h / g;
+			c[i] = (3d * (y[i + 1] * hPrev - y[i] * (x[i + 1] - x[i - 1]) + y[i - 1] * h) / (hPrev * h)
+					- hPrev * c[i - 1]) / g;
+		}
+		for (int j = n - 1; j >= 0; j--) {
+			c[j] = c[j] - mu[j] * c[j + 1];
+		}
+		this.c = c;
+	}
+
+	/**
+	 * @param v point to evaluate, within the knots
+	 * @return the value of the spline
+	 * @throws OutOfRangeException if the point is outside the knots
+	 */
+	double value(double v) throws OutOfRangeException {
+		_checkRange(v);
+		int i = Arrays.binarySearch(x, v);
+		if (i < 0) {
+			i = -i - 2;
+		}
+		if (i >= c.length - 1) {
+			i--;
+		}
+		return _value(i, v);
+	}
+
+	/**
+	 * Evaluates many points, walking the knots once
+	 *
+	 * @param points points to evaluate, ascending and within the knots
+	 * @param output array to write the values into, at least as long as the points
+	 * @throws OutOfRangeException if a point is outside the knots
+	 */
+	void values(double[] points, double[] output) throws OutOfRangeException {
+		int last = c.length - 2;
+		int i = 0;
+		double h = 0, b = 0, d = 0;
+		boolean calculated = false;
+		for (int p = 0; p < points.length; p++) {
+			double v = points[p];
+			_checkRange(v);
+			while (i < last && x[i + 1] <= v) {
+				i++;
+				calculated = false;
+			}
+			if (!calculated) {
+				h = x[i + 1] - x[i];
+				b = (y[i + 1] - y[i]) / h - h * (c[i + 1] + 2d * c[i]) / 3d;
+				d = (c[i + 1] - c[i]) / (3d * h);
+				calculated = true;
+			}
+			double t = v - x[i];
+			output[p] = ((d * t + c[i]) * t + b) * t + y[i];
+		}
+	}
+
+	/**
+	 * Value at a point in an interval, the same as the interpolator's polynomial
+	 * for it
+	 */
+	private double _value(int i, double v) {
+		double h = x[i + 1] - x[i];
+		double b = (y[i + 1] - y[i]) / h - h * (c[i + 1] + 2d * c[i]) / 3d;
+		double d = (c[i + 1] - c[i]) / (3d * h);
+		double t = v - x[i];
+		return ((d * t + c[i]) * t + b) * t + y[i];
+	}
+
+	private void _checkRange(double v) throws OutOfRangeException {
+		if (v < x[0] || v > x[x.length - 1]) {
+			throw new OutOfRangeException(v, x[0], x[x.length - 1]);
+		}
+	}
+
+}
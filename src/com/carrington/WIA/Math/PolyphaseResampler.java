@@ -0,0 +1,393 @@
+package com.carrington.WIA.Math;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import com.carrington.WIA.GUIs.BackgroundProgressRecorder;
+import com.carrington.WIA.Math.DataResampler.ResampleException;
+
+/**
+ * Resamples evenly sampled data by a rational factor up / down (e.g. 200 Hz
+ * Doppler to 1 kHz pressure is 5 / 1) with an anti-aliasing FIR filter, rather
+ * than by interpolating (see {@link DataResampler} and {@link LinearResampler}).
+ * The signal is conceptually upsampled by inserting up - 1 zeros between
+ * samples, low pass filtered below the lower of the two Nyquist frequencies, and
+ * every down-th value kept. The filter is split into up phases so that only the
+ * non-zero samples are multiplied, and only the kept values are calculated.
+ * <p>
+ * The filter is a Kaiser windowed sinc, {@value #ZERO_CROSSINGS} zero crossings
+ * each side, with each phase scaled to sum to one so that a constant signal is
+ * unchanged. Output value k is at the time of input value k * down / up. The
+ * ends of the signal are padded with the first and last samples ("nearest").
+ * </p>
+ * <p>
+ * The data may be given a sample or a block at a time (see
+ * {@link #write(double[], int, int, double[], int)}), keeping only as many
+ * samples as the longest phase, as for {@link StreamingSavgol}. A resampler
+ * holds the state of one signal, and is not thread safe.
+ * </p>
+ */
+public class PolyphaseResampler {
+
+	/** Zero crossings of the sinc each side of the centre of the filter */
+	static final int ZERO_CROSSINGS = 10;
+	/** Kaiser window shape, for about 80 dB stop band attenuation */
+	private static final double KAISER_BETA = 8.0;
+	/** Largest up or down factor, above which the filter would be too long */
+	static final int MAX_FACTOR = 1000;
+
+	private final int up;
+	private final int down;
+	/** Centre of the filter, in upsampled values */
+	private final int half;
+	/** Coefficients of each phase, by phase then by how many samples back */
+	private final double[][] phases;
+	/** Number of samples kept, the length of the longest phase */
+	private final int kept;
+	/**
+	 * The last samples, by sample index modulo the number kept, stored twice over
+	 * so that the samples for any value are contiguous
+	 */
+	private final double[] ring;
+	private long taken = 0;
+	private long produced = 0;
+	private double first = Double.NaN;
+	private double last = Double.NaN;
+
+	/**
+	 * Creates a resampler, designing its filter
+	 *
+	 * @param up   upsampling factor
+	 * @param down downsampling factor
+	 * @throws IllegalArgumentException if either factor is less than 1 or, once
+	 *                                  reduced, greater than {@link #MAX_FACTOR}
+	 */
+	public PolyphaseResampler(int up, int down) throws IllegalArgumentException {
+		if (up < 1 || down < 1) {
+			throw new IllegalArgumentException("Resampling factors must be at least 1");
+		}
+		int gcd = BigInteger.valueOf(up).gcd(BigInteger.valueOf(down)).intValue();
+		up /= gcd;
+		down /= gcd;
+		if (up > MAX_FACTOR || down > MAX_FACTOR) {
+			throw new IllegalArgumentException("Resampling factors cannot be greater than " + MAX_FACTOR);
+		}
+		this.up = up;
+		this.down = down;
+
+		int maxFactor = Math.max(up, down);
+		this.half = ZERO_CROSSINGS * maxFactor;
+		int length = 2 * half + 1;
+		double cutoff = 1.0 / maxFactor;
+		double kaiserScale = 1.0 / _besselI0(KAISER_BETA);
+
+		this.phases = new double[up][];
+		int longest = 0;
+		for (int p = 0; p < up; p++) {
+			double[] phase = new double[(length - p + up - 1) / up];
+			double sum = 0;
+			for (int q = 0; q < phase.length; q++) {
+				int t = p + up * q;
+				double offset = t - half;
+				double ratio = offset / half;
+				double window = _besselI0(KAISER_BETA * Math.sqrt(Math.max(0, 1 - ratio * ratio))) * kaiserScale;
+				double x = Math.PI * cutoff * offset;
+				phase[q] = (offset == 0 ? 1 : Math.sin(x) / x) * window;
+				sum += phase[q];
+			}
+			for (int q = 0; q < phase.length; q++) {
+				phase[q] /= sum;
+			}
+			phases[p] = phase;
+			longest = Math.max(longest, phase.length);
+		}
+		this.kept = longest;
+		this.ring = new double[2 * longest];
+	}
+
+	/**
+	 * Resamples a whole signal
+	 *
+	 * @param data the signal
+	 * @param up   upsampling factor
+	 * @param down downsampling factor
+	 * @return the resampled signal, of length ceil(data.length * up / down)
+	 * @throws IllegalArgumentException if the factors are invalid (see
+	 *                                  {@link #PolyphaseResampler(int, int)})
+	 */
+	public static double[] resample(double[] data, int up, int down) throws IllegalArgumentException {
+		PolyphaseResampler resampler = new PolyphaseResampler(up, down);
+		double[] output = new double[(int) resampler._outputLength(data.length)];
+		int written = resampler.write(data, 0, data.length, output, 0);
+		resampler.finish(output, written);
+		return output;
+	}
+
+	/**
+	 * Resamples data at the specified sample rate, as
+	 * {@link DataResampler#resample(double, boolean, BackgroundProgressRecorder, double[], double[]...)}
+	 * does by spline, for data which is evenly sampled at an interval which is a
+	 * simple fraction of the new one. Series which have one or two unique values
+	 * (i.e. markers) are resampled by nearest neighbour instead. Each series is
+	 * resampled on its own thread.
+	 * <p>
+	 * The new x values start at the first x value and do not go past the last one.
+	 * </p>
+	 *
+	 * @param resampleRate     the new interval between x values
+	 * @param shiftToZero      if true, the new x-values will start at 0.
+	 * @param progressRecorder An object to record background progress (can be
+	 *                         null).
+	 * @param xData            evenly spaced x (time) values, ascending
+	 * @param yValues          one or more y-value arrays
+	 * @return a ResampleResult containing the new time points and resampled y
+	 *         values
+	 * @throws ResampleException if the data is not evenly spaced, or the ratio of
+	 *                           the intervals is not a fraction with numerator and
+	 *                           denominator up to {@link #MAX_FACTOR}
+	 */
+	public static ResampleResult resample(double resampleRate, boolean shiftToZero,
+			BackgroundProgressRecorder progressRecorder, double[] xData, double[]... yValues)
+			throws ResampleException {
+		if (xData == null || xData.length < 2)
+			throw new ResampleException("xData must contain at least two points.");
+		for (double[] y : yValues) {
+			if (y.length != xData.length)
+				throw new ResampleException("Each y array must have the same length as xData.");
+		}
+		if (!(resampleRate > 0))
+			throw new ResampleException("Sample frequency is invalid - not greater than zero");
+
+		int n = xData.length;
+		double interval = (xData[n - 1] - xData[0]) / (n - 1);
+		for (int i = 1; i < n; i++) {
+			if (!(Math.abs(xData[i] - xData[i - 1] - interval) <= interval * 1e-3))
+				throw new ResampleException("xData must be evenly spaced for polyphase resampling.");
+		}
+		int[] factors = _fraction(interval / resampleRate);
+		if (factors == null)
+			throw new ResampleException("Ratio of sample intervals is not a simple fraction.");
+
+		if (progressRecorder != null) {
+			progressRecorder.setProgressBarEnabled(true, 1, 100);
+		}
+
+		double offset = shiftToZero ? xData[0] : 0.0;
+		double[] xDataAdjusted = new double[n];
+		for (int i = 0; i < n; i++) {
+			xDataAdjusted[i] = xData[i] - offset;
+		}
+		int count = (int) ((long) (n - 1) * factors[0] / factors[1]) + 1;
+		double[] newXVals = DataResampler.sampleTimes(BigDecimal.valueOf(xDataAdjusted[0]),
+				BigDecimal.valueOf(resampleRate), count);
+
+		// each series is resampled on its own thread, as by DataResampler
+		double[][] newYVals = new double[yValues.length][];
+		DataResampler.forEachSeries(yValues.length, progressRecorder, j -> {
+			if (DataResampler.isBinary(yValues[j])) {
+				newYVals[j] = new double[count];
+				DataResampler.resampleBinary(xDataAdjusted, yValues[j], newXVals, newYVals[j]);
+			} else {
+				newYVals[j] = Arrays.copyOf(resample(yValues[j], factors[0], factors[1]), count);
+			}
+		});
+
+		if (progressRecorder != null) {
+			progressRecorder.setProgressBarEnabled(false, -1, -1);
+		}
+		return new ResampleResult(newXVals, newYVals);
+	}
+
+	/**
+	 * @return number of input samples by which the output lags the input
+	 */
+	public int latency() {
+		return (half + up - 1) / up;
+	}
+
+	/**
+	 * @param samples number of samples to be written
+	 * @return the most values that writing them can produce
+	 */
+	public int outputCapacity(int samples) {
+		return (int) (((long) samples * up + down - 1) / down) + 1;
+	}
+
+	/**
+	 * Takes a block of samples, writing any resampled values which can now be
+	 * calculated
+	 *
+	 * @param samples the samples
+	 * @param from    index of the first sample, inclusive
+	 * @param to      index of the last sample, exclusive
+	 * @param output  array to write resampled values into, which needs space for
+	 *                {@link #outputCapacity(int)} of (to - from) values
+	 * @param offset  index in the output to write the first value
+	 * @return number of values written
+	 */
+	public int write(double[] samples, int from, int to, double[] output, int offset) {
+		int written = 0;
+		for (int i = from; i < to; i++) {
+			double sample = samples[i];
+			if (taken == 0) {
+				first = sample;
+			}
+			last = sample;
+			int slot = (int) (taken % kept);
+			ring[slot] = sample;
+			ring[slot + kept] = sample;
+			taken++;
+
+			// each value needs the samples up to the centre of the filter
+			while (((produced * down + half) / up) < taken) {
+				output[offset + written++] = _value(produced++);
+			}
+		}
+		return written;
+	}
+
+	/**
+	 * Takes a block of samples
+	 *
+	 * @param samples the samples
+	 * @return resampled values which can now be calculated
+	 */
+	public double[] write(double[] samples) {
+		double[] output = new double[outputCapacity(samples.length)];
+		int written = write(samples, 0, samples.length, output, 0);
+		return Arrays.copyOf(output, written);
+	}
+
+	/**
+	 * Ends the signal, writing the resampled values for the last samples by
+	 * padding the end with the last sample. The resampler is then reset for a new
+	 * signal.
+	 *
+	 * @param output array to write resampled values into, which needs space for
+	 *               {@link #outputCapacity(int)} of {@link #latency()} values
+	 * @param offset index in the output to write the first value
+	 * @return number of values written
+	 */
+	public int finish(double[] output, int offset) {
+		int written = 0;
+		long total = _outputLength(taken);
+		while (produced < total) {
+			output[offset + written++] = _value(produced++);
+		}
+		reset();
+		return written;
+	}
+
+	/**
+	 * Ends the signal (see {@link #finish(double[], int)})
+	 *
+	 * @return the resampled values for the last samples
+	 */
+	public double[] finish() {
+		double[] output = new double[outputCapacity(latency())];
+		int written = finish(output, 0);
+		return Arrays.copyOf(output, written);
+	}
+
+	/**
+	 * Discards all samples, to start a new signal
+	 */
+	public void reset() {
+		taken = 0;
+		produced = 0;
+		first = Double.NaN;
+		last = Double.NaN;
+	}
+
+	/**
+	 * Number of values resampled from a number of samples, rounded up
+	 */
+	private long _outputLength(long samples) {
+		return (samples * up + down - 1) / down;
+	}
+
+	/**
+	 * Calculates a resampled value, from the samples in the ring, the first sample
+	 * before the start and the last sample after the end
+	 */
+	private double _value(long k) {
+		long position = k * down + half;
+		double[] phase = phases[(int) (position % up)];
+		long base = position / up;
+		double sum = 0;
+		if (base >= phase.length - 1 && base < taken) {
+			// newest sample needed is at the end of the second copy
+			int newest = (int) (base % kept) + kept;
+			for (int q = 0; q < phase.length; q++) {
+				sum += phase[q] * ring[newest - q];
+			}
+			return sum;
+		}
+		for (int q = 0; q < phase.length; q++) {
+			long index = base - q;
+			double sample;
+			if (index < 0) {
+				sample = first;
+			} else if (index >= taken) {
+				sample = last;
+			} else {
+				sample = ring[(int) (index % kept)];
+			}
+			sum += phase[q] * sample;
+		}
+		return sum;
+	}
+
+	/**
+	 * Finds the fraction up / down equal to a ratio, to within 1e-6 of it
+	 *
+	 * @return {up, down}, or null if there is none with both up to
+	 *         {@link #MAX_FACTOR}
+	 */
+	private static int[] _fraction(double ratio) {
+		if (!(ratio > 0) || Double.isInfinite(ratio)) {
+			return null;
+		}
+		// continued fraction convergents
+		long upPrev = 1, up = (long) Math.floor(ratio);
+		long downPrev = 0, down = 1;
+		double remainder = ratio - Math.floor(ratio);
+		while (Math.abs((double) up / down - ratio) > ratio * 1e-6) {
+			if (remainder == 0) {
+				break;
+			}
+			double next = 1 / remainder;
+			long term = (long) Math.floor(next);
+			remainder = next - term;
+			long upNext = term * up + upPrev;
+			long downNext = term * down + downPrev;
+			upPrev = up;
+			downPrev = down;
+			up = upNext;
+			down = downNext;
+			if (up > MAX_FACTOR || down > MAX_FACTOR) {
+				return null;
+			}
+		}
+		if (up < 1 || up > MAX_FACTOR || down > MAX_FACTOR) {
+			return null;
+		}
+		return new int[] { (int) up, (int) down };
+	}
+
+	/**
+	 * Modified Bessel function of the first kind, order zero, by its power series
+	 */
+	private static double _besselI0(double x) {
+		double sum = 1;
+		double term = 1;
+		double quarterSquare = x * x / 4;
+		for (int k = 1; term > sum * 1e-17; k++) {
+			term *= quarterSquare / ((double) k * k);
+			sum += term;
+		}
+		return sum;
+	}
+
+}
@@ -0,0 +1,58 @@
+package com.carrington.WIA.Math;
+
+import com.carrington.WIA.GUIs.BackgroundProgressRecorder;
+import com.carrington.WIA.Math.DataResampler.ResampleException;
+
+/**
+ * How data is resampled at a new sample rate: interpolated by cubic spline (see
+ * {@link DataResampler}), which works for any sampling, or filtered by a
+ * polyphase anti-aliasing filter (see {@link PolyphaseResampler}), which is
+ * faster and does not alias when downsampling, but needs evenly sampled data
+ * whose interval is a simple fraction of the new one.
+ */
+@SuppressWarnings("javadoc")
+public enum ResampleMethod {
+	SPLINE("Spline"), POLYPHASE("Polyphase filter");
+
+	private String str;
+
+	/**
+	 * @param name The string representation of the method.
+	 */
+	private ResampleMethod(String name) {
+		str = name;
+	}
+
+	/**
+	 * Resamples data at the specified sample rate by this method.
+	 *
+	 * @param resampleRate     the new interval between x values
+	 * @param shiftToZero      if true, the new x-values will start at 0.
+	 * @param progressRecorder An object to record background progress (can be
+	 *                         null).
+	 * @param xData            an array of x (time) values in ascending order
+	 * @param yValues          one or more y-value arrays
+	 * @return a ResampleResult containing the new time points and resampled y
+	 *         values
+	 * @throws ResampleException if an error occurs during resampling, including
+	 *                           data which cannot be resampled by this method
+	 */
+	public ResampleResult resample(double resampleRate, boolean shiftToZero,
+			BackgroundProgressRecorder progressRecorder, double[] xData, double[]... yValues) throws ResampleException {
+		switch (this) {
+		case POLYPHASE:
+			return PolyphaseResampler.resample(resampleRate, shiftToZero, progressRecorder, xData, yValues);
+		default:
+			return DataResampler.resample(resampleRate, shiftToZero, progressRecorder, xData, yValues);
+		}
+	}
+
+	/**
+	 * Returns the string representation of the method.
+	 *
+	 * @return The method as a string
+	 */
+	public String toString() {
+		return str;
+	}
+}
@@ -1,6 +1,7 @@
 package com.carrington.WIA.Math;
 
 import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.math3.linear.DecompositionSolver;
 import org.apache.commons.math3.linear.MatrixUtils;
@@ -27,8 +28,15 @@ public class Savgol {
 	private int deriv;
 	private double delta;
 
+	/** Coefficients of this filter, shared with other filters (see {@link #COEFFS}) */
 	private double[] coeffs;
 
+	/**
+	 * Coefficients already calculated, by parameters. These are never modified
+	 * once calculated.
+	 */
+	private static final ConcurrentHashMap<CoeffsKey, double[]> COEFFS = new ConcurrentHashMap<CoeffsKey, double[]>();
+
 	/**
 	 * This constructor initialises the prerequisites required to use Savgol filter.
 	 * deriv is set to 0 and delta is set to 1
@@ -67,40 +75,14 @@ public class Savgol {
 
 	/**
 	 * Compute the coefficients for a 1-d Savitzky-Golay FIR filter based on the
-	 * parameters provided.
+	 * parameters provided. Coefficients are calculated once for each window size,
+	 * polynomial order, derivative and delta, and shared by all filters.
 	 * 
 	 * @throws java.lang.IllegalArgumentException if window size is even
 	 * @return the coefficients for a 1-d Savitzky-Golay FIR filter
 	 */
 	public double[] savgolCoeffs() throws IllegalArgumentException {
-		int halflen = this.windowSize / 2;
-		int rem = this.windowSize % 2;
-
-		if (rem == 0) {
-			throw new IllegalArgumentException("windowSize must be odd");
-		}
-		double pos = halflen;
-
-		double[] x = arange(-pos, this.windowSize - pos, 1);
-		x = Utils.reverse(x);
-
-		int[] order = arange(0, polyOrder + 1, 1);
-
-		double[][] A = new double[order.length][x.length];
-		for (int i = 0; i < order.length; i++) {
-			for (int j = 0; j < x.length; j++) {
-				A[i][j] = Math.pow(x[j], order[i]);
-			}
-		}
-
-		double[] y = new double[order.length];
-		Arrays.fill(y, 0);
-
-		y[this.deriv] = CombinatoricsUtils.factorial(this.deriv) / (Math.pow(this.delta, this.deriv));
-		A = pseudoInverse(A);
-		this.coeffs = MatrixUtils.createRealMatrix(A).operate(y);
-
-		return this.coeffs;
+		return _coeffs().clone();
 	}
 
 	/**
@@ -111,10 +93,7 @@ public class Savgol {
 	 * @return double[] Filtered signal
 	 */
 	public double[] filter(double[] signal) {
-		this.savgolCoeffs();
-		Convolution c = new Convolution(signal, this.coeffs);
-		this.output = c.convolve1d("nearest");
-		return this.output;
+		return filter(signal, "nearest");
 	}
 
 	/**
@@ -128,15 +107,94 @@ public class Savgol {
 	 * @return double[] Filtered signal
 	 */
 	public double[] filter(double[] signal, String mode) throws IllegalArgumentException {
+		return filter(signal, mode, new double[signal.length]);
+	}
+
+	/**
+	 * Convolves the 1-d Savitzky-Golay coefficients with the signals, writing into
+	 * the supplied output so that filtering repeatedly (i.e. as the window is
+	 * changed) does not allocate. Operates in 4 modes of convolution for filtering:
+	 * "nearest", "constant", "mirror", "wrap"
+	 * 
+	 * @param signal Signal to be filtered
+	 * @param mode   Mode of Filter operation
+	 * @param output Array to write the filtered signal into, the same length as the
+	 *               signal but not the signal itself
+	 * @throws java.lang.IllegalArgumentException if mode is not nearest, constant,
+	 *                                            mirror or wrap, or the output is
+	 *                                            the signal or not the same length
+	 * @return double[] the output, containing the filtered signal
+	 */
+	public double[] filter(double[] signal, String mode, double[] output) throws IllegalArgumentException {
 		if (!mode.equals("nearest") && !mode.equals("constant") && !mode.equals("mirror") && !mode.equals("wrap")) {
 			throw new IllegalArgumentException("mode must be mirror, constant, nearest or wrap");
 		}
-		this.savgolCoeffs();
-		Convolution c = new Convolution(signal, this.coeffs);
-		this.output = c.convolve1d(mode);
+		this.output = Convolution.convolve1d(signal, _coeffs(), mode, output);
 		return this.output;
 	}
 
+	/**
+	 * Gets the shared coefficients for this filter's parameters, calculating them
+	 * if this is the first filter with these parameters
+	 */
+	private double[] _coeffs() throws IllegalArgumentException {
+		if (this.coeffs == null) {
+			this.coeffs = coefficients(windowSize, polyOrder, deriv, delta);
+		}
+		return this.coeffs;
+	}
+
+	/**
+	 * Gets the shared coefficients for the parameters, calculating them the first
+	 * time they are needed. The array must not be modified.
+	 * 
+	 * @param windowSize      Size of the filter window/kernel
+	 * @param polynomialOrder The order of the polynomial used to fit the samples
+	 * @param deriv           The order of the derivative to compute
+	 * @param delta           The spacing of the samples
+	 * @throws java.lang.IllegalArgumentException if window size is even
+	 * @return the coefficients for a 1-d Savitzky-Golay FIR filter
+	 */
+	static double[] coefficients(int windowSize, int polynomialOrder, int deriv, double delta)
+			throws IllegalArgumentException {
+		return COEFFS.computeIfAbsent(new CoeffsKey(windowSize, polynomialOrder, deriv, delta),
+				key -> _calculateCoeffs(key.windowSize, key.polyOrder, key.deriv, key.delta));
+	}
+
+	/**
+	 * Calculates the coefficients by pseudo-inverse of the Vandermonde matrix of
+	 * the window
+	 */
+	private static double[] _calculateCoeffs(int windowSize, int polyOrder, int deriv, double delta)
+			throws IllegalArgumentException {
+		int halflen = windowSize / 2;
+		int rem = windowSize % 2;
+
+		if (rem == 0) {
+			throw new IllegalArgumentException("windowSize must be odd");
+		}
+		double pos = halflen;
+
+		double[] x = arange(-pos, windowSize - pos, 1);
+		x = Utils.reverse(x);
+
+		int[] order = arange(0, polyOrder + 1, 1);
+
+		double[][] A = new double[order.length][x.length];
+		for (int i = 0; i < order.length; i++) {
+			for (int j = 0; j < x.length; j++) {
+				A[i][j] = Math.pow(x[j], order[i]);
+			}
+		}
+
+		double[] y = new double[order.length];
+		Arrays.fill(y, 0);
+
+		y[deriv] = CombinatoricsUtils.factorial(deriv) / (Math.pow(delta, deriv));
+		A = pseudoInverse(A);
+		return MatrixUtils.createRealMatrix(A).operate(y);
+	}
+
 	/**
 	 * Generates and validates Savitzky-Golay filter settings.
 	 *
@@ -244,6 +302,41 @@ public class Savgol {
         return solver.getInverse().getData();
     }
 	
+	/**
+	 * Parameters which determine the coefficients
+	 */
+	private static final class CoeffsKey {
+		private final int windowSize;
+		private final int polyOrder;
+		private final int deriv;
+		private final double delta;
+
+		private CoeffsKey(int windowSize, int polyOrder, int deriv, double delta) {
+			this.windowSize = windowSize;
+			this.polyOrder = polyOrder;
+			this.deriv = deriv;
+			this.delta = delta;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof CoeffsKey)) {
+				return false;
+			}
+			CoeffsKey other = (CoeffsKey) obj;
+			return windowSize == other.windowSize && polyOrder == other.polyOrder && deriv == other.deriv
+					&& Double.compare(delta, other.delta) == 0;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = windowSize;
+			hash = 31 * hash + polyOrder;
+			hash = 31 * hash + deriv;
+			return 31 * hash + Double.hashCode(delta);
+		}
+	}
+
 	/**
 	 * A container for validated Savitzky-Golay filter parameters.
 	 */
@@ -0,0 +1,211 @@
+package com.carrington.WIA.Math;
+
+import java.util.Arrays;
+
+/**
+ * A {@link Savgol} filter (or derivative filter) which takes the signal a
+ * sample or a block at a time, i.e. as it is read from disk, and only keeps the
+ * last window of samples in a ring buffer. Each filtered value is written once
+ * the samples half a window after it have been taken, so output lags input by a
+ * fixed {@link #latency()} of window / 2 samples. {@link #finish(double[], int)}
+ * writes the remaining values at the end of the signal.
+ * <p>
+ * The ends of the signal are padded in "nearest" mode, so the filtered signal is
+ * the same as {@link Savgol#filter(double[])} of the whole signal, as long as
+ * the signal is at least as long as the window. For windows long enough that
+ * {@link Savgol} convolves by FFT, they differ by rounding.
+ * </p>
+ * <p>
+ * A filter holds the state of one signal, and is not thread safe.
+ * </p>
+ */
+public class StreamingSavgol {
+
+	private final double[] coeffs;
+	private final int half;
+	/** The last window of samples, including the padding at the start */
+	private final double[] ring;
+	/** Index in the ring to put the next sample */
+	private int pos = 0;
+	/** Number of samples in the ring, up to the window size */
+	private int filled = 0;
+	private double last = Double.NaN;
+	private boolean started = false;
+
+	/**
+	 * Creates a streaming filter. deriv is set to 0 and delta is set to 1
+	 *
+	 * @param windowSize      Size of the filter window/kernel
+	 * @param polynomialOrder The order of the polynomial used to fit the samples
+	 * @throws IllegalArgumentException if the window size is even, or the
+	 *                                  polynomial order is not less than it
+	 */
+	public StreamingSavgol(int windowSize, int polynomialOrder) throws IllegalArgumentException {
+		this(windowSize, polynomialOrder, 0, 1);
+	}
+
+	/**
+	 * Creates a streaming filter
+	 *
+	 * @param windowSize      Size of the filter window/kernel
+	 * @param polynomialOrder The order of the polynomial used to fit the samples
+	 * @param deriv           The order of the derivative to compute
+	 * @param delta           The spacing of the samples to which the filter will be
+	 *                        applied. Used only if deriv greater than 0
+	 * @throws IllegalArgumentException if the window size is even, or the
+	 *                                  polynomial order is not less than it
+	 */
+	public StreamingSavgol(int windowSize, int polynomialOrder, int deriv, double delta)
+			throws IllegalArgumentException {
+		if (polynomialOrder >= windowSize) {
+			throw new IllegalArgumentException("polynomialOrder must be less that windowSize");
+		}
+		this.coeffs = Savgol.coefficients(windowSize, polynomialOrder, deriv, delta);
+		this.half = windowSize / 2;
+		this.ring = new double[windowSize];
+	}
+
+	/**
+	 * @return number of samples by which the output lags the input, window / 2
+	 */
+	public int latency() {
+		return half;
+	}
+
+	/**
+	 * Takes a block of samples, writing any filtered values which can now be
+	 * calculated
+	 *
+	 * @param samples the samples
+	 * @param from    index of the first sample, inclusive
+	 * @param to      index of the last sample, exclusive
+	 * @param output  array to write filtered values into, which needs space for up
+	 *                to (to - from) values
+	 * @param offset  index in the output to write the first value
+	 * @return number of values written
+	 */
+	public int write(double[] samples, int from, int to, double[] output, int offset) {
+		int written = 0;
+		for (int i = from; i < to; i++) {
+			if (_take(samples[i])) {
+				output[offset + written++] = _filtered();
+			}
+		}
+		return written;
+	}
+
+	/**
+	 * Takes a block of samples
+	 *
+	 * @param samples the samples
+	 * @return filtered values which can now be calculated, which lag the samples by
+	 *         {@link #latency()}
+	 */
+	public double[] write(double[] samples) {
+		double[] output = new double[samples.length];
+		int written = write(samples, 0, samples.length, output, 0);
+		return written == output.length ? output : Arrays.copyOf(output, written);
+	}
+
+	/**
+	 * Takes a single sample
+	 *
+	 * @param sample the sample
+	 * @return the filtered value from {@link #latency()} samples before, or NaN if
+	 *         there are not yet enough samples
+	 */
+	public double write(double sample) {
+		return _take(sample) ? _filtered() : Double.NaN;
+	}
+
+	/**
+	 * Ends the signal, writing the filtered values for the last samples by padding
+	 * the end with the last sample. The filter is then reset for a new signal.
+	 *
+	 * @param output array to write filtered values into, which needs space for up
+	 *               to {@link #latency()} values
+	 * @param offset index in the output to write the first value
+	 * @return number of values written
+	 */
+	public int finish(double[] output, int offset) {
+		int written = 0;
+		if (started) {
+			for (int p = 0; p < half; p++) {
+				if (_put(last)) {
+					output[offset + written++] = _filtered();
+				}
+			}
+		}
+		reset();
+		return written;
+	}
+
+	/**
+	 * Ends the signal (see {@link #finish(double[], int)})
+	 *
+	 * @return the filtered values for the last samples
+	 */
+	public double[] finish() {
+		double[] output = new double[half];
+		int written = finish(output, 0);
+		return written == output.length ? output : Arrays.copyOf(output, written);
+	}
+
+	/**
+	 * Discards all samples, to start a new signal
+	 */
+	public void reset() {
+		pos = 0;
+		filled = 0;
+		last = Double.NaN;
+		started = false;
+	}
+
+	/**
+	 * Takes a sample, padding the start of the signal with it if it is the first
+	 *
+	 * @return true if the ring holds a whole window
+	 */
+	private boolean _take(double sample) {
+		if (!started) {
+			for (int p = 0; p < half; p++) {
+				_put(sample);
+			}
+			started = true;
+		}
+		last = sample;
+		return _put(sample);
+	}
+
+	/**
+	 * Puts a value in the ring
+	 *
+	 * @return true if the ring holds a whole window
+	 */
+	private boolean _put(double value) {
+		ring[pos] = value;
+		pos = pos + 1 == ring.length ? 0 : pos + 1;
+		if (filled < ring.length) {
+			filled++;
+		}
+		return filled == ring.length;
+	}
+
+	/**
+	 * Filtered value at the centre of the window, summed in the same order as
+	 * {@link Convolution#convolve1d(double[], double[], String, double[])}
+	 */
+	private double _filtered() {
+		double sum = 0;
+		// newest first, which is at pos - 1
+		int k = 0;
+		for (int r = pos - 1; r >= 0; r--) {
+			sum += ring[r] * coeffs[k++];
+		}
+		for (int r = ring.length - 1; r >= pos; r--) {
+			sum += ring[r] * coeffs[k++];
+		}
+		return sum;
+	}
+
+}
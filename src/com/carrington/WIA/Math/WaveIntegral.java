@@ -0,0 +1,119 @@
+package com.carrington.WIA.Math;
+
+/**
+ * Area under the curve (integral) of a series of evenly spaced values, i.e. a
+ * wave intensity, by the trapezoidal rule. Where the curve crosses zero between
+ * two values, the interval is split at the crossing so that the positive and
+ * negative parts are each integrated as triangles.
+ * <p>
+ * The areas of the intervals are summed once into a prefix table, using
+ * compensated (Neumaier) summation, so that the area over any range of the
+ * series (see {@link #between(int, int)}) is a subtraction rather than a
+ * summation over the range.
+ * </p>
+ */
+public class WaveIntegral {
+
+	/** Running sum of the interval areas, up to and including each value */
+	private final double[] sums;
+	/** Running compensation of {@link #sums} */
+	private final double[] compensations;
+
+	/**
+	 * Builds the prefix table of the series
+	 *
+	 * @param interval interval between sequential values
+	 * @param y        the values, which are not kept
+	 */
+	public WaveIntegral(double interval, double[] y) {
+		sums = new double[y.length];
+		compensations = new double[y.length];
+
+		double sum = 0;
+		double compensation = 0;
+		for (int i = 1; i < y.length; i++) {
+			double value = segmentArea(interval, y[i - 1], y[i]);
+			double next = sum + value;
+			compensation += Math.abs(sum) >= Math.abs(value) ? (sum - next) + value : (value - next) + sum;
+			sum = next;
+			sums[i] = sum;
+			compensations[i] = compensation;
+		}
+	}
+
+	/**
+	 * @return number of values in the series
+	 */
+	public int size() {
+		return sums.length;
+	}
+
+	/**
+	 * @return area under the whole curve
+	 */
+	public double total() {
+		return between(0, sums.length);
+	}
+
+	/**
+	 * Area under the curve over a range of the values, the same as the area of
+	 * that range as its own series
+	 *
+	 * @param from index of the first value, inclusive
+	 * @param to   index of the last value, exclusive
+	 * @return area under the curve of the range, or 0 if it has less than two
+	 *         values
+	 * @throws IndexOutOfBoundsException if the range is outside of the series
+	 */
+	public double between(int from, int to) throws IndexOutOfBoundsException {
+		if (from < 0 || to > sums.length || from > to) {
+			throw new IndexOutOfBoundsException("Range " + from + " to " + to + " outside of length " + sums.length);
+		} else if (to - from < 2) {
+			return 0;
+		}
+		return (sums[to - 1] - sums[from]) + (compensations[to - 1] - compensations[from]);
+	}
+
+	/**
+	 * Computes the area under the curve of a whole series, without keeping a
+	 * prefix table
+	 *
+	 * @param interval interval between sequential values
+	 * @param y        the values
+	 * @return area under the curve
+	 */
+	public static double area(double interval, double[] y) {
+		double sum = 0;
+		double compensation = 0;
+		for (int i = 1; i < y.length; i++) {
+			double value = segmentArea(interval, y[i - 1], y[i]);
+			double next = sum + value;
+			compensation += Math.abs(sum) >= Math.abs(value) ? (sum - next) + value : (value - next) + sum;
+			sum = next;
+		}
+		return sum + compensation;
+	}
+
+	/**
+	 * Area under the curve between two sequential values. If they are the same
+	 * sign this is a trapezoid. Otherwise the interval is split in proportion to
+	 * their magnitudes, at the zero crossing, and the area is the sum of the
+	 * positive and negative triangles.
+	 *
+	 * @param interval interval between the values
+	 * @param y0       first value
+	 * @param y1       second value
+	 * @return area, negative if below zero
+	 */
+	public static double segmentArea(double interval, double y0, double y1) {
+		if ((y0 >= 0 && y1 >= 0) || (y0 <= 0 && y1 <= 0)) {
+			return (y0 + y1) * 0.5 * interval;
+		}
+
+		// signs are opposite, so neither is zero
+		double abs0 = Math.abs(y0);
+		double abs1 = Math.abs(y1);
+		return (y0 * abs0 + y1 * abs1) / (abs0 + abs1) * 0.5 * interval;
+	}
+
+}
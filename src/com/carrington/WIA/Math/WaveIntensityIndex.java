@@ -0,0 +1,130 @@
+package com.carrington.WIA.Math;
+
+/**
+ * Index over a wave intensity series, built once, which answers the cumulative
+ * intensity and the absolute peak of any range of it in constant time and
+ * without allocating, so that a wave can be recalculated every time its bounds
+ * change.
+ * <p>
+ * The cumulative intensity comes from a {@link WaveIntegral}. The peak comes
+ * from a sparse table of the minimum and maximum of every range whose length is
+ * a power of two: any range is covered by two such (overlapping) ranges. The
+ * table takes n * log2(n) indices for each of the minimum and maximum.
+ * </p>
+ */
+public class WaveIntensityIndex {
+
+	private final double[] y;
+	private final WaveIntegral integral;
+	/** Index of the first minimum of each range of length 2^k, by k */
+	private final int[][] minIndices;
+	/** Index of the first maximum of each range of length 2^k, by k */
+	private final int[][] maxIndices;
+
+	/**
+	 * Builds the index of the series
+	 *
+	 * @param interval interval between sequential values
+	 * @param y        the values, which are kept and must not be modified
+	 */
+	public WaveIntensityIndex(double interval, double[] y) {
+		this.y = y;
+		this.integral = new WaveIntegral(interval, y);
+
+		int levels = y.length < 2 ? 1 : 32 - Integer.numberOfLeadingZeros(y.length);
+		minIndices = new int[levels][];
+		maxIndices = new int[levels][];
+		for (int k = 1; k < levels; k++) {
+			int half = 1 << (k - 1);
+			int count = y.length - (1 << k) + 1;
+			int[] min = new int[count];
+			int[] max = new int[count];
+			for (int i = 0; i < count; i++) {
+				min[i] = _min(_minAt(k - 1, i), _minAt(k - 1, i + half));
+				max[i] = _max(_maxAt(k - 1, i), _maxAt(k - 1, i + half));
+			}
+			minIndices[k] = min;
+			maxIndices[k] = max;
+		}
+	}
+
+	/**
+	 * @return number of values in the series
+	 */
+	public int size() {
+		return y.length;
+	}
+
+	/**
+	 * @param from index of the first value, inclusive
+	 * @param to   index of the last value, exclusive
+	 * @return area under the curve of the range (see
+	 *         {@link WaveIntegral#between(int, int)})
+	 * @throws IndexOutOfBoundsException if the range is outside of the series
+	 */
+	public double integral(int from, int to) throws IndexOutOfBoundsException {
+		return integral.between(from, to);
+	}
+
+	/**
+	 * Finds the value of greatest magnitude in a range, the same as
+	 * {@link com.carrington.WIA.Utils#absoluteMax(double[], double[])}: the first
+	 * minimum if its magnitude is greater than that of the first maximum,
+	 * otherwise the first maximum. NaN values are ignored.
+	 *
+	 * @param from index of the first value, inclusive
+	 * @param to   index of the last value, exclusive
+	 * @return index of the peak, or -1 if the range has no values other than NaN
+	 * @throws IndexOutOfBoundsException if the range is outside of the series
+	 */
+	public int peakIndex(int from, int to) throws IndexOutOfBoundsException {
+		if (from < 0 || to > y.length || from > to) {
+			throw new IndexOutOfBoundsException("Range " + from + " to " + to + " outside of length " + y.length);
+		} else if (from == to) {
+			return -1;
+		}
+
+		int k = 31 - Integer.numberOfLeadingZeros(to - from);
+		int right = to - (1 << k);
+		int min = _min(_minAt(k, from), _minAt(k, right));
+		int max = _max(_maxAt(k, from), _maxAt(k, right));
+		if (Double.isNaN(y[max])) {
+			// all NaN, so the minimum is too
+			return -1;
+		}
+		return Math.abs(y[min]) > Math.abs(y[max]) ? min : max;
+	}
+
+	/**
+	 * @param index index in the series
+	 * @return the value
+	 */
+	public double get(int index) {
+		return y[index];
+	}
+
+	private int _minAt(int k, int i) {
+		return k == 0 ? i : minIndices[k][i];
+	}
+
+	private int _maxAt(int k, int i) {
+		return k == 0 ? i : maxIndices[k][i];
+	}
+
+	/**
+	 * Of two indices where a comes first, the one with the lower value, or a on
+	 * ties so that the first is kept. NaN values are ignored.
+	 */
+	private int _min(int a, int b) {
+		return Double.isNaN(y[a]) || y[b] < y[a] ? b : a;
+	}
+
+	/**
+	 * Of two indices where a comes first, the one with the higher value, or a on
+	 * ties so that the first is kept. NaN values are ignored.
+	 */
+	private int _max(int a, int b) {
+		return Double.isNaN(y[a]) || y[b] > y[a] ? b : a;
+	}
+
+}
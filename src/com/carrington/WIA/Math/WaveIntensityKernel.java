@@ -0,0 +1,119 @@
+package com.carrington.WIA.Math;
+
+/**
+ * Calculates single point wave speed, net and separated wave intensity, and
+ * separated flow derivatives from pressure and flow derivatives, in two passes
+ * over the data with no temporary arrays. The first pass sums the squares of
+ * the derivatives to calculate rho * c; the second fills all of the outputs.
+ * <p>
+ * The formulas are those of Parker and Jones:
+ * </p>
+ * <ul>
+ * <li>rho * c = sqrt(sum(dP^2) / sum(dU^2))</li>
+ * <li>dI = dP * dU</li>
+ * <li>dI+ = (dP + rho * c * dU)^2 / (4 * rho * c), dI- = -(dP - rho * c *
+ * dU)^2 / (4 * rho * c)</li>
+ * <li>dU+ = (dP + rho * c * dU) / (2 * rho * c), dU- = -1 / (2 * rho * c * (dP
+ * - rho * c * dU))</li>
+ * </ul>
+ */
+public class WaveIntensityKernel {
+
+	/**
+	 * Calculates the single point wave speed, as rho * c
+	 *
+	 * @param pressureDeriv pressure derivative (dP)
+	 * @param flowDeriv     flow derivative (dU), same length
+	 * @return rho * c
+	 * @throws IllegalArgumentException if the arrays are not the same length
+	 */
+	public static double rhoC(double[] pressureDeriv, double[] flowDeriv) throws IllegalArgumentException {
+		_checkLength(pressureDeriv.length, flowDeriv);
+
+		// compensated sums, so that long recordings do not lose precision
+		double sumPressure = 0;
+		double compPressure = 0;
+		double sumFlow = 0;
+		double compFlow = 0;
+		for (int i = 0; i < pressureDeriv.length; i++) {
+			double dP = pressureDeriv[i];
+			double dU = flowDeriv[i];
+
+			double value = dP * dP;
+			double sum = sumPressure + value;
+			compPressure += Math.abs(sumPressure) >= Math.abs(value) ? (sumPressure - sum) + value
+					: (value - sum) + sumPressure;
+			sumPressure = sum;
+
+			value = dU * dU;
+			sum = sumFlow + value;
+			compFlow += Math.abs(sumFlow) >= Math.abs(value) ? (sumFlow - sum) + value : (value - sum) + sumFlow;
+			sumFlow = sum;
+		}
+
+		return Math.sqrt((sumPressure + compPressure) / (sumFlow + compFlow));
+	}
+
+	/**
+	 * Calculates net and separated wave intensity, and separated flow derivatives,
+	 * into the supplied arrays. Any output may be null if not needed.
+	 *
+	 * @param pressureDeriv     pressure derivative (dP)
+	 * @param flowDeriv         flow derivative (dU), same length
+	 * @param rhoC              rho * c, i.e. from {@link #rhoC(double[], double[])}
+	 * @param net               net wave intensity (dI)
+	 * @param forward           forward wave intensity (dI+)
+	 * @param backward          backward wave intensity (dI-)
+	 * @param flowDerivForward  forward flow derivative (dU+)
+	 * @param flowDerivBackward backward flow derivative (dU-)
+	 * @throws IllegalArgumentException if any array is not the same length as the
+	 *                                  pressure derivative
+	 */
+	public static void separate(double[] pressureDeriv, double[] flowDeriv, double rhoC, double[] net,
+			double[] forward, double[] backward, double[] flowDerivForward, double[] flowDerivBackward)
+			throws IllegalArgumentException {
+		int n = pressureDeriv.length;
+		_checkLength(n, flowDeriv);
+		_checkLength(n, net);
+		_checkLength(n, forward);
+		_checkLength(n, backward);
+		_checkLength(n, flowDerivForward);
+		_checkLength(n, flowDerivBackward);
+
+		double multipConstantForward = 1.0 / (4.0 * rhoC);
+		double multipConstantBackward = -1.0 / (4.0 * rhoC);
+		double multipConstantFlow = 1.0 / (2.0 * rhoC);
+		double twoRhoC = 2.0 * rhoC;
+
+		for (int i = 0; i < n; i++) {
+			double dP = pressureDeriv[i];
+			double dU = flowDeriv[i];
+			double pcdU = rhoC * dU;
+			double sum = dP + pcdU;
+			double difference = dP - pcdU;
+
+			if (net != null) {
+				net[i] = dP * dU;
+			}
+			if (forward != null) {
+				forward[i] = multipConstantForward * (sum * sum);
+			}
+			if (backward != null) {
+				backward[i] = multipConstantBackward * (difference * difference);
+			}
+			if (flowDerivForward != null) {
+				flowDerivForward[i] = multipConstantFlow * sum;
+			}
+			if (flowDerivBackward != null) {
+				flowDerivBackward[i] = -1.0 / (twoRhoC * difference);
+			}
+		}
+	}
+
+	private static void _checkLength(int n, double[] array) {
+		if (array != null && array.length != n) {
+			throw new IllegalArgumentException("Wave intensity arrays must be the same length");
+		}
+	}
+
+}
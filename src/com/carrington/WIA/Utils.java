@@ -58,6 +58,7 @@ import com.carrington.WIA.DataStructures.HemoData;
 import com.carrington.WIA.IO.Header;
 import com.carrington.WIA.Math.FlowUnit;
 import com.carrington.WIA.Math.PressureUnit;
+import com.carrington.WIA.Math.WaveIntegral;
 
 /**
  * A collection of static utility methods used throughout the WIA application.
@@ -2126,68 +2127,33 @@ public abstract class Utils {
 	}
 
 	/**
-	 * Computes the area under curve (integral) on the specified double array
+	 * Computes the area under curve (integral) on the specified double array. Where
+	 * the curve crosses zero between two values, the positive and negative parts
+	 * are integrated separately (see {@link WaveIntegral}).
 	 * 
 	 * @param timeInterval time interval between sequential elements in the supplied
 	 *                     array
 	 * @param y            array of values
-	 * @return the total area under the curve (integral)
-	 */
-	public static double getAreaUnderCurve(BigDecimal timeInterval, double[] y) {
-		BigDecimal two = BigDecimal.valueOf(2.0);
-		BigDecimal[] auc = new BigDecimal[y.length - 1];
-		for (int i = 0; i < y.length - 1; i++) {
-
-			if (y[i] >= 0 && y[i + 1] >= 0) {
-
-				BigDecimal yBDMax = BigDecimal.valueOf(Math.max(y[i], y[i + 1]));
-				BigDecimal yBDMin = BigDecimal.valueOf(Math.min(y[i], y[i + 1]));
-				auc[i] = yBDMin.multiply(timeInterval, MathContext.DECIMAL128)
-						.add(yBDMax.subtract(yBDMin, MathContext.DECIMAL128)
-								.multiply(timeInterval, MathContext.DECIMAL128).divide(two, MathContext.DECIMAL128),
-								MathContext.DECIMAL128);
-			} else if (y[i] <= 0 && y[i + 1] <= 0) {
-				BigDecimal yBDMax = BigDecimal.valueOf(Math.max(Math.abs(y[i]), Math.abs(y[i + 1])));
-				BigDecimal yBDMin = BigDecimal.valueOf(Math.min(Math.abs(y[i]), Math.abs(y[i + 1])));
-				auc[i] = yBDMin.multiply(timeInterval, MathContext.DECIMAL128)
-						.add(yBDMax.subtract(yBDMin, MathContext.DECIMAL128)
-								.multiply(timeInterval, MathContext.DECIMAL128).divide(two, MathContext.DECIMAL128),
-								MathContext.DECIMAL128)
-						.negate();
-			} else {
-				BigDecimal bd0 = new BigDecimal(y[i]);
-				BigDecimal bd1 = new BigDecimal(y[i + 1]);
-
-				BigDecimal absSum = bd0.abs().add(bd1.abs());
-				BigDecimal propTimeIntervalPos = null;
-				BigDecimal propTimeIntervalNeg = null;
-				if (absSum.compareTo(BigDecimal.ZERO) == 0) {
-					propTimeIntervalPos = propTimeIntervalNeg = timeInterval.divide(two, MathContext.DECIMAL128);
-				} else {
-					propTimeIntervalPos = timeInterval.multiply(bd0.abs().divide(absSum, MathContext.DECIMAL128),
-							MathContext.DECIMAL128);
-					propTimeIntervalNeg = timeInterval.multiply(bd1.abs().divide(absSum, MathContext.DECIMAL128),
-							MathContext.DECIMAL128);
+	 * @return the total area under the curve (integral), or 0 if there is only one
+	 *         value
+	 * @throws NumberFormatException    if any value is NaN or infinite
+	 * @throws IllegalArgumentException if the array is empty
+	 */
+	public static double getAreaUnderCurve(BigDecimal timeInterval, double[] y)
+			throws NumberFormatException, IllegalArgumentException {
+		if (y.length == 0) {
+			throw new IllegalArgumentException("Cannot compute the area under an empty curve");
+		}
+		double area = WaveIntegral.area(timeInterval.doubleValue(), y);
+		if (Double.isNaN(area) || Double.isInfinite(area)) {
+			// only NaN or infinite values are invalid, not overflow of the sum
+			for (double value : y) {
+				if (Double.isNaN(value) || Double.isInfinite(value)) {
+					throw new NumberFormatException("Infinite or NaN");
 				}
-
-				auc[i] = bd0.multiply(propTimeIntervalPos, MathContext.DECIMAL128).divide(two, MathContext.DECIMAL128)
-						.add(bd1.multiply(propTimeIntervalNeg, MathContext.DECIMAL128).divide(two,
-								MathContext.DECIMAL128));
-
-				// signs are opposite.
-
 			}
-
 		}
-
-		BigDecimal total = BigDecimal.ZERO;
-
-		for (BigDecimal value : auc) {
-			total = total.add(value, MathContext.DECIMAL128);
-		}
-
-		return total.doubleValue();
-
+		return area;
 	}
 
 	/**
@@ -2196,7 +2162,13 @@ public abstract class Utils {
 	 * @return true if time stamp
 	 */
 	public static boolean isATimeStamp(String str) {
-		return str.matches("[0-9:]*");
+		for (int i = 0; i < str.length(); i++) {
+			char c = str.charAt(i);
+			if (c != ':' && (c < '0' || c > '9')) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	/**
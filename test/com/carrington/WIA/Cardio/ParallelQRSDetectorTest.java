@@ -0,0 +1,100 @@
+package com.carrington.WIA.Cardio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that {@link ParallelQRSDetector} finds the same R waves as
+ * {@link QRSDetector} on a synthetic ECG, with beats placed across the seams
+ * between its segments, so that each is found once however the segments
+ * either side place it. The segments are detected on several threads whatever
+ * the number of processors.
+ */
+public class ParallelQRSDetectorTest {
+
+	private static final int[] RATES = { 200, 500, 1000 };
+
+	/** Seconds of ECG in each segment */
+	private static final int SEGMENT_SECONDS = 60;
+
+	private static final int THREADS = 3;
+
+	@Test
+	public void matchesBatchAcrossSeams() {
+		Random random = new Random(25);
+		for (int hz : RATES) {
+			int segment = SEGMENT_SECONDS * hz;
+			int segments = 12;
+			int n = segments * segment + 17 * hz;
+			// a beat across each seam, from 250 ms before it to 250 ms after
+			int[] seams = new int[segments];
+			for (int k = 0; k < seams.length; k++) {
+				seams[k] = (k + 1) * segment + k * (hz / 2) / (seams.length - 1) - hz / 4;
+			}
+			double[] time = QRSDetectorTest.time(n, hz);
+			int[] beats = QRSDetectorTest.beats(random, hz, n, seams);
+			double[] ecg = QRSDetectorTest.ecg(random, hz, beats, n);
+
+			for (boolean adjust : new boolean[] { true, false }) {
+				List<Integer> expected = _indices(QRSDetector.getQRS(time, ecg, hz, adjust));
+				assertEquals(beats.length, expected.size());
+				assertEquals(expected,
+						_indices(ParallelQRSDetector.getQRSOnSubset(time, ecg, 0, n, hz, adjust, THREADS)),
+						"hz " + hz + ", adjust " + adjust);
+				assertEquals(expected, _indices(ParallelQRSDetector.getQRSOnSubset(time, ecg, 0, n, hz, adjust, 1)),
+						"one thread, hz " + hz + ", adjust " + adjust);
+			}
+		}
+	}
+
+	@Test
+	public void subsetMatchesBatch() {
+		Random random = new Random(250);
+		int hz = 500;
+		int n = 5 * SEGMENT_SECONDS * hz;
+		double[] time = QRSDetectorTest.time(n, hz);
+		double[] ecg = QRSDetectorTest.ecg(random, hz, QRSDetectorTest.beats(random, hz, n, new int[0]), n);
+
+		// segments start from the subset, not the array
+		for (int[] range : new int[][] { { 13 * hz + 7, n - 29 * hz }, { 0, 3 * SEGMENT_SECONDS * hz },
+				{ 70 * hz, 140 * hz }, { 100, 200 } }) {
+			int start = range[0];
+			int end = range[1];
+			for (boolean adjust : new boolean[] { true, false }) {
+				assertEquals(_indices(QRSDetector.getQRSOnSubset(time, ecg, start, end, hz, adjust)),
+						_indices(ParallelQRSDetector.getQRSOnSubset(time, ecg, start, end, hz, adjust, THREADS)),
+						"from " + start + " to " + end + ", adjust " + adjust);
+			}
+		}
+		assertEquals(0, ParallelQRSDetector.getQRSOnSubset(time, ecg, 10, 10, hz, true, THREADS).size());
+	}
+
+	@Test
+	public void invalidArgumentsAreRejected() {
+		double[] ecg = new double[1000];
+		double[] time = QRSDetectorTest.time(ecg.length, 100);
+		assertThrows(IllegalArgumentException.class,
+				() -> ParallelQRSDetector.getQRSOnSubset(time, ecg, -1, 10, 100, true, THREADS));
+		assertThrows(IllegalArgumentException.class,
+				() -> ParallelQRSDetector.getQRSOnSubset(time, ecg, 20, 10, 100, true, THREADS));
+		assertThrows(IllegalArgumentException.class,
+				() -> ParallelQRSDetector.getQRSOnSubset(time, ecg, 0, 1001, 100, true, THREADS));
+		assertThrows(IllegalArgumentException.class,
+				() -> ParallelQRSDetector.getQRSOnSubset(time, ecg, 0, 1000, 0, true, THREADS));
+	}
+
+	private static List<Integer> _indices(List<QRS> qrsComplexes) {
+		List<Integer> indices = new ArrayList<Integer>();
+		for (QRS qrs : qrsComplexes) {
+			indices.add(qrs.getArrayIndex());
+		}
+		return indices;
+	}
+
+}
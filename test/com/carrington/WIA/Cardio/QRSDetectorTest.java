@@ -0,0 +1,280 @@
+package com.carrington.WIA.Cardio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the running sum integrator of {@link QRSDetector} against the
+ * differentiate, square and integrate steps it replaced, and that
+ * {@link StreamingQRSDetector} finds the same R waves as {@link QRSDetector} on
+ * a synthetic ECG, including beats at the edges of the blocks it is given.
+ */
+public class QRSDetectorTest {
+
+	private static final int[] RATES = { 200, 500, 1000 };
+
+	/** Samples given to the streaming detector at a time by its static methods */
+	private static final int BLOCK_SIZE = 4096;
+
+	@Test
+	public void runningSumMatchesThreeSteps() {
+		Random random = new Random(24);
+		for (int hz : RATES) {
+			double[] ecg = ecg(random, hz, beats(random, hz, 60 * hz, new int[0]), 60 * hz);
+			double[] noise = new double[20000];
+			for (int i = 0; i < noise.length; i++) {
+				noise[i] = random.nextGaussian();
+			}
+			for (double[] signal : new double[][] { ecg, noise, { 1 }, {} }) {
+				for (int window : new int[] { 1, 2, hz / 6, 5 * hz }) {
+					double[] expected = ThreeSteps.integrate(signal, window);
+					double[] actual = QRSDetector.integrateSquaredDifferential(signal, window);
+					assertEquals(expected.length, actual.length);
+					// the running sum rounds differently as values leave the window
+					double max = 0;
+					for (double value : expected) {
+						max = Math.max(max, value);
+					}
+					for (int i = 0; i < expected.length; i++) {
+						assertEquals(expected[i], actual[i], max * 1e-12, "hz " + hz + ", window " + window + ", at " + i);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void batchMatchesThreeSteps() {
+		Random random = new Random(240);
+		for (int hz : RATES) {
+			int n = 120 * hz;
+			double[] time = time(n, hz);
+			double[] ecg = ecg(random, hz, beats(random, hz, n, new int[0]), n);
+			for (boolean adjust : new boolean[] { true, false }) {
+				assertEquals(ThreeSteps.getQRSIndices(ecg, hz, adjust), _indices(QRSDetector.getQRS(time, ecg, hz, adjust)),
+						"hz " + hz + ", adjust " + adjust);
+			}
+		}
+	}
+
+	@Test
+	public void streamingMatchesBatch() {
+		Random random = new Random(2400);
+		for (int hz : RATES) {
+			int n = 150 * hz;
+			double[] time = time(n, hz);
+			int[] beats = beats(random, hz, n, new int[0]);
+			double[] ecg = ecg(random, hz, beats, n);
+			for (boolean adjust : new boolean[] { true, false }) {
+				List<Integer> expected = _indices(QRSDetector.getQRS(time, ecg, hz, adjust));
+				assertEquals(beats.length, expected.size());
+				assertEquals(expected, _indices(StreamingQRSDetector.getQRS(time, ecg, hz, adjust)),
+						"hz " + hz + ", adjust " + adjust);
+
+				int start = 7 * hz + 3;
+				int end = n - 11 * hz;
+				assertEquals(_indices(QRSDetector.getQRSOnSubset(time, ecg, start, end, hz, adjust)),
+						_indices(StreamingQRSDetector.getQRSOnSubset(time, ecg, start, end, hz, adjust)),
+						"subset, hz " + hz + ", adjust " + adjust);
+			}
+		}
+	}
+
+	@Test
+	public void streamingMatchesBatchAtBlockEdges() {
+		Random random = new Random(24000);
+		for (int hz : RATES) {
+			int n = 25 * BLOCK_SIZE;
+			// beats across each block edge, from 100 ms before it to 100 ms after
+			int[] edges = new int[n / BLOCK_SIZE - 1];
+			for (int k = 0; k < edges.length; k++) {
+				edges[k] = (k + 1) * BLOCK_SIZE + (k * (hz / 5) / (edges.length - 1)) - hz / 10;
+			}
+			double[] time = time(n, hz);
+			double[] ecg = ecg(random, hz, beats(random, hz, n, edges), n);
+
+			for (boolean adjust : new boolean[] { true, false }) {
+				List<Integer> expected = _indices(QRSDetector.getQRS(time, ecg, hz, adjust));
+				assertEquals(expected, _indices(StreamingQRSDetector.getQRS(time, ecg, hz, adjust)),
+						"hz " + hz + ", adjust " + adjust);
+
+				// and written in blocks of any size, down to single samples
+				StreamingQRSDetector detector = new StreamingQRSDetector(hz, adjust);
+				List<Integer> written = new ArrayList<Integer>();
+				for (int from = 0; from < n;) {
+					int to = Math.min(n, from + (random.nextBoolean() ? 1 : 1 + random.nextInt(2 * BLOCK_SIZE)));
+					int before = written.size();
+					detector.write(ecg, from, to, written);
+					for (int i = before; i < written.size(); i++) {
+						assertTrue(written.get(i) < to, "QRS found before it was written");
+					}
+					from = to;
+				}
+				detector.finish(written);
+				assertEquals(expected, written, "blocks, hz " + hz + ", adjust " + adjust);
+			}
+		}
+	}
+
+	@Test
+	public void detectorCanBeReused() {
+		Random random = new Random(240000);
+		int hz = 500;
+		StreamingQRSDetector detector = new StreamingQRSDetector(hz, true);
+		for (int n : new int[] { 40 * hz, 10 * hz, 90 * hz }) {
+			double[] ecg = ecg(random, hz, beats(random, hz, n, new int[0]), n);
+			List<Integer> written = new ArrayList<Integer>();
+			detector.write(ecg, 0, n, written);
+			detector.finish(written);
+			assertEquals(_indices(QRSDetector.getQRS(time(n, hz), ecg, hz, true)), written, "n " + n);
+		}
+	}
+
+	/**
+	 * Times of a signal sampled from zero at the given rate
+	 */
+	static double[] time(int n, int hz) {
+		double[] time = new double[n];
+		for (int i = 0; i < n; i++) {
+			time[i] = i / (double) hz;
+		}
+		return time;
+	}
+
+	/**
+	 * R wave indices 0.7 to 0.9 seconds apart, through each of the given indices.
+	 *
+	 * @param anchors indices which must be beats, ascending and at least a second
+	 *                apart
+	 */
+	static int[] beats(Random random, int hz, int n, int[] anchors) {
+		List<Integer> beats = new ArrayList<Integer>();
+		int previous = (int) (0.4 * hz);
+		beats.add(previous);
+		for (int k = 0; k <= anchors.length; k++) {
+			int next = k < anchors.length ? anchors[k] : n - (int) (0.6 * hz);
+			// at least one beat per 0.9 s up to the next anchor, evenly spread
+			int count = (int) Math.ceil((next - previous) / (0.9 * hz));
+			double spacing = (next - previous) / (double) count;
+			for (int j = 1; j < count; j++) {
+				beats.add(previous + (int) (j * spacing + (random.nextDouble() - 0.5) * 0.05 * hz));
+			}
+			if (k < anchors.length) {
+				beats.add(next);
+			}
+			previous = next;
+		}
+		int[] indices = new int[beats.size()];
+		for (int i = 0; i < indices.length; i++) {
+			indices[i] = beats.get(i);
+		}
+		return indices;
+	}
+
+	/**
+	 * A synthetic ECG: an R wave of varying height with small Q and S waves and a
+	 * T wave after it at each beat, on a wandering baseline with some noise
+	 */
+	static double[] ecg(Random random, int hz, int[] beats, int n) {
+		double[] ecg = new double[n];
+		for (int i = 0; i < n; i++) {
+			ecg[i] = 0.1 * Math.sin(2 * Math.PI * 0.2 * i / hz) + 0.005 * random.nextGaussian();
+		}
+		for (int beat : beats) {
+			double amplitude = 0.8 + 0.4 * random.nextDouble();
+			for (int k = -hz / 2; k < hz / 2; k++) {
+				int i = beat + k;
+				if (i < 0 || i >= n) {
+					continue;
+				}
+				double s = k / (double) hz;
+				ecg[i] += amplitude * (_gaussian(s, 0, 0.01) - 0.2 * _gaussian(s, 0.03, 0.01)
+						- 0.1 * _gaussian(s, -0.03, 0.01) + 0.3 * _gaussian(s, 0.3, 0.05));
+			}
+		}
+		return ecg;
+	}
+
+	private static double _gaussian(double s, double centre, double width) {
+		double z = (s - centre) / width;
+		return Math.exp(-z * z / 2);
+	}
+
+	private static List<Integer> _indices(List<QRS> qrsComplexes) {
+		List<Integer> indices = new ArrayList<Integer>();
+		for (QRS qrs : qrsComplexes) {
+			indices.add(qrs.getArrayIndex());
+		}
+		return indices;
+	}
+
+	/**
+	 * The integrator of {@link QRSDetector} before it was a running sum, as
+	 * separate differentiate, square and integrate steps
+	 */
+	static class ThreeSteps {
+
+		static List<Integer> getQRSIndices(double[] input, int hz, boolean adjustTo100msBefore) {
+			double[] integratedSignal = integrate(input, (int) ((double) hz / 6.0));
+			return QRSDetector.detectQRSComplexes(integratedSignal, input, detectThreshold(integratedSignal), hz,
+					adjustTo100msBefore);
+		}
+
+		static double[] integrate(double[] signal, int windowSize) {
+			return movingWindowIntegration(square(differentiate(signal)), windowSize);
+		}
+
+		static double[] differentiate(double[] signal) {
+			double[] differentiatedSignal = new double[signal.length];
+			for (int i = 1; i < signal.length; i++) {
+				differentiatedSignal[i] = signal[i] - signal[i - 1];
+			}
+			return differentiatedSignal;
+		}
+
+		static double[] square(double[] signal) {
+			double[] squaredSignal = new double[signal.length];
+			for (int i = 0; i < signal.length; i++) {
+				squaredSignal[i] = signal[i] * signal[i];
+			}
+			return squaredSignal;
+		}
+
+		static double[] movingWindowIntegration(double[] signal, int windowSize) {
+			double[] integratedSignal = new double[signal.length];
+			for (int i = 0; i < signal.length; i++) {
+				double sum = 0;
+				for (int j = 0; j < windowSize; j++) {
+					if (i - j >= 0) {
+						sum += signal[i - j];
+					}
+				}
+				integratedSignal[i] = sum / windowSize;
+			}
+			return integratedSignal;
+		}
+
+		static double detectThreshold(double[] signal) {
+			double mean = 0;
+			for (double value : signal) {
+				mean += value;
+			}
+			mean /= signal.length;
+
+			double stdDev = 0;
+			for (double value : signal) {
+				stdDev += Math.pow(value - mean, 2);
+			}
+			stdDev = Math.sqrt(stdDev / signal.length);
+
+			return mean + 0.5 * stdDev;
+		}
+	}
+
+}
@@ -0,0 +1,148 @@
+package com.carrington.WIA.DataStructures;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.carrington.WIA.Cardio.Wave;
+import com.carrington.WIA.Cardio.Wave.WaveClassification;
+import com.carrington.WIA.IO.ColumnarFile;
+import com.carrington.WIA.IO.Header;
+import com.carrington.WIA.IO.WIAStats;
+
+/**
+ * Checks that {@link WIAData#migrate(File)} converts a file saved with Java
+ * serialization to the columnar format without changing what is read back.
+ */
+public class WIADataMigrationTest {
+
+	@TempDir
+	File dir;
+
+	@Test
+	public void legacyFileReadsTheSameAfterMigration() throws Exception {
+		File file = new File(dir, "legacy.wia");
+		WIAData saved = create(file);
+		writeLegacy(saved, file);
+		assertFalse(ColumnarFile.isColumnarFile(file));
+		WIAData legacy = WIAData.deserialize(file);
+
+		assertTrue(WIAData.migrate(file));
+		assertTrue(ColumnarFile.isColumnarFile(file));
+		assertFalse(WIAData.migrate(file));
+
+		assertSame(saved, legacy);
+		assertSame(legacy, WIAData.deserialize(file));
+		assertSame(legacy, WIAData.deserializeSummary(file));
+	}
+
+	@Test
+	public void statsMigrateOnlyWhenEnabled() throws Exception {
+		File file = new File(dir, "legacy.wia");
+		WIAData saved = create(file);
+		writeLegacy(saved, file);
+
+		WIAStats stats = new WIAStats("stats");
+		stats.setUseIndex(false);
+		assertEquals(1, stats.loadFiles(dir, false, null).getLoadedCount());
+		assertFalse(ColumnarFile.isColumnarFile(file));
+
+		stats = new WIAStats("stats");
+		stats.setUseIndex(false);
+		stats.setMigrate(true);
+		assertEquals(1, stats.loadFiles(dir, false, null).getLoadedCount());
+		assertTrue(ColumnarFile.isColumnarFile(file));
+		assertSame(saved, stats.getData().get(0));
+	}
+
+	/**
+	 * @return data with a pressure and flow recording, selected points and two
+	 *         waves, as saved from the wave picker
+	 */
+	private static WIAData create(File file) {
+		int n = 400;
+		double[] time = new double[n];
+		double[] pressure = new double[n];
+		double[] flow = new double[n];
+		for (int i = 0; i < n; i++) {
+			time[i] = i * 5;
+			pressure[i] = 90 + 20 * Math.sin(i * 0.02);
+			flow[i] = 30 + 10 * Math.cos(i * 0.02);
+		}
+		HemoData hemoData = new HemoData(file, file.getName(), "beat");
+		hemoData.setXData(new Header("Time", 0, true), time, HemoData.UNIT_MILLISECONDS);
+		hemoData.addYData(new Header("Pressure", 1, false), pressure, HemoData.TYPE_PRESSURE, HemoData.UNIT_MMHG);
+		hemoData.addYData(new Header("Flow", 2, false), flow, HemoData.TYPE_FLOW, HemoData.UNIT_CMperS);
+
+		WIAData data = new WIAData("Rest", hemoData);
+		data.setSystoleByTimeIndex(40);
+		data.setDiastoleByTimeIndex(200);
+		data.setVesselDiameter(3.1);
+		data.addWave(new Wave("FCW", WaveClassification.FCW, time[10], time[60], 10, 60, true));
+		data.addWave(new Wave("BEW", WaveClassification.BDW, time[150], time[250], 150, 250, false));
+		data.calculateWavePeaksAndSum();
+		return data;
+	}
+
+	/**
+	 * Saves with Java serialization, as versions before the columnar format did
+	 */
+	private static void writeLegacy(WIAData data, File file) throws IOException {
+		try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+			out.writeObject(data);
+		}
+	}
+
+	private static void assertSame(WIAData expected, WIAData actual) {
+		assertEquals(expected.getSelectionName(), actual.getSelectionName());
+		assertEquals(expected.getFileName(), actual.getFileName());
+		assertArrayEquals(expected.getTime(), actual.getTime());
+		assertArrayEquals(expected.getRawPressure(), actual.getRawPressure());
+		assertArrayEquals(expected.getRawFlow(), actual.getRawFlow());
+		assertArrayEquals(expected.getNetWaveIntensity(), actual.getNetWaveIntensity());
+		assertArrayEquals(expected.getWIForward(), actual.getWIForward());
+		assertArrayEquals(expected.getWIBackward(), actual.getWIBackward());
+		assertArrayEquals(expected.getSepFlowForwardDeriv(), actual.getSepFlowForwardDeriv());
+		assertArrayEquals(expected.getSepFlowBackwardDeriv(), actual.getSepFlowBackwardDeriv());
+		assertEquals(expected.getWaveSpeed(), actual.getWaveSpeed());
+		assertEquals(expected.getRho(), actual.getRho());
+		assertEquals(expected.getCumWIForward(), actual.getCumWIForward());
+		assertEquals(expected.getCumWIBackward(), actual.getCumWIBackward());
+		assertEquals(expected.getCumWINet(), actual.getCumWINet());
+		assertEquals(expected.getSystoleTime(), actual.getSystoleTime());
+		assertEquals(expected.getDiastoleTime(), actual.getDiastoleTime());
+		assertEquals(expected.getResistanceOverall(), actual.getResistanceOverall());
+		assertEquals(expected.getVesselDiameter(), actual.getVesselDiameter());
+
+		List<Wave> expectedWaves = _sorted(expected);
+		List<Wave> actualWaves = _sorted(actual);
+		assertEquals(expectedWaves.size(), actualWaves.size());
+		for (int i = 0; i < expectedWaves.size(); i++) {
+			Wave wave = expectedWaves.get(i);
+			assertEquals(wave.getAbbrev(), actualWaves.get(i).getAbbrev());
+			assertArrayEquals(wave.getBoundsTimeIndex(), actualWaves.get(i).getBoundsTimeIndex());
+			assertEquals(wave.getPeak(), actualWaves.get(i).getPeak());
+			assertEquals(wave.getPeakTime(), actualWaves.get(i).getPeakTime());
+			assertEquals(wave.getCumulativeIntensity(), actualWaves.get(i).getCumulativeIntensity());
+		}
+	}
+
+	private static List<Wave> _sorted(WIAData data) {
+		List<Wave> waves = new ArrayList<Wave>(data.getWaves());
+		waves.sort(Comparator.comparing(Wave::getAbbrev));
+		return waves;
+	}
+
+}
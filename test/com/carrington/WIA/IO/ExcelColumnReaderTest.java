@@ -0,0 +1,87 @@
+package com.carrington.WIA.IO;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that {@link ExcelColumnReader} reads cells the same way the workbook
+ * based {@link Reader} did, in particular that error cells are read as blank.
+ */
+public class ExcelColumnReaderTest {
+
+	private static final List<Header> COLUMNS = Arrays.asList(new Header("Time", 0, true),
+			new Header("Pressure", 1, false));
+
+	@TempDir
+	File dir;
+
+	@Test
+	public void errorCellsAreReadAsZero() throws IOException {
+		File file = new File(dir, "errors.xlsx");
+		try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+			Sheet sheet = workbook.createSheet();
+			sheet.createRow(0).createCell(0).setCellValue("Time");
+			sheet.getRow(0).createCell(1).setCellValue("Pressure");
+			for (int r = 1; r <= 4; r++) {
+				Row row = sheet.createRow(r);
+				row.createCell(0).setCellValue(r * 0.5);
+				row.createCell(1).setCellValue(r * 10);
+			}
+			sheet.getRow(2).getCell(1).setCellErrorValue(FormulaError.NA.getCode());
+			// a formula whose cached result is an error
+			Cell divide = sheet.getRow(3).getCell(1);
+			divide.setCellFormula("1/0");
+			workbook.getCreationHelper().createFormulaEvaluator().evaluateFormulaCell(divide);
+			_write(workbook, file);
+		}
+
+		LinkedHashMap<Header, double[]> data = new ExcelColumnReader(file, 0).read(COLUMNS, null);
+		assertEquals(2, data.size());
+		assertArrayEquals(new double[] { 0.5, 1, 1.5, 2 }, data.get(COLUMNS.get(0)));
+		assertArrayEquals(new double[] { 10, 0, 0, 40 }, data.get(COLUMNS.get(1)));
+
+		List<String[]> rows = ExcelColumnReader.readRows(file, 3);
+		assertArrayEquals(new String[] { "1.0", "" }, rows.get(2));
+	}
+
+	@Test
+	public void textInDataIsRejected() throws IOException {
+		File file = new File(dir, "text.xlsx");
+		try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+			Sheet sheet = workbook.createSheet();
+			sheet.createRow(0).createCell(0).setCellValue("Time");
+			sheet.getRow(0).createCell(1).setCellValue("Pressure");
+			Row row = sheet.createRow(1);
+			row.createCell(0).setCellValue(0.5);
+			// text which looks like an error cell is still text
+			row.createCell(1).setCellValue("ERROR:#N/A");
+			_write(workbook, file);
+		}
+
+		assertThrows(IOException.class, () -> new ExcelColumnReader(file, 0).read(COLUMNS, null));
+	}
+
+	private static void _write(XSSFWorkbook workbook, File file) throws IOException {
+		try (OutputStream out = new FileOutputStream(file)) {
+			workbook.write(out);
+		}
+	}
+
+}
@@ -0,0 +1,104 @@
+package com.carrington.WIA.IO;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Compares the time to parse cells with {@link NumberParser} against the
+ * previous parsing in {@link Reader#getNumber(int, int)} (see
+ * {@link NumberParserTest#previousGetNumber(String)}), for several kinds of
+ * cell. The parser is timed on each cell as a String, and as a range of
+ * characters as the column readers use it. Run by hand, as timings depend on
+ * the machine:
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes:&lt;dependencies&gt; com.carrington.WIA.IO.NumberParserBenchmark
+ * </pre>
+ */
+public class NumberParserBenchmark {
+
+	/** Cells parsed in each timed run */
+	private static final int CELLS = 1_000_000;
+	/** Times each run is repeated, the fastest being reported */
+	private static final int REPEATS = 5;
+
+	/** Written with each result, so that the parsing is not optimised away */
+	private static double sink = 0;
+
+	/**
+	 * Runs the benchmark, printing a table of the results
+	 *
+	 * @param args unused
+	 */
+	public static void main(String[] args) {
+		System.out.println(String.format(Locale.ROOT, "%-14s %16s %16s %16s", "Cells", "Previous (ns)",
+				"Parser (ns)", "Chars (ns)"));
+
+		Random random = new Random(4);
+		String[] decimal = new String[CELLS];
+		String[] scientific = new String[CELLS];
+		String[] full = new String[CELLS];
+		String[] mixed = new String[CELLS];
+		for (int i = 0; i < CELLS; i++) {
+			double value = (random.nextDouble() - 0.5) * 200;
+			decimal[i] = String.format(Locale.ROOT, "%.4f", value);
+			scientific[i] = String.format(Locale.ROOT, "%.6e", value);
+			full[i] = Double.toString(value);
+			switch (random.nextInt(4)) {
+			case 0:
+				mixed[i] = "";
+				break;
+			case 1:
+				mixed[i] = "12:30:0" + random.nextInt(10);
+				break;
+			case 2:
+				mixed[i] = "NaN";
+				break;
+			default:
+				mixed[i] = decimal[i];
+			}
+		}
+
+		_run("decimal", decimal);
+		_run("scientific", scientific);
+		_run("full double", full);
+		_run("mixed", mixed);
+	}
+
+	private static void _run(String name, String[] cells) {
+		char[][] chars = new char[cells.length][];
+		for (int i = 0; i < cells.length; i++) {
+			chars[i] = cells[i].toCharArray();
+		}
+		NumberParser parser = new NumberParser();
+
+		long previous = Long.MAX_VALUE;
+		long string = Long.MAX_VALUE;
+		long range = Long.MAX_VALUE;
+		for (int r = 0; r < REPEATS; r++) {
+			long start = System.nanoTime();
+			for (String cell : cells) {
+				sink += NumberParserTest.previousGetNumber(cell);
+			}
+			previous = Math.min(previous, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			for (String cell : cells) {
+				parser.parse(cell);
+				sink += parser.getValue();
+			}
+			string = Math.min(string, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			for (char[] cell : chars) {
+				parser.parse(cell, 0, cell.length);
+				sink += parser.getValue();
+			}
+			range = Math.min(range, System.nanoTime() - start);
+		}
+
+		System.out.println(String.format(Locale.ROOT, "%-14s %16.1f %16.1f %16.1f", name,
+				(double) previous / cells.length, (double) string / cells.length, (double) range / cells.length));
+	}
+
+}
@@ -0,0 +1,164 @@
+package com.carrington.WIA.IO;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.carrington.WIA.Utils;
+
+/**
+ * Checks that {@link NumberParser} gives exactly the value of
+ * {@link Double#parseDouble(String)}, to the bit, and the same value as the
+ * previous parsing of cells in {@link Reader#getNumber(int, int)}. Throughput is
+ * measured by {@link NumberParserBenchmark}.
+ */
+public class NumberParserTest {
+
+	/** Values at the edges of the fast path, and those it leaves to the JDK */
+	private static final String[] EDGES = { "0", "-0", "+0", "0.0", "-0.0e5", "000123.4500", "1", "-1", ".5", "5.",
+			"-.5e1", "9007199254740991", "9007199254740992", "9007199254740993", "-9007199254740993",
+			"123456789012345678", "1234567890123456789", "0.000000000000000000000000000001", "1e22", "1e23", "1e-22",
+			"1e-23", "123.456e-20", "123.456e20", "8.474e-01", "1E5", "1e+5", "1e0005", "1e99999999",
+			"1e-99999999", "4.9e-324", "2.4703282292062327e-324", "2.2250738585072014E-308",
+			"1.7976931348623157e308", "1.7976931348623159e308", "0.1", "0.2", "0.30000000000000004",
+			"3.141592653589793", "2.718281828459045235360287", "NaN", "-NaN", "Infinity", "-Infinity", "0x1p3",
+			"1d", "1f", " 1", "1 ", "1e", "1e+", "e5", "-", "+", ".", "1.2.3", "1,5", "12:30:01", "12:", ":",
+			"0000", "abc" };
+
+	@Test
+	public void edgesMatchParseDouble() {
+		NumberParser parser = new NumberParser();
+		for (String text : EDGES) {
+			_assertParsed(parser, text);
+		}
+	}
+
+	@Test
+	public void randomNumbersMatchParseDouble() {
+		NumberParser parser = new NumberParser();
+		Random random = new Random(4);
+		for (int i = 0; i < 200_000; i++) {
+			_assertParsed(parser, _randomNumber(random));
+		}
+	}
+
+	@Test
+	public void formattedDoublesMatchParseDouble() {
+		// as written by spreadsheets and recording software
+		NumberParser parser = new NumberParser();
+		Random random = new Random(40);
+		for (int i = 0; i < 50_000; i++) {
+			double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(20) - 10);
+			_assertParsed(parser, Double.toString(value));
+			_assertParsed(parser, String.format(Locale.ROOT, "%.4f", value));
+			_assertParsed(parser, String.format(Locale.ROOT, "%.6e", value));
+			_assertParsed(parser, Double.toString(Double.longBitsToDouble(random.nextLong())));
+		}
+	}
+
+	@Test
+	public void rangesAreParsedInPlace() {
+		NumberParser parser = new NumberParser();
+		String line = "12.5,-3e2,,07:45,x,1234567890.123456789";
+		String[] cells = line.split(",", -1);
+		char[] chars = line.toCharArray();
+		ByteBuffer bytes = ByteBuffer.wrap(line.getBytes(StandardCharsets.US_ASCII));
+		int start = 0;
+		for (String cell : cells) {
+			int end = start + cell.length();
+			int expected = parser.parse(cell);
+			double value = parser.getValue();
+
+			assertEquals(expected, parser.parse(line, start, end), cell);
+			assertEquals(value, parser.getValue(), cell);
+			assertEquals(expected, parser.parse(chars, start, end), cell);
+			assertEquals(value, parser.getValue(), cell);
+			assertEquals(expected, parser.parse(bytes, start, end), cell);
+			assertEquals(value, parser.getValue(), cell);
+			start = end + 1;
+		}
+	}
+
+	/**
+	 * Parses the text, checking the classification, and that the value is
+	 * identical to that of {@link Double#parseDouble(String)} for numbers and to
+	 * the previous {@link Reader#getNumber(int, int)} for everything
+	 */
+	private static void _assertParsed(NumberParser parser, String text) {
+		int type = parser.parse(text);
+		double value = parser.getValue();
+		// assertEquals compares doubles by their bits, so -0.0 is not 0.0
+		assertEquals(previousGetNumber(text), value, text);
+
+		Double parsed;
+		try {
+			parsed = Double.parseDouble(text);
+		} catch (NumberFormatException e) {
+			parsed = null;
+		}
+		if (text.isEmpty()) {
+			assertEquals(NumberParser.BLANK, type, text);
+		} else if (parsed != null && !parsed.isNaN()) {
+			assertEquals(NumberParser.NUMBER, type, text);
+			assertEquals(parsed.doubleValue(), value, text);
+		} else if (Utils.isATimeStamp(text)) {
+			assertEquals(NumberParser.TIMESTAMP, type, text);
+		} else {
+			assertEquals(NumberParser.NOT_A_NUMBER, type, text);
+		}
+	}
+
+	/**
+	 * A decimal or scientific number with up to 20 digits, which may have leading
+	 * or trailing zeros
+	 */
+	private static String _randomNumber(Random random) {
+		StringBuilder sb = new StringBuilder();
+		if (random.nextInt(3) == 0) {
+			sb.append(random.nextBoolean() ? '-' : '+');
+		}
+		int digits = 1 + random.nextInt(20);
+		int point = random.nextInt(digits + 2) - 1;
+		for (int d = 0; d < digits; d++) {
+			if (d == point) {
+				sb.append('.');
+			}
+			// zeros are common, to give leading and trailing zeros
+			sb.append(random.nextInt(4) == 0 ? '0' : (char) ('0' + random.nextInt(10)));
+		}
+		if (random.nextInt(3) == 0) {
+			sb.append(random.nextBoolean() ? 'e' : 'E');
+			int sign = random.nextInt(3);
+			if (sign > 0) {
+				sb.append(sign == 1 ? '-' : '+');
+			}
+			sb.append(random.nextInt(random.nextBoolean() ? 30 : 400));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * How {@link Reader#getNumber(int, int)} parsed a cell before
+	 * {@link NumberParser}
+	 */
+	static double previousGetNumber(String value) {
+		if (value.length() == 0)
+			value = "0";
+
+		try {
+			return Double.parseDouble(value);
+		} catch (Exception e) {
+			if (Utils.isATimeStamp(value)) {
+				return 0d;
+			} else {
+				return Double.NaN;
+			}
+		}
+	}
+
+}
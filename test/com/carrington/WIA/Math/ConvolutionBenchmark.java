@@ -0,0 +1,68 @@
+package com.carrington.WIA.Math;
+
+import java.util.Locale;
+import java.util.Random;
+
+import org.apache.commons.math3.util.MathArrays;
+
+/**
+ * Compares the time of "full" convolution by the direct sum
+ * ({@link MathArrays#convolve(double[], double[])}) and by FFT
+ * ({@link FFTConvolution}) over a range of signal and kernel lengths, to find
+ * where {@link Convolution#FFT_MIN_KERNEL} should be. Run by hand, as timings
+ * depend on the machine:
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes:&lt;dependencies&gt; com.carrington.WIA.Math.ConvolutionBenchmark
+ * </pre>
+ */
+public class ConvolutionBenchmark {
+
+	/** Signal values convolved in each timed run, split into calls */
+	private static final int SAMPLES_PER_RUN = 2_000_000;
+	/** Times each run is repeated, the fastest being reported */
+	private static final int REPEATS = 5;
+
+	/** Written with each result, so that the calculations are not optimised away */
+	private static double sink = 0;
+
+	/**
+	 * Runs the benchmark, printing a table of the results
+	 *
+	 * @param args unused
+	 */
+	public static void main(String[] args) {
+		System.out.println("FFT from kernel length " + Convolution.FFT_MIN_KERNEL);
+		System.out.println(String.format(Locale.ROOT, "%-8s %-6s %12s %12s %8s", "Signal", "Kernel", "Direct (ms)",
+				"FFT (ms)", "Speedup"));
+
+		Random random = new Random(48);
+		for (int n : new int[] { 2_000, 20_000, 200_000 }) {
+			double[] signal = ConvolutionTest.gaussian(random, n);
+			for (int m : new int[] { 8, 16, 24, 32, 48, 64, 128, 1024 }) {
+				double[] kernel = ConvolutionTest.gaussian(random, m);
+				int calls = Math.max(1, SAMPLES_PER_RUN / n);
+
+				long direct = Long.MAX_VALUE;
+				long fft = Long.MAX_VALUE;
+				for (int r = 0; r < REPEATS; r++) {
+					long start = System.nanoTime();
+					for (int c = 0; c < calls; c++) {
+						sink += MathArrays.convolve(signal, kernel)[n / 2];
+					}
+					direct = Math.min(direct, System.nanoTime() - start);
+
+					start = System.nanoTime();
+					for (int c = 0; c < calls; c++) {
+						sink += FFTConvolution.convolve(signal, kernel)[n / 2];
+					}
+					fft = Math.min(fft, System.nanoTime() - start);
+				}
+
+				System.out.println(String.format(Locale.ROOT, "%-8d %-6d %12.3f %12.3f %7.2fx", n, m,
+						direct / 1e6 / calls, fft / 1e6 / calls, (double) direct / fft));
+			}
+		}
+	}
+
+}
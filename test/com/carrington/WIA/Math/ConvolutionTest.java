@@ -0,0 +1,148 @@
+package com.carrington.WIA.Math;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.math3.util.MathArrays;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks {@link Convolution} against the direct sums of
+ * {@link MathArrays#convolve(double[], double[])}, and convolution into an
+ * output against padding the signal: exactly for kernels shorter than
+ * {@link Convolution#FFT_MIN_KERNEL}, and to within rounding for those
+ * convolved by {@link FFTConvolution}. The crossover is measured by
+ * {@link ConvolutionBenchmark}.
+ */
+public class ConvolutionTest {
+
+	/** Kernel lengths either side of {@link Convolution#FFT_MIN_KERNEL} */
+	private static final int[] KERNELS = { 1, 2, 5, 16, Convolution.FFT_MIN_KERNEL - 1, Convolution.FFT_MIN_KERNEL,
+			Convolution.FFT_MIN_KERNEL + 1, 128, 1001 };
+
+	@Test
+	public void fftMatchesDirectSum() {
+		Random random = new Random(20);
+		for (int n : new int[] { 1, 2, 47, 1000, 20001 }) {
+			double[] signal = gaussian(random, n);
+			for (int m : KERNELS) {
+				double[] kernel = gaussian(random, m);
+				double[] direct = MathArrays.convolve(signal, kernel);
+				_assertClose(direct, FFTConvolution.convolve(signal, kernel), "n = " + n + ", m = " + m);
+			}
+		}
+	}
+
+	@Test
+	public void modesMatchDirectSum() {
+		Random random = new Random(48);
+		for (int n : new int[] { 1, 50, 999, 20000 }) {
+			double[] signal = gaussian(random, n);
+			for (int m : KERNELS) {
+				double[] kernel = gaussian(random, m);
+				double[] full = MathArrays.convolve(signal, kernel);
+				String message = "n = " + n + ", m = " + m;
+
+				_assertMatches(full, new Convolution(signal, kernel).convolve(), m, message + ", default");
+				_assertMatches(full, new Convolution(signal, kernel).convolve("full"), m, message + ", full");
+
+				int offset = Math.abs(full.length - n) / 2;
+				_assertMatches(Arrays.copyOfRange(full, offset, offset + n),
+						new Convolution(signal, kernel).convolve("same"), m, message + ", same");
+
+				if (n >= m) {
+					_assertMatches(Arrays.copyOfRange(full, m - 1, n), new Convolution(signal, kernel).convolve("valid"),
+							m, message + ", valid");
+				}
+			}
+		}
+	}
+
+	@Test
+	public void convolve1dIntoOutputMatchesPadded() {
+		Random random = new Random(18);
+		for (String mode : new String[] { "reflect", "constant", "nearest", "mirror", "wrap" }) {
+			// signals shorter than the kernel, or too short to mirror, reach past the
+			// padding of one signal length, so fall back to padding
+			for (int n : new int[] { 2, 3, 4, 7, 50, 1000 }) {
+				double[] signal = gaussian(random, n);
+				for (int m : KERNELS) {
+					double[] kernel = gaussian(random, m);
+					String message = mode + ", n = " + n + ", m = " + m;
+
+					double[] expected;
+					try {
+						expected = new Convolution(signal, kernel).convolve1d(mode);
+					} catch (RuntimeException e) {
+						// i.e. mirroring two values, which fails the same way either way
+						assertThrows(e.getClass(), () -> Convolution.convolve1d(signal, kernel, mode, new double[n]),
+								message);
+						continue;
+					}
+					double[] output = new double[n];
+					assertSame(output, Convolution.convolve1d(signal, kernel, mode, output), message);
+					_assertMatches(expected, output, m, message);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void convolve1dDefaultsToReflect() {
+		Random random = new Random(180);
+		double[] signal = gaussian(random, 300);
+		double[] kernel = gaussian(random, 11);
+		assertArrayEquals(new Convolution(signal, kernel).convolve1d(),
+				Convolution.convolve1d(signal, kernel, "reflect", new double[300]));
+	}
+
+	@Test
+	public void convolve1dRejectsInvalidArguments() {
+		double[] signal = { 1, 2, 3, 4 };
+		double[] kernel = { 1, 1 };
+		assertThrows(IllegalArgumentException.class, () -> Convolution.convolve1d(signal, kernel, "same", new double[4]));
+		assertThrows(IllegalArgumentException.class, () -> Convolution.convolve1d(signal, kernel, "wrap", signal));
+		assertThrows(IllegalArgumentException.class, () -> Convolution.convolve1d(signal, kernel, "wrap", new double[3]));
+	}
+
+	/**
+	 * Exactly equal if the kernel is convolved directly, otherwise within rounding
+	 */
+	private static void _assertMatches(double[] expected, double[] actual, int kernelLength, String message) {
+		if (kernelLength < Convolution.FFT_MIN_KERNEL) {
+			assertArrayEquals(expected, actual, message);
+		} else {
+			_assertClose(expected, actual, message);
+		}
+	}
+
+	/**
+	 * Equal to within rounding, relative to the largest value as the error of the
+	 * FFT is spread over the whole output
+	 */
+	private static void _assertClose(double[] expected, double[] actual, String message) {
+		assertEquals(expected.length, actual.length, message);
+		double max = 0;
+		for (double value : expected) {
+			max = Math.max(max, Math.abs(value));
+		}
+		assertArrayEquals(expected, actual, max * 1e-13, message);
+	}
+
+	/**
+	 * @return normally distributed random values
+	 */
+	static double[] gaussian(Random random, int length) {
+		double[] values = new double[length];
+		for (int i = 0; i < length; i++) {
+			values[i] = random.nextGaussian();
+		}
+		return values;
+	}
+
+}
@@ -0,0 +1,142 @@
+package com.carrington.WIA.Math;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.math3.analysis.interpolation.SplineInterpolator;
+import org.apache.commons.math3.analysis.polynomials.PolynomialSplineFunction;
+import org.junit.jupiter.api.Test;
+
+import com.carrington.WIA.Utils;
+import com.carrington.WIA.Math.DataResampler.ResampleException;
+
+/**
+ * Checks that spline resampling gives exactly the values it did before
+ * {@link NaturalCubicSpline} and {@link DataResampler#sampleTimes(BigDecimal,
+ * BigDecimal, int)}: those of commons-math's {@link SplineInterpolator}, at
+ * times added up as {@link BigDecimal}s.
+ */
+public class NaturalCubicSplineTest {
+
+	/** Resample intervals, in seconds or milliseconds */
+	private static final double[] RATES = { 0.001, 0.002, 0.004, 0.005, 0.0025, 0.00125, 1.0 / 3, 0.3333333,
+			1.0 / 1024, 1e-7, 0.1, 1, 2.5, 4 };
+
+	@Test
+	public void valuesMatchSplineInterpolator() {
+		Random random = new Random(21);
+		for (int trial = 0; trial < 200; trial++) {
+			int n = 3 + random.nextInt(trial < 100 ? 10 : 2000);
+			double[] x = _knots(random, n);
+			double[] y = new double[n];
+			for (int i = 0; i < n; i++) {
+				y[i] = 100 * Math.sin(x[i]) + random.nextGaussian();
+			}
+			PolynomialSplineFunction expected = new SplineInterpolator().interpolate(x, y);
+			NaturalCubicSpline spline = new NaturalCubicSpline(x, y);
+
+			// random points, every knot, and both ends
+			double[] points = new double[3 * n];
+			for (int i = 0; i < points.length; i++) {
+				points[i] = x[0] + random.nextDouble() * (x[n - 1] - x[0]);
+			}
+			System.arraycopy(x, 0, points, 2 * n, n);
+			Arrays.sort(points);
+
+			double[] values = new double[points.length];
+			spline.values(points, values);
+			for (int i = 0; i < points.length; i++) {
+				double value = expected.value(points[i]);
+				assertEquals(value, spline.value(points[i]), "point " + points[i]);
+				assertEquals(value, values[i], "point " + points[i]);
+			}
+		}
+	}
+
+	@Test
+	public void sampleTimesMatchDecimalSum() {
+		Random random = new Random(210);
+		for (double rate : RATES) {
+			for (int trial = 0; trial < 20; trial++) {
+				double start = Utils.getNearestMultipleAbove(random.nextDouble() * 1000 * rate * (trial % 5), rate);
+				int count = 1 + random.nextInt(trial < 17 ? 1000 : 200_000);
+				BigDecimal first = BigDecimal.valueOf(start);
+				BigDecimal step = BigDecimal.valueOf(rate);
+				assertArrayEquals(_decimalSum(first, step, count), DataResampler.sampleTimes(first, step, count),
+						"start " + start + ", rate " + rate);
+			}
+		}
+	}
+
+	@Test
+	public void resamplingMatchesSplineInterpolator() throws ResampleException {
+		Random random = new Random(2100);
+		for (double rate : new double[] { 0.001, 0.004, 0.0025, 0.5 }) {
+			for (boolean shiftToZero : new boolean[] { false, true }) {
+				int n = 50 + random.nextInt(500);
+				double[] x = _knots(random, n);
+				for (int i = 0; i < n; i++) {
+					x[i] = x[i] * rate * 3 + 0.7;
+				}
+				double[][] y = new double[3][n];
+				for (int j = 0; j < y.length; j++) {
+					for (int i = 0; i < n; i++) {
+						y[j][i] = Math.cos(i * 0.05 * (j + 1)) + random.nextGaussian() * 0.1;
+					}
+				}
+
+				ResampleResult result = DataResampler.resample(rate, shiftToZero, null, x, y);
+
+				double offset = shiftToZero ? x[0] : 0.0;
+				double[] shifted = new double[n];
+				for (int i = 0; i < n; i++) {
+					shifted[i] = x[i] - offset;
+				}
+				BigDecimal start = BigDecimal.valueOf(Utils.getNearestMultipleAbove(shifted[0], rate));
+				int count = (int) BigDecimal.valueOf(shifted[n - 1]).subtract(start, MathContext.DECIMAL128)
+						.divide(BigDecimal.valueOf(rate)).setScale(0, RoundingMode.FLOOR).doubleValue() + 1;
+				double[] times = _decimalSum(start, BigDecimal.valueOf(rate), count);
+				String message = "rate " + rate + ", shift " + shiftToZero;
+				assertArrayEquals(times, result.timePoints, message);
+				for (int j = 0; j < y.length; j++) {
+					PolynomialSplineFunction expected = new SplineInterpolator().interpolate(shifted, y[j]);
+					for (int i = 0; i < count; i++) {
+						assertEquals(expected.value(times[i]), result.values[j][i], message);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Unevenly spaced ascending knots from 0, as with dropped or jittered samples
+	 */
+	private static double[] _knots(Random random, int n) {
+		double[] x = new double[n];
+		for (int i = 1; i < n; i++) {
+			x[i] = x[i - 1] + 0.05 + random.nextDouble();
+		}
+		return x;
+	}
+
+	/**
+	 * The sample times as they were calculated before
+	 * {@link DataResampler#sampleTimes(BigDecimal, BigDecimal, int)}
+	 */
+	private static double[] _decimalSum(BigDecimal start, BigDecimal step, int count) {
+		double[] times = new double[count];
+		BigDecimal current = start;
+		for (int i = 0; i < count; i++) {
+			times[i] = current.doubleValue();
+			current = current.add(step);
+		}
+		return times;
+	}
+
+}
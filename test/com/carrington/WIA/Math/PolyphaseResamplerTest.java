@@ -0,0 +1,164 @@
+package com.carrington.WIA.Math;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.carrington.WIA.Math.DataResampler.ResampleException;
+
+/**
+ * Checks the spectral error of {@link PolyphaseResampler}: sines below both
+ * Nyquist frequencies come through unchanged, and those above the new one are
+ * removed rather than aliased. Throughput against spline resampling is measured
+ * by {@link ResamplerBenchmark}.
+ */
+public class PolyphaseResamplerTest {
+
+	private static final int LENGTH = 100000;
+
+	@Test
+	public void constantIsUnchanged() {
+		double[] constant = new double[1000];
+		Arrays.fill(constant, 3.7);
+		for (double value : PolyphaseResampler.resample(constant, 5, 1)) {
+			assertEquals(3.7, value, 1e-14);
+		}
+		for (double value : PolyphaseResampler.resample(constant, 3, 7)) {
+			assertEquals(3.7, value, 1e-14);
+		}
+	}
+
+	@Test
+	public void sineIsKeptWhenUpsampling() {
+		// 0.02 cycles per sample, e.g. 4 Hz at 200 Hz, up to 1 kHz
+		double[] up = PolyphaseResampler.resample(sine(0.02, LENGTH), 5, 1);
+		assertEquals(LENGTH * 5, up.length);
+		assertTrue(sineError(up, 0.02, 5, 500) < 1e-4, "RMS error " + sineError(up, 0.02, 5, 500));
+	}
+
+	@Test
+	public void sineIsKeptWhenDownsampling() {
+		double[] down = PolyphaseResampler.resample(sine(0.02, LENGTH), 1, 5);
+		assertEquals(LENGTH / 5, down.length);
+		assertTrue(sineError(down, 0.02, 0.2, 50) < 1e-5, "RMS error " + sineError(down, 0.02, 0.2, 50));
+	}
+
+	@Test
+	public void frequenciesAboveNewNyquistAreRemoved() {
+		// 0.15 cycles per sample is above the Nyquist frequency of 0.1 after
+		// downsampling by 5, so would alias to 0.05
+		double[] down = PolyphaseResampler.resample(sine(0.15, LENGTH), 1, 5);
+		double sum = 0;
+		for (int k = 50; k < down.length - 50; k++) {
+			sum += down[k] * down[k];
+		}
+		double rms = Math.sqrt(sum / (down.length - 100));
+		// the input has an RMS of 0.707, so at least 80 dB down
+		assertTrue(rms < 0.707e-4, "RMS of aliased sine " + rms);
+	}
+
+	@Test
+	public void streamingMatchesWholeSignal() {
+		double[] signal = sine(0.02, 20000);
+		Random random = new Random(23);
+		for (int[] factors : new int[][] { { 5, 1 }, { 1, 5 }, { 3, 7 }, { 7, 3 } }) {
+			double[] whole = PolyphaseResampler.resample(signal, factors[0], factors[1]);
+
+			PolyphaseResampler resampler = new PolyphaseResampler(factors[0], factors[1]);
+			double[] streamed = new double[whole.length];
+			int written = 0;
+			for (int i = 0; i < signal.length;) {
+				int block = Math.min(signal.length - i, 1 + random.nextInt(300));
+				double[] output = new double[resampler.outputCapacity(block)];
+				int count = resampler.write(signal, i, i + block, output, 0);
+				System.arraycopy(output, 0, streamed, written, count);
+				written += count;
+				i += block;
+			}
+			double[] rest = resampler.finish();
+			System.arraycopy(rest, 0, streamed, written, rest.length);
+
+			assertEquals(whole.length, written + rest.length);
+			assertArrayEquals(whole, streamed, Arrays.toString(factors));
+		}
+	}
+
+	@Test
+	public void eachSeriesIsResampledOnItsOwn() throws ResampleException {
+		int n = 20000;
+		double[] x = new double[n];
+		for (int i = 0; i < n; i++) {
+			x[i] = i * 0.005;
+		}
+		double[][] y = new double[6][];
+		for (int j = 0; j < y.length; j++) {
+			y[j] = sine(0.01 * (j + 1), n);
+		}
+		// markers are resampled by nearest neighbour
+		double[] markers = new double[n];
+		markers[100] = markers[5000] = 1;
+		y[5] = markers;
+
+		ResampleResult result = PolyphaseResampler.resample(0.001, true, null, x, y);
+		int count = (n - 1) * 5 + 1;
+		assertEquals(count, result.timePoints.length);
+		for (int j = 0; j < 5; j++) {
+			assertArrayEquals(Arrays.copyOf(PolyphaseResampler.resample(y[j], 5, 1), count), result.values[j]);
+		}
+		assertEquals(1, result.values[5][500]);
+		assertEquals(1, result.values[5][25000]);
+		assertEquals(2, Arrays.stream(result.values[5]).sum());
+
+		assertEquals(result.values[2][777],
+				ResampleMethod.POLYPHASE.resample(0.001, true, null, x, y).values[2][777]);
+	}
+
+	@Test
+	public void unevenSamplingIsRejected() {
+		double[] x = { 0, 0.005, 0.01, 0.02, 0.025 };
+		double[] y = { 1, 2, 3, 4, 5 };
+		assertThrows(ResampleException.class, () -> PolyphaseResampler.resample(0.001, true, null, x, y));
+		double[] even = { 0, 0.005, 0.01, 0.015, 0.02 };
+		// a ratio of sqrt(2) is not a fraction of factors up to 1000
+		assertThrows(ResampleException.class,
+				() -> PolyphaseResampler.resample(0.005 / Math.sqrt(2), true, null, even, y));
+	}
+
+	/**
+	 * @return sine of the given frequency, in cycles per sample
+	 */
+	static double[] sine(double frequency, int length) {
+		double[] signal = new double[length];
+		for (int i = 0; i < length; i++) {
+			signal[i] = Math.sin(2 * Math.PI * frequency * i);
+		}
+		return signal;
+	}
+
+	/**
+	 * RMS difference between a resampled sine and the exact sine, skipping the
+	 * ends which are padded
+	 *
+	 * @param resampled the resampled sine
+	 * @param frequency frequency of the original, in cycles per original sample
+	 * @param ratio     new samples per original sample
+	 * @param skip      values to skip at each end
+	 */
+	static double sineError(double[] resampled, double frequency, double ratio, int skip) {
+		double sum = 0;
+		int count = 0;
+		for (int k = skip; k < resampled.length - skip; k++) {
+			double error = resampled[k] - Math.sin(2 * Math.PI * frequency * k / ratio);
+			sum += error * error;
+			count++;
+		}
+		return Math.sqrt(sum / count);
+	}
+
+}
@@ -0,0 +1,98 @@
+package com.carrington.WIA.Math;
+
+import java.util.Locale;
+
+import com.carrington.WIA.Math.DataResampler.ResampleException;
+
+/**
+ * Compares the throughput and spectral error of resampling by spline
+ * ({@link DataResampler}) and by polyphase filter ({@link PolyphaseResampler})
+ * over a range of sample rate changes and sine frequencies. Run by hand, as
+ * timings depend on the machine:
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes:&lt;dependencies&gt; com.carrington.WIA.Math.ResamplerBenchmark
+ * </pre>
+ *
+ * Each series is resampled on its own thread, so throughput is given for one
+ * series and for several at once.
+ */
+public class ResamplerBenchmark {
+
+	/** Seconds of data in each series */
+	private static final int SECONDS = 600;
+	/** Series resampled at once for the parallel throughput */
+	private static final int SERIES = 8;
+	/** Times each run is repeated, the fastest being reported */
+	private static final int REPEATS = 5;
+
+	/**
+	 * Runs the benchmark, printing a table of the results
+	 *
+	 * @param args unused
+	 * @throws ResampleException if resampling fails
+	 */
+	public static void main(String[] args) throws ResampleException {
+		System.out.println("Processors: " + Runtime.getRuntime().availableProcessors());
+		System.out.println(String.format(Locale.ROOT, "%-16s %-9s %10s %12s %12s %12s", "Rates (Hz)", "Sine (Hz)",
+				"Method", "1 series/s", SERIES + " series/s", "RMS error"));
+
+		int[][] rates = { { 200, 1000 }, { 1000, 200 }, { 250, 1000 }, { 1000, 400 } };
+		for (int[] rate : rates) {
+			double nyquist = Math.min(rate[0], rate[1]) / 2.0;
+			// well within both Nyquist frequencies, then above the new one when
+			// downsampling, where an ideal resampler gives nothing
+			double[] sines = rate[1] < rate[0] ? new double[] { 5, nyquist * 1.5 } : new double[] { 5, nyquist * 0.8 };
+			for (double sine : sines) {
+				for (ResampleMethod method : ResampleMethod.values()) {
+					_run(rate[0], rate[1], sine, method);
+				}
+			}
+		}
+	}
+
+	private static void _run(int fromHz, int toHz, double sineHz, ResampleMethod method) throws ResampleException {
+		int n = SECONDS * fromHz;
+		double[] x = new double[n];
+		double[] y = new double[n];
+		for (int i = 0; i < n; i++) {
+			x[i] = (double) i / fromHz;
+			y[i] = Math.sin(2 * Math.PI * sineHz * x[i]);
+		}
+		double[][] several = new double[SERIES][];
+		for (int j = 0; j < SERIES; j++) {
+			several[j] = y;
+		}
+		double interval = 1.0 / toHz;
+
+		long single = Long.MAX_VALUE;
+		long parallel = Long.MAX_VALUE;
+		ResampleResult result = null;
+		for (int r = 0; r < REPEATS; r++) {
+			long start = System.nanoTime();
+			result = method.resample(interval, false, null, x, y);
+			single = Math.min(single, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			method.resample(interval, false, null, x, several);
+			parallel = Math.min(parallel, System.nanoTime() - start);
+		}
+
+		// error against the exact sine, or against nothing above the new Nyquist
+		// frequency, skipping the first and last second
+		boolean aliased = sineHz >= toHz / 2.0;
+		double sum = 0;
+		int count = 0;
+		for (int k = toHz; k < result.timePoints.length - toHz; k++) {
+			double expected = aliased ? 0 : Math.sin(2 * Math.PI * sineHz * result.timePoints[k]);
+			double error = result.values[0][k] - expected;
+			sum += error * error;
+			count++;
+		}
+
+		System.out.println(String.format(Locale.ROOT, "%-16s %-9.1f %10s %12.3g %12.3g %12.3g",
+				fromHz + " to " + toHz, sineHz, method.name().toLowerCase(Locale.ROOT), n / (single / 1e9),
+				SERIES * n / (parallel / 1e9), Math.sqrt(sum / count)));
+	}
+
+}
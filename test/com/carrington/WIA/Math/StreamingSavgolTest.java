@@ -0,0 +1,166 @@
+package com.carrington.WIA.Math;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that {@link StreamingSavgol} gives the same values as
+ * {@link Savgol#filter(double[])} of the whole signal, however the signal is
+ * written, and when a filter is reused for another signal.
+ */
+public class StreamingSavgolTest {
+
+	private static final double DELTA = 0.005;
+
+	@Test
+	public void singleSamplesMatchWholeSignal() {
+		Random random = new Random(19);
+		for (int window : new int[] { 3, 5, 11, 25, 47 }) {
+			for (int deriv = 0; deriv <= 2; deriv++) {
+				for (int n : new int[] { window, window + 1, 1000 }) {
+					double[] signal = _signal(random, n);
+					StreamingSavgol streaming = new StreamingSavgol(window, 2, deriv, DELTA);
+					assertArrayEquals(_expected(signal, window, 2, deriv), _writeSingly(streaming, signal),
+							"window " + window + ", deriv " + deriv + ", n " + n);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void blocksMatchWholeSignal() {
+		Random random = new Random(190);
+		for (int window : new int[] { 5, 11, 47 }) {
+			for (int deriv = 0; deriv <= 2; deriv++) {
+				double[] signal = _signal(random, 5000);
+				double[] expected = _expected(signal, window, 3, deriv);
+				String message = "window " + window + ", deriv " + deriv;
+				StreamingSavgol streaming = new StreamingSavgol(window, 3, deriv, DELTA);
+
+				// blocks of random sizes, including empty and single samples
+				double[] output = new double[signal.length];
+				int written = 0;
+				for (int i = 0; i < signal.length;) {
+					int block = Math.min(signal.length - i, random.nextInt(window * 3));
+					written += streaming.write(signal, i, i + block, output, written);
+					i += block;
+				}
+				assertEquals(signal.length - streaming.latency(), written, message);
+				written += streaming.finish(output, written);
+				assertEquals(signal.length, written, message);
+				assertArrayEquals(expected, output, message);
+
+				// the same with the array methods, in two blocks
+				double[] first = streaming.write(Arrays.copyOf(signal, 1234));
+				double[] second = streaming.write(Arrays.copyOfRange(signal, 1234, signal.length));
+				double[] rest = streaming.finish();
+				assertArrayEquals(expected, _concat(first, second, rest), message);
+			}
+		}
+	}
+
+	@Test
+	public void filterCanBeReused() {
+		Random random = new Random(1900);
+		StreamingSavgol streaming = new StreamingSavgol(11, 2, 1, DELTA);
+		// finishing without any samples writes nothing
+		assertEquals(0, streaming.finish().length);
+
+		for (int n : new int[] { 300, 11, 1000 }) {
+			double[] signal = _signal(random, n);
+			assertArrayEquals(_expected(signal, 11, 2, 1), _writeSingly(streaming, signal), "n " + n);
+		}
+
+		// discarding part of a signal, then starting another
+		streaming.write(_signal(random, 100));
+		streaming.reset();
+		double[] signal = _signal(random, 400);
+		double[] output = new double[signal.length];
+		int written = streaming.write(signal, 0, signal.length, output, 0);
+		streaming.finish(output, written);
+		assertArrayEquals(_expected(signal, 11, 2, 1), output);
+	}
+
+	@Test
+	public void longWindowsMatchWithinRounding() {
+		// long enough that Savgol convolves by FFT
+		Random random = new Random(19000);
+		int window = Convolution.FFT_MIN_KERNEL + 3;
+		double[] signal = _signal(random, 3000);
+		double[] expected = _expected(signal, window, 3, 0);
+		double[] actual = _writeSingly(new StreamingSavgol(window, 3, 0, DELTA), signal);
+		for (int i = 0; i < signal.length; i++) {
+			assertEquals(expected[i], actual[i], 1e-12, "index " + i);
+		}
+	}
+
+	@Test
+	public void outputLagsByHalfWindow() {
+		StreamingSavgol streaming = new StreamingSavgol(7, 2);
+		assertEquals(3, streaming.latency());
+		double[] signal = { 4, 1, 5, 9, 2, 6, 5, 3 };
+		double[] expected = new Savgol(7, 2).filter(signal);
+		for (int i = 0; i < 3; i++) {
+			assertTrue(Double.isNaN(streaming.write(signal[i])));
+		}
+		for (int i = 3; i < signal.length; i++) {
+			assertEquals(expected[i - 3], streaming.write(signal[i]));
+		}
+		assertArrayEquals(Arrays.copyOfRange(expected, signal.length - 3, signal.length), streaming.finish());
+
+		assertThrows(IllegalArgumentException.class, () -> new StreamingSavgol(5, 5));
+	}
+
+	/**
+	 * Writes one sample at a time, then finishes
+	 */
+	private static double[] _writeSingly(StreamingSavgol streaming, double[] signal) {
+		double[] output = new double[signal.length];
+		int written = 0;
+		for (int i = 0; i < signal.length; i++) {
+			double value = streaming.write(signal[i]);
+			if (i < streaming.latency()) {
+				assertTrue(Double.isNaN(value));
+			} else {
+				output[written++] = value;
+			}
+		}
+		double[] rest = streaming.finish();
+		System.arraycopy(rest, 0, output, written, rest.length);
+		assertEquals(signal.length, written + rest.length);
+		return output;
+	}
+
+	private static double[] _expected(double[] signal, int window, int polyOrder, int deriv) {
+		return new Savgol(window, polyOrder, deriv, DELTA).filter(signal);
+	}
+
+	/**
+	 * A noisy pressure-like wave
+	 */
+	private static double[] _signal(Random random, int n) {
+		double[] signal = new double[n];
+		for (int i = 0; i < n; i++) {
+			signal[i] = 90 + 20 * Math.sin(i * 0.03) + random.nextGaussian();
+		}
+		return signal;
+	}
+
+	private static double[] _concat(double[]... arrays) {
+		double[] all = new double[Arrays.stream(arrays).mapToInt(a -> a.length).sum()];
+		int at = 0;
+		for (double[] array : arrays) {
+			System.arraycopy(array, 0, all, at, array.length);
+			at += array.length;
+		}
+		return all;
+	}
+
+}
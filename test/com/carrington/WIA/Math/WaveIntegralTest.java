@@ -0,0 +1,186 @@
+package com.carrington.WIA.Math;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.carrington.WIA.Utils;
+
+/**
+ * Checks {@link WaveIntegral} and
+ * {@link Utils#getAreaUnderCurve(BigDecimal, double[])} against the BigDecimal
+ * integrator they replaced, kept here as
+ * {@link #referenceArea(BigDecimal, double[])}, to 1e-12 of each result.
+ */
+public class WaveIntegralTest {
+
+	private static final double TOLERANCE = 1e-12;
+	private static final BigDecimal INTERVAL = new BigDecimal("0.001");
+
+	@Test
+	public void wholeSeriesAgreesWithReference() {
+		Random random = new Random(16);
+		for (int trial = 0; trial < 100; trial++) {
+			double[] y = _series(random, 2 + random.nextInt(5000));
+			double expected = referenceArea(INTERVAL, y);
+			_assertClose(expected, Utils.getAreaUnderCurve(INTERVAL, y), "series " + trial);
+			_assertClose(expected, new WaveIntegral(INTERVAL.doubleValue(), y).total(), "table " + trial);
+		}
+	}
+
+	@Test
+	public void subRangesAgreeWithReference() {
+		Random random = new Random(17);
+		for (int trial = 0; trial < 5; trial++) {
+			double[] y = _series(random, 20000);
+			WaveIntegral integral = new WaveIntegral(INTERVAL.doubleValue(), y);
+			for (int r = 0; r < 400; r++) {
+				int from = random.nextInt(y.length - 1);
+				int to = from + 2 + random.nextInt(Math.min(y.length - from - 1, 2000));
+				double expected = referenceArea(INTERVAL, Arrays.copyOfRange(y, from, to));
+				_assertClose(expected, integral.between(from, to), "range " + from + " to " + to);
+			}
+		}
+	}
+
+	@Test
+	public void rangesCrossingZeroAgreeWithReference() {
+		Random random = new Random(18);
+		double[] y = new double[20000];
+		for (int i = 0; i < y.length; i++) {
+			// a wave which crosses zero every 50 values, with noise
+			y[i] = Math.sin(i * Math.PI / 50) * (1 + i / 1000.0) + 0.01 * random.nextGaussian();
+		}
+		WaveIntegral integral = new WaveIntegral(INTERVAL.doubleValue(), y);
+		int crossing = 0;
+		for (int r = 0; r < 3000; r++) {
+			int from = random.nextInt(y.length - 1);
+			int to = from + 2 + random.nextInt(Math.min(y.length - from - 1, 500));
+			double[] range = Arrays.copyOfRange(y, from, to);
+			if (_crossesZero(range)) {
+				crossing++;
+			}
+			double expected = referenceArea(INTERVAL, range);
+			_assertClose(expected, integral.between(from, to), "range " + from + " to " + to);
+		}
+		assertTrue(crossing > 500, "too few ranges crossing zero: " + crossing);
+	}
+
+	@Test
+	public void segmentCrossingZeroIsSplit() {
+		// triangles of 1 * 0.5 / 2 above and 1 * 0.5 / 2 below cancel
+		assertEquals(0, WaveIntegral.area(1, new double[] { 1, -1 }), 0);
+		// 3/4 of the interval above zero, a triangle of area 3 * 0.75 / 2
+		assertEquals(3 * 0.75 / 2 - 0.25 / 2, WaveIntegral.area(1, new double[] { 3, -1 }), 1e-15);
+	}
+
+	@Test
+	public void shortRangesAreZero() {
+		WaveIntegral integral = new WaveIntegral(1, new double[] { 1, 2, 3 });
+		assertEquals(0, integral.between(1, 1));
+		assertEquals(0, integral.between(1, 2));
+		assertEquals(2.5, integral.between(1, 3));
+		assertThrows(IndexOutOfBoundsException.class, () -> integral.between(2, 4));
+	}
+
+	@Test
+	public void invalidValuesThrowAsBefore() {
+		assertThrows(NumberFormatException.class,
+				() -> Utils.getAreaUnderCurve(INTERVAL, new double[] { 1, Double.NaN, 2 }));
+		assertThrows(NumberFormatException.class,
+				() -> Utils.getAreaUnderCurve(INTERVAL, new double[] { 1, Double.POSITIVE_INFINITY }));
+		assertThrows(IllegalArgumentException.class, () -> Utils.getAreaUnderCurve(INTERVAL, new double[0]));
+		assertEquals(0, Utils.getAreaUnderCurve(INTERVAL, new double[] { 5 }));
+	}
+
+	/**
+	 * The BigDecimal integrator which {@link WaveIntegral} replaced, as it was in
+	 * {@link Utils#getAreaUnderCurve(BigDecimal, double[])}
+	 */
+	static double referenceArea(BigDecimal timeInterval, double[] y) {
+		BigDecimal two = BigDecimal.valueOf(2.0);
+		BigDecimal[] auc = new BigDecimal[y.length - 1];
+		for (int i = 0; i < y.length - 1; i++) {
+
+			if (y[i] >= 0 && y[i + 1] >= 0) {
+
+				BigDecimal yBDMax = BigDecimal.valueOf(Math.max(y[i], y[i + 1]));
+				BigDecimal yBDMin = BigDecimal.valueOf(Math.min(y[i], y[i + 1]));
+				auc[i] = yBDMin.multiply(timeInterval, MathContext.DECIMAL128)
+						.add(yBDMax.subtract(yBDMin, MathContext.DECIMAL128)
+								.multiply(timeInterval, MathContext.DECIMAL128).divide(two, MathContext.DECIMAL128),
+								MathContext.DECIMAL128);
+			} else if (y[i] <= 0 && y[i + 1] <= 0) {
+				BigDecimal yBDMax = BigDecimal.valueOf(Math.max(Math.abs(y[i]), Math.abs(y[i + 1])));
+				BigDecimal yBDMin = BigDecimal.valueOf(Math.min(Math.abs(y[i]), Math.abs(y[i + 1])));
+				auc[i] = yBDMin.multiply(timeInterval, MathContext.DECIMAL128)
+						.add(yBDMax.subtract(yBDMin, MathContext.DECIMAL128)
+								.multiply(timeInterval, MathContext.DECIMAL128).divide(two, MathContext.DECIMAL128),
+								MathContext.DECIMAL128)
+						.negate();
+			} else {
+				BigDecimal bd0 = new BigDecimal(y[i]);
+				BigDecimal bd1 = new BigDecimal(y[i + 1]);
+
+				BigDecimal absSum = bd0.abs().add(bd1.abs());
+				BigDecimal propTimeIntervalPos = null;
+				BigDecimal propTimeIntervalNeg = null;
+				if (absSum.compareTo(BigDecimal.ZERO) == 0) {
+					propTimeIntervalPos = propTimeIntervalNeg = timeInterval.divide(two, MathContext.DECIMAL128);
+				} else {
+					propTimeIntervalPos = timeInterval.multiply(bd0.abs().divide(absSum, MathContext.DECIMAL128),
+							MathContext.DECIMAL128);
+					propTimeIntervalNeg = timeInterval.multiply(bd1.abs().divide(absSum, MathContext.DECIMAL128),
+							MathContext.DECIMAL128);
+				}
+
+				auc[i] = bd0.multiply(propTimeIntervalPos, MathContext.DECIMAL128).divide(two, MathContext.DECIMAL128)
+						.add(bd1.multiply(propTimeIntervalNeg, MathContext.DECIMAL128).divide(two,
+								MathContext.DECIMAL128));
+			}
+		}
+
+		BigDecimal total = BigDecimal.ZERO;
+		for (BigDecimal value : auc) {
+			total = total.add(value, MathContext.DECIMAL128);
+		}
+		return total.doubleValue();
+	}
+
+	/**
+	 * Random wave intensity like series, which wanders either side of zero
+	 */
+	private static double[] _series(Random random, int length) {
+		double[] y = new double[length];
+		double level = random.nextGaussian();
+		for (int i = 0; i < length; i++) {
+			level += 0.05 * random.nextGaussian();
+			y[i] = (level + random.nextGaussian()) * Math.pow(10, random.nextInt(3));
+		}
+		return y;
+	}
+
+	private static boolean _crossesZero(double[] y) {
+		boolean positive = false;
+		boolean negative = false;
+		for (double value : y) {
+			positive |= value > 0;
+			negative |= value < 0;
+		}
+		return positive && negative;
+	}
+
+	private static void _assertClose(double expected, double actual, String message) {
+		assertTrue(Math.abs(actual - expected) <= TOLERANCE * Math.abs(expected),
+				message + ": expected " + expected + " but was " + actual + ", relative error "
+						+ Math.abs(actual - expected) / Math.abs(expected));
+	}
+
+}
@@ -0,0 +1,73 @@
+package com.carrington.WIA.Math;
+
+import java.util.Locale;
+import java.util.Random;
+
+import com.carrington.WIA.Math.WaveIntensityKernelTest.SeparateSteps;
+
+/**
+ * Compares the time to calculate wave speed and wave intensity with
+ * {@link WaveIntensityKernel} against the separate steps it replaced (see
+ * {@link WaveIntensityKernelTest}), for recordings of several lengths. Both
+ * include allocating their outputs. Run by hand, as timings depend on the
+ * machine:
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes:&lt;dependencies&gt; com.carrington.WIA.Math.WaveIntensityKernelBenchmark
+ * </pre>
+ */
+public class WaveIntensityKernelBenchmark {
+
+	/** Samples calculated in each timed run, split into calls of each length */
+	private static final int SAMPLES_PER_RUN = 10_000_000;
+	/** Times each run is repeated, the fastest being reported */
+	private static final int REPEATS = 5;
+
+	/** Written with each result, so that the calculations are not optimised away */
+	private static double sink = 0;
+
+	/**
+	 * Runs the benchmark, printing a table of the results
+	 *
+	 * @param args unused
+	 */
+	public static void main(String[] args) {
+		System.out.println(String.format(Locale.ROOT, "%-10s %16s %16s %8s", "Samples", "Separate (us)", "Kernel (us)",
+				"Speedup"));
+
+		for (int n : new int[] { 1_000, 10_000, 100_000 }) {
+			Random random = new Random(n);
+			double[] pressureDeriv = new double[n];
+			double[] flowDeriv = new double[n];
+			for (int i = 0; i < n; i++) {
+				pressureDeriv[i] = 2000 * Math.cos(i * 0.01) + 50 * random.nextGaussian();
+				flowDeriv[i] = 3 * Math.sin(i * 0.01 + 0.3) + 0.1 * random.nextGaussian();
+			}
+			int calls = SAMPLES_PER_RUN / n;
+
+			long separate = Long.MAX_VALUE;
+			long kernel = Long.MAX_VALUE;
+			for (int r = 0; r < REPEATS; r++) {
+				long start = System.nanoTime();
+				for (int c = 0; c < calls; c++) {
+					sink += new SeparateSteps(pressureDeriv, flowDeriv).flowBackward[n - 1];
+				}
+				separate = Math.min(separate, System.nanoTime() - start);
+
+				start = System.nanoTime();
+				for (int c = 0; c < calls; c++) {
+					double rhoC = WaveIntensityKernel.rhoC(pressureDeriv, flowDeriv);
+					double[] flowBackward = new double[n];
+					WaveIntensityKernel.separate(pressureDeriv, flowDeriv, rhoC, new double[n], new double[n],
+							new double[n], new double[n], flowBackward);
+					sink += flowBackward[n - 1];
+				}
+				kernel = Math.min(kernel, System.nanoTime() - start);
+			}
+
+			System.out.println(String.format(Locale.ROOT, "%-10d %16.1f %16.1f %7.2fx", n, separate / 1e3 / calls,
+					kernel / 1e3 / calls, (double) separate / kernel));
+		}
+	}
+
+}
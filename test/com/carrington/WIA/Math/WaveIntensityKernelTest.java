@@ -0,0 +1,123 @@
+package com.carrington.WIA.Math;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+import java.util.stream.DoubleStream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that {@link WaveIntensityKernel} gives the same values as the separate
+ * wave speed, net wave intensity, separated wave intensity and separated flow
+ * steps it replaced in {@link com.carrington.WIA.DataStructures.WIAData}.
+ * Timings are measured by {@link WaveIntensityKernelBenchmark}.
+ */
+public class WaveIntensityKernelTest {
+
+	@Test
+	public void matchesSeparateSteps() {
+		Random random = new Random(15);
+		for (int n : new int[] { 1, 2, 17, 1000, 100000 }) {
+			double[] pressureDeriv = new double[n];
+			double[] flowDeriv = new double[n];
+			for (int i = 0; i < n; i++) {
+				// derivatives of a beat in Pascals and m/s, with noise
+				pressureDeriv[i] = 2000 * Math.cos(i * 0.01) + 50 * random.nextGaussian();
+				flowDeriv[i] = 3 * Math.sin(i * 0.01 + 0.3) + 0.1 * random.nextGaussian();
+			}
+
+			SeparateSteps expected = new SeparateSteps(pressureDeriv, flowDeriv);
+
+			// both sums are compensated, but not in quite the same way, so may differ
+			// in the last place
+			double rhoC = WaveIntensityKernel.rhoC(pressureDeriv, flowDeriv);
+			assertEquals(expected.rhoC, rhoC, Math.ulp(expected.rhoC), "n = " + n);
+
+			double[] net = new double[n];
+			double[] forward = new double[n];
+			double[] backward = new double[n];
+			double[] flowForward = new double[n];
+			double[] flowBackward = new double[n];
+			WaveIntensityKernel.separate(pressureDeriv, flowDeriv, expected.rhoC, net, forward, backward, flowForward,
+					flowBackward);
+			assertArrayEquals(expected.net, net);
+			assertArrayEquals(expected.forward, forward);
+			assertArrayEquals(expected.backward, backward);
+			assertArrayEquals(expected.flowForward, flowForward);
+			assertArrayEquals(expected.flowBackward, flowBackward);
+		}
+	}
+
+	@Test
+	public void outputsAreOptional() {
+		double[] pressureDeriv = { 1, -2, 3 };
+		double[] flowDeriv = { 0.5, 0.25, -1 };
+		double[] forward = new double[3];
+		WaveIntensityKernel.separate(pressureDeriv, flowDeriv, 2, null, forward, null, null, null);
+		assertArrayEquals(new SeparateSteps(pressureDeriv, flowDeriv, 2).forward, forward);
+
+		assertThrows(IllegalArgumentException.class,
+				() -> WaveIntensityKernel.separate(pressureDeriv, flowDeriv, 2, new double[2], null, null, null, null));
+		assertThrows(IllegalArgumentException.class, () -> WaveIntensityKernel.rhoC(pressureDeriv, new double[4]));
+	}
+
+	/**
+	 * The calculations as they were before {@link WaveIntensityKernel}, one array
+	 * at a time
+	 */
+	static class SeparateSteps {
+		final double rhoC;
+		final double[] net;
+		final double[] forward;
+		final double[] backward;
+		final double[] flowForward;
+		final double[] flowBackward;
+
+		SeparateSteps(double[] pressureDeriv, double[] flowDeriv) {
+			this(pressureDeriv, flowDeriv, _rhoC(pressureDeriv, flowDeriv));
+		}
+
+		SeparateSteps(double[] pressureDeriv, double[] flowDeriv, double rho) {
+			this.rhoC = rho;
+
+			net = new double[pressureDeriv.length];
+			for (int der = 0; der < pressureDeriv.length; der++) {
+				net[der] = pressureDeriv[der] * flowDeriv[der];
+			}
+
+			double multipConstantForward = 1.0 / (4.0 * rho);
+			double multipConstantBackward = -1.0 / (4.0 * rho);
+			forward = new double[pressureDeriv.length];
+			backward = new double[pressureDeriv.length];
+			for (int i = 0; i < flowDeriv.length; i++) {
+				double pcdUdT = rho * flowDeriv[i];
+				double dPdT = pressureDeriv[i];
+				forward[i] = multipConstantForward * Math.pow((dPdT + pcdUdT), 2);
+				backward[i] = multipConstantBackward * Math.pow((dPdT - pcdUdT), 2);
+			}
+
+			flowForward = new double[pressureDeriv.length];
+			flowBackward = new double[pressureDeriv.length];
+			for (int i = 0; i < pressureDeriv.length; i++) {
+				flowForward[i] = (1.0 / (2.0 * rho)) * (pressureDeriv[i] + (rho * flowDeriv[i]));
+				flowBackward[i] = -1.0 / (2.0 * rho * (pressureDeriv[i] - (rho * flowDeriv[i])));
+			}
+		}
+
+		private static double _rhoC(double[] pressureDiff, double[] flowDiff) {
+			double[] squaredPressureDiff = new double[pressureDiff.length];
+			double[] squaredFlowDiff = new double[flowDiff.length];
+			for (int i = 0; i < flowDiff.length; i++) {
+				squaredPressureDiff[i] = Math.pow(pressureDiff[i], 2);
+				squaredFlowDiff[i] = Math.pow(flowDiff[i], 2);
+			}
+			double sumOfSquaresPressure = DoubleStream.of(squaredPressureDiff).sum();
+			double sumOfSquaresFlow = DoubleStream.of(squaredFlowDiff).sum();
+			return Math.sqrt(sumOfSquaresPressure / sumOfSquaresFlow);
+		}
+	}
+
+}